@@ -0,0 +1,105 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.dao;
+
+import cloudreports.database.Database;
+import cloudreports.models.ReportData;
+import cloudreports.simulation.SyntheticEnvironment;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the insertion of report data into the database.
+ * The table of report data is cleaned before each iteration, so the cost
+ * of maintaining its indexes does not grow along the benchmark.
+ * 
+ * @see         ReportDataDAO#insertDataList(List)
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportDataDAOBenchmark {
+
+    /** The number of rows inserted by each invocation. */
+    @Param({"1000", "10000", "100000"})
+    private int rows;
+    
+    /** The synthetic environment that holds the database. */
+    private SyntheticEnvironment environment;
+    
+    /** The data to be inserted. */
+    private List<ReportData> dataList;
+    
+    /** The data access object. */
+    private ReportDataDAO reportDataDAO;
+
+    /**
+     * Creates the environment and the data to be inserted.
+     * 
+     * @throws  IOException if the environment cannot be created.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        environment = new SyntheticEnvironment(1, 1);
+        reportDataDAO = new ReportDataDAO();
+        dataList = new ArrayList<ReportData>(rows);
+        for (int i = 0; i < rows; i++) {
+            dataList.add(new ReportData("CPU", "Datacenter1", null, i % 100, null, i / 100, 50, 1));
+        }
+    }
+
+    /** Cleans the table of report data. */
+    @Setup(Level.Iteration)
+    public void cleanReportData() {
+        Database.cleanTempReport();
+    }
+
+    /** Removes the environment. */
+    @TearDown
+    public void tearDown() {
+        environment.close();
+    }
+
+    /** Benchmarks {@link ReportDataDAO#insertDataList(List)}. */
+    @Benchmark
+    public void insertDataList() {
+        reportDataDAO.insertDataList(dataList);
+    }
+}
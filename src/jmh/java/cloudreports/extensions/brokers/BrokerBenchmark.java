@@ -0,0 +1,115 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.extensions.brokers;
+
+import cloudreports.simulation.SyntheticEnvironment;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.cloudbus.cloudsim.Cloudlet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the submission of cloudlets by brokers.
+ * The environment is simulated for a few seconds, so its virtual machines 
+ * are created, and the cloudlets of the broker are put back in its waiting
+ * list before each iteration. Each submission sends events to the 
+ * simulation, so a single invocation is measured per iteration.
+ * 
+ * @see         Broker#submitCloudlets()
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class BrokerBenchmark {
+
+    /** The simulated time, in seconds. */
+    private static final double SIMULATED_TIME = 10;
+    
+    /** The number of hosts of the environment. */
+    @Param({"100", "1000"})
+    private int hosts;
+    
+    /** The number of virtual machines and cloudlets of the environment. */
+    @Param({"200", "2000"})
+    private int vms;
+    
+    /** The synthetic environment. */
+    private SyntheticEnvironment environment;
+    
+    /** The broker of the environment. */
+    private Broker broker;
+    
+    /** The cloudlets of the broker. */
+    private List<Cloudlet> cloudlets;
+
+    /**
+     * Creates the environment and simulates it for a few seconds.
+     * 
+     * @throws  IOException if the environment cannot be created.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        environment = new SyntheticEnvironment(hosts, vms);
+        environment.run(SIMULATED_TIME);
+        broker = (Broker) environment.getBrokers().get(0);
+        cloudlets = new ArrayList<Cloudlet>();
+        cloudlets.addAll(broker.<Cloudlet>getCloudletSubmittedList());
+        cloudlets.addAll(broker.<Cloudlet>getCloudletList());
+    }
+
+    /** Puts the cloudlets of the broker back in its waiting list. */
+    @Setup(Level.Iteration)
+    public void restoreCloudlets() {
+        broker.getCloudletSubmittedList().clear();
+        broker.getCloudletList().clear();
+        broker.<Cloudlet>getCloudletList().addAll(cloudlets);
+    }
+
+    /** Removes the environment. */
+    @TearDown
+    public void tearDown() {
+        environment.close();
+    }
+
+    /** Benchmarks {@link Broker#submitCloudlets()}. */
+    @Benchmark
+    public void submitCloudlets() {
+        broker.submitCloudlets();
+    }
+}
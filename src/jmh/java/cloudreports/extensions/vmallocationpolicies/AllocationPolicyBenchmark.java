@@ -0,0 +1,120 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.extensions.vmallocationpolicies;
+
+import cloudreports.models.Migration;
+import cloudreports.simulation.SyntheticEnvironment;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.power.PowerHost;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the placement and migration planning of the single threshold
+ * allocation policy.
+ * Neither operation changes the allocation of virtual machines, so the
+ * same environment is used by all invocations.
+ * 
+ * @see         VmAllocationPolicySingleThreshold
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AllocationPolicyBenchmark {
+
+    /** The number of hosts of the environment. */
+    @Param({"100", "1000"})
+    private int hosts;
+    
+    /** The number of virtual machines of the environment. */
+    @Param({"200", "2000"})
+    private int vms;
+    
+    /** The synthetic environment. */
+    private SyntheticEnvironment environment;
+    
+    /** The allocation policy of the datacenter. */
+    private VmAllocationPolicySingleThreshold allocationPolicy;
+    
+    /** The virtual machines of the datacenter. */
+    private List<Vm> vmList;
+    
+    /** The virtual machine whose host is searched for. */
+    private Vm vm;
+
+    /**
+     * Creates the environment and places its virtual machines.
+     * 
+     * @throws  IOException if the environment cannot be created.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        environment = new SyntheticEnvironment(hosts, vms);
+        environment.placeVms();
+        allocationPolicy = (VmAllocationPolicySingleThreshold) environment.getDatacenter().getVmAllocationPolicy();
+        vmList = environment.getBrokers().get(0).getVmList();
+        vm = vmList.get(vmList.size() - 1);
+    }
+
+    /** Removes the environment. */
+    @TearDown
+    public void tearDown() {
+        environment.close();
+    }
+
+    /**
+     * Benchmarks 
+     * {@link VmAllocationPolicySingleThreshold#getListOfMigrationsToBeExecuted(List)}.
+     * 
+     * @return  the planned migrations.
+     */
+    @Benchmark
+    public List<Migration> getListOfMigrationsToBeExecuted() {
+        return allocationPolicy.getListOfMigrationsToBeExecuted(vmList);
+    }
+
+    /**
+     * Benchmarks {@link VmAllocationPolicySingleThreshold#findHostForVm(Vm)}.
+     * 
+     * @return  the chosen host.
+     */
+    @Benchmark
+    public PowerHost findHostForVm() {
+        return allocationPolicy.findHostForVm(vm);
+    }
+}
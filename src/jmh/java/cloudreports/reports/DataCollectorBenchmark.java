@@ -0,0 +1,108 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.reports;
+
+import cloudreports.extensions.PowerDatacenter;
+import cloudreports.simulation.SyntheticEnvironment;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the collection of data performed by datacenters at each
+ * scheduling and monitoring interval.
+ * Data is collected repeatedly at the same simulated instant, so the 
+ * samples are replaced and the data store does not grow between 
+ * invocations.
+ * 
+ * @see         DataCollector
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DataCollectorBenchmark {
+
+    /** The number of hosts of the environment. */
+    @Param({"100", "1000"})
+    private int hosts;
+    
+    /** The number of virtual machines of the environment. */
+    @Param({"200", "2000"})
+    private int vms;
+    
+    /** The synthetic environment. */
+    private SyntheticEnvironment environment;
+    
+    /** The datacenter whose data is collected. */
+    private PowerDatacenter datacenter;
+    
+    /** The data collector of the environment. */
+    private DataCollector dataCollector;
+
+    /**
+     * Creates the environment and places its virtual machines.
+     * 
+     * @throws  IOException if the environment cannot be created.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        environment = new SyntheticEnvironment(hosts, vms);
+        environment.placeVms();
+        datacenter = environment.getDatacenter();
+        dataCollector = environment.getDataCollector();
+    }
+
+    /** Removes the environment. */
+    @TearDown
+    public void tearDown() {
+        environment.close();
+    }
+
+    /** Benchmarks {@link DataCollector#collectData(PowerDatacenter)}. */
+    @Benchmark
+    public void collectData() {
+        dataCollector.collectData(datacenter);
+    }
+
+    /** 
+     * Benchmarks 
+     * {@link DataCollector#collectMonitoredUsedResources(PowerDatacenter)}.
+     */
+    @Benchmark
+    public void collectMonitoredUsedResources() {
+        dataCollector.collectMonitoredUsedResources(datacenter);
+    }
+}
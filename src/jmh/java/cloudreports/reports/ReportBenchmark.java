@@ -0,0 +1,143 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.reports;
+
+import cloudreports.dao.ReportDataDAO;
+import cloudreports.extensions.PowerDatacenter;
+import cloudreports.simulation.SyntheticEnvironment;
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.cloudbus.cloudsim.DatacenterBroker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the generation of the reports of datacenters and customers.
+ * The environment is simulated once, so the database holds the data the
+ * reports are made of, and the reports are written to a writer that
+ * discards them, so only the queries and the formatting are measured.
+ * 
+ * @see         DatacenterReport
+ * @see         CustomerReport
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportBenchmark {
+
+    /** The simulated time, in seconds. */
+    private static final double SIMULATED_TIME = 3600;
+    
+    /** The number of hosts of the environment. */
+    @Param({"10", "100"})
+    private int hosts;
+    
+    /** The number of virtual machines of the environment. */
+    @Param({"20", "200"})
+    private int vms;
+    
+    /** The synthetic environment. */
+    private SyntheticEnvironment environment;
+    
+    /** The datacenter whose report is generated. */
+    private PowerDatacenter datacenter;
+    
+    /** The brokers of the environment. */
+    private List<DatacenterBroker> brokersList;
+    
+    /** The writer that discards the reports. */
+    private Writer writer;
+
+    /**
+     * Creates and simulates the environment.
+     * 
+     * @throws  IOException     if the environment cannot be created.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        environment = new SyntheticEnvironment(hosts, vms);
+        environment.run(SIMULATED_TIME);
+        datacenter = environment.getDatacenter();
+        brokersList = environment.getBrokers();
+        writer = new DiscardingWriter();
+    }
+
+    /** Removes the environment. */
+    @TearDown
+    public void tearDown() {
+        environment.close();
+    }
+
+    /**
+     * Benchmarks the generation of a datacenter report.
+     * 
+     * @throws  IOException     if the report cannot be written.
+     * @throws  SQLException    if the report data cannot be read.
+     */
+    @Benchmark
+    public void datacenterReport() throws IOException, SQLException {
+        ReportDataStore data = new ReportDataDAO().getDatacenterData(datacenter.getName());
+        new DatacenterReport(datacenter, brokersList).writeHtml(writer, data, true);
+    }
+
+    /**
+     * Benchmarks the generation of a customer report.
+     * 
+     * @throws  IOException     if the report cannot be written.
+     * @throws  SQLException    if the report data cannot be read.
+     */
+    @Benchmark
+    public void customerReport() throws IOException, SQLException {
+        DatacenterBroker broker = brokersList.get(0);
+        ReportDataStore data = new ReportDataDAO().getCustomerData(broker.getName());
+        new CustomerReport(broker).writeHtml(writer, data, true);
+    }
+
+    /** A writer that discards everything written to it. */
+    private static final class DiscardingWriter extends Writer {
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {}
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,186 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.simulation;
+
+import cloudreports.business.SettingBusiness;
+import cloudreports.database.EnvironmentGenerator;
+import cloudreports.database.HibernateUtil;
+import cloudreports.extensions.PowerDatacenter;
+import cloudreports.models.UtilizationProfile;
+import cloudreports.reports.DataCollector;
+import cloudreports.reports.PhaseTimer;
+import cloudreports.utils.RandomNumberGenerator;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import org.cloudbus.cloudsim.DatacenterBroker;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.VmAllocationPolicy;
+import org.cloudbus.cloudsim.core.CloudSim;
+
+/**
+ * A synthetic simulation environment used by the benchmarks.
+ * It generates a temporary environment with one datacenter and one customer,
+ * sized by the given number of hosts and virtual machines, with one 
+ * cloudlet per virtual machine, and builds its
+ * simulation entities the same way {@link Simulation} does.
+ * The virtual machines may either be placed directly on the hosts, which 
+ * is enough for allocation and data collection benchmarks, or the 
+ * simulation may be run for a short simulated time, which also submits 
+ * cloudlets and stores report data. Only one of them must be used by each
+ * instance.
+ * 
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public final class SyntheticEnvironment {
+
+    /** The name of the temporary environment file. */
+    private static final String ENVIRONMENT_FILE = "synthetic.cre";
+    
+    /** The directory that contains the temporary environment. */
+    private final File directory;
+    
+    /** The datacenters of the environment, indexed by name. */
+    private final HashMap<String, PowerDatacenter> datacenters;
+    
+    /** The brokers of the environment, indexed by name. */
+    private final HashMap<String, DatacenterBroker> brokers;
+    
+    /** The data collector of the environment. */
+    private final DataCollector dataCollector;
+
+    /**
+     * Creates a synthetic environment and its simulation entities.
+     * 
+     * @param   numOfHosts  the number of hosts of the datacenter.
+     * @param   numOfVms    the number of virtual machines of the customer.
+     * @throws  IOException if the temporary environment cannot be created.
+     */
+    public SyntheticEnvironment(int numOfHosts, int numOfVms) throws IOException {
+        this.directory = File.createTempFile("cloudreports-benchmark", "");
+        if (!directory.delete() || !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory.getPath());
+        }
+        EnvironmentGenerator generator = new EnvironmentGenerator();
+        generator.setHostsPerDatacenter(numOfHosts);
+        generator.setVmsPerCustomer(numOfVms);
+        UtilizationProfile profile = new UtilizationProfile();
+        profile.setNumOfCloudlets(numOfVms);
+        generator.addUtilizationProfile(profile, 1);
+        generator.generate(new File(directory, ENVIRONMENT_FILE));
+        
+        SettingBusiness.reloadSnapshot();
+        SettingBusiness.setCurrentSimulation(1);
+        EnvironmentBlueprint blueprint = EnvironmentBlueprint.compile();
+        
+        Log.disable();
+        CloudSim.init(blueprint.getNumberOfCustomers(), Calendar.getInstance(), false);
+        RandomNumberGenerator.startSimulation(SettingBusiness.getRandomSeed(), 1);
+        this.datacenters = EntityFactory.createDatacenters(blueprint);
+        this.brokers = EntityFactory.createBrokers(blueprint);
+        if (datacenters == null || brokers == null) {
+            throw new IOException("Could not create the entities of the environment.");
+        }
+        EntityFactory.setUpNetworkLinks(blueprint, datacenters, brokers);
+        this.dataCollector = new DataCollector(datacenters, brokers, SettingBusiness.getSnapshot(), new PhaseTimer());
+        Simulation.setDataCollector(dataCollector);
+    }
+
+    /**
+     * Places all virtual machines on the hosts of the datacenter through 
+     * its allocation policy, without running the simulation.
+     */
+    public void placeVms() {
+        VmAllocationPolicy allocationPolicy = getDatacenter().getVmAllocationPolicy();
+        for (DatacenterBroker broker : brokers.values()) {
+            for (Vm vm : broker.getVmList()) {
+                allocationPolicy.allocateHostForVm(vm);
+                vm.setBeingInstantiated(false);
+            }
+        }
+    }
+
+    /**
+     * Runs the simulation for a given simulated time and waits until all of
+     * the collected data has been inserted into the database.
+     * 
+     * @param   seconds the simulated time, in seconds.
+     */
+    public void run(double seconds) {
+        CloudSim.terminateSimulation(seconds);
+        CloudSim.startSimulation();
+        dataCollector.awaitFlush();
+    }
+
+    /**
+     * Gets the datacenter of the environment.
+     * 
+     * @return  the datacenter.
+     */
+    public PowerDatacenter getDatacenter() {
+        return datacenters.values().iterator().next();
+    }
+
+    /**
+     * Gets the datacenters of the environment.
+     * 
+     * @return  the list of datacenters.
+     */
+    public List<PowerDatacenter> getDatacenters() {
+        return new ArrayList<PowerDatacenter>(datacenters.values());
+    }
+
+    /**
+     * Gets the brokers of the environment.
+     * 
+     * @return  the list of brokers.
+     */
+    public List<DatacenterBroker> getBrokers() {
+        return new ArrayList<DatacenterBroker>(brokers.values());
+    }
+
+    /**
+     * Gets the data collector of the environment.
+     * 
+     * @return  the data collector.
+     */
+    public DataCollector getDataCollector() {
+        return dataCollector;
+    }
+
+    /**
+     * Closes the database of the environment and removes its temporary
+     * files.
+     */
+    public void close() {
+        dataCollector.awaitFlush();
+        HibernateUtil.shutDown();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        directory.delete();
+    }
+}
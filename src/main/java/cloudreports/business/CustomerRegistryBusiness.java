@@ -35,7 +35,17 @@ public class CustomerRegistryBusiness {
     private static CustomerRegistryDAO crDAO = new CustomerRegistryDAO();
     
     public static List<CustomerRegistry> getListOfCustomers() {
-        return crDAO.getListOfCustomers();
+        List<CustomerRegistry> customers = crDAO.getListOfCustomers();
+        for (CustomerRegistry cr : customers) {
+            ParameterOverrides.apply(cr);
+        }
+        return customers;
+    }
+    
+    public static CustomerRegistry getCustomerRegistry(String customerName) {
+        CustomerRegistry cr = crDAO.getCustomerRegistry(customerName);
+        if (cr != null) ParameterOverrides.apply(cr);
+        return cr;
     }
     
 }
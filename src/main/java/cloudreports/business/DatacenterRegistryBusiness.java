@@ -35,7 +35,11 @@ public class DatacenterRegistryBusiness {
     private static DatacenterRegistryDAO dcrDAO = new DatacenterRegistryDAO();
     
     public static List<DatacenterRegistry> getListOfDatacenters() {
-        return dcrDAO.getListOfDatacenters();
+        List<DatacenterRegistry> datacenters = dcrDAO.getListOfDatacenters();
+        for (DatacenterRegistry dcr : datacenters) {
+            ParameterOverrides.apply(dcr);
+        }
+        return datacenters;
     }
     
 }
@@ -0,0 +1,200 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.business;
+
+import cloudreports.models.CustomerRegistry;
+import cloudreports.models.DatacenterRegistry;
+import cloudreports.models.HostRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of parameter values that override the registries of the active 
+ * environment without changing its database.
+ * Overrides are applied to the registries as they are loaded for a 
+ * simulation, so variants of an environment can be simulated from a single
+ * environment file.
+ * <p>
+ * A parameter is given by its name, such as 
+ * <code>upperUtilizationThreshold</code>, and applies to all datacenters or
+ * customers. It can also be prefixed with the name of a datacenter or 
+ * customer, such as <code>DC1.upperUtilizationThreshold</code>, to apply to
+ * that entity only.
+ * 
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class ParameterOverrides {
+    
+    /** The upper utilization threshold of datacenters. */
+    public static final String UPPER_UTILIZATION_THRESHOLD = "upperUtilizationThreshold";
+    
+    /** The lower utilization threshold of datacenters. */
+    public static final String LOWER_UTILIZATION_THRESHOLD = "lowerUtilizationThreshold";
+    
+    /** The scheduling interval of datacenters. */
+    public static final String SCHEDULING_INTERVAL = "schedulingInterval";
+    
+    /** The monitoring interval of datacenters. */
+    public static final String MONITORING_INTERVAL = "monitoringInterval";
+    
+    /** The amount of hosts of each host type of datacenters. */
+    public static final String HOST_AMOUNT = "hostAmount";
+    
+    /** The number of cloudlets of customers. */
+    public static final String NUM_OF_CLOUDLETS = "numOfCloudlets";
+    
+    /** The parameters of datacenters. */
+    private static final List<String> DATACENTER_PARAMETERS = Arrays.asList(UPPER_UTILIZATION_THRESHOLD,
+            LOWER_UTILIZATION_THRESHOLD, SCHEDULING_INTERVAL, MONITORING_INTERVAL, HOST_AMOUNT);
+    
+    /** The parameters of customers. */
+    private static final List<String> CUSTOMER_PARAMETERS = Arrays.asList(NUM_OF_CLOUDLETS);
+    
+    /** The active overrides, indexed by parameter. */
+    private static volatile Map<String, String> overrides = Collections.emptyMap();
+    
+    /** 
+     * Sets the active overrides.
+     * 
+     * @param   values  the values of the overridden parameters, indexed by
+     *                  parameter.
+     * @throws  IllegalArgumentException    if a parameter is unknown or a 
+     *                                      value is not a number.
+     * @since   1.2
+     */
+    public static void setOverrides(Map<String, String> values) {
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            validate(entry.getKey(), entry.getValue());
+        }
+        overrides = Collections.unmodifiableMap(new LinkedHashMap<String, String>(values));
+    }
+    
+    /** 
+     * Gets the active overrides.
+     * 
+     * @return  the values of the overridden parameters, indexed by parameter.
+     * @since   1.2
+     */
+    public static Map<String, String> getOverrides() {
+        return overrides;
+    }
+    
+    /** 
+     * Removes all active overrides.
+     * 
+     * @since   1.2
+     */
+    public static void clear() {
+        overrides = Collections.emptyMap();
+    }
+    
+    /** 
+     * Parses an override given as <code>parameter=value</code>.
+     * 
+     * @param   override    the override.
+     * @return              an array containing the parameter and the value.
+     * @throws  IllegalArgumentException    if the override is malformed, the
+     *                                      parameter is unknown or the value
+     *                                      is not a number.
+     * @since   1.2
+     */
+    public static String[] parse(String override) {
+        int separator = override.indexOf('=');
+        if (separator <= 0) throw new IllegalArgumentException("Invalid override: " + override);
+        String parameter = override.substring(0, separator).trim();
+        String value = override.substring(separator + 1).trim();
+        validate(parameter, value);
+        return new String[] {parameter, value};
+    }
+    
+    /** 
+     * Validates an override.
+     * 
+     * @param   parameter   the parameter, optionally prefixed by the name of
+     *                      a datacenter or customer.
+     * @param   value       the value.
+     * @throws  IllegalArgumentException    if the parameter is unknown or the
+     *                                      value is not a number.
+     */
+    private static void validate(String parameter, String value) {
+        String name = parameter.substring(parameter.lastIndexOf('.') + 1);
+        if (!DATACENTER_PARAMETERS.contains(name) && !CUSTOMER_PARAMETERS.contains(name)) {
+            throw new IllegalArgumentException("Unknown parameter: " + parameter);
+        }
+        Double.parseDouble(value);
+    }
+    
+    /** 
+     * Gets the overridden value of a parameter of an entity.
+     * A value given for the entity takes precedence over a value given for
+     * all entities.
+     * 
+     * @param   entityName  the name of the datacenter or customer.
+     * @param   parameter   the parameter.
+     * @return              the value; or <code>null</code> if the parameter 
+     *                      is not overridden.
+     */
+    private static String getValue(String entityName, String parameter) {
+        String value = overrides.get(entityName + "." + parameter);
+        return value != null ? value : overrides.get(parameter);
+    }
+    
+    /** 
+     * Applies the active overrides to a datacenter registry.
+     * The registry must not be saved afterwards.
+     * 
+     * @param   dcr the datacenter registry.
+     * @since       1.2
+     */
+    static void apply(DatacenterRegistry dcr) {
+        if (overrides.isEmpty()) return;
+        String value = getValue(dcr.getName(), UPPER_UTILIZATION_THRESHOLD);
+        if (value != null) dcr.setUpperUtilizationThreshold(Double.parseDouble(value));
+        value = getValue(dcr.getName(), LOWER_UTILIZATION_THRESHOLD);
+        if (value != null) dcr.setLowerUtilizationThreshold(Double.parseDouble(value));
+        value = getValue(dcr.getName(), SCHEDULING_INTERVAL);
+        if (value != null) dcr.setSchedulingInterval(Double.parseDouble(value));
+        value = getValue(dcr.getName(), MONITORING_INTERVAL);
+        if (value != null) dcr.setMonitoringInterval(Double.parseDouble(value));
+        value = getValue(dcr.getName(), HOST_AMOUNT);
+        if (value != null) {
+            for (HostRegistry hr : dcr.getHostList()) {
+                hr.setAmount((int) Double.parseDouble(value));
+            }
+        }
+    }
+    
+    /** 
+     * Applies the active overrides to a customer registry.
+     * The registry must not be saved afterwards.
+     * 
+     * @param   cr  the customer registry.
+     * @since       1.2
+     */
+    static void apply(CustomerRegistry cr) {
+        if (overrides.isEmpty()) return;
+        String value = getValue(cr.getName(), NUM_OF_CLOUDLETS);
+        if (value != null) cr.getUtilizationProfile().setNumOfCloudlets((int) Double.parseDouble(value));
+    }
+}
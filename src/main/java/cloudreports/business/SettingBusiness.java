@@ -20,73 +20,203 @@
 package cloudreports.business;
 
 import cloudreports.dao.SettingDAO;
+import cloudreports.database.HibernateUtil;
 import cloudreports.models.Setting;
 
 /**
  * Provides a set of static high level methods related to the settings of 
  * the application.
+ * Settings are read from an immutable {@link SettingsSnapshot} that is loaded
+ * once per environment, so reading a setting does not access the database.
+ * Updates are written through to the database and replace the snapshot.
  * 
  * @author      Thiago T. Sá
  * @since       1.1
  */
 public class SettingBusiness {
     
+    /** The indicators whose precision is checked by default. */
+    public static final String DEFAULT_STOPPING_INDICATORS = "energyKWh,migrations,meanCpuUtilization,meanCloudletFinishTime";
+    
     private static SettingDAO settingDAO = new SettingDAO();
     
+    /** The settings of the active environment. */
+    private static volatile SettingsSnapshot snapshot;
+    
+    /**
+     * Gets the settings of the active environment.
+     * The settings are loaded from the database on the first call and 
+     * whenever the active environment changes.
+     * 
+     * @return  the settings snapshot.
+     * @since   1.2
+     */
+    public static SettingsSnapshot getSnapshot() {
+        SettingsSnapshot currentSnapshot = snapshot;
+        String activeDatabase = HibernateUtil.getActiveDatabase();
+        if (currentSnapshot == null || currentSnapshot.getDatabase() == null
+                || !currentSnapshot.getDatabase().equals(activeDatabase)) {
+            currentSnapshot = reloadSnapshot();
+        }
+        return currentSnapshot;
+    }
+    
+    /**
+     * Loads the settings of the active environment from the database.
+     * Settings that do not exist are created with their default values.
+     * 
+     * @return  the new settings snapshot.
+     * @since   1.2
+     */
+    public static synchronized SettingsSnapshot reloadSnapshot() {
+        snapshot = new SettingsSnapshot(HibernateUtil.getActiveDatabase(),
+                                        Integer.valueOf(readSetting("Randomness", "0")),
+                                        Integer.valueOf(readSetting("NumberOfSimulations", "1")),
+                                        Integer.valueOf(readSetting("CurrentSimulation", "1")),
+                                        Boolean.valueOf(readSetting("EnableMailNotification", "false")),
+                                        Integer.valueOf(readSetting("TimeToSimulate", "60")),
+                                        Boolean.valueOf(readSetting("HtmlReports", "true")),
+                                        Boolean.valueOf(readSetting("RawDataReports", "true")),
+                                        Integer.valueOf(readSetting("BatchSize", "1000")),
+                                        Integer.valueOf(readSetting("MonitoringWindow", "2")),
+                                        Integer.valueOf(readSetting("ParallelClassificationThreshold", "2000")),
+                                        parseSeed(readSetting("RandomSeed", "")),
+                                        Double.valueOf(readSetting("TargetPrecision", "0")),
+                                        Integer.valueOf(readSetting("MinimumSimulations", "3")),
+                                        readSetting("StoppingIndicators", DEFAULT_STOPPING_INDICATORS),
+                                        readSetting("QRBGusername", null),
+                                        readSetting("QRBGpassword", null));
+        return snapshot;
+    }
+    
+    /**
+     * Reads the value of a setting, creating the setting if it does not 
+     * exist.
+     * 
+     * @param   name            the name of the setting.
+     * @param   defaultValue    the value of the setting if it does not exist;
+     *                          if <code>null</code>, the setting is not 
+     *                          created.
+     * @return                  the value of the setting.
+     * @since                   1.2
+     */
+    private static String readSetting(String name, String defaultValue) {
+        Setting setting = settingDAO.getSetting(name);
+        if (setting == null) {
+            if (defaultValue != null) settingDAO.insertSetting(new Setting(name, defaultValue));
+            return defaultValue;
+        }
+        else return setting.getValue();
+    }
+    
+    /**
+     * Parses the value of the random seed setting.
+     * 
+     * @param   value   the value of the setting.
+     * @return          the seed; or <code>null</code> if the value is empty 
+     *                  or invalid.
+     * @since           1.2
+     */
+    private static Long parseSeed(String value) {
+        if (value == null || value.trim().isEmpty()) return null;
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Inserts a new setting and refreshes the settings snapshot.
+     * 
+     * @param   setting the setting to be inserted.
+     * @since   1.2
+     */
+    public static void insertSetting(Setting setting) {
+        settingDAO.insertSetting(setting);
+        reloadSnapshot();
+    }
+    
+    /**
+     * Updates an existing setting and refreshes the settings snapshot.
+     * 
+     * @param   setting the setting to be updated.
+     * @since   1.2
+     */
+    public static void updateSetting(Setting setting) {
+        settingDAO.updateSetting(setting);
+        reloadSnapshot();
+    }
+    
     public static boolean isMailNotificationEnabled() {
-        String settingValue = settingDAO.getSetting("EnableMailNotification").getValue();
-        return Boolean.valueOf(settingValue);
+        return getSnapshot().isMailNotificationEnabled();
     }
     
     public static int getNumberOfSimulations() {
-        return Integer.valueOf(settingDAO.getSetting("NumberOfSimulations").getValue());
+        return getSnapshot().getNumberOfSimulations();
     }
     
-    public static void setCurrentSimulation(int simulationId) {
+    public static synchronized void setCurrentSimulation(int simulationId) {
         Setting currentSimulation = settingDAO.getSetting("CurrentSimulation");
         currentSimulation.setValue(String.valueOf(simulationId));
         settingDAO.updateSetting(currentSimulation);
+        snapshot = getSnapshot().withCurrentSimulation(simulationId);
     }
     
     public static int getCurrentSimulation() {
-        return Integer.valueOf(settingDAO.getSetting("CurrentSimulation").getValue());
+        return getSnapshot().getCurrentSimulation();
     }
     
     public static String getQRBGUsername() {
-        return settingDAO.getSetting("QRBGusername").getValue();
+        return getSnapshot().getQRBGUsername();
     }
     
     public static String getQRBGPassword() {
-        return settingDAO.getSetting("QRBGpassword").getValue();
+        return getSnapshot().getQRBGPassword();
     }
     
     public static int getTimeToSimulate() {
-        return Integer.valueOf(settingDAO.getSetting("TimeToSimulate").getValue());
+        return getSnapshot().getTimeToSimulate();
     }
     
     public static int getRandomnessOption() {
-        return Integer.valueOf(settingDAO.getSetting("Randomness").getValue());
+        return getSnapshot().getRandomnessOption();
     }
-
+    
     public static boolean isHtmlReportsEnabled() {
-        Setting htmlReportsEnabled = settingDAO.getSetting("HtmlReports");
-        if (htmlReportsEnabled == null) {
-            htmlReportsEnabled = new Setting("HtmlReports", "true");
-            settingDAO.insertSetting(htmlReportsEnabled);
-            return true;
-        }
-        else return Boolean.valueOf(htmlReportsEnabled.getValue());
-
+        return getSnapshot().isHtmlReportsEnabled();
     }
     
     public static boolean isRawDataReportsEnabled() {
-        Setting rawDataReportsEnabled = settingDAO.getSetting("RawDataReports");
-        if (rawDataReportsEnabled == null) {
-            rawDataReportsEnabled = new Setting("RawDataReports", "true");
-            settingDAO.insertSetting(rawDataReportsEnabled);
-            return true;
-        }
-        else return Boolean.valueOf(rawDataReportsEnabled.getValue());
+        return getSnapshot().isRawDataReportsEnabled();
+    }
+    
+    public static int getBatchSize() {
+        return getSnapshot().getBatchSize();
+    }
+    
+    public static int getMonitoringWindow() {
+        return getSnapshot().getMonitoringWindow();
+    }
+    
+    public static int getParallelClassificationThreshold() {
+        return getSnapshot().getParallelClassificationThreshold();
+    }
+    
+    public static Long getRandomSeed() {
+        return getSnapshot().getRandomSeed();
+    }
+    
+    public static double getTargetPrecision() {
+        return getSnapshot().getTargetPrecision();
+    }
+    
+    public static int getMinimumSimulations() {
+        return getSnapshot().getMinimumSimulations();
+    }
+    
+    public static String getStoppingIndicators() {
+        return getSnapshot().getStoppingIndicators();
     }
     
 }
@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ *
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.business;
+
+/**
+ * An immutable, typed view of the settings of an environment.
+ * A snapshot is loaded once from the database and shared by all simulation
+ * components, so reading a setting does not require any database access.
+ * Changes to the settings produce a new snapshot.
+ *
+ * @see         SettingBusiness
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public final class SettingsSnapshot {
+
+    /** The name of the database the settings were loaded from. */
+    private final String database;
+
+    /** The source of random numbers. */
+    private final int randomnessOption;
+
+    /** The number of simulations to be run. */
+    private final int numberOfSimulations;
+
+    /** The current simulation. */
+    private final int currentSimulation;
+
+    /** Indicates whether mail notifications are enabled. */
+    private final boolean mailNotificationEnabled;
+
+    /** The time to simulate, in minutes. */
+    private final int timeToSimulate;
+
+    /** Indicates whether HTML reports must be generated. */
+    private final boolean htmlReportsEnabled;
+
+    /** Indicates whether raw data reports must be generated. */
+    private final boolean rawDataReportsEnabled;
+
+    /** The number of rows sent to the database per batch. */
+    private final int batchSize;
+
+    /** The number of samples kept per monitored resource. */
+    private final int monitoringWindow;
+
+    /** The number of hosts above which hosts are classified in parallel. */
+    private final int parallelClassificationThreshold;
+
+    /** The seed of pseudo-random numbers; or <code>null</code> if a new
+     *  seed must be chosen for each run.
+     */
+    private final Long randomSeed;
+
+    /** The relative precision at which simulations stop; or 
+     *  <code>0</code> if all simulations must be run.
+     */
+    private final double targetPrecision;
+
+    /** The minimum number of simulations before they may stop. */
+    private final int minimumSimulations;
+
+    /** The indicators whose precision is checked, separated by commas. */
+    private final String stoppingIndicators;
+
+    /** The username of the QRBG service. */
+    private final String qrbgUsername;
+
+    /** The password of the QRBG service. */
+    private final String qrbgPassword;
+
+    /**
+     * Creates a settings snapshot.
+     *
+     * @param   database                the name of the database the settings
+     *                                  were loaded from.
+     * @param   randomnessOption        the source of random numbers.
+     * @param   numberOfSimulations     the number of simulations to be run.
+     * @param   currentSimulation       the current simulation.
+     * @param   mailNotificationEnabled indicates whether mail notifications
+     *                                  are enabled.
+     * @param   timeToSimulate          the time to simulate, in minutes.
+     * @param   htmlReportsEnabled      indicates whether HTML reports must be
+     *                                  generated.
+     * @param   rawDataReportsEnabled   indicates whether raw data reports
+     *                                  must be generated.
+     * @param   batchSize               the number of rows sent to the
+     *                                  database per batch.
+     * @param   monitoringWindow        the number of samples kept per
+     *                                  monitored resource.
+     * @param   parallelClassificationThreshold the number of hosts above
+     *                                  which hosts are classified in 
+     *                                  parallel; or <code>0</code> if they
+     *                                  are always classified sequentially.
+     * @param   randomSeed              the seed of pseudo-random numbers; or
+     *                                  <code>null</code> if a new seed must
+     *                                  be chosen for each run.
+     * @param   targetPrecision         the relative precision at which
+     *                                  simulations stop; or <code>0</code> if
+     *                                  all simulations must be run.
+     * @param   minimumSimulations      the minimum number of simulations
+     *                                  before they may stop.
+     * @param   stoppingIndicators      the indicators whose precision is
+     *                                  checked, separated by commas.
+     * @param   qrbgUsername            the username of the QRBG service.
+     * @param   qrbgPassword            the password of the QRBG service.
+     * @since                           1.2
+     */
+    public SettingsSnapshot(String database, int randomnessOption, int numberOfSimulations,
+                            int currentSimulation, boolean mailNotificationEnabled,
+                            int timeToSimulate, boolean htmlReportsEnabled,
+                            boolean rawDataReportsEnabled, int batchSize, int monitoringWindow,
+                            int parallelClassificationThreshold, Long randomSeed, double targetPrecision, int minimumSimulations,
+                            String stoppingIndicators, String qrbgUsername, String qrbgPassword) {
+        this.database = database;
+        this.randomnessOption = randomnessOption;
+        this.numberOfSimulations = numberOfSimulations;
+        this.currentSimulation = currentSimulation;
+        this.mailNotificationEnabled = mailNotificationEnabled;
+        this.timeToSimulate = timeToSimulate;
+        this.htmlReportsEnabled = htmlReportsEnabled;
+        this.rawDataReportsEnabled = rawDataReportsEnabled;
+        this.batchSize = batchSize;
+        this.monitoringWindow = monitoringWindow;
+        this.parallelClassificationThreshold = parallelClassificationThreshold;
+        this.randomSeed = randomSeed;
+        this.targetPrecision = targetPrecision;
+        this.minimumSimulations = minimumSimulations;
+        this.stoppingIndicators = stoppingIndicators;
+        this.qrbgUsername = qrbgUsername;
+        this.qrbgPassword = qrbgPassword;
+    }
+
+    /**
+     * Creates a copy of this snapshot with a different current simulation.
+     *
+     * @param   currentSimulation   the current simulation.
+     * @return                      the new snapshot.
+     * @since                       1.2
+     */
+    public SettingsSnapshot withCurrentSimulation(int currentSimulation) {
+        return new SettingsSnapshot(database, randomnessOption, numberOfSimulations,
+                                    currentSimulation, mailNotificationEnabled, timeToSimulate,
+                                    htmlReportsEnabled, rawDataReportsEnabled, batchSize,
+                                    monitoringWindow, parallelClassificationThreshold,
+                                    randomSeed, targetPrecision,
+                                    minimumSimulations, stoppingIndicators, qrbgUsername,
+                                    qrbgPassword);
+    }
+
+    /**
+     * Gets the name of the database the settings were loaded from.
+     *
+     * @return  the name of the database.
+     */
+    public String getDatabase() {
+        return database;
+    }
+
+    /**
+     * Gets the source of random numbers.
+     *
+     * @return  the source of random numbers.
+     */
+    public int getRandomnessOption() {
+        return randomnessOption;
+    }
+
+    /**
+     * Gets the number of simulations to be run.
+     *
+     * @return  the number of simulations.
+     */
+    public int getNumberOfSimulations() {
+        return numberOfSimulations;
+    }
+
+    /**
+     * Gets the current simulation.
+     *
+     * @return  the current simulation.
+     */
+    public int getCurrentSimulation() {
+        return currentSimulation;
+    }
+
+    /**
+     * Indicates whether mail notifications are enabled.
+     *
+     * @return  <code>true</code> if mail notifications are enabled;
+     *          <code>false</code> otherwise.
+     */
+    public boolean isMailNotificationEnabled() {
+        return mailNotificationEnabled;
+    }
+
+    /**
+     * Gets the time to simulate.
+     *
+     * @return  the time to simulate, in minutes.
+     */
+    public int getTimeToSimulate() {
+        return timeToSimulate;
+    }
+
+    /**
+     * Indicates whether HTML reports must be generated.
+     *
+     * @return  <code>true</code> if HTML reports are enabled;
+     *          <code>false</code> otherwise.
+     */
+    public boolean isHtmlReportsEnabled() {
+        return htmlReportsEnabled;
+    }
+
+    /**
+     * Indicates whether raw data reports must be generated.
+     *
+     * @return  <code>true</code> if raw data reports are enabled;
+     *          <code>false</code> otherwise.
+     */
+    public boolean isRawDataReportsEnabled() {
+        return rawDataReportsEnabled;
+    }
+
+    /**
+     * Gets the number of rows sent to the database per batch.
+     *
+     * @return  the batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Gets the number of samples kept per monitored resource.
+     *
+     * @return  the monitoring window.
+     */
+    public int getMonitoringWindow() {
+        return monitoringWindow;
+    }
+
+    /**
+     * Gets the number of hosts above which the hosts of a datacenter are
+     * classified in parallel by allocation policies.
+     *
+     * @return  the number of hosts; or <code>0</code> if hosts are always
+     *          classified sequentially.
+     */
+    public int getParallelClassificationThreshold() {
+        return parallelClassificationThreshold;
+    }
+
+    /**
+     * Gets the seed of pseudo-random numbers.
+     *
+     * @return  the seed; or <code>null</code> if a new seed must be chosen
+     *          for each run.
+     */
+    public Long getRandomSeed() {
+        return randomSeed;
+    }
+
+    /**
+     * Gets the relative precision at which simulations stop.
+     * Simulations stop when the confidence interval of every stopping
+     * indicator is narrower than this fraction of its mean.
+     *
+     * @return  the relative precision; or <code>0</code> if all simulations
+     *          must be run.
+     */
+    public double getTargetPrecision() {
+        return targetPrecision;
+    }
+
+    /**
+     * Gets the minimum number of simulations before they may stop.
+     *
+     * @return  the minimum number of simulations.
+     */
+    public int getMinimumSimulations() {
+        return minimumSimulations;
+    }
+
+    /**
+     * Gets the indicators whose precision is checked.
+     *
+     * @return  the names of the indicators, separated by commas.
+     */
+    public String getStoppingIndicators() {
+        return stoppingIndicators;
+    }
+
+    /**
+     * Gets the username of the QRBG service.
+     *
+     * @return  the username of the QRBG service.
+     */
+    public String getQRBGUsername() {
+        return qrbgUsername;
+    }
+
+    /**
+     * Gets the password of the QRBG service.
+     *
+     * @return  the password of the QRBG service.
+     */
+    public String getQRBGPassword() {
+        return qrbgPassword;
+    }
+}
@@ -0,0 +1,315 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.cli;
+
+import cloudreports.business.ParameterOverrides;
+import cloudreports.database.HibernateUtil;
+import cloudreports.reports.Report;
+import cloudreports.reports.SimulationSummary;
+import cloudreports.simulation.Simulation;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs simulations without the graphical interface.
+ * Usage:
+ * <pre>
+ * java -cp CloudReports.jar cloudreports.cli.CommandLineRunner [options] environment.cre...
+ *
+ *   -n, --simulations &lt;count&gt;  number of simulations per environment
+ *                               (default: the environment's setting)
+ *   -o, --output &lt;directory&gt;   directory where reports are generated
+ *   -s, --status &lt;file&gt;        JSON file updated with the progress
+ *   -j, --workers &lt;count&gt;      number of simulations run in parallel
+ *                               worker processes (default: 1)
+ *       --seed &lt;seed&gt;          base seed of pseudo-random numbers
+ *                               (default: the environment's setting)
+ *       --replica &lt;id&gt;         runs only the simulation with this id
+ *       --precision &lt;fraction&gt; stops once the indicators are within this
+ *                               relative precision (sequential runs only)
+ *       --set &lt;key=value&gt;     overrides a parameter of the environment
+ *                               (repeatable; applies to every variant)
+ *       --vary &lt;key=v1,v2,...&gt; runs a variant per combination of values
+ *                               (repeatable)
+ *       --variants &lt;file&gt;      runs a variant per line of key=value pairs
+ *       --summary &lt;file&gt;       writes the indicators of the last simulation
+ *   -h, --help                  shows this message
+ * </pre>
+ * Parameters are given as <code>parameter</code> or 
+ * <code>Entity.parameter</code>, as described in {@link ParameterOverrides}.
+ * Variants are run by a {@link ParameterSweep} of a single environment.
+ * The process exits with {@link #EXIT_SUCCESS} if all simulations complete,
+ * {@link #EXIT_USAGE} if the arguments are invalid, 
+ * {@link #EXIT_ENVIRONMENT_NOT_FOUND} if an environment file does not exist
+ * and {@link #EXIT_SIMULATION_FAILED} if any simulation fails.
+ * 
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class CommandLineRunner {
+
+    /** The exit code of a run whose simulations have all completed. */
+    public static final int EXIT_SUCCESS = 0;
+    
+    /** The exit code of a run with invalid arguments. */
+    public static final int EXIT_USAGE = 1;
+    
+    /** The exit code of a run whose environment files do not exist. */
+    public static final int EXIT_ENVIRONMENT_NOT_FOUND = 2;
+    
+    /** The exit code of a run with failed simulations. */
+    public static final int EXIT_SIMULATION_FAILED = 3;
+    
+    /** The extension of environment files. */
+    private static final String ENVIRONMENT_EXTENSION = ".cre";
+
+    /**
+     * Runs the simulations given by the command line arguments and exits.
+     * 
+     * @param   args    the command line arguments.
+     * @since           1.2
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        System.exit(run(args, System.out));
+    }
+
+    /**
+     * Runs the simulations given by the command line arguments.
+     * 
+     * @param   args    the command line arguments.
+     * @param   out     the stream where the progress is printed.
+     * @return          the exit code.
+     * @since           1.2
+     */
+    public static int run(String[] args, PrintStream out) {
+        int numberOfSimulations = 0;
+        String outputDirectory = null;
+        File statusFile = null;
+        int numberOfWorkers = 1;
+        int replica = 0;
+        Long randomSeed = null;
+        Double targetPrecision = null;
+        File summaryFile = null;
+        File variantsFile = null;
+        Map<String, String> overrides = new LinkedHashMap<String, String>();
+        Map<String, List<String>> grid = new LinkedHashMap<String, List<String>>();
+        List<File> environmentFiles = new ArrayList<File>();
+        
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-h") || arg.equals("--help")) {
+                    printUsage(out);
+                    return EXIT_SUCCESS;
+                } else if (arg.equals("-n") || arg.equals("--simulations")) {
+                    numberOfSimulations = Integer.parseInt(args[++i]);
+                    if (numberOfSimulations < 1) throw new IllegalArgumentException("The number of simulations must be positive.");
+                } else if (arg.equals("-o") || arg.equals("--output")) {
+                    outputDirectory = args[++i];
+                } else if (arg.equals("-s") || arg.equals("--status")) {
+                    statusFile = new File(args[++i]);
+                } else if (arg.equals("-j") || arg.equals("--workers")) {
+                    numberOfWorkers = Integer.parseInt(args[++i]);
+                    if (numberOfWorkers < 1) throw new IllegalArgumentException("The number of workers must be positive.");
+                } else if (arg.equals("--seed")) {
+                    randomSeed = Long.valueOf(args[++i]);
+                } else if (arg.equals("--replica")) {
+                    replica = Integer.parseInt(args[++i]);
+                    if (replica < 1) throw new IllegalArgumentException("The replica id must be positive.");
+                } else if (arg.equals("--precision")) {
+                    targetPrecision = Double.valueOf(args[++i]);
+                    if (targetPrecision < 0) throw new IllegalArgumentException("The precision must not be negative.");
+                } else if (arg.equals("--set")) {
+                    String[] override = ParameterOverrides.parse(args[++i]);
+                    overrides.put(override[0], override[1]);
+                } else if (arg.equals("--vary")) {
+                    String vary = args[++i];
+                    int separator = vary.indexOf('=');
+                    String parameter = null;
+                    List<String> values = new ArrayList<String>();
+                    //Each value is validated as an override of its own
+                    for (String value : vary.substring(separator + 1).split(",")) {
+                        String[] override = ParameterOverrides.parse(vary.substring(0, Math.max(separator, 0)) + "=" + value);
+                        parameter = override[0];
+                        values.add(override[1]);
+                    }
+                    grid.put(parameter, values);
+                } else if (arg.equals("--variants")) {
+                    variantsFile = new File(args[++i]);
+                } else if (arg.equals("--summary")) {
+                    summaryFile = new File(args[++i]);
+                } else if (arg.startsWith("-")) {
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                } else {
+                    environmentFiles.add(new File(arg));
+                }
+            }
+            if (environmentFiles.isEmpty()) throw new IllegalArgumentException("No environment file was given.");
+            if ((variantsFile != null || !grid.isEmpty()) && environmentFiles.size() > 1) {
+                throw new IllegalArgumentException("Variants can only be run for a single environment.");
+            }
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            out.println("Missing value of option " + args[args.length - 1] + ".");
+            printUsage(out);
+            return EXIT_USAGE;
+        } catch (IllegalArgumentException ex) {
+            out.println(ex.getMessage());
+            printUsage(out);
+            return EXIT_USAGE;
+        }
+        
+        for (File environmentFile : environmentFiles) {
+            if (!environmentFile.isFile() || !environmentFile.getName().endsWith(ENVIRONMENT_EXTENSION)) {
+                out.println("Environment file not found: " + environmentFile.getPath());
+                return EXIT_ENVIRONMENT_NOT_FOUND;
+            }
+        }
+        
+        if (outputDirectory != null) {
+            new File(outputDirectory).mkdirs();
+            Report.setReportsDirectory(outputDirectory);
+        }
+        
+        ParameterOverrides.setOverrides(overrides);
+        ConsoleSimulationListener listener = new ConsoleSimulationListener(out, statusFile);
+        if (variantsFile != null || !grid.isEmpty()) {
+            try {
+                List<Map<String, String>> variants = variantsFile != null 
+                                                     ? ParameterSweep.readVariants(variantsFile)
+                                                     : ParameterSweep.grid(grid);
+                ParameterSweep sweep = new ParameterSweep(environmentFiles.get(0), numberOfWorkers, listener);
+                sweep.setOverrides(overrides);
+                List<SimulationSummary> summaries = sweep.run(variants, randomSeed, 
+                                                              new File(Report.getReportsDirectory()));
+                ParameterSweep.printSummary(out, variants, summaries);
+            } catch (IllegalArgumentException ex) {
+                out.println(ex.getMessage());
+                return EXIT_USAGE;
+            } catch (IOException ex) {
+                listener.error("Variants of " + environmentFiles.get(0).getName() + " could not be run: " + ex.getMessage());
+            }
+            listener.finish();
+            return exitCode(listener);
+        }
+        
+        if (numberOfWorkers > 1 && replica == 0) {
+            ReplicaScheduler scheduler = new ReplicaScheduler(numberOfWorkers, listener);
+            for (File environmentFile : environmentFiles) {
+                try {
+                    scheduler.run(environmentFile, numberOfSimulations, randomSeed);
+                } catch (IOException ex) {
+                    listener.error("Workers of " + environmentFile.getName() + " could not be started: " + ex.getMessage());
+                }
+            }
+            listener.finish();
+            return exitCode(listener);
+        }
+        
+        for (File environmentFile : environmentFiles) {
+            String fileName = environmentFile.getName();
+            String environment = fileName.substring(0, fileName.length() - ENVIRONMENT_EXTENSION.length());
+            File directory = environmentFile.getAbsoluteFile().getParentFile();
+            HibernateUtil.setDatabaseDirectory(directory.getPath());
+            //The simulation reads the environment before activating it
+            HibernateUtil.setActiveDatabase(fileName);
+            
+            Simulation simulation = new Simulation(new String[] {environment}, listener);
+            simulation.setNumberOfSimulations(numberOfSimulations);
+            simulation.setReplica(replica);
+            simulation.setRandomSeed(randomSeed);
+            simulation.setTargetPrecision(targetPrecision);
+            simulation.run();
+            if (Simulation.hasTerminated()) break;
+        }
+        listener.finish();
+        if (summaryFile != null && listener.getLastSummary() != null) {
+            writeSummary(summaryFile, listener.getLastSummary(), listener);
+        }
+        return exitCode(listener);
+    }
+
+    /**
+     * Writes the indicators of a simulation to a properties file.
+     * 
+     * @param   file        the summary file.
+     * @param   summary     the summary of the simulation.
+     * @param   listener    the listener of the run, which is notified if the
+     *                      file could not be written.
+     */
+    private static void writeSummary(File file, SimulationSummary summary, ConsoleSimulationListener listener) {
+        try {
+            OutputStream stream = new FileOutputStream(file);
+            try {
+                summary.toProperties().store(stream, "Key performance indicators");
+            } finally {
+                stream.close();
+            }
+        } catch (IOException ex) {
+            listener.error("Summary file could not be written: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Gets the exit code of a run.
+     * 
+     * @param   listener    the listener of the run.
+     * @return              the exit code.
+     */
+    private static int exitCode(ConsoleSimulationListener listener) {
+        if (listener.getFailures() + listener.getErrors() > 0) return EXIT_SIMULATION_FAILED;
+        return EXIT_SUCCESS;
+    }
+
+    /**
+     * Prints the usage of the command line runner.
+     * 
+     * @param   out the stream where the usage is printed.
+     */
+    private static void printUsage(PrintStream out) {
+        out.println("Usage: java -cp CloudReports.jar " + CommandLineRunner.class.getName() + " [options] environment.cre...");
+        out.println();
+        out.println("  -n, --simulations <count>  number of simulations per environment");
+        out.println("                             (default: the environment's setting)");
+        out.println("  -o, --output <directory>   directory where reports are generated");
+        out.println("  -s, --status <file>        JSON file updated with the progress");
+        out.println("  -j, --workers <count>      number of simulations run in parallel");
+        out.println("                             worker processes (default: 1)");
+        out.println("      --seed <seed>          base seed of pseudo-random numbers");
+        out.println("                             (default: the environment's setting)");
+        out.println("      --replica <id>         runs only the simulation with this id");
+        out.println("      --precision <fraction> stops once the indicators are within this");
+        out.println("                             relative precision (sequential runs only)");
+        out.println("      --set <key=value>      overrides a parameter of the environment");
+        out.println("                             (repeatable; applies to every variant)");
+        out.println("      --vary <key=v1,v2,...> runs a variant per combination of values");
+        out.println("                             (repeatable)");
+        out.println("      --variants <file>      runs a variant per line of key=value pairs");
+        out.println("      --summary <file>       writes the indicators of the last simulation");
+        out.println("  -h, --help                 shows this message");
+    }
+}
@@ -0,0 +1,324 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.cli;
+
+import cloudreports.reports.SimulationSummary;
+import cloudreports.simulation.SimulationListener;
+import cloudreports.utils.ElapsedTime;
+import cloudreports.utils.FileIO;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reports the progress of simulations to a console and, optionally, to a 
+ * JSON status file.
+ * The status file is rewritten after every notification, so external tools
+ * can poll it to follow the progress of a headless run.
+ * 
+ * @see         CommandLineRunner
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class ConsoleSimulationListener implements SimulationListener {
+
+    /** The stream where the progress is printed. */
+    private PrintStream out;
+    
+    /** The JSON status file; or <code>null</code> if there is none. */
+    private File statusFile;
+    
+    /** The time when the listener was created, in milliseconds. */
+    private long startTime;
+    
+    /** The times when the running simulations started, in milliseconds,
+     *  indexed by environment and simulation id.
+     */
+    private Map<String, Long> simulationStartTimes = new HashMap<String, Long>();
+    
+    /** The state of the run. */
+    private String state = "starting";
+    
+    /** The name of the current environment. */
+    private String environment;
+    
+    /** The id of the current simulation. */
+    private int simulationId;
+    
+    /** The number of simulations of the current environment. */
+    private int numberOfSimulations;
+    
+    /** The description of the current stage. */
+    private String stage;
+    
+    /** The JSON entries of the finished simulations. */
+    private List<String> finishedSimulations = new ArrayList<String>();
+    
+    /** The number of simulations that have failed. */
+    private int failures;
+    
+    /** The number of errors that prevented simulations from being set up. */
+    private int errors;
+    
+    /** The summary of the last completed simulation. */
+    private SimulationSummary lastSummary;
+
+    /**
+     * Creates a console listener.
+     * 
+     * @param   out         the stream where the progress is printed.
+     * @param   statusFile  the JSON status file; or <code>null</code> if no
+     *                      status file must be written.
+     * @since               1.2
+     */
+    public ConsoleSimulationListener(PrintStream out, File statusFile) {
+        this.out = out;
+        this.statusFile = statusFile;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets the number of simulations that have failed.
+     * 
+     * @return  the number of failures.
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Gets the number of errors that prevented simulations from being set
+     * up.
+     * 
+     * @return  the number of errors.
+     */
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets the summary of the last completed simulation.
+     * 
+     * @return  the summary; or <code>null</code> if no simulation has 
+     *          completed with a summary.
+     */
+    public SimulationSummary getLastSummary() {
+        return lastSummary;
+    }
+
+    /**
+     * Marks the whole run as finished and writes the final status.
+     * 
+     * @since   1.2
+     */
+    public synchronized void finish() {
+        state = failures + errors > 0 ? "failed" : "completed";
+        stage = null;
+        out.println("Finished in " + new ElapsedTime(System.currentTimeMillis() - startTime)
+                    + " (" + finishedSimulations.size() + " simulations, " + failures + " failed, " + errors + " errors).");
+        writeStatus();
+    }
+
+    @Override
+    public synchronized void simulationsStarted(String[] environments) {
+        state = "running";
+        writeStatus();
+    }
+
+    @Override
+    public synchronized void simulationStarted(String environment, int simulationId, int numberOfSimulations) {
+        this.environment = environment;
+        this.simulationId = simulationId;
+        this.numberOfSimulations = numberOfSimulations;
+        this.stage = "Simulating";
+        simulationStartTimes.put(environment + "#" + simulationId, System.currentTimeMillis());
+        out.println("[" + environment + "] Simulation " + simulationId + " of " + numberOfSimulations + " started.");
+        writeStatus();
+    }
+
+    @Override
+    public synchronized void progressChanged(String message) {
+        stage = message;
+        out.println("[" + environment + "] " + message);
+        writeStatus();
+    }
+
+    @Override
+    public synchronized void simulationCompleted(String environment, int simulationId, ElapsedTime elapsedTime, SimulationSummary summary) {
+        long elapsedMillis = getElapsedMillis(environment, simulationId);
+        if (summary != null) lastSummary = summary;
+        finishedSimulations.add(simulationEntry(environment, simulationId, "completed", elapsedMillis, null, summary));
+        out.println("[" + environment + "] Simulation " + simulationId + " completed in " + elapsedTime + ".");
+        writeStatus();
+    }
+
+    @Override
+    public synchronized void simulationFailed(String environment, int simulationId, String message, Exception cause) {
+        long elapsedMillis = getElapsedMillis(environment, simulationId);
+        failures++;
+        String description = message;
+        if (cause != null && cause.getMessage() != null) description += "\n" + cause.getMessage();
+        finishedSimulations.add(simulationEntry(environment, simulationId, "failed", elapsedMillis, description, null));
+        out.println("[" + environment + "] Simulation " + simulationId + " failed: " + description);
+        writeStatus();
+    }
+
+    @Override
+    public synchronized void simulationsCompleted(ElapsedTime elapsedTime) {
+        stage = null;
+        writeStatus();
+    }
+
+    @Override
+    public synchronized void warning(String message) {
+        out.println("Warning: " + message.replace('\n', ' '));
+    }
+
+    @Override
+    public synchronized void error(String message) {
+        errors++;
+        out.println("Error: " + message.replace('\n', ' '));
+        writeStatus();
+    }
+
+    /**
+     * Gets the time elapsed since a simulation started.
+     * 
+     * @param   environment     the name of the environment.
+     * @param   simulationId    the id of the simulation.
+     * @return                  the elapsed time, in milliseconds.
+     */
+    private long getElapsedMillis(String environment, int simulationId) {
+        Long simulationStartTime = simulationStartTimes.remove(environment + "#" + simulationId);
+        if (simulationStartTime == null) return 0;
+        return System.currentTimeMillis() - simulationStartTime;
+    }
+
+    /**
+     * Creates the JSON entry of a finished simulation.
+     * 
+     * @param   environment     the name of the environment.
+     * @param   simulationId    the id of the simulation.
+     * @param   status          the status of the simulation.
+     * @param   elapsedMillis   the duration of the simulation, in 
+     *                          milliseconds.
+     * @param   message         a message about the simulation; or 
+     *                          <code>null</code> if there is none.
+     * @param   summary         the summary of the simulation; or 
+     *                          <code>null</code> if there is none.
+     * @return                  the JSON entry.
+     */
+    private static String simulationEntry(String environment, int simulationId, String status,
+                                          long elapsedMillis, String message, SimulationSummary summary) {
+        StringBuilder entry = new StringBuilder();
+        entry.append("{\"environment\": ").append(quote(environment))
+             .append(", \"simulation\": ").append(simulationId)
+             .append(", \"status\": ").append(quote(status))
+             .append(", \"elapsedMillis\": ").append(elapsedMillis);
+        if (message != null) entry.append(", \"message\": ").append(quote(message));
+        if (summary != null) {
+            for (String indicator : SimulationSummary.INDICATORS) {
+                entry.append(", ").append(quote(indicator)).append(": ").append(summary.getIndicator(indicator));
+            }
+        }
+        entry.append("}");
+        return entry.toString();
+    }
+
+    /**
+     * Writes the current status to the status file, if any.
+     * The status is written to a temporary file that then replaces the 
+     * status file, so readers never see a partial status.
+     */
+    private void writeStatus() {
+        if (statusFile == null) return;
+        
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"state\": ").append(quote(state))
+            .append(",\n  \"environment\": ").append(quote(environment))
+            .append(",\n  \"simulation\": ").append(simulationId)
+            .append(",\n  \"numberOfSimulations\": ").append(numberOfSimulations)
+            .append(",\n  \"stage\": ").append(quote(stage))
+            .append(",\n  \"failures\": ").append(failures)
+            .append(",\n  \"errors\": ").append(errors)
+            .append(",\n  \"elapsedMillis\": ").append(System.currentTimeMillis() - startTime)
+            .append(",\n  \"simulations\": [");
+        for (int i = 0; i < finishedSimulations.size(); i++) {
+            json.append(i == 0 ? "\n    " : ",\n    ").append(finishedSimulations.get(i));
+        }
+        json.append(finishedSimulations.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+        
+        File tempFile = new File(statusFile.getPath() + ".tmp");
+        Writer writer = null;
+        try {
+            writer = FileIO.openBufferedWriter(tempFile.getPath(), false);
+            writer.write(json.toString());
+            writer.close();
+            writer = null;
+            if (!tempFile.renameTo(statusFile)) {
+                statusFile.delete();
+                tempFile.renameTo(statusFile);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(ConsoleSimulationListener.class.getName()).log(Level.WARNING, null, ex);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(ConsoleSimulationListener.class.getName()).log(Level.WARNING, null, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Quotes a string as a JSON value.
+     * 
+     * @param   value   the string.
+     * @return          the quoted string; or <code>null</code> if the string
+     *                  is <code>null</code>.
+     */
+    static String quote(String value) {
+        if (value == null) return "null";
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20) quoted.append(String.format("\\u%04x", (int) c));
+                    else quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,180 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.cli;
+
+import cloudreports.database.EnvironmentGenerator;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Properties;
+
+/**
+ * Generates synthetic simulation environments without the graphical 
+ * interface.
+ * Usage:
+ * <pre>
+ * java -cp CloudReports.jar cloudreports.cli.EnvironmentGeneratorRunner [options] environment.cre
+ *
+ *   -f, --spec &lt;file&gt;          properties that describe the environment
+ *       --datacenters &lt;count&gt;  number of datacenters
+ *       --hosts &lt;count&gt;        number of hosts of each datacenter
+ *       --customers &lt;count&gt;    number of customers
+ *       --vms &lt;count&gt;          number of virtual machines of each customer
+ *       --latency &lt;min,max&gt;    range of latencies of network links
+ *       --seed &lt;seed&gt;          seed of latencies and profile assignments
+ *   -h, --help                  shows this message
+ * </pre>
+ * Options override the properties of the spec file, which are described in
+ * {@link EnvironmentGenerator}.
+ * 
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class EnvironmentGeneratorRunner {
+
+    /** The exit code of a generated environment. */
+    public static final int EXIT_SUCCESS = 0;
+    
+    /** The exit code of a run with invalid arguments. */
+    public static final int EXIT_USAGE = 1;
+    
+    /** The exit code of an environment that could not be generated. */
+    public static final int EXIT_GENERATION_FAILED = 2;
+
+    /**
+     * Generates the environment given by the command line arguments and 
+     * exits.
+     * 
+     * @param   args    the command line arguments.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        System.exit(run(args, System.out));
+    }
+
+    /**
+     * Generates the environment given by the command line arguments.
+     * 
+     * @param   args    the command line arguments.
+     * @param   out     the stream where the progress is printed.
+     * @return          the exit code.
+     */
+    public static int run(String[] args, PrintStream out) {
+        Properties properties = new Properties();
+        Properties options = new Properties();
+        File environmentFile = null;
+        EnvironmentGenerator generator;
+        
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-h") || arg.equals("--help")) {
+                    printUsage(out);
+                    return EXIT_SUCCESS;
+                } else if (arg.equals("-f") || arg.equals("--spec")) {
+                    readSpec(new File(args[++i]), properties);
+                } else if (arg.equals("--datacenters")) {
+                    options.setProperty("datacenters", args[++i]);
+                } else if (arg.equals("--hosts")) {
+                    options.setProperty("hostsPerDatacenter", args[++i]);
+                } else if (arg.equals("--customers")) {
+                    options.setProperty("customers", args[++i]);
+                } else if (arg.equals("--vms")) {
+                    options.setProperty("vmsPerCustomer", args[++i]);
+                } else if (arg.equals("--latency")) {
+                    String[] range = args[++i].split(",");
+                    options.setProperty("latency.min", range[0]);
+                    options.setProperty("latency.max", range.length > 1 ? range[1] : range[0]);
+                } else if (arg.equals("--seed")) {
+                    options.setProperty("seed", args[++i]);
+                } else if (arg.startsWith("-")) {
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                } else if (environmentFile == null) {
+                    environmentFile = new File(arg);
+                } else {
+                    throw new IllegalArgumentException("Only one environment file can be generated.");
+                }
+            }
+            if (environmentFile == null) throw new IllegalArgumentException("No environment file was given.");
+            if (!environmentFile.getName().endsWith(".cre")) throw new IllegalArgumentException("Environment files must end with .cre.");
+            properties.putAll(options);
+            generator = EnvironmentGenerator.fromProperties(properties);
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            out.println("Missing value of option " + args[args.length - 1] + ".");
+            printUsage(out);
+            return EXIT_USAGE;
+        } catch (IOException ex) {
+            out.println("Spec file could not be read: " + ex.getMessage());
+            return EXIT_USAGE;
+        } catch (IllegalArgumentException ex) {
+            out.println(ex.getMessage());
+            printUsage(out);
+            return EXIT_USAGE;
+        }
+        
+        long startTime = System.currentTimeMillis();
+        try {
+            generator.generate(environmentFile);
+        } catch (IOException ex) {
+            out.println(ex.getMessage());
+            return EXIT_GENERATION_FAILED;
+        }
+        out.println("Generated " + environmentFile.getPath() + " with " + generator.getNumberOfHosts() + " hosts, "
+                    + generator.getNumberOfVms() + " virtual machines and " + generator.getNumberOfLinks()
+                    + " network links in " + (System.currentTimeMillis() - startTime) + " ms.");
+        return EXIT_SUCCESS;
+    }
+
+    /**
+     * Reads a spec file.
+     * 
+     * @param   file        the spec file.
+     * @param   properties  the properties where the spec is loaded.
+     * @throws  IOException if the file cannot be read.
+     */
+    private static void readSpec(File file, Properties properties) throws IOException {
+        InputStream stream = new FileInputStream(file);
+        try {
+            properties.load(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Prints the usage of the generator.
+     * 
+     * @param   out the stream where the usage is printed.
+     */
+    private static void printUsage(PrintStream out) {
+        out.println("Usage: java -cp CloudReports.jar " + EnvironmentGeneratorRunner.class.getName() + " [options] environment.cre");
+        out.println();
+        out.println("  -f, --spec <file>          properties that describe the environment");
+        out.println("      --datacenters <count>  number of datacenters");
+        out.println("      --hosts <count>        number of hosts of each datacenter");
+        out.println("      --customers <count>    number of customers");
+        out.println("      --vms <count>          number of virtual machines of each customer");
+        out.println("      --latency <min,max>    range of latencies of network links");
+        out.println("      --seed <seed>          seed of latencies and profile assignments");
+        out.println("  -h, --help                 shows this message");
+    }
+}
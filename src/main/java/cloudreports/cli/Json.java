@@ -0,0 +1,234 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.cli;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal reader and writer of JSON documents, such as the timings of
+ * simulations and the baselines of benchmarks.
+ * Objects are read as maps that keep the order of their members, arrays as
+ * lists, numbers as doubles and literals as booleans or <code>null</code>.
+ * 
+ * @see         ScenarioBenchmark
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+final class Json {
+
+    /** The document being read. */
+    private final String text;
+    
+    /** The position of the next character to be read. */
+    private int position;
+
+    /**
+     * Creates a reader of a document.
+     * 
+     * @param   text    the document.
+     */
+    private Json(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Reads a JSON document.
+     * 
+     * @param   text    the document.
+     * @return          the value of the document.
+     * @throws  IllegalArgumentException    if the document is malformed.
+     */
+    static Object parse(String text) {
+        Json reader = new Json(text);
+        Object value = reader.readValue();
+        reader.skipWhitespace();
+        if (reader.position < text.length()) throw reader.error("Unexpected content");
+        return value;
+    }
+
+    /**
+     * Quotes a string as a JSON string.
+     * 
+     * @param   value   the string.
+     * @return          the quoted string.
+     */
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') quoted.append('\\').append(c);
+            else if (c == '\n') quoted.append("\\n");
+            else if (c < ' ') quoted.append(String.format("\\u%04x", (int) c));
+            else quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Reads a value.
+     * 
+     * @return  the value.
+     */
+    private Object readValue() {
+        skipWhitespace();
+        if (position >= text.length()) throw error("Unexpected end");
+        char c = text.charAt(position);
+        if (c == '{') return readObject();
+        if (c == '[') return readArray();
+        if (c == '"') return readString();
+        if (text.startsWith("true", position)) {
+            position += 4;
+            return Boolean.TRUE;
+        }
+        if (text.startsWith("false", position)) {
+            position += 5;
+            return Boolean.FALSE;
+        }
+        if (text.startsWith("null", position)) {
+            position += 4;
+            return null;
+        }
+        return readNumber();
+    }
+
+    /**
+     * Reads an object.
+     * 
+     * @return  the members of the object, in order.
+     */
+    private Map<String, Object> readObject() {
+        Map<String, Object> members = new LinkedHashMap<String, Object>();
+        position++;
+        skipWhitespace();
+        if (consume('}')) return members;
+        do {
+            skipWhitespace();
+            if (position >= text.length() || text.charAt(position) != '"') throw error("Expected a member name");
+            String name = readString();
+            skipWhitespace();
+            if (!consume(':')) throw error("Expected ':'");
+            members.put(name, readValue());
+            skipWhitespace();
+        } while (consume(','));
+        if (!consume('}')) throw error("Expected '}'");
+        return members;
+    }
+
+    /**
+     * Reads an array.
+     * 
+     * @return  the elements of the array.
+     */
+    private List<Object> readArray() {
+        List<Object> elements = new ArrayList<Object>();
+        position++;
+        skipWhitespace();
+        if (consume(']')) return elements;
+        do {
+            elements.add(readValue());
+            skipWhitespace();
+        } while (consume(','));
+        if (!consume(']')) throw error("Expected ']'");
+        return elements;
+    }
+
+    /**
+     * Reads a string.
+     * 
+     * @return  the string, without quotes and escapes.
+     */
+    private String readString() {
+        StringBuilder value = new StringBuilder();
+        position++;
+        while (position < text.length()) {
+            char c = text.charAt(position++);
+            if (c == '"') return value.toString();
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (position >= text.length()) break;
+            char escaped = text.charAt(position++);
+            switch (escaped) {
+                case 'n': value.append('\n'); break;
+                case 't': value.append('\t'); break;
+                case 'r': value.append('\r'); break;
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'u':
+                    if (position + 4 > text.length()) throw error("Invalid escape");
+                    value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    position += 4;
+                    break;
+                default: value.append(escaped);
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    /**
+     * Reads a number.
+     * 
+     * @return  the number.
+     */
+    private Double readNumber() {
+        int start = position;
+        while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) position++;
+        if (start == position) throw error("Unexpected character");
+        try {
+            return Double.valueOf(text.substring(start, position));
+        } catch (NumberFormatException ex) {
+            throw error("Invalid number");
+        }
+    }
+
+    /**
+     * Reads a character if it is the next one.
+     * 
+     * @param   c   the character.
+     * @return      <code>true</code> if the character has been read;
+     *              <code>false</code> otherwise.
+     */
+    private boolean consume(char c) {
+        if (position < text.length() && text.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    /** Skips whitespace characters. */
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) position++;
+    }
+
+    /**
+     * Creates the error of a malformed document.
+     * 
+     * @param   message the description of the error.
+     * @return          the error.
+     */
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " of JSON document.");
+    }
+}
@@ -0,0 +1,404 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.cli;
+
+import cloudreports.business.ParameterOverrides;
+import cloudreports.business.SettingBusiness;
+import cloudreports.business.SettingsSnapshot;
+import cloudreports.database.HibernateUtil;
+import cloudreports.reports.SimulationSummary;
+import cloudreports.simulation.SimulationListener;
+import cloudreports.utils.ElapsedTime;
+import cloudreports.utils.FileIO;
+import cloudreports.utils.RandomNumberGenerator;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs variants of an environment that differ in a few parameters.
+ * Variants are not stored as environment files: each variant is simulated
+ * from the base environment with its values applied as 
+ * {@link ParameterOverrides}, on top of the overrides shared by all 
+ * variants. The base environment is copied once per 
+ * worker, not once per variant, and the variants are run in parallel worker
+ * processes. All variants use the same base seed, so their differences are
+ * not masked by different random numbers.
+ * <p>
+ * The key performance indicators of all variants are written to 
+ * <code>sweep-summary.csv</code> in the output directory, and the report of
+ * each variant is written to <code>&lt;output&gt;/variant&lt;n&gt;</code>.
+ * 
+ * @see         SimulationSummary
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class ParameterSweep {
+
+    /** The name of the summary file. */
+    public static final String SUMMARY_FILE = "sweep-summary.csv";
+
+    /** The base environment file. */
+    private File baseEnvironment;
+    
+    /** The maximum number of concurrent workers. */
+    private int numberOfWorkers;
+    
+    /** The listener that is notified about the progress of the variants. */
+    private SimulationListener listener;
+    
+    /** The overrides applied to all variants. */
+    private Map<String, String> overrides = Collections.emptyMap();
+
+    /**
+     * Creates a parameter sweep.
+     * 
+     * @param   baseEnvironment the base environment file.
+     * @param   numberOfWorkers the maximum number of concurrent workers.
+     * @param   listener        the listener that is notified about the 
+     *                          progress of the variants.
+     * @since                   1.2
+     */
+    public ParameterSweep(File baseEnvironment, int numberOfWorkers, SimulationListener listener) {
+        this.baseEnvironment = baseEnvironment.getAbsoluteFile();
+        this.numberOfWorkers = Math.max(numberOfWorkers, 1);
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the overrides applied to all variants.
+     * The values of a variant take precedence over these overrides.
+     * 
+     * @param   overrides   the values of each parameter, indexed by 
+     *                      parameter.
+     * @since               1.2
+     */
+    public void setOverrides(Map<String, String> overrides) {
+        this.overrides = new LinkedHashMap<String, String>(overrides);
+    }
+
+    /**
+     * Creates the variants of a grid of parameter values.
+     * Every combination of values is a variant.
+     * 
+     * @param   values  the values of each parameter, indexed by parameter.
+     * @return          the variants, each one mapping parameters to values.
+     * @since           1.2
+     */
+    public static List<Map<String, String>> grid(Map<String, List<String>> values) {
+        List<Map<String, String>> variants = new ArrayList<Map<String, String>>();
+        variants.add(new LinkedHashMap<String, String>());
+        for (Map.Entry<String, List<String>> parameter : values.entrySet()) {
+            List<Map<String, String>> combinations = new ArrayList<Map<String, String>>();
+            for (Map<String, String> variant : variants) {
+                for (String value : parameter.getValue()) {
+                    Map<String, String> combination = new LinkedHashMap<String, String>(variant);
+                    combination.put(parameter.getKey(), value);
+                    combinations.add(combination);
+                }
+            }
+            variants = combinations;
+        }
+        return variants;
+    }
+
+    /**
+     * Reads a list of variants from a file.
+     * Each line describes a variant as <code>parameter=value</code> pairs
+     * separated by spaces. Empty lines and lines starting with 
+     * <code>#</code> are ignored.
+     * 
+     * @param   file            the file.
+     * @return                  the variants, each one mapping parameters to 
+     *                          values.
+     * @throws  IOException     if the file could not be read.
+     * @throws  IllegalArgumentException    if a variant is invalid.
+     * @since                   1.2
+     */
+    public static List<Map<String, String>> readVariants(File file) throws IOException {
+        List<Map<String, String>> variants = new ArrayList<Map<String, String>>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                Map<String, String> variant = new LinkedHashMap<String, String>();
+                for (String override : line.split("\\s+")) {
+                    String[] parameter = ParameterOverrides.parse(override);
+                    variant.put(parameter[0], parameter[1]);
+                }
+                variants.add(variant);
+            }
+        } finally {
+            reader.close();
+        }
+        return variants;
+    }
+
+    /**
+     * Runs all variants and writes their summary.
+     * 
+     * @param   variants            the variants, each one mapping parameters
+     *                              to values.
+     * @param   randomSeed          the base seed; if <code>null</code>, the
+     *                              RandomSeed setting of the environment is
+     *                              used, or a new seed is chosen.
+     * @param   outputDirectory     the directory where the reports and the
+     *                              summary are written.
+     * @return                      the summaries of the variants, in the 
+     *                              same order; the summary of a failed 
+     *                              variant is <code>null</code>.
+     * @throws  IOException         if the working directories or the summary
+     *                              could not be written.
+     * @since                       1.2
+     */
+    public List<SimulationSummary> run(final List<Map<String, String>> variants, Long randomSeed,
+                                       final File outputDirectory) throws IOException {
+        final String environmentName = baseEnvironment.getName().replace(".cre", "");
+        HibernateUtil.setDatabaseDirectory(baseEnvironment.getParentFile().getPath());
+        HibernateUtil.setActiveDatabase(baseEnvironment.getName());
+        SettingsSnapshot settings = SettingBusiness.reloadSnapshot();
+        final long seed = randomSeed != null ? randomSeed
+                          : settings.getRandomSeed() != null ? settings.getRandomSeed()
+                          : RandomNumberGenerator.newSeed();
+        outputDirectory.mkdirs();
+        
+        //Each worker owns a copy of the base environment, reused by its variants
+        int numberOfSlots = Math.min(numberOfWorkers, variants.size());
+        File workDirectory = File.createTempFile("cloudreports-sweep-" + environmentName + "-", "");
+        workDirectory.delete();
+        workDirectory.mkdirs();
+        final BlockingQueue<File> slots = new ArrayBlockingQueue<File>(Math.max(numberOfSlots, 1));
+        
+        long startTime = System.currentTimeMillis();
+        listener.simulationsStarted(new String[] {environmentName});
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(numberOfSlots, 1));
+        List<SimulationSummary> summaries = new ArrayList<SimulationSummary>();
+        try {
+            for (int i = 0; i < numberOfSlots; i++) {
+                File slot = new File(workDirectory, "worker" + (i + 1));
+                slot.mkdirs();
+                FileIO.copyFile(baseEnvironment, new File(slot, baseEnvironment.getName()));
+                slots.add(slot);
+            }
+            
+            List<Future<SimulationSummary>> results = new ArrayList<Future<SimulationSummary>>();
+            for (int i = 0; i < variants.size(); i++) {
+                final int variantId = i + 1;
+                results.add(executor.submit(new Callable<SimulationSummary>() {
+                    @Override
+                    public SimulationSummary call() throws Exception {
+                        File slot = slots.take();
+                        try {
+                            return runVariant(environmentName, variantId, variants.get(variantId - 1),
+                                              seed, slot, outputDirectory);
+                        } finally {
+                            slots.put(slot);
+                        }
+                    }
+                }));
+            }
+            for (Future<SimulationSummary> result : results) {
+                try {
+                    summaries.add(result.get());
+                } catch (ExecutionException ex) {
+                    summaries.add(null);
+                    Logger.getLogger(ParameterSweep.class.getName()).log(Level.SEVERE, null, ex);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    summaries.add(null);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            FileIO.deleteDirectory(workDirectory);
+        }
+        listener.simulationsCompleted(new ElapsedTime(System.currentTimeMillis() - startTime));
+        
+        writeSummary(new File(outputDirectory, SUMMARY_FILE), variants, summaries);
+        return summaries;
+    }
+
+    /**
+     * Runs a variant in a worker process.
+     * 
+     * @param   environmentName the name of the base environment.
+     * @param   variantId       the id of the variant.
+     * @param   variant         the parameters of the variant.
+     * @param   seed            the base seed.
+     * @param   slot            the working directory of the worker, which
+     *                          contains a copy of the base environment.
+     * @param   outputDirectory the directory where the reports are written.
+     * @return                  the summary of the variant; or 
+     *                          <code>null</code> if the variant failed.
+     * @throws  IOException     if the worker could not be started.
+     * @throws  InterruptedException if the sweep was interrupted.
+     */
+    private SimulationSummary runVariant(String environmentName, int variantId, Map<String, String> variant,
+                                         long seed, File slot, File outputDirectory)
+                                         throws IOException, InterruptedException {
+        List<String> arguments = new ArrayList<String>();
+        arguments.add("--replica");
+        arguments.add("1");
+        arguments.add("--seed");
+        arguments.add(String.valueOf(seed));
+        arguments.add("--output");
+        arguments.add(new File(outputDirectory, "variant" + variantId).getAbsolutePath());
+        Map<String, String> parameters = new LinkedHashMap<String, String>(overrides);
+        parameters.putAll(variant);
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            arguments.add("--set");
+            arguments.add(parameter.getKey() + "=" + parameter.getValue());
+        }
+        arguments.add(new File(slot, baseEnvironment.getName()).getPath());
+        
+        String label = environmentName + " variant" + variantId;
+        long startTime = System.currentTimeMillis();
+        listener.simulationStarted(label, 1, 1);
+        WorkerProcess worker = new WorkerProcess(slot);
+        if (worker.run(arguments) == CommandLineRunner.EXIT_SUCCESS) {
+            SimulationSummary summary = worker.readSummary();
+            listener.simulationCompleted(label, 1, new ElapsedTime(System.currentTimeMillis() - startTime), summary);
+            return summary;
+        }
+        listener.simulationFailed(label, 1, worker.describeFailure(), null);
+        return null;
+    }
+
+    /**
+     * Writes the summary of all variants as a CSV file.
+     * 
+     * @param   file            the summary file.
+     * @param   variants        the variants.
+     * @param   summaries       the summaries of the variants.
+     * @throws  IOException     if the file could not be written.
+     */
+    private static void writeSummary(File file, List<Map<String, String>> variants,
+                                     List<SimulationSummary> summaries) throws IOException {
+        Set<String> parameters = getParameters(variants);
+        Writer out = FileIO.openBufferedWriter(file.getPath(), false);
+        try {
+            out.write("variant");
+            for (String parameter : parameters) {
+                out.write("," + parameter);
+            }
+            out.write(",status");
+            for (String indicator : SimulationSummary.INDICATORS) {
+                out.write("," + indicator);
+            }
+            out.write("\n");
+            
+            for (int i = 0; i < variants.size(); i++) {
+                out.write("variant" + (i + 1));
+                for (String parameter : parameters) {
+                    String value = variants.get(i).get(parameter);
+                    out.write("," + (value != null ? value : ""));
+                }
+                SimulationSummary summary = summaries.get(i);
+                out.write(summary != null ? ",completed" : ",failed");
+                for (String indicator : SimulationSummary.INDICATORS) {
+                    out.write("," + (summary != null ? String.valueOf(summary.getIndicator(indicator)) : ""));
+                }
+                out.write("\n");
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Prints the summary of all variants as a table.
+     * 
+     * @param   out         the stream where the table is printed.
+     * @param   variants    the variants.
+     * @param   summaries   the summaries of the variants.
+     * @since               1.2
+     */
+    public static void printSummary(PrintStream out, List<Map<String, String>> variants,
+                                    List<SimulationSummary> summaries) {
+        Set<String> parameters = getParameters(variants);
+        StringBuilder header = new StringBuilder(String.format("%-10s", "variant"));
+        for (String parameter : parameters) {
+            header.append(String.format(" %14s", abbreviate(parameter)));
+        }
+        for (String indicator : SimulationSummary.INDICATORS) {
+            header.append(String.format(" %14s", abbreviate(indicator)));
+        }
+        out.println(header);
+        
+        for (int i = 0; i < variants.size(); i++) {
+            StringBuilder row = new StringBuilder(String.format("%-10s", "variant" + (i + 1)));
+            for (String parameter : parameters) {
+                String value = variants.get(i).get(parameter);
+                row.append(String.format(" %14s", value != null ? value : "-"));
+            }
+            SimulationSummary summary = summaries.get(i);
+            for (String indicator : SimulationSummary.INDICATORS) {
+                if (summary == null) row.append(String.format(" %14s", "failed"));
+                else row.append(String.format(" %14.4f", summary.getIndicator(indicator)));
+            }
+            out.println(row);
+        }
+    }
+
+    /**
+     * Gets all parameters of a list of variants.
+     * 
+     * @param   variants    the variants.
+     * @return              the parameters, in order of appearance.
+     */
+    private static Set<String> getParameters(List<Map<String, String>> variants) {
+        Set<String> parameters = new LinkedHashSet<String>();
+        for (Map<String, String> variant : variants) {
+            parameters.addAll(variant.keySet());
+        }
+        return parameters;
+    }
+
+    /**
+     * Abbreviates a name to fit in a table column.
+     * 
+     * @param   name    the name.
+     * @return          the name, truncated to 14 characters.
+     */
+    private static String abbreviate(String name) {
+        return name.length() <= 14 ? name : name.substring(0, 14);
+    }
+}
@@ -0,0 +1,194 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.cli;
+
+import cloudreports.business.ParameterOverrides;
+import cloudreports.business.SettingBusiness;
+import cloudreports.business.SettingsSnapshot;
+import cloudreports.database.HibernateUtil;
+import cloudreports.reports.Report;
+import cloudreports.simulation.SimulationListener;
+import cloudreports.utils.ElapsedTime;
+import cloudreports.utils.FileIO;
+import cloudreports.utils.RandomNumberGenerator;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the simulations of an environment in parallel worker processes.
+ * CloudSim keeps its state in static fields, so simulations cannot share a 
+ * JVM. Each simulation runs in its own JVM, on its own copy of the 
+ * environment's database and in its own working directory, and writes its
+ * report to <code>&lt;reports&gt;/&lt;environment&gt;/report&lt;id&gt;</code>.
+ * All workers share the same base seed, and each simulation derives its 
+ * random stream from the seed and its id.
+ * 
+ * @see         CommandLineRunner
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class ReplicaScheduler {
+
+    /** The maximum number of concurrent workers. */
+    private int numberOfWorkers;
+    
+    /** The listener that is notified about the progress of the simulations. */
+    private SimulationListener listener;
+
+    /**
+     * Creates a replica scheduler.
+     * 
+     * @param   numberOfWorkers the maximum number of concurrent workers.
+     * @param   listener        the listener that is notified about the 
+     *                          progress of the simulations.
+     * @since                   1.2
+     */
+    public ReplicaScheduler(int numberOfWorkers, SimulationListener listener) {
+        this.numberOfWorkers = Math.max(numberOfWorkers, 1);
+        this.listener = listener;
+    }
+
+    /**
+     * Runs the simulations of an environment and waits for all of them.
+     * 
+     * @param   environmentFile     the environment file.
+     * @param   numberOfSimulations the number of simulations; if 
+     *                              <code>0</code>, the NumberOfSimulations 
+     *                              setting of the environment is used.
+     * @param   randomSeed          the base seed; if <code>null</code>, the
+     *                              RandomSeed setting of the environment is
+     *                              used, or a new seed is chosen.
+     * @return                      the number of failed simulations.
+     * @throws  IOException         if the working directories could not be
+     *                              created.
+     * @since                       1.2
+     */
+    public int run(File environmentFile, int numberOfSimulations, Long randomSeed) throws IOException {
+        final File environment = environmentFile.getAbsoluteFile();
+        final String environmentName = environment.getName().replace(".cre", "");
+        
+        HibernateUtil.setDatabaseDirectory(environment.getParentFile().getPath());
+        HibernateUtil.setActiveDatabase(environment.getName());
+        SettingsSnapshot settings = SettingBusiness.reloadSnapshot();
+        final int simulations = numberOfSimulations > 0 ? numberOfSimulations : settings.getNumberOfSimulations();
+        final long seed = randomSeed != null ? randomSeed
+                          : settings.getRandomSeed() != null ? settings.getRandomSeed()
+                          : RandomNumberGenerator.newSeed();
+        
+        File reportsDirectory = new File(Report.getReportsDirectory() + environmentName);
+        if (reportsDirectory.exists()) FileIO.deleteDirectory(reportsDirectory);
+        reportsDirectory.mkdirs();
+        
+        final File workDirectory = File.createTempFile("cloudreports-" + environmentName + "-", "");
+        workDirectory.delete();
+        workDirectory.mkdirs();
+        
+        long startTime = System.currentTimeMillis();
+        listener.simulationsStarted(new String[] {environmentName});
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(numberOfWorkers, simulations));
+        int failures = 0;
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int replica = 1; replica <= simulations; replica++) {
+                final int simulationId = replica;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return runReplica(environment, environmentName, simulationId, simulations, seed, workDirectory);
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                try {
+                    if (!result.get()) failures++;
+                } catch (ExecutionException ex) {
+                    failures++;
+                    Logger.getLogger(ReplicaScheduler.class.getName()).log(Level.SEVERE, null, ex);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    failures++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            FileIO.deleteDirectory(workDirectory);
+        }
+        listener.simulationsCompleted(new ElapsedTime(System.currentTimeMillis() - startTime));
+        return failures;
+    }
+
+    /**
+     * Runs a simulation in a worker process.
+     * 
+     * @param   environment         the environment file.
+     * @param   environmentName     the name of the environment.
+     * @param   simulationId        the id of the simulation.
+     * @param   numberOfSimulations the number of simulations.
+     * @param   seed                the base seed.
+     * @param   workDirectory       the directory of the workers.
+     * @return                      <code>true</code> if the simulation has
+     *                              completed; <code>false</code> otherwise.
+     * @throws  IOException         if the worker could not be started.
+     * @throws  InterruptedException if the scheduler was interrupted.
+     */
+    private boolean runReplica(File environment, String environmentName, int simulationId, int numberOfSimulations,
+                               long seed, File workDirectory) throws IOException, InterruptedException {
+        File replicaDirectory = new File(workDirectory, "replica" + simulationId);
+        replicaDirectory.mkdirs();
+        File replicaEnvironment = new File(replicaDirectory, environment.getName());
+        FileIO.copyFile(environment, replicaEnvironment);
+        
+        List<String> arguments = new ArrayList<String>();
+        arguments.add("--replica");
+        arguments.add(String.valueOf(simulationId));
+        arguments.add("--seed");
+        arguments.add(String.valueOf(seed));
+        arguments.add("--simulations");
+        arguments.add(String.valueOf(numberOfSimulations));
+        arguments.add("--output");
+        arguments.add(new File(Report.getReportsDirectory()).getAbsolutePath());
+        for (Map.Entry<String, String> override : ParameterOverrides.getOverrides().entrySet()) {
+            arguments.add("--set");
+            arguments.add(override.getKey() + "=" + override.getValue());
+        }
+        arguments.add(replicaEnvironment.getPath());
+        
+        long startTime = System.currentTimeMillis();
+        listener.simulationStarted(environmentName, simulationId, numberOfSimulations);
+        WorkerProcess worker = new WorkerProcess(replicaDirectory);
+        if (worker.run(arguments) == CommandLineRunner.EXIT_SUCCESS) {
+            listener.simulationCompleted(environmentName, simulationId,
+                                         new ElapsedTime(System.currentTimeMillis() - startTime), worker.readSummary());
+            return true;
+        }
+        listener.simulationFailed(environmentName, simulationId, worker.describeFailure(), null);
+        return false;
+    }
+}
@@ -0,0 +1,474 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.cli;
+
+import cloudreports.database.EnvironmentGenerator;
+import cloudreports.reports.PhaseTimer;
+import cloudreports.utils.FileIO;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Runs canned environments through the whole simulation pipeline and 
+ * compares their costs to a baseline.
+ * Usage:
+ * <pre>
+ * java -cp CloudReports.jar cloudreports.cli.ScenarioBenchmark [options] [scenario ...]
+ *
+ *   -o, --output &lt;dir&gt;           directory of environments, reports and results
+ *       --baseline &lt;file&gt;       results to be compared with
+ *       --save-baseline &lt;file&gt;  stores the results as a new baseline
+ *       --threshold &lt;ratio&gt;     relative increase flagged as a regression
+ *   -l, --list                   lists the canned scenarios
+ *   -h, --help                   shows this message
+ * </pre>
+ * Scenarios are the names of the canned scenarios or paths of properties 
+ * files, as read by {@link EnvironmentGenerator#fromProperties(Properties)};
+ * if none is given, all canned scenarios are run. Each scenario is generated
+ * and then simulated once, with a fixed seed, by a {@link WorkerProcess}, so
+ * that scenarios do not share the heap and a scenario that aborts the JVM 
+ * does not abort the benchmark.
+ * <p>
+ * The metrics of each scenario are the wall time of the worker, the phases
+ * and counters of its {@link PhaseTimer} and the size of its report. They 
+ * are written to <code>results.json</code> in the output directory:
+ * <pre>
+ * {"scenarios": {"small": {"Wall time (ms)": 5210, "Rows inserted": 1540, ...}}}
+ * </pre>
+ * Times, sizes and inserted rows that exceed the baseline by more than the
+ * threshold are flagged as regressions. Times shorter than 
+ * {@value #MINIMUM_TIME_MS} ms are too noisy to be compared.
+ * 
+ * @see         EnvironmentGenerator
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class ScenarioBenchmark {
+
+    /** The canned scenarios, in the order they are run. */
+    public static final String[] SCENARIOS = {"small", "medium", "hosts-5k", "datacenters-50", "migration-heavy"};
+    
+    /** The name of the results file in the output directory. */
+    public static final String RESULTS_FILE = "results.json";
+    
+    /** The exit code of a run without failures nor regressions. */
+    public static final int EXIT_SUCCESS = 0;
+    
+    /** The exit code of a run with invalid arguments. */
+    public static final int EXIT_USAGE = 1;
+    
+    /** The exit code of a run where some scenario has failed. */
+    public static final int EXIT_SCENARIO_FAILED = 3;
+    
+    /** The exit code of a run where some metric has regressed. */
+    public static final int EXIT_REGRESSION = 4;
+    
+    /** The wall time of a scenario's worker. */
+    public static final String WALL_TIME = "Wall time (ms)";
+    
+    /** The total size of a scenario's report. */
+    public static final String REPORT_SIZE = "Report size (bytes)";
+    
+    /** The default relative increase flagged as a regression. */
+    private static final double DEFAULT_THRESHOLD = 0.1;
+    
+    /** The shortest time, in milliseconds, that is compared to a baseline. */
+    private static final double MINIMUM_TIME_MS = 100;
+    
+    /** The path of the canned scenarios' resources. */
+    private static final String SCENARIOS_PATH = "/cloudreports/benchmarks/";
+    
+    /** The base seed of the simulations. */
+    private static final String SEED = "1";
+
+    /**
+     * Runs the scenarios given by the command line arguments and exits.
+     * 
+     * @param   args    the command line arguments.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        System.exit(run(args, System.out));
+    }
+
+    /**
+     * Runs the scenarios given by the command line arguments.
+     * 
+     * @param   args    the command line arguments.
+     * @param   out     the stream where the progress and the results are 
+     *                  printed.
+     * @return          the exit code.
+     */
+    public static int run(String[] args, PrintStream out) {
+        File outputDirectory = new File("benchmarks");
+        File baselineFile = null;
+        File saveBaselineFile = null;
+        double threshold = DEFAULT_THRESHOLD;
+        List<String> scenarios = new ArrayList<String>();
+        Map<String, Map<String, Double>> baseline = null;
+        
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-h") || arg.equals("--help")) {
+                    printUsage(out);
+                    return EXIT_SUCCESS;
+                } else if (arg.equals("-l") || arg.equals("--list")) {
+                    for (String scenario : SCENARIOS) {
+                        out.println(scenario);
+                    }
+                    return EXIT_SUCCESS;
+                } else if (arg.equals("-o") || arg.equals("--output")) {
+                    outputDirectory = new File(args[++i]);
+                } else if (arg.equals("--baseline")) {
+                    baselineFile = new File(args[++i]);
+                } else if (arg.equals("--save-baseline")) {
+                    saveBaselineFile = new File(args[++i]);
+                } else if (arg.equals("--threshold")) {
+                    threshold = Double.parseDouble(args[++i]);
+                    if (threshold < 0) throw new IllegalArgumentException("The threshold must not be negative.");
+                } else if (arg.startsWith("-")) {
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                } else {
+                    scenarios.add(arg);
+                }
+            }
+            if (scenarios.isEmpty()) scenarios.addAll(Arrays.asList(SCENARIOS));
+            if (baselineFile != null) baseline = readResults(baselineFile);
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            out.println("Missing value of option " + args[args.length - 1] + ".");
+            printUsage(out);
+            return EXIT_USAGE;
+        } catch (IOException ex) {
+            out.println("Baseline could not be read: " + ex.getMessage());
+            return EXIT_USAGE;
+        } catch (IllegalArgumentException ex) {
+            out.println(ex.getMessage());
+            printUsage(out);
+            return EXIT_USAGE;
+        }
+        
+        outputDirectory.mkdirs();
+        Map<String, Map<String, Double>> results = new LinkedHashMap<String, Map<String, Double>>();
+        boolean failed = false;
+        for (String scenario : scenarios) {
+            String name = getScenarioName(scenario);
+            out.println("Running scenario " + name + "...");
+            try {
+                results.put(name, runScenario(scenario, new File(outputDirectory, name)));
+            } catch (IOException ex) {
+                out.println("Scenario " + name + " has failed: " + ex.getMessage());
+                failed = true;
+            } catch (InterruptedException ex) {
+                out.println("Scenario " + name + " has been interrupted.");
+                failed = true;
+                break;
+            }
+        }
+        
+        String json = toJson(results);
+        FileIO.writeStringToFile(new File(outputDirectory, RESULTS_FILE).getPath(), json);
+        if (saveBaselineFile != null) FileIO.writeStringToFile(saveBaselineFile.getPath(), json);
+        
+        boolean regressed = printResults(out, results, baseline, threshold);
+        if (failed) return EXIT_SCENARIO_FAILED;
+        return regressed ? EXIT_REGRESSION : EXIT_SUCCESS;
+    }
+
+    /**
+     * Generates and simulates a scenario.
+     * 
+     * @param   scenario            the name of a canned scenario or the path
+     *                              of a properties file.
+     * @param   directory           the directory of the scenario's 
+     *                              environment and reports; it is emptied 
+     *                              before the scenario is run.
+     * @return                      the metrics of the scenario, indexed by
+     *                              name.
+     * @throws  IOException         if the scenario could not be generated
+     *                              or simulated.
+     * @throws  InterruptedException    if the current thread was interrupted.
+     */
+    private static Map<String, Double> runScenario(String scenario, File directory) 
+            throws IOException, InterruptedException {
+        EnvironmentGenerator generator;
+        try {
+            generator = EnvironmentGenerator.fromProperties(readScenario(scenario));
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid scenario: " + ex.getMessage());
+        }
+        
+        if (directory.exists()) FileIO.deleteDirectory(directory);
+        directory.mkdirs();
+        File environmentFile = new File(directory, getScenarioName(scenario) + ".cre");
+        File reportsDirectory = new File(directory, "reports");
+        generator.generate(environmentFile);
+        
+        WorkerProcess worker = new WorkerProcess(directory);
+        long startTime = System.nanoTime();
+        int exitCode = worker.run(Arrays.asList("-n", "1", "--seed", SEED,
+                                                "-o", reportsDirectory.getAbsolutePath(),
+                                                environmentFile.getAbsolutePath()));
+        double wallTime = (System.nanoTime() - startTime) / 1e6;
+        File timingsFile = findFile(reportsDirectory, "timings.json");
+        if (exitCode != 0 || timingsFile == null) throw new IOException(worker.describeFailure());
+        
+        Map<String, Double> metrics = new LinkedHashMap<String, Double>();
+        metrics.put(WALL_TIME, wallTime);
+        readTimings(timingsFile, metrics);
+        metrics.put(REPORT_SIZE, (double) getSize(timingsFile.getParentFile()));
+        return metrics;
+    }
+
+    /**
+     * Reads the properties of a scenario.
+     * 
+     * @param   scenario    the name of a canned scenario or the path of a
+     *                      properties file.
+     * @return              the properties of the scenario.
+     * @throws  IOException if the scenario does not exist or cannot be read.
+     */
+    private static Properties readScenario(String scenario) throws IOException {
+        File file = new File(scenario);
+        InputStream stream = file.isFile() 
+                             ? new FileInputStream(file)
+                             : ScenarioBenchmark.class.getResourceAsStream(SCENARIOS_PATH + scenario + ".properties");
+        if (stream == null) throw new IOException("Unknown scenario: " + scenario);
+        try {
+            Properties properties = new Properties();
+            properties.load(stream);
+            return properties;
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Gets the name of a scenario.
+     * 
+     * @param   scenario    the name of a canned scenario or the path of a
+     *                      properties file.
+     * @return              the name of the scenario, without directories nor
+     *                      extension.
+     */
+    private static String getScenarioName(String scenario) {
+        String name = new File(scenario).getName();
+        return name.endsWith(".properties") ? name.substring(0, name.length() - ".properties".length()) : name;
+    }
+
+    /**
+     * Reads the phases and counters of a timings file.
+     * Phases are converted to milliseconds.
+     * 
+     * @param   file        the timings file, as written by 
+     *                      {@link PhaseTimer#toJson()}.
+     * @param   metrics     the metrics where the phases and counters are 
+     *                      added.
+     * @throws  IOException if the file is malformed.
+     */
+    private static void readTimings(File file, Map<String, Double> metrics) throws IOException {
+        try {
+            Map<?, ?> timings = (Map<?, ?>) Json.parse(FileIO.readStringFromFile(file.getPath()));
+            for (Object element : (List<?>) timings.get("phases")) {
+                Map<?, ?> phase = (Map<?, ?>) element;
+                metrics.put(phase.get("name") + " (ms)", ((Double) phase.get("nanos")) / 1e6);
+            }
+            Map<?, ?> counters = (Map<?, ?>) timings.get("counters");
+            for (Map.Entry<?, ?> counter : counters.entrySet()) {
+                metrics.put((String) counter.getKey(), (Double) counter.getValue());
+            }
+        } catch (RuntimeException ex) {
+            throw new IOException("Malformed timings in " + file.getPath() + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Reads a results file.
+     * 
+     * @param   file        the results file, as written by this benchmark.
+     * @return              the metrics of each scenario, indexed by scenario
+     *                      and metric.
+     * @throws  IOException if the file cannot be read or is malformed.
+     */
+    private static Map<String, Map<String, Double>> readResults(File file) throws IOException {
+        String json = FileIO.readStringFromFile(file.getPath());
+        if (json == null) throw new IOException(file.getPath() + " could not be read.");
+        Map<String, Map<String, Double>> results = new LinkedHashMap<String, Map<String, Double>>();
+        try {
+            Map<?, ?> scenarios = (Map<?, ?>) ((Map<?, ?>) Json.parse(json)).get("scenarios");
+            for (Map.Entry<?, ?> scenario : scenarios.entrySet()) {
+                Map<String, Double> metrics = new LinkedHashMap<String, Double>();
+                for (Map.Entry<?, ?> metric : ((Map<?, ?>) scenario.getValue()).entrySet()) {
+                    metrics.put((String) metric.getKey(), (Double) metric.getValue());
+                }
+                results.put((String) scenario.getKey(), metrics);
+            }
+        } catch (RuntimeException ex) {
+            throw new IOException("Malformed results in " + file.getPath() + ": " + ex.getMessage());
+        }
+        return results;
+    }
+
+    /**
+     * Creates the JSON document of the results.
+     * 
+     * @param   results the metrics of each scenario, indexed by scenario and
+     *                  metric.
+     * @return          the JSON document.
+     */
+    private static String toJson(Map<String, Map<String, Double>> results) {
+        StringBuilder json = new StringBuilder("{\n  \"scenarios\": {");
+        String scenarioSeparator = "\n";
+        for (Map.Entry<String, Map<String, Double>> scenario : results.entrySet()) {
+            json.append(scenarioSeparator).append("    ").append(Json.quote(scenario.getKey())).append(": {");
+            String metricSeparator = "\n";
+            for (Map.Entry<String, Double> metric : scenario.getValue().entrySet()) {
+                json.append(metricSeparator)
+                    .append("      ").append(Json.quote(metric.getKey()))
+                    .append(": ").append(String.format(Locale.US, "%.3f", metric.getValue()));
+                metricSeparator = ",\n";
+            }
+            json.append("\n    }");
+            scenarioSeparator = ",\n";
+        }
+        json.append("\n  }\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * Prints the metrics of each scenario and compares them to a baseline.
+     * 
+     * @param   out         the stream where the results are printed.
+     * @param   results     the metrics of each scenario.
+     * @param   baseline    the metrics of the baseline; or <code>null</code>
+     *                      if there is no baseline.
+     * @param   threshold   the relative increase flagged as a regression.
+     * @return              <code>true</code> if some metric has regressed;
+     *                      <code>false</code> otherwise.
+     */
+    private static boolean printResults(PrintStream out, Map<String, Map<String, Double>> results,
+                                        Map<String, Map<String, Double>> baseline, double threshold) {
+        boolean regressed = false;
+        for (Map.Entry<String, Map<String, Double>> scenario : results.entrySet()) {
+            Map<String, Double> reference = baseline != null ? baseline.get(scenario.getKey()) : null;
+            out.println();
+            out.println(scenario.getKey() + (baseline != null && reference == null ? " (not in baseline)" : ""));
+            out.println(String.format(Locale.US, "  %-36s %16s %16s %9s", "Metric", "Baseline", "Current", "Change"));
+            for (Map.Entry<String, Double> metric : scenario.getValue().entrySet()) {
+                double current = metric.getValue();
+                Double previous = reference != null ? reference.get(metric.getKey()) : null;
+                if (previous == null) {
+                    out.println(String.format(Locale.US, "  %-36s %16s %16.1f", metric.getKey(), "-", current));
+                    continue;
+                }
+                String change = previous > 0 ? String.format(Locale.US, "%+.1f%%", (current / previous - 1) * 100) : "";
+                boolean regression = isRegression(metric.getKey(), previous, current, threshold);
+                regressed |= regression;
+                out.println(String.format(Locale.US, "  %-36s %16.1f %16.1f %9s%s", metric.getKey(), previous, current,
+                                          change, regression ? "  REGRESSION" : ""));
+            }
+        }
+        return regressed;
+    }
+
+    /**
+     * Indicates whether a metric has regressed.
+     * Only times, sizes and inserted rows are compared; other counters
+     * describe the behavior of the simulation, not its cost.
+     * 
+     * @param   metric      the name of the metric.
+     * @param   previous    the value of the baseline.
+     * @param   current     the current value.
+     * @param   threshold   the relative increase flagged as a regression.
+     * @return              <code>true</code> if the metric has regressed;
+     *                      <code>false</code> otherwise.
+     */
+    private static boolean isRegression(String metric, double previous, double current, double threshold) {
+        if (metric.endsWith("(ms)")) {
+            if (Math.max(previous, current) < MINIMUM_TIME_MS) return false;
+        } else if (!metric.endsWith("(bytes)") && !metric.equals(PhaseTimer.ROWS_INSERTED)) {
+            return false;
+        }
+        return current > previous * (1 + threshold);
+    }
+
+    /**
+     * Finds a file in a directory tree.
+     * 
+     * @param   directory   the root of the tree.
+     * @param   name        the name of the file.
+     * @return              the first file found; or <code>null</code> if 
+     *                      there is none.
+     */
+    private static File findFile(File directory, String name) {
+        File[] files = directory.listFiles();
+        if (files == null) return null;
+        for (File file : files) {
+            if (file.isFile() && file.getName().equals(name)) return file;
+        }
+        for (File file : files) {
+            File found = file.isDirectory() ? findFile(file, name) : null;
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the total size of the files of a directory tree.
+     * 
+     * @param   directory   the root of the tree.
+     * @return              the total size, in bytes.
+     */
+    private static long getSize(File directory) {
+        long size = 0;
+        File[] files = directory.listFiles();
+        if (files == null) return 0;
+        for (File file : files) {
+            size += file.isDirectory() ? getSize(file) : file.length();
+        }
+        return size;
+    }
+
+    /**
+     * Prints the usage of the benchmark.
+     * 
+     * @param   out the stream where the usage is printed.
+     */
+    private static void printUsage(PrintStream out) {
+        out.println("Usage: java -cp CloudReports.jar " + ScenarioBenchmark.class.getName() + " [options] [scenario ...]");
+        out.println();
+        out.println("  -o, --output <dir>           directory of environments, reports and results");
+        out.println("      --baseline <file>        results to be compared with");
+        out.println("      --save-baseline <file>   stores the results as a new baseline");
+        out.println("      --threshold <ratio>      relative increase flagged as a regression (default 0.1)");
+        out.println("  -l, --list                   lists the canned scenarios");
+        out.println("  -h, --help                   shows this message");
+    }
+}
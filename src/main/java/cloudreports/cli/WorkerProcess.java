@@ -0,0 +1,166 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.cli;
+
+import cloudreports.reports.SimulationSummary;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A {@link CommandLineRunner} running in a separate JVM.
+ * The worker inherits the JVM options and the classpath of the current 
+ * process. It runs in its own working directory, where it also writes the
+ * summary of its simulation.
+ * 
+ * @see         ReplicaScheduler
+ * @see         ParameterSweep
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+class WorkerProcess {
+
+    /** The number of output lines kept to describe a failure. */
+    private static final int TAIL_LINES = 20;
+    
+    /** The name of the summary file in the working directory. */
+    private static final String SUMMARY_FILE = "summary.properties";
+
+    /** The working directory of the worker. */
+    private File workingDirectory;
+    
+    /** The last output lines of the worker. */
+    private LinkedList<String> tail = new LinkedList<String>();
+    
+    /** The exit code of the worker. */
+    private int exitCode = -1;
+
+    /**
+     * Creates a worker.
+     * 
+     * @param   workingDirectory    the working directory of the worker.
+     * @since                       1.2
+     */
+    public WorkerProcess(File workingDirectory) {
+        this.workingDirectory = workingDirectory;
+    }
+
+    /**
+     * Runs the worker and waits for it to exit.
+     * 
+     * @param   arguments               the arguments of the 
+     *                                  {@link CommandLineRunner}.
+     * @return                          the exit code of the worker.
+     * @throws  IOException             if the worker could not be started.
+     * @throws  InterruptedException    if the current thread was interrupted;
+     *                                  the worker is then destroyed.
+     * @since                           1.2
+     */
+    public int run(List<String> arguments) throws IOException, InterruptedException {
+        File summaryFile = new File(workingDirectory, SUMMARY_FILE);
+        summaryFile.delete();
+        
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(CommandLineRunner.class.getName());
+        command.add("--summary");
+        command.add(summaryFile.getAbsolutePath());
+        command.addAll(arguments);
+        
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(workingDirectory);
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
+        
+        tail.clear();
+        BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        try {
+            String line;
+            while ((line = output.readLine()) != null) {
+                tail.add(line);
+                if (tail.size() > TAIL_LINES) tail.removeFirst();
+            }
+        } finally {
+            output.close();
+        }
+        
+        try {
+            exitCode = process.waitFor();
+        } catch (InterruptedException ex) {
+            process.destroy();
+            throw ex;
+        }
+        return exitCode;
+    }
+
+    /**
+     * Describes the failure of the worker.
+     * 
+     * @return  the exit code and the last output lines of the worker.
+     * @since   1.2
+     */
+    public String describeFailure() {
+        StringBuilder message = new StringBuilder("Worker exited with code ").append(exitCode).append('.');
+        for (String line : tail) {
+            message.append('\n').append(line);
+        }
+        return message.toString();
+    }
+
+    /**
+     * Reads the summary of the worker's simulation.
+     * 
+     * @return  the summary; or <code>null</code> if the worker did not write
+     *          one.
+     * @since   1.2
+     */
+    public SimulationSummary readSummary() {
+        File summaryFile = new File(workingDirectory, SUMMARY_FILE);
+        if (!summaryFile.isFile()) return null;
+        InputStream in = null;
+        try {
+            in = new FileInputStream(summaryFile);
+            Properties properties = new Properties();
+            properties.load(in);
+            return SimulationSummary.fromProperties(properties);
+        } catch (IOException ex) {
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    //Nothing to be done
+                }
+            }
+        }
+    }
+}
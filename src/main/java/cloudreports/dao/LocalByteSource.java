@@ -0,0 +1,42 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.dao;
+
+import java.security.SecureRandom;
+
+/**
+ * A local stand-in for the QRBG service.
+ * It produces bytes with {@link SecureRandom}, so the random numbers pool can
+ * be used and tested without network access or a QRBG account.
+ * 
+ * @see         QRBGByteSource
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class LocalByteSource implements RandomByteSource {
+    
+    /** The generator of random bytes. */
+    private SecureRandom random = new SecureRandom();
+    
+    @Override
+    public void nextBytes(byte[] buffer) {
+        random.nextBytes(buffer);
+    }
+}
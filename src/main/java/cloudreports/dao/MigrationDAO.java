@@ -19,9 +19,13 @@
 
 package cloudreports.dao;
 
+import cloudreports.business.SettingBusiness;
 import cloudreports.database.Database;
 import cloudreports.database.HibernateUtil;
 import cloudreports.models.Migration;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -39,29 +43,61 @@ import org.hibernate.criterion.Restrictions;
  */
 public class MigrationDAO {
     
+    /** The statement used to insert migrations through JDBC batches. */
+    private static final String INSERT_STATEMENT = "INSERT INTO Migrations "
+            + "(SimulationId, Description, Time, TargetHost, SourceHost, Vm, DatacenterName, "
+            + "SourceHostCpuUtilization, SourceHostRamUtilization, SourceHostPowerConsumption, "
+            + "TargetHostCpuUtilization, TargetHostRamUtilization, TargetHostPowerConsumption) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
     /** 
      * Registers a set of migration occurrences into the database.
+     * Rows are written through JDBC batches of 
+     * {@link SettingBusiness#getBatchSize()} statements inside a single
+     * transaction.
      *
      * @param   migrationList   a list of migrations to be inserted.
+     * @throws  IllegalStateException   if the migrations could not be 
+     *                                  inserted.
      * @see                     Migration
      * @since                   1.0
      */    
     public void insertMigrations(List<Migration> migrationList) {
-        Session session = HibernateUtil.getSession();
+        int batchSize = SettingBusiness.getBatchSize();
+        Connection connection = Database.openConnection();
+        if(connection == null) throw new IllegalStateException("The database could not be opened to insert migrations.");
         try {
-            session.beginTransaction();
+            connection.setAutoCommit(false);
+            PreparedStatement statement = connection.prepareStatement(INSERT_STATEMENT);
+            int batchedRows = 0;
             
             for (Migration migration : migrationList) {
-                session.save(migration);
+                statement.setInt(1, migration.getSimulationId());
+                statement.setString(2, migration.getDescription());
+                statement.setDouble(3, migration.getTime());
+                statement.setString(4, migration.getTargetHostLabel());
+                statement.setString(5, migration.getSourceHostLabel());
+                statement.setString(6, migration.getVmLabel());
+                statement.setString(7, migration.getDatacenterName());
+                statement.setDouble(8, migration.getSourceHostCpuUtilization());
+                statement.setDouble(9, migration.getSourceHostRamUtilization());
+                statement.setDouble(10, migration.getSourceHostPowerConsumption());
+                statement.setDouble(11, migration.getTargetHostCpuUtilization());
+                statement.setDouble(12, migration.getTargetHostRamUtilization());
+                statement.setDouble(13, migration.getTargetHostPowerConsumption());
+                statement.addBatch();
+                if(++batchedRows % batchSize == 0) statement.executeBatch();
             }
             
-            session.getTransaction().commit();
+            statement.executeBatch();
+            statement.close();
+            connection.commit();
         }
-        catch (HibernateException ex) {
-            session.getTransaction().rollback();
-            Logger.getLogger(Database.class.getName()).log(Level.SEVERE, null, ex);
+        catch (SQLException ex) {
+            Database.rollbackConnection(connection);
+            throw new IllegalStateException("Migrations could not be inserted.", ex);
         } finally {
-            HibernateUtil.closeSession(session);
+            Database.closeConnection(connection);
         }
     }
     
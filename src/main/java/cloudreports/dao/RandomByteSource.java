@@ -0,0 +1,43 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.dao;
+
+import java.io.IOException;
+import qrbg.ServiceDeniedException;
+
+/**
+ * A source of random bytes used to refill the random numbers pool.
+ * 
+ * @see         RandomNumberPool
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public interface RandomByteSource {
+    
+    /** 
+     * Fills a buffer with random bytes.
+     *
+     * @param   buffer                     the buffer to be filled.
+     * @throws  IOException                if the bytes could not be obtained.
+     * @throws  ServiceDeniedException     if the source denied the request.
+     * @since                              1.2
+     */  
+    void nextBytes(byte[] buffer) throws IOException, ServiceDeniedException;
+}
@@ -19,154 +19,100 @@
 
 package cloudreports.dao;
 
-import cloudreports.business.SettingBusiness;
-import cloudreports.database.Database;
 import cloudreports.database.HibernateUtil;
 import cloudreports.enums.RandomNumbersFactory;
-import cloudreports.models.RandomNumber;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import org.hibernate.HibernateException;
-import org.hibernate.Session;
-import qrbg.QRBG;
 import qrbg.ServiceDeniedException;
 
 /**
- * RandomNumberDAO provides basic CRUD operations related to random numbers
- * obtained from the QRBG service.
- * It consumes the random numbers pool and adds more entries on demand.
+ * RandomNumberDAO provides access to the pool of random numbers obtained from
+ * the QRBG service.
+ * Each environment has its own pool, stored in a binary file next to the
+ * environment's database, and the pool is refilled in the background.
+ * By default, numbers are obtained from the QRBG service; setting the
+ * <code>cloudreports.qrbg.offline</code> system property to 
+ * <code>true</code> replaces the service by a local byte source.
  * 
  * @see         <a href="http://random.irb.hr/">QRBG Service</a>
  * @see         RandomNumbersFactory
+ * @see         RandomNumberPool
  * @author      Thiago T. Sá
  * @since       1.0
  */
 public class RandomNumberDAO {
     
-    /** 
-     * The amount of bytes to be obtained by request when using the QRBG service.
-     * Divide by 4 to get the number of integers returned.
-     */
-    private final int NUMBER_OF_BYTES = 1440;
+    /** The pool of the active environment. */
+    private static RandomNumberPool pool;
+    
+    /** The source of random bytes used to refill the pools. */
+    private static RandomByteSource byteSource = Boolean.getBoolean("cloudreports.qrbg.offline")
+                                                 ? new LocalByteSource() : new QRBGByteSource();
     
     /** 
-     * The amount of requests to be executed each time the random numbers pool
-     * needs more entries from the QRBG service.
-     */    
-    private final int NUMBER_OF_REQUESTS = 10;
+     * Sets the source of random bytes used to refill the pools.
+     * An open pool is closed, so the next request uses the new source.
+     *
+     * @param   source  the source of random bytes.
+     * @since           1.2
+     */
+    public static synchronized void setByteSource(RandomByteSource source) {
+        byteSource = source;
+        if(pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
     
     /** 
-     * Inserts more entries in the random numbers pool.
-     * Numbers are obtained from the QRBG service. The total amount of 
-     * integers inserted can be calculated as ({@link #NUMBER_OF_BYTES}/4 * 
-     * {@link #NUMBER_OF_REQUESTS}.
+     * Gets the pool of the active environment, opening it if necessary.
      *
-     * @throws  IOException                If there is no Internet connectivity.
-     * @throws  ServiceDeniedException     If the QRBG account is not valid.
-     * @see                                <a href="http://random.irb.hr/">QRBG Service</a>
-     * @since                              1.0
-     */        
-    private void insertMoreNumbersInPool() throws IOException, ServiceDeniedException {        
-        QRBG source = new QRBG(SettingBusiness.getQRBGUsername(), SettingBusiness.getQRBGPassword());
-        for(int request = 0; request < NUMBER_OF_REQUESTS; request++) {        
-            byte[] buffer = new byte[NUMBER_OF_BYTES];
-            source.getBytes(buffer, NUMBER_OF_BYTES);        
-
-            Session session = HibernateUtil.getSession();
-            try {
-                session.beginTransaction();
-                for (int i = 0; i < (NUMBER_OF_BYTES - 4); i+=4) {
-                    double randomNumber = QRBG.readInt(buffer, i);
-                    if (randomNumber < 0) {
-                        randomNumber *= -1;
-                    }
-                    randomNumber /= Integer.MAX_VALUE;
-
-                    if(randomNumber != 0) {
-                        session.save(new RandomNumber(randomNumber));
-                    }
-                }
-                session.getTransaction().commit();
-            }
-            catch (HibernateException ex) {
-                session.getTransaction().rollback();
-                Logger.getLogger(Database.class.getName()).log(Level.SEVERE, null, ex);
-            } finally {
-                HibernateUtil.closeSession(session);
-            }
+     * @return                  the pool of the active environment.
+     * @throws  IOException     if the pool's file could not be opened.
+     * @since                   1.2
+     */
+    private static synchronized RandomNumberPool getPool() throws IOException {
+        File file = new File(HibernateUtil.getDatabaseDirectory() + HibernateUtil.getActiveDatabase() + ".qrbg");
+        if(pool != null && !pool.getFile().equals(file)) {
+            pool.close();
+            pool = null;
         }
+        if(pool == null) pool = new RandomNumberPool(file, byteSource);
+        return pool;
     }
     
     /** 
      * Gets the given amount of random numbers from the random numbers pool.
-     * The effectiveness of this method depends on a proper configuration of
-     * a valid account on the QRBG service and an active Internet connection.
-     * Also, the QRBG service uses the port 1227. Make sure your firewall is
-     * configured properly.
      *
      * @param   amount                     the amount of random numbers to get.
      * @throws  IOException                If there is no Internet connectivity.
      * @throws  ServiceDeniedException     If the QRBG account is not valid.
      * @see                                <a href="http://random.irb.hr/">QRBG Service</a>
-     * @see                                RandomNumber
      * @since                              1.0
      */      
     public List<Double> getRandomNumbers(int amount) throws IOException, ServiceDeniedException {
-        List<RandomNumber> numbersList = getRandomNumbersFromPool(amount);
-        
-        if(numbersList.size() < amount) {
-            insertMoreNumbersInPool();            
-            numbersList = getRandomNumbersFromPool(amount);
-        }
-
-        List<Double> returnList = new ArrayList<Double>();
-        Session session = HibernateUtil.getSession();        
-        try {
-            session.beginTransaction();
-            for(int i = 0; i < amount; i++) {
-                RandomNumber randomNumber = numbersList.get(i);
-                returnList.add(randomNumber.getValue());
-                session.delete(randomNumber);
-            }
-            session.getTransaction().commit();
-        }
-        catch (HibernateException ex) {
-            session.getTransaction().rollback();
-            Logger.getLogger(Database.class.getName()).log(Level.SEVERE, null, ex);
-        } finally {
-            HibernateUtil.closeSession(session);
+        double[] values = new double[amount];
+        fill(values);
+        List<Double> returnList = new ArrayList<Double>(amount);
+        for(double value : values) {
+            returnList.add(value);
         }
-        
         return returnList;
     }
     
     /** 
-     * Gets a list of {@link RandomNumber} registries from the random numbers
-     * pool.
+     * Fills an array with random numbers from the random numbers pool.
      *
-     * @param   amount      the amount of random numbers to get from the pool.
-     * @return              a list of random numbers from the pool. 
-     *                      The resulting list has, at most, the number of
-     *                      elements given by <code>amount</code>.
-     * @see                 RandomNumber
-     * @since               1.0
-     */   
-    private List<RandomNumber> getRandomNumbersFromPool(int amount) {
-        Session session = HibernateUtil.getSession();
-        List<RandomNumber> numbersList = new ArrayList<RandomNumber>();
-        try {
-            numbersList = (List<RandomNumber>) session.createCriteria(RandomNumber.class).setMaxResults(amount).list();
-        } catch (HibernateException ex) {
-            Logger.getLogger(Database.class.getName()).log(Level.SEVERE, null, ex);
-        } finally {
-            HibernateUtil.closeSession(session);
-        }
-        
-        return numbersList;
+     * @param   values                     the array to be filled.
+     * @throws  IOException                If there is no Internet connectivity.
+     * @throws  ServiceDeniedException     If the QRBG account is not valid.
+     * @see                                <a href="http://random.irb.hr/">QRBG Service</a>
+     * @since                              1.2
+     */      
+    public void fill(double[] values) throws IOException, ServiceDeniedException {
+        getPool().fill(values);
     }
-
     
 }
@@ -0,0 +1,295 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import qrbg.QRBG;
+import qrbg.ServiceDeniedException;
+
+/**
+ * A pool of random numbers kept as an append-only binary file of doubles.
+ * The first bytes of the file hold the position of the next unread number,
+ * and the numbers are read through a memory-mapped cursor, so consuming a 
+ * number only moves the cursor forward. A background thread refills the pool
+ * from a {@link RandomByteSource} before it runs dry.
+ * 
+ * @see         RandomNumberDAO
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+class RandomNumberPool implements Runnable {
+    
+    /** The size of the file's header, which holds the read position. */
+    private static final int HEADER_SIZE = 8;
+    
+    /** 
+     * The amount of bytes to be obtained by request from the byte source.
+     * Divide by 4 to get the number of integers returned.
+     */
+    private static final int NUMBER_OF_BYTES = 1440;
+    
+    /** 
+     * The amount of requests to be executed each time the pool needs more
+     * entries from the byte source.
+     */    
+    private static final int NUMBER_OF_REQUESTS = 10;
+    
+    /** The number of unread numbers below which the pool is refilled. */
+    private static final int LOW_WATER_MARK = NUMBER_OF_BYTES / 4 * NUMBER_OF_REQUESTS / 2;
+    
+    /** The file of the pool. */
+    private File file;
+    
+    /** The channel of the pool's file. */
+    private FileChannel channel;
+    
+    /** The mapped content of the pool's file. */
+    private MappedByteBuffer mappedFile;
+    
+    /** The position of the next unread number. */
+    private long readPosition;
+    
+    /** The size of the pool's file. */
+    private long fileSize;
+    
+    /** The source of random bytes. */
+    private RandomByteSource source;
+    
+    /** The last error of the byte source, if any. */
+    private Exception refillError;
+    
+    /** Indicates whether the pool has been closed. */
+    private boolean closed;
+    
+    /** The thread that refills the pool. */
+    private Thread prefetcher;
+    
+    /** 
+     * Opens a pool, creating its file if it does not exist, and starts its 
+     * prefetcher.
+     *
+     * @param   file            the file of the pool.
+     * @param   source          the source of random bytes.
+     * @throws  IOException     if the file could not be opened.
+     * @since                   1.2
+     */
+    public RandomNumberPool(File file, RandomByteSource source) throws IOException {
+        this.file = file;
+        this.source = source;
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+        
+        fileSize = channel.size();
+        if(fileSize < HEADER_SIZE) {
+            channel.truncate(0);
+            channel.write(headerOf(HEADER_SIZE), 0);
+            fileSize = HEADER_SIZE;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        readPosition = header.getLong();
+        if(readPosition < HEADER_SIZE || readPosition > fileSize) readPosition = fileSize;
+        
+        //Numbers that have already been consumed are discarded
+        if(readPosition == fileSize && fileSize > HEADER_SIZE) {
+            channel.truncate(HEADER_SIZE);
+            fileSize = HEADER_SIZE;
+            readPosition = HEADER_SIZE;
+        }
+        mappedFile = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        mappedFile.putLong(0, readPosition);
+        
+        prefetcher = new Thread(this, "CloudReports random numbers prefetcher");
+        prefetcher.setDaemon(true);
+        prefetcher.start();
+    }
+    
+    /** 
+     * Gets the file of this pool.
+     *
+     * @return  the file of this pool.
+     */
+    public File getFile() {
+        return file;
+    }
+    
+    /** 
+     * Gets the number of unread numbers in the pool.
+     *
+     * @return  the number of unread numbers.
+     * @since   1.2
+     */
+    public synchronized int getAvailable() {
+        return (int) ((fileSize - readPosition) / 8);
+    }
+    
+    /** 
+     * Fills an array with numbers from the pool.
+     * This method blocks only if the pool does not have enough unread numbers
+     * and the prefetcher has not refilled it yet.
+     *
+     * @param   values                     the array to be filled.
+     * @throws  IOException                if the pool could not be refilled.
+     * @throws  ServiceDeniedException     if the byte source denied a request.
+     * @since                              1.2
+     */
+    public synchronized void fill(double[] values) throws IOException, ServiceDeniedException {
+        int filled = 0;
+        while(filled < values.length) {
+            if(closed) throw new IOException("The random numbers pool is closed.");
+            int available = getAvailable();
+            if(available == 0) {
+                if(refillError != null) {
+                    Exception error = refillError;
+                    refillError = null;
+                    if(error instanceof ServiceDeniedException) throw (ServiceDeniedException) error;
+                    throw (IOException) error;
+                }
+                notifyAll();
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for random numbers.");
+                }
+                continue;
+            }
+            
+            int amount = Math.min(available, values.length - filled);
+            for(int i = 0; i < amount; i++) {
+                values[filled++] = mappedFile.getDouble((int) readPosition);
+                readPosition += 8;
+            }
+            mappedFile.putLong(0, readPosition);
+        }
+        if(getAvailable() < LOW_WATER_MARK) notifyAll();
+    }
+    
+    /** 
+     * Stops the prefetcher and closes the pool's file.
+     *
+     * @since   1.2
+     */
+    public void close() {
+        synchronized(this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            prefetcher.join();
+            synchronized(this) {
+                mappedFile.force();
+                channel.close();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            Logger.getLogger(RandomNumberPool.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+    
+    /** 
+     * Refills the pool whenever it falls below the low water mark.
+     * The byte source is accessed without holding the pool's lock, so
+     * consumers keep reading the remaining numbers in the meantime.
+     *
+     * @since   1.2
+     */
+    @Override
+    public void run() {
+        while(true) {
+            synchronized(this) {
+                while(!closed && (getAvailable() >= LOW_WATER_MARK || refillError != null)) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+                if(closed) return;
+            }
+            
+            try {
+                ByteBuffer numbers = ByteBuffer.allocate(NUMBER_OF_BYTES / 4 * NUMBER_OF_REQUESTS * 8);
+                byte[] buffer = new byte[NUMBER_OF_BYTES];
+                for(int request = 0; request < NUMBER_OF_REQUESTS; request++) {
+                    source.nextBytes(buffer);
+                    for (int i = 0; i + 4 <= NUMBER_OF_BYTES; i += 4) {
+                        double randomNumber = QRBG.readInt(buffer, i);
+                        if (randomNumber < 0) {
+                            randomNumber *= -1;
+                        }
+                        randomNumber /= Integer.MAX_VALUE;
+
+                        if(randomNumber != 0 && randomNumber < 1) {
+                            numbers.putDouble(randomNumber);
+                        }
+                    }
+                }
+                numbers.flip();
+                append(numbers);
+            } catch (Exception ex) {
+                Logger.getLogger(RandomNumberPool.class.getName()).log(Level.SEVERE, null, ex);
+                synchronized(this) {
+                    refillError = ex instanceof ServiceDeniedException || ex instanceof IOException
+                                  ? ex : new IOException(ex.getMessage());
+                    notifyAll();
+                }
+            }
+        }
+    }
+    
+    /** 
+     * Appends numbers to the end of the pool's file.
+     *
+     * @param   numbers         the numbers to be appended.
+     * @throws  IOException     if the numbers could not be written.
+     */
+    private synchronized void append(ByteBuffer numbers) throws IOException {
+        if(closed) return;
+        long position = fileSize;
+        while(numbers.hasRemaining()) {
+            position += channel.write(numbers, position);
+        }
+        fileSize = position;
+        mappedFile = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        notifyAll();
+    }
+    
+    /** 
+     * Creates a header holding a read position.
+     *
+     * @param   position    the read position.
+     * @return              the header.
+     */
+    private static ByteBuffer headerOf(long position) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putLong(position);
+        header.flip();
+        return header;
+    }
+}
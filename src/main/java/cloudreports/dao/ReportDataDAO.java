@@ -19,9 +19,16 @@
 
 package cloudreports.dao;
 
+import cloudreports.business.SettingBusiness;
 import cloudreports.database.Database;
 import cloudreports.database.HibernateUtil;
 import cloudreports.models.ReportData;
+import cloudreports.reports.ReportDataStore;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.util.List;
 import java.util.TreeMap;
 import java.util.logging.Level;
@@ -40,6 +47,27 @@ import org.hibernate.criterion.Restrictions;
  */
 public class ReportDataDAO {
     
+    /** The statement used to insert report data through JDBC batches. */
+    private static final String INSERT_STATEMENT = "INSERT INTO ReportData "
+            + "(SimulationId, Type, DatacenterName, CustomerName, VmId, HostId, Time, Amount) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    /** The query that reads all series of a datacenter and its hosts. */
+    private static final String DATACENTER_DATA_QUERY = "SELECT Type, HostId, Time, Amount FROM ReportData "
+            + "WHERE DatacenterName = ? ORDER BY HostId, Type, Time, Id";
+    
+    /** The query that reads all series of a customer and its virtual machines. */
+    private static final String CUSTOMER_DATA_QUERY = "SELECT Type, VmId, Time, Amount FROM ReportData "
+            + "WHERE CustomerName = ? ORDER BY VmId, Type, Time, Id";
+    
+    /** The query of the number and mean of the samples of all hosts. */
+    private static final String HOST_MEAN_QUERY = "SELECT COUNT(*), AVG(Amount) FROM ReportData "
+            + "WHERE Type = ? AND HostId IS NOT NULL";
+    
+    /** The query of the n-th smallest sample of all hosts. */
+    private static final String HOST_RANK_QUERY = "SELECT Amount FROM ReportData "
+            + "WHERE Type = ? AND HostId IS NOT NULL ORDER BY Amount LIMIT 1 OFFSET ?";
+    
     /** 
      * Inserts report data related to resource usage of a given host.
      *
@@ -336,28 +364,246 @@ public class ReportDataDAO {
 
     /**
      * Inserts a list of report data into the database.
+     * Rows are written through JDBC batches of 
+     * {@link SettingBusiness#getBatchSize()} statements inside a single
+     * transaction.
      *
      * @param   dataList    the list of report data to be inserted.
      * @see                 ReportData
      * @since               1.0
      */      
     public void insertDataList(List<ReportData> dataList) {
-        Session session = HibernateUtil.getSession();
+        int batchSize = SettingBusiness.getBatchSize();
+        Connection connection = Database.openConnection();
+        if(connection == null) return;
         try {
-            session.beginTransaction();
+            connection.setAutoCommit(false);
+            PreparedStatement statement = connection.prepareStatement(INSERT_STATEMENT);
+            int batchedRows = 0;
 
             for(ReportData data : dataList) {
-                session.save(data);            
-            }       
+                addBatch(statement, data.getType(), data.getDatacenterName(), data.getCustomerName(),
+                         data.getHostId(), data.getVmId(), data.getTime(), data.getAmount(),
+                         data.getSimulationId());
+                if(++batchedRows % batchSize == 0) statement.executeBatch();
+            }
 
-            session.getTransaction().commit();
+            statement.executeBatch();
+            statement.close();
+            connection.commit();
         }
-        catch (HibernateException ex) {
-            session.getTransaction().rollback();
+        catch (SQLException ex) {
+            Database.rollbackConnection(connection);
             Logger.getLogger(Database.class.getName()).log(Level.SEVERE, null, ex);
         } finally {
-            HibernateUtil.closeSession(session);
+            Database.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Inserts all pending samples of a data store into the database and marks
+     * them as flushed.
+     * Rows are written through JDBC batches of 
+     * {@link SettingBusiness#getBatchSize()} statements inside a single
+     * transaction.
+     *
+     * @param   dataStore           the data store whose pending samples
+     *                              will be inserted.
+     * @throws  IllegalStateException   if the samples could not be inserted;
+     *                                  they are then still pending.
+     * @see                         ReportDataStore
+     * @since                       1.2
+     */
+    public void insertDataStore(ReportDataStore dataStore) {
+        int simulationId = dataStore.getSimulationId();
+        int batchSize = SettingBusiness.getBatchSize();
+        Connection connection = Database.openConnection();
+        if(connection == null) throw new IllegalStateException("The database could not be opened to insert report data.");
+        try {
+            connection.setAutoCommit(false);
+            PreparedStatement statement = connection.prepareStatement(INSERT_STATEMENT);
+            int batchedRows = 0;
+
+            for(ReportDataStore.Series series : dataStore.getSeriesList()) {
+                for(int i = series.getFlushedSize(); i < series.size(); i++) {
+                    addBatch(statement, series.getType(), series.getDatacenterName(),
+                             series.getCustomerName(), series.getHostId(), series.getVmId(),
+                             series.getTime(i), series.getAmount(i), simulationId);
+                    if(++batchedRows % batchSize == 0) statement.executeBatch();
+                }
+            }
+
+            statement.executeBatch();
+            statement.close();
+            connection.commit();
+            dataStore.markFlushed();
+        }
+        catch (SQLException ex) {
+            Database.rollbackConnection(connection);
+            throw new IllegalStateException("Report data could not be inserted.", ex);
+        } finally {
+            Database.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Gets the mean and a percentile of the samples of all hosts for a given
+     * type of resource.
+     *
+     * @param   type        the type of the used resource.
+     * @param   percentile  the percentile, between 0 and 100.
+     * @return              an array containing the mean and the percentile;
+     *                      both are 0 if there are no samples.
+     * @since               1.2
+     */
+    public double[] getHostStatistics(String type, double percentile) {
+        double[] statistics = new double[2];
+        Connection connection = Database.openConnection();
+        if(connection == null) return statistics;
+        try {
+            PreparedStatement statement = connection.prepareStatement(HOST_MEAN_QUERY);
+            statement.setString(1, type);
+            ResultSet resultSet = statement.executeQuery();
+            long count = resultSet.next() ? resultSet.getLong(1) : 0;
+            if(count > 0) statistics[0] = resultSet.getDouble(2);
+            resultSet.close();
+            statement.close();
+            if(count == 0) return statistics;
+
+            long rank = Math.max((long) Math.ceil(percentile / 100 * count) - 1, 0);
+            statement = connection.prepareStatement(HOST_RANK_QUERY);
+            statement.setString(1, type);
+            statement.setLong(2, rank);
+            resultSet = statement.executeQuery();
+            if(resultSet.next()) statistics[1] = resultSet.getDouble(1);
+            resultSet.close();
+            statement.close();
         }
+        catch (SQLException ex) {
+            Logger.getLogger(Database.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            Database.closeConnection(connection);
+        }
+        return statistics;
+    }
+
+    /**
+     * Loads all series of a given datacenter and its hosts with a single 
+     * query.
+     * Rows are read in the order of the datacenter index, so they are
+     * partitioned into series in a single pass.
+     *
+     * @param   datacenterName  the name of the datacenter.
+     * @return                  a store containing the series of the 
+     *                          datacenter and its hosts.
+     * @throws  SQLException    if the series could not be read.
+     * @see                     ReportDataStore
+     * @since                   1.2
+     */
+    public ReportDataStore getDatacenterData(String datacenterName) throws SQLException {
+        return loadDataStore(DATACENTER_DATA_QUERY, datacenterName, true);
+    }
+
+    /**
+     * Loads all series of a given customer and its virtual machines with a
+     * single query.
+     * Rows are read in the order of the customer index, so they are 
+     * partitioned into series in a single pass.
+     *
+     * @param   customerName    the name of the customer.
+     * @return                  a store containing the series of the 
+     *                          customer and its virtual machines.
+     * @throws  SQLException    if the series could not be read.
+     * @see                     ReportDataStore
+     * @since                   1.2
+     */
+    public ReportDataStore getCustomerData(String customerName) throws SQLException {
+        return loadDataStore(CUSTOMER_DATA_QUERY, customerName, false);
+    }
+
+    /**
+     * Loads the rows of a query into a new store.
+     * The query must select the type, the id of the host or virtual machine,
+     * the time and the amount of each row, sorted by id, type and time. When
+     * several rows of a series share the same time, only the last inserted
+     * one is kept.
+     *
+     * @param   query           the query.
+     * @param   ownerName       the name of the datacenter or customer.
+     * @param   datacenter      indicates whether the owner is a datacenter.
+     * @return                  a store containing the loaded series, whose
+     *                          samples are marked as flushed.
+     * @throws  SQLException    if the series could not be read.
+     * @since                   1.2
+     */
+    private ReportDataStore loadDataStore(String query, String ownerName, boolean datacenter) throws SQLException {
+        ReportDataStore dataStore = new ReportDataStore(SettingBusiness.getCurrentSimulation());
+        Connection connection = Database.openConnection();
+        if(connection == null) throw new SQLException("Could not connect to the active database.");
+        try {
+            PreparedStatement statement = connection.prepareStatement(query);
+            statement.setString(1, ownerName);
+            ResultSet resultSet = statement.executeQuery();
+
+            ReportDataStore.Series series = null;
+            Integer seriesId = null;
+            while(resultSet.next()) {
+                String type = resultSet.getString(1);
+                Integer id = resultSet.getInt(2);
+                if(resultSet.wasNull()) id = null;
+
+                //Rows are sorted, so a new series starts whenever its key changes
+                if(series == null || !series.getType().equals(type)
+                   || (id == null ? seriesId != null : !id.equals(seriesId))) {
+                    if(id == null) series = datacenter ? dataStore.getDatacenterSeries(type, ownerName)
+                                                       : dataStore.getCustomerSeries(type, ownerName);
+                    else series = datacenter ? dataStore.getHostSeries(type, ownerName, id)
+                                             : dataStore.getVmSeries(type, ownerName, id);
+                    seriesId = id;
+                }
+                //Later samples of the same time override the previous ones
+                series.put(resultSet.getDouble(3), resultSet.getDouble(4));
+            }
+
+            resultSet.close();
+            statement.close();
+        } finally {
+            Database.closeConnection(connection);
+        }
+
+        dataStore.markFlushed();
+        return dataStore;
+    }
+
+    /**
+     * Adds a row of report data to a batch of insert statements.
+     *
+     * @param   statement       the prepared {@link #INSERT_STATEMENT}.
+     * @param   type            the type of the used resource.
+     * @param   datacenterName  the datacenter's name.
+     * @param   customerName    the customer's name.
+     * @param   hostId          the id of the host.
+     * @param   vmId            the id of the virtual machine.
+     * @param   time            the reported moment.
+     * @param   amount          the amount of used resources.
+     * @param   simulationId    the identification number of the simulation.
+     * @throws  SQLException    if the row could not be added to the batch.
+     * @since                   1.2
+     */
+    private void addBatch(PreparedStatement statement, String type, String datacenterName,
+                          String customerName, Integer hostId, Integer vmId, double time,
+                          double amount, int simulationId) throws SQLException {
+        statement.setInt(1, simulationId);
+        statement.setString(2, type);
+        statement.setString(3, datacenterName);
+        statement.setString(4, customerName);
+        if(vmId != null) statement.setInt(5, vmId);
+        else statement.setNull(5, Types.INTEGER);
+        if(hostId != null) statement.setInt(6, hostId);
+        else statement.setNull(6, Types.INTEGER);
+        statement.setDouble(7, time);
+        statement.setDouble(8, amount);
+        statement.addBatch();
     }
 
 }
@@ -27,7 +27,6 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.swing.JFrame;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
 
@@ -51,7 +50,7 @@ public class Database {
     private static void establishConnection() {
         try {
             Class.forName("org.sqlite.JDBC");
-            connection = DriverManager.getConnection("jdbc:sqlite:db/" + HibernateUtil.getActiveDatabase() + ".cre");
+            connection = DriverManager.getConnection("jdbc:sqlite:" + HibernateUtil.getDatabaseDirectory() + HibernateUtil.getActiveDatabase() + ".cre");
         } catch (SQLException ex) {
             Logger.getLogger(Database.class.getName()).log(Level.SEVERE, null, ex);
         } catch (ClassNotFoundException ex) {
@@ -59,6 +58,45 @@ public class Database {
         }
     }
 
+    /** 
+     * Opens a new JDBC connection with the current active database.
+     * It is meant for bulk operations that would be too slow if performed
+     * through Hibernate sessions. The caller is responsible for closing the
+     * returned connection.
+     *
+     * @return  a new connection, or <code>null</code> if it could not be
+     *          established.
+     * @since   1.2
+     */    
+    public static Connection openConnection() {
+        try {
+            Class.forName("org.sqlite.JDBC");
+            return DriverManager.getConnection("jdbc:sqlite:" + HibernateUtil.getDatabaseDirectory() + HibernateUtil.getActiveDatabase() + ".cre");
+        } catch (SQLException ex) {
+            Logger.getLogger(Database.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (ClassNotFoundException ex) {
+            Logger.getLogger(Database.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return null;
+    }
+
+    /** 
+     * Rolls back the transaction of a connection opened by 
+     * {@link #openConnection()}.
+     * It is used by bulk operations when any of their statements fails.
+     *
+     * @param   connection  the connection to be rolled back.
+     * @since   1.2
+     */    
+    public static void rollbackConnection(Connection connection) {
+        if(connection == null) return;
+        try {
+            if(!connection.getAutoCommit()) connection.rollback();
+        } catch (SQLException ex) {
+            Logger.getLogger(Database.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
     /** 
      * Creates a brand new database.
      *
@@ -82,7 +120,7 @@ public class Database {
             createRandomPoolTable(stat);            
             insertDefaultSettingsValues(stat);
         } catch (Exception ex) {
-            Dialog.showErrorMessage(new JFrame(), "An error occurred while creating the database.");
+            Dialog.showErrorMessage(null, "An error occurred while creating the database.");
             System.exit(0);
         }
         finally {
@@ -91,12 +129,13 @@ public class Database {
     }
 
     /** 
-     * Closes the connection with the current active database.
+     * Closes a connection with the current active database.
      *
-     * @see     #connection
+     * @param   connection  the connection to be closed.
      * @since   1.1
      */ 
-    private static void closeConnection(Connection connection) {
+    public static void closeConnection(Connection connection) {
+        if(connection == null) return;
     	try {
 			connection.close();
 		} catch (SQLException ex) {
@@ -120,6 +159,13 @@ public class Database {
 		stat.executeUpdate("INSERT INTO Settings VALUES (4,'TimeToSimulate','60')");
 		stat.executeUpdate("INSERT INTO Settings VALUES (5,'HtmlReports','true')");
 		stat.executeUpdate("INSERT INTO Settings VALUES (6,'RawDataReports','true')");
+		stat.executeUpdate("INSERT INTO Settings VALUES (7,'BatchSize','1000')");
+		stat.executeUpdate("INSERT INTO Settings VALUES (8,'MonitoringWindow','2')");
+		stat.executeUpdate("INSERT INTO Settings VALUES (9,'RandomSeed','')");
+		stat.executeUpdate("INSERT INTO Settings VALUES (10,'TargetPrecision','0')");
+		stat.executeUpdate("INSERT INTO Settings VALUES (11,'MinimumSimulations','3')");
+		stat.executeUpdate("INSERT INTO Settings VALUES (12,'StoppingIndicators','energyKWh,migrations,meanCpuUtilization,meanCloudletFinishTime')");
+		stat.executeUpdate("INSERT INTO Settings VALUES (13,'ParallelClassificationThreshold','2000')");
 	}
 
     /** 
@@ -197,6 +243,23 @@ public class Database {
 		                        + "Time REAL,"
 		                        + "Amount REAL"                  
 		                        + ");");
+		createReportDataIndexes(stat);
+	}
+
+    /** 
+     * Creates the indexes of the ReportData table, if they do not exist.
+     * Series are always looked up by datacenter and host or by customer and
+     * virtual machine, and then ordered by type and time.
+     *
+     * @see     #connection
+     * @since   1.2
+     */     
+	private static void createReportDataIndexes(Statement stat)
+			throws SQLException {
+		stat.executeUpdate("CREATE INDEX IF NOT EXISTS ReportDataDatacenterIndex "
+		                        + "ON ReportData (DatacenterName, HostId, Type, Time);");
+		stat.executeUpdate("CREATE INDEX IF NOT EXISTS ReportDataCustomerIndex "
+		                        + "ON ReportData (CustomerName, VmId, Type, Time);");
 	}
 
     /** 
@@ -369,11 +432,33 @@ public class Database {
             session.getTransaction().commit();
         }
         catch (HibernateException ex) {
-            Dialog.showErrorMessage(new JFrame(), "An error occurred while cleaning temporary report entries.");
+            Dialog.showErrorMessage(null, "An error occurred while cleaning temporary report entries.");
             Logger.getLogger(Database.class.getName()).log(Level.SEVERE, null, ex);
         } finally {
             HibernateUtil.closeSession(session);
         }
     }
 
+    /** 
+     * Creates the indexes of the ReportData table on the current active 
+     * database, if they do not exist.
+     * Environments created by previous versions do not have these indexes,
+     * so this method is called before every simulation.
+     *
+     * @since   1.2
+     */        
+    public static void updateReportDataIndexes() {
+        Connection indexConnection = openConnection();
+        if(indexConnection == null) return;
+        try {
+            Statement stat = indexConnection.createStatement();
+            createReportDataIndexes(stat);
+            stat.close();
+        } catch (SQLException ex) {
+            Logger.getLogger(Database.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            closeConnection(indexConnection);
+        }
+    }
+
 }
@@ -0,0 +1,764 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.database;
+
+import cloudreports.models.DatacenterRegistry;
+import cloudreports.models.HostRegistry;
+import cloudreports.models.SanStorageRegistry;
+import cloudreports.models.UtilizationProfile;
+import cloudreports.models.VirtualMachineRegistry;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates synthetic simulation environments.
+ * An environment is made of a number of identical datacenters and 
+ * customers. The hosts of each datacenter are split among host types and
+ * the virtual machines of each customer are split among virtual machine 
+ * types, according to the weights of the types. Utilization profiles are
+ * assigned to customers according to their weights as well, and the 
+ * latency of each network link is drawn uniformly from a range.
+ * <p>
+ * Since each host or virtual machine type is stored as a single registry
+ * with an amount, and all rows are written through JDBC batches inside a
+ * single transaction, environments with tens of thousands of hosts and
+ * virtual machines are generated in a few seconds.
+ * <p>
+ * Generators can also be described by properties, as read by
+ * {@link #fromProperties(Properties)}:
+ * <pre>
+ * datacenters=10
+ * hostsPerDatacenter=1000
+ * customers=100
+ * vmsPerCustomer=1000
+ * latency.min=0.5
+ * latency.max=5
+ * bandwidth=1
+ * seed=42
+ * upperUtilizationThreshold=0.8
+ * hostTypes=small,large
+ * hostType.small.weight=3
+ * hostType.small.numOfPes=4
+ * hostType.large.numOfPes=16
+ * hostType.large.ram=160000
+ * vmTypes=default
+ * profiles=batch,web
+ * profile.batch.length=500000
+ * profile.web.weight=2
+ * profile.web.numOfCloudlets=500
+ * setting.TimeToSimulate=30
+ * </pre>
+ * Omitted parameters keep the defaults of the registries and of the 
+ * settings.
+ * 
+ * @see         Database#createDatabase()
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class EnvironmentGenerator {
+
+    /** The prefix of the names of datacenters. */
+    private static final String DATACENTER_PREFIX = "Datacenter";
+    
+    /** The prefix of the names of customers. */
+    private static final String CUSTOMER_PREFIX = "Customer";
+    
+    /** The prefix of the properties that describe settings. */
+    private static final String SETTING_PREFIX = "setting.";
+    
+    /** The number of statements of each JDBC batch. */
+    private static final int BATCH_SIZE = 1000;
+    
+    /** The number of datacenters. */
+    private int numOfDatacenters = 1;
+    
+    /** The number of hosts of each datacenter. */
+    private int hostsPerDatacenter = 1;
+    
+    /** The number of customers. */
+    private int numOfCustomers = 1;
+    
+    /** The number of virtual machines of each customer. */
+    private int vmsPerCustomer = 1;
+    
+    /** The minimum latency of network links. */
+    private double minLatency = 1.0;
+    
+    /** The maximum latency of network links. */
+    private double maxLatency = 1.0;
+    
+    /** The bandwidth of network links. */
+    private double bandwidth = 1.0;
+    
+    /** The seed of the random latencies and profile assignments. */
+    private long seed = 0;
+    
+    /** The registry all datacenters are copied from. */
+    private DatacenterRegistry datacenterTemplate = new DatacenterRegistry(DATACENTER_PREFIX);
+    
+    /** The host types. */
+    private final List<HostRegistry> hostTypes = new ArrayList<HostRegistry>();
+    
+    /** The weights of the host types. */
+    private final List<Double> hostTypeWeights = new ArrayList<Double>();
+    
+    /** The virtual machine types. */
+    private final List<VirtualMachineRegistry> vmTypes = new ArrayList<VirtualMachineRegistry>();
+    
+    /** The weights of the virtual machine types. */
+    private final List<Double> vmTypeWeights = new ArrayList<Double>();
+    
+    /** The utilization profiles. */
+    private final List<UtilizationProfile> profiles = new ArrayList<UtilizationProfile>();
+    
+    /** The weights of the utilization profiles. */
+    private final List<Double> profileWeights = new ArrayList<Double>();
+    
+    /** The values of the settings that differ from the defaults, indexed 
+     *  by name. */
+    private final Map<String, String> settings = new LinkedHashMap<String, String>();
+
+    /**
+     * Sets the number of datacenters.
+     * 
+     * @param   numOfDatacenters    the number of datacenters.
+     */
+    public void setDatacenters(int numOfDatacenters) {
+        if (numOfDatacenters < 1) throw new IllegalArgumentException("The number of datacenters must be positive.");
+        this.numOfDatacenters = numOfDatacenters;
+    }
+
+    /**
+     * Sets the number of hosts of each datacenter.
+     * 
+     * @param   hostsPerDatacenter  the number of hosts of each datacenter.
+     */
+    public void setHostsPerDatacenter(int hostsPerDatacenter) {
+        if (hostsPerDatacenter < 1) throw new IllegalArgumentException("The number of hosts must be positive.");
+        this.hostsPerDatacenter = hostsPerDatacenter;
+    }
+
+    /**
+     * Sets the number of customers.
+     * 
+     * @param   numOfCustomers  the number of customers.
+     */
+    public void setCustomers(int numOfCustomers) {
+        if (numOfCustomers < 1) throw new IllegalArgumentException("The number of customers must be positive.");
+        this.numOfCustomers = numOfCustomers;
+    }
+
+    /**
+     * Sets the number of virtual machines of each customer.
+     * 
+     * @param   vmsPerCustomer  the number of virtual machines of each 
+     *                          customer.
+     */
+    public void setVmsPerCustomer(int vmsPerCustomer) {
+        if (vmsPerCustomer < 1) throw new IllegalArgumentException("The number of virtual machines must be positive.");
+        this.vmsPerCustomer = vmsPerCustomer;
+    }
+
+    /**
+     * Sets the range of latencies of network links.
+     * 
+     * @param   minLatency  the minimum latency.
+     * @param   maxLatency  the maximum latency.
+     */
+    public void setLatency(double minLatency, double maxLatency) {
+        if (minLatency < 0 || maxLatency < minLatency) throw new IllegalArgumentException("Invalid latency range.");
+        this.minLatency = minLatency;
+        this.maxLatency = maxLatency;
+    }
+
+    /**
+     * Sets the bandwidth of network links.
+     * 
+     * @param   bandwidth   the bandwidth.
+     */
+    public void setBandwidth(double bandwidth) {
+        if (bandwidth <= 0) throw new IllegalArgumentException("The bandwidth must be positive.");
+        this.bandwidth = bandwidth;
+    }
+
+    /**
+     * Sets the seed of the random latencies and profile assignments.
+     * 
+     * @param   seed    the seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the registry all datacenters are copied from.
+     * Its name and hosts are ignored; its SAN storages are copied.
+     * 
+     * @param   datacenterTemplate  the datacenter registry.
+     */
+    public void setDatacenterTemplate(DatacenterRegistry datacenterTemplate) {
+        this.datacenterTemplate = datacenterTemplate;
+    }
+
+    /**
+     * Adds a host type.
+     * Its amount is ignored.
+     * 
+     * @param   hostType    the host registry of the type.
+     * @param   weight      the share of hosts of the type.
+     */
+    public void addHostType(HostRegistry hostType, double weight) {
+        checkWeight(weight);
+        hostTypes.add(hostType);
+        hostTypeWeights.add(weight);
+    }
+
+    /**
+     * Adds a virtual machine type.
+     * Its amount is ignored.
+     * 
+     * @param   vmType  the virtual machine registry of the type.
+     * @param   weight  the share of virtual machines of the type.
+     */
+    public void addVmType(VirtualMachineRegistry vmType, double weight) {
+        checkWeight(weight);
+        vmTypes.add(vmType);
+        vmTypeWeights.add(weight);
+    }
+
+    /**
+     * Adds a utilization profile.
+     * 
+     * @param   profile the utilization profile.
+     * @param   weight  the share of customers with the profile.
+     */
+    public void addUtilizationProfile(UtilizationProfile profile, double weight) {
+        checkWeight(weight);
+        profiles.add(profile);
+        profileWeights.add(weight);
+    }
+
+    /**
+     * Sets the value of a setting of the environment, such as 
+     * <code>TimeToSimulate</code>.
+     * 
+     * @param   name    the name of the setting.
+     * @param   value   the value of the setting.
+     */
+    public void setSetting(String name, String value) {
+        settings.put(name, value);
+    }
+
+    /**
+     * Gets the total number of hosts.
+     * 
+     * @return  the total number of hosts.
+     */
+    public long getNumberOfHosts() {
+        return (long) numOfDatacenters * hostsPerDatacenter;
+    }
+
+    /**
+     * Gets the total number of virtual machines.
+     * 
+     * @return  the total number of virtual machines.
+     */
+    public long getNumberOfVms() {
+        return (long) numOfCustomers * vmsPerCustomer;
+    }
+
+    /**
+     * Gets the number of links of the network map.
+     * Every entity is linked to every other entity in both directions.
+     * 
+     * @return  the number of links.
+     */
+    public long getNumberOfLinks() {
+        long entities = numOfDatacenters + numOfCustomers;
+        return entities * (entities - 1);
+    }
+
+    /**
+     * Generates an environment file.
+     * The generated environment becomes the active database.
+     * 
+     * @param   environmentFile the environment file, which must not exist.
+     * @throws  IOException     if the environment cannot be written.
+     */
+    public void generate(File environmentFile) throws IOException {
+        if (environmentFile.exists()) throw new IOException(environmentFile.getPath() + " already exists.");
+        File directory = environmentFile.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+        if (!environmentFile.createNewFile()) throw new IOException(environmentFile.getPath() + " could not be created.");
+        
+        HibernateUtil.setDatabaseDirectory(directory.getPath());
+        HibernateUtil.setActiveDatabase(environmentFile.getName());
+        Database.createDatabase();
+        
+        Connection connection = Database.openConnection();
+        if (connection == null) throw new IOException(environmentFile.getPath() + " could not be opened.");
+        try {
+            connection.setAutoCommit(false);
+            Random random = new Random(seed);
+            updateSettings(connection);
+            insertDatacenters(connection);
+            insertCustomers(connection, random);
+            insertNetworkMap(connection, random);
+            connection.commit();
+        } catch (SQLException ex) {
+            Database.rollbackConnection(connection);
+            Logger.getLogger(EnvironmentGenerator.class.getName()).log(Level.SEVERE, null, ex);
+            throw new IOException(environmentFile.getPath() + " could not be written: " + ex.getMessage());
+        } finally {
+            Database.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Updates the settings that differ from the defaults.
+     * 
+     * @param   connection      the connection to the environment.
+     * @throws  SQLException    if a setting does not exist.
+     */
+    private void updateSettings(Connection connection) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("UPDATE Settings SET Value = ? WHERE Name = ?");
+        try {
+            for (Map.Entry<String, String> setting : settings.entrySet()) {
+                statement.setString(1, setting.getValue());
+                statement.setString(2, setting.getKey());
+                if (statement.executeUpdate() == 0) throw new SQLException("Unknown setting: " + setting.getKey());
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Inserts the datacenters, their SAN storages and their hosts.
+     * 
+     * @param   connection      the connection to the environment.
+     * @throws  SQLException    if a row cannot be inserted.
+     */
+    private void insertDatacenters(Connection connection) throws SQLException {
+        List<HostRegistry> types = hostTypes.isEmpty() ? Collections.singletonList(new HostRegistry()) : hostTypes;
+        int[] amounts = split(hostsPerDatacenter, hostTypes.isEmpty() ? Collections.singletonList(1.0) : hostTypeWeights);
+        DatacenterRegistry dr = datacenterTemplate;
+        
+        PreparedStatement datacenters = connection.prepareStatement("INSERT INTO Datacenters (Id, Name, Architecture, OS, "
+                + "Hypervisor, TimeZone, AllocationPolicy, VmMigration, CostPerSec, CostPerMem, CostPerStorage, CostPerBw, "
+                + "UpperUtilizationThreshold, LowerUtilizationThreshold, SchedulingInterval, MonitoringInterval) "
+                + "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)");
+        PreparedStatement sans = connection.prepareStatement("INSERT INTO SanStorage (Indx, Name, Capacity, Bandwidth, "
+                + "NetworkLatency, DatacenterId) VALUES (?,?,?,?,?,?)");
+        PreparedStatement hosts = connection.prepareStatement("INSERT INTO Hosts (Indx, VmScheduler, NumOfPes, MipsPerPe, "
+                + "MaxPower, StaticPowerPercent, PowerModel, Ram, RamProvisioner, Bandwidth, BwProvisioner, Amount, Storage, "
+                + "PeProvisioner, DatacenterId) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)");
+        try {
+            for (int i = 1; i <= numOfDatacenters; i++) {
+                datacenters.setLong(1, i);
+                datacenters.setString(2, DATACENTER_PREFIX + i);
+                datacenters.setString(3, dr.getArchitecture());
+                datacenters.setString(4, dr.getOs());
+                datacenters.setString(5, dr.getVmm());
+                datacenters.setDouble(6, dr.getTimeZone());
+                datacenters.setString(7, dr.getAllocationPolicyAlias());
+                datacenters.setBoolean(8, dr.isVmMigration());
+                datacenters.setDouble(9, dr.getCostPerSec());
+                datacenters.setDouble(10, dr.getCostPerMem());
+                datacenters.setDouble(11, dr.getCostPerStorage());
+                datacenters.setDouble(12, dr.getCostPerBw());
+                datacenters.setDouble(13, dr.getUpperUtilizationThreshold());
+                datacenters.setDouble(14, dr.getLowerUtilizationThreshold());
+                datacenters.setDouble(15, dr.getSchedulingInterval());
+                datacenters.setDouble(16, dr.getMonitoringInterval());
+                addBatch(datacenters, i);
+                
+                int index = 0;
+                for (SanStorageRegistry san : dr.getSanList()) {
+                    sans.setInt(1, index++);
+                    sans.setString(2, san.getName());
+                    sans.setDouble(3, san.getCapacity());
+                    sans.setDouble(4, san.getBandwidth());
+                    sans.setDouble(5, san.getNetworkLatency());
+                    sans.setLong(6, i);
+                    sans.addBatch();
+                }
+                
+                index = 0;
+                for (int j = 0; j < types.size(); j++) {
+                    if (amounts[j] == 0) continue;
+                    HostRegistry hr = types.get(j);
+                    hosts.setInt(1, index++);
+                    hosts.setString(2, hr.getSchedulingPolicyAlias());
+                    hosts.setInt(3, hr.getNumOfPes());
+                    hosts.setDouble(4, hr.getMipsPerPe());
+                    hosts.setDouble(5, hr.getMaxPower());
+                    hosts.setDouble(6, hr.getStaticPowerPercent());
+                    hosts.setString(7, hr.getPowerModelAlias());
+                    hosts.setInt(8, hr.getRam());
+                    hosts.setString(9, hr.getRamProvisionerAlias());
+                    hosts.setInt(10, hr.getBw());
+                    hosts.setString(11, hr.getBwProvisionerAlias());
+                    hosts.setInt(12, amounts[j]);
+                    hosts.setLong(13, hr.getStorage());
+                    hosts.setString(14, hr.getPeProvisionerAlias());
+                    hosts.setLong(15, i);
+                    hosts.addBatch();
+                }
+            }
+            datacenters.executeBatch();
+            sans.executeBatch();
+            hosts.executeBatch();
+        } finally {
+            datacenters.close();
+            sans.close();
+            hosts.close();
+        }
+    }
+
+    /**
+     * Inserts the customers, their utilization profiles and their virtual
+     * machines.
+     * 
+     * @param   connection      the connection to the environment.
+     * @param   random          the source of the profile assignments.
+     * @throws  SQLException    if a row cannot be inserted.
+     */
+    private void insertCustomers(Connection connection, Random random) throws SQLException {
+        List<VirtualMachineRegistry> types = vmTypes.isEmpty() 
+                                             ? Collections.singletonList(new VirtualMachineRegistry()) : vmTypes;
+        int[] amounts = split(vmsPerCustomer, vmTypes.isEmpty() ? Collections.singletonList(1.0) : vmTypeWeights);
+        List<UtilizationProfile> customerProfiles = assignProfiles(random);
+        
+        PreparedStatement customers = connection.prepareStatement("INSERT INTO Customers (Id, Name) VALUES (?,?)");
+        PreparedStatement utilizationProfiles = connection.prepareStatement("INSERT INTO UtilizationProfiles (Id, "
+                + "BrokerPolicy, NumOfCloudlets, Length, FileSize, OutputSize, CloudletsPesNumber, CPUUtilizationModel, "
+                + "RamUtilizationModel, BwUtilizationModel, TimeToSend) VALUES (?,?,?,?,?,?,?,?,?,?,?)");
+        PreparedStatement vms = connection.prepareStatement("INSERT INTO VirtualMachines (Indx, Size, PesNumber, MIPS, "
+                + "Ram, Bandwidth, Priority, Hypervisor, SchedulingPolicy, Amount, CustomerId) VALUES (?,?,?,?,?,?,?,?,?,?,?)");
+        try {
+            for (int i = 1; i <= numOfCustomers; i++) {
+                customers.setLong(1, i);
+                customers.setString(2, CUSTOMER_PREFIX + i);
+                addBatch(customers, i);
+                
+                //Utilization profiles share the id of their customers
+                UtilizationProfile up = customerProfiles.get(i - 1);
+                utilizationProfiles.setLong(1, i);
+                utilizationProfiles.setString(2, up.getBrokerPolicyAlias());
+                utilizationProfiles.setInt(3, up.getNumOfCloudlets());
+                utilizationProfiles.setLong(4, up.getLength());
+                utilizationProfiles.setLong(5, up.getFileSize());
+                utilizationProfiles.setLong(6, up.getOutputSize());
+                utilizationProfiles.setInt(7, up.getCloudletsPesNumber());
+                utilizationProfiles.setString(8, up.getUtilizationModelCpuAlias());
+                utilizationProfiles.setString(9, up.getUtilizationModelRamAlias());
+                utilizationProfiles.setString(10, up.getUtilizationModelBwAlias());
+                utilizationProfiles.setDouble(11, up.getTimeToSend());
+                addBatch(utilizationProfiles, i);
+                
+                int index = 0;
+                for (int j = 0; j < types.size(); j++) {
+                    if (amounts[j] == 0) continue;
+                    VirtualMachineRegistry vmr = types.get(j);
+                    vms.setInt(1, index++);
+                    vms.setLong(2, vmr.getSize());
+                    vms.setInt(3, vmr.getPesNumber());
+                    vms.setDouble(4, vmr.getMips());
+                    vms.setInt(5, vmr.getRam());
+                    vms.setLong(6, vmr.getBw());
+                    vms.setInt(7, vmr.getPriority());
+                    vms.setString(8, vmr.getVmm());
+                    vms.setString(9, vmr.getSchedulingPolicyAlias());
+                    vms.setInt(10, amounts[j]);
+                    vms.setLong(11, i);
+                    vms.addBatch();
+                }
+                if (i % BATCH_SIZE == 0) vms.executeBatch();
+            }
+            customers.executeBatch();
+            utilizationProfiles.executeBatch();
+            vms.executeBatch();
+        } finally {
+            customers.close();
+            utilizationProfiles.close();
+            vms.close();
+        }
+    }
+
+    /**
+     * Assigns a utilization profile to each customer.
+     * The number of customers of each profile is proportional to its 
+     * weight, and customers are shuffled among profiles.
+     * 
+     * @param   random  the source of the assignments.
+     * @return          the profile of each customer.
+     */
+    private List<UtilizationProfile> assignProfiles(Random random) {
+        List<UtilizationProfile> types = profiles.isEmpty() 
+                                         ? Collections.singletonList(new UtilizationProfile()) : profiles;
+        int[] amounts = split(numOfCustomers, profiles.isEmpty() ? Collections.singletonList(1.0) : profileWeights);
+        List<UtilizationProfile> customerProfiles = new ArrayList<UtilizationProfile>(numOfCustomers);
+        for (int j = 0; j < types.size(); j++) {
+            for (int k = 0; k < amounts[j]; k++) customerProfiles.add(types.get(j));
+        }
+        Collections.shuffle(customerProfiles, random);
+        return customerProfiles;
+    }
+
+    /**
+     * Inserts the network map, which links every entity to every other
+     * entity in both directions.
+     * Both directions of a link have the same latency.
+     * 
+     * @param   connection      the connection to the environment.
+     * @param   random          the source of the latencies.
+     * @throws  SQLException    if a row cannot be inserted.
+     */
+    private void insertNetworkMap(Connection connection, Random random) throws SQLException {
+        List<String> names = new ArrayList<String>(numOfDatacenters + numOfCustomers);
+        for (int i = 1; i <= numOfDatacenters; i++) names.add(DATACENTER_PREFIX + i);
+        for (int i = 1; i <= numOfCustomers; i++) names.add(CUSTOMER_PREFIX + i);
+        
+        PreparedStatement links = connection.prepareStatement("INSERT INTO NetworkMap (Source, Destination, "
+                + "Bandwidth, Latency) VALUES (?,?,?,?)");
+        try {
+            long batchedRows = 0;
+            for (int i = 0; i < names.size(); i++) {
+                for (int j = i + 1; j < names.size(); j++) {
+                    double latency = minLatency + random.nextDouble() * (maxLatency - minLatency);
+                    addLink(links, names.get(i), names.get(j), latency);
+                    addLink(links, names.get(j), names.get(i), latency);
+                    batchedRows += 2;
+                    if (batchedRows % BATCH_SIZE == 0) links.executeBatch();
+                }
+            }
+            links.executeBatch();
+        } finally {
+            links.close();
+        }
+    }
+
+    /**
+     * Adds a network link to a batch.
+     * 
+     * @param   links           the statement that inserts links.
+     * @param   source          the name of the source entity.
+     * @param   destination     the name of the destination entity.
+     * @param   latency         the latency of the link.
+     * @throws  SQLException    if the link cannot be added.
+     */
+    private void addLink(PreparedStatement links, String source, String destination, double latency) throws SQLException {
+        links.setString(1, source);
+        links.setString(2, destination);
+        links.setDouble(3, bandwidth);
+        links.setDouble(4, latency);
+        links.addBatch();
+    }
+
+    /**
+     * Adds the current parameters of a statement to its batch and executes
+     * the batch if it is full.
+     * 
+     * @param   statement       the statement.
+     * @param   row             the number of the row, starting from 1.
+     * @throws  SQLException    if the batch cannot be executed.
+     */
+    private static void addBatch(PreparedStatement statement, int row) throws SQLException {
+        statement.addBatch();
+        if (row % BATCH_SIZE == 0) statement.executeBatch();
+    }
+
+    /**
+     * Splits a total among shares proportionally to their weights.
+     * Remainders are given to the shares with the largest fractional parts,
+     * so the amounts always add up to the total.
+     * 
+     * @param   total   the total.
+     * @param   weights the weights of the shares.
+     * @return          the amount of each share.
+     */
+    private static int[] split(int total, List<Double> weights) {
+        double sum = 0;
+        for (double weight : weights) sum += weight;
+        
+        int[] amounts = new int[weights.size()];
+        double[] remainders = new double[weights.size()];
+        int assigned = 0;
+        for (int j = 0; j < amounts.length; j++) {
+            double exact = total * weights.get(j) / sum;
+            amounts[j] = (int) Math.floor(exact);
+            remainders[j] = exact - amounts[j];
+            assigned += amounts[j];
+        }
+        for (; assigned < total; assigned++) {
+            int largest = 0;
+            for (int j = 1; j < remainders.length; j++) {
+                if (remainders[j] > remainders[largest]) largest = j;
+            }
+            amounts[largest]++;
+            remainders[largest] = -1;
+        }
+        return amounts;
+    }
+
+    /**
+     * Checks whether a weight is valid.
+     * 
+     * @param   weight  the weight.
+     */
+    private static void checkWeight(double weight) {
+        if (!(weight > 0) || Double.isInfinite(weight)) throw new IllegalArgumentException("Weights must be positive.");
+    }
+
+    /**
+     * Creates a generator described by properties.
+     * 
+     * @param   properties  the properties, as described in 
+     *                      {@link EnvironmentGenerator}.
+     * @return              the generator.
+     * @throws  IllegalArgumentException    if a property is invalid.
+     */
+    public static EnvironmentGenerator fromProperties(Properties properties) {
+        EnvironmentGenerator generator = new EnvironmentGenerator();
+        generator.setDatacenters(getInt(properties, "datacenters", generator.numOfDatacenters));
+        generator.setHostsPerDatacenter(getInt(properties, "hostsPerDatacenter", generator.hostsPerDatacenter));
+        generator.setCustomers(getInt(properties, "customers", generator.numOfCustomers));
+        generator.setVmsPerCustomer(getInt(properties, "vmsPerCustomer", generator.vmsPerCustomer));
+        generator.setLatency(getDouble(properties, "latency.min", generator.minLatency),
+                             getDouble(properties, "latency.max", generator.maxLatency));
+        generator.setBandwidth(getDouble(properties, "bandwidth", generator.bandwidth));
+        generator.setSeed(Long.parseLong(properties.getProperty("seed", String.valueOf(generator.seed)).trim()));
+        
+        DatacenterRegistry dr = generator.datacenterTemplate;
+        dr.setAllocationPolicyAlias(properties.getProperty("allocationPolicy", dr.getAllocationPolicyAlias()));
+        dr.setVmMigration(Boolean.parseBoolean(properties.getProperty("vmMigration", String.valueOf(dr.isVmMigration()))));
+        dr.setUpperUtilizationThreshold(getDouble(properties, "upperUtilizationThreshold", dr.getUpperUtilizationThreshold()));
+        dr.setLowerUtilizationThreshold(getDouble(properties, "lowerUtilizationThreshold", dr.getLowerUtilizationThreshold()));
+        dr.setSchedulingInterval(getDouble(properties, "schedulingInterval", dr.getSchedulingInterval()));
+        dr.setMonitoringInterval(getDouble(properties, "monitoringInterval", dr.getMonitoringInterval()));
+        
+        for (String type : getList(properties, "hostTypes")) {
+            String prefix = "hostType." + type + ".";
+            HostRegistry hr = new HostRegistry();
+            hr.setNumOfPes(getInt(properties, prefix + "numOfPes", hr.getNumOfPes()));
+            hr.setMipsPerPe(getDouble(properties, prefix + "mipsPerPe", hr.getMipsPerPe()));
+            hr.setRam(getInt(properties, prefix + "ram", hr.getRam()));
+            hr.setBw(getInt(properties, prefix + "bw", hr.getBw()));
+            hr.setStorage(Long.parseLong(properties.getProperty(prefix + "storage", String.valueOf(hr.getStorage())).trim()));
+            hr.setMaxPower(getDouble(properties, prefix + "maxPower", hr.getMaxPower()));
+            hr.setStaticPowerPercent(getDouble(properties, prefix + "staticPowerPercent", hr.getStaticPowerPercent()));
+            hr.setPowerModelAlias(properties.getProperty(prefix + "powerModel", hr.getPowerModelAlias()));
+            hr.setSchedulingPolicyAlias(properties.getProperty(prefix + "vmScheduler", hr.getSchedulingPolicyAlias()));
+            generator.addHostType(hr, getDouble(properties, prefix + "weight", 1));
+        }
+        
+        for (String type : getList(properties, "vmTypes")) {
+            String prefix = "vmType." + type + ".";
+            VirtualMachineRegistry vmr = new VirtualMachineRegistry();
+            vmr.setPesNumber(getInt(properties, prefix + "pesNumber", vmr.getPesNumber()));
+            vmr.setMips(getDouble(properties, prefix + "mips", vmr.getMips()));
+            vmr.setRam(getInt(properties, prefix + "ram", vmr.getRam()));
+            vmr.setBw(Long.parseLong(properties.getProperty(prefix + "bw", String.valueOf(vmr.getBw())).trim()));
+            vmr.setSize(Long.parseLong(properties.getProperty(prefix + "size", String.valueOf(vmr.getSize())).trim()));
+            vmr.setSchedulingPolicyAlias(properties.getProperty(prefix + "cloudletScheduler", vmr.getSchedulingPolicyAlias()));
+            generator.addVmType(vmr, getDouble(properties, prefix + "weight", 1));
+        }
+        
+        for (String name : getList(properties, "profiles")) {
+            String prefix = "profile." + name + ".";
+            UtilizationProfile up = new UtilizationProfile();
+            up.setBrokerPolicyAlias(properties.getProperty(prefix + "brokerPolicy", up.getBrokerPolicyAlias()));
+            up.setNumOfCloudlets(getInt(properties, prefix + "numOfCloudlets", up.getNumOfCloudlets()));
+            up.setLength(Long.parseLong(properties.getProperty(prefix + "length", String.valueOf(up.getLength())).trim()));
+            up.setFileSize(Long.parseLong(properties.getProperty(prefix + "fileSize", String.valueOf(up.getFileSize())).trim()));
+            up.setOutputSize(Long.parseLong(properties.getProperty(prefix + "outputSize", String.valueOf(up.getOutputSize())).trim()));
+            up.setCloudletsPesNumber(getInt(properties, prefix + "cloudletsPesNumber", up.getCloudletsPesNumber()));
+            up.setUtilizationModelCpuAlias(properties.getProperty(prefix + "cpuUtilizationModel", up.getUtilizationModelCpuAlias()));
+            up.setUtilizationModelRamAlias(properties.getProperty(prefix + "ramUtilizationModel", up.getUtilizationModelRamAlias()));
+            up.setUtilizationModelBwAlias(properties.getProperty(prefix + "bwUtilizationModel", up.getUtilizationModelBwAlias()));
+            up.setTimeToSend(getDouble(properties, prefix + "timeToSend", up.getTimeToSend()));
+            generator.addUtilizationProfile(up, getDouble(properties, prefix + "weight", 1));
+        }
+        
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(SETTING_PREFIX)) {
+                generator.setSetting(key.substring(SETTING_PREFIX.length()), properties.getProperty(key).trim());
+            }
+        }
+        return generator;
+    }
+
+    /**
+     * Gets an integer property.
+     * 
+     * @param   properties      the properties.
+     * @param   key             the key of the property.
+     * @param   defaultValue    the value used if the property is missing.
+     * @return                  the value of the property.
+     */
+    private static int getInt(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Gets a real property.
+     * 
+     * @param   properties      the properties.
+     * @param   key             the key of the property.
+     * @param   defaultValue    the value used if the property is missing.
+     * @return                  the value of the property.
+     */
+    private static double getDouble(Properties properties, String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    /**
+     * Gets a comma-separated list property.
+     * 
+     * @param   properties  the properties.
+     * @param   key         the key of the property.
+     * @return              the elements of the list; an empty list if the
+     *                      property is missing.
+     */
+    private static List<String> getList(Properties properties, String key) {
+        List<String> elements = new ArrayList<String>();
+        String value = properties.getProperty(key);
+        if (value == null) return elements;
+        for (String element : value.split(",")) {
+            if (element.trim().length() > 0) elements.add(element.trim());
+        }
+        return elements;
+    }
+}
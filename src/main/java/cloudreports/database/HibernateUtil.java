@@ -36,6 +36,9 @@ public class HibernateUtil {
     
     /** The current active database. */
     private static String activeDatabase;
+    
+    /** The directory that contains the databases. */
+    private static String databaseDirectory = "db/";
 
     /** 
      * Provides an opened database session.
@@ -83,6 +86,27 @@ public class HibernateUtil {
         return activeDatabase.replace(".cre", "");
     }
 
+    /** 
+     * Gets the directory that contains the databases.
+     *
+     * @return  the database directory, ending with a separator.
+     * @since   1.2
+     */         
+    public static String getDatabaseDirectory() {
+        return databaseDirectory;
+    }
+
+    /** 
+     * Sets the directory that contains the databases.
+     * It takes effect the next time the active database is set.
+     *
+     * @param   directory   the database directory.
+     * @since               1.2
+     */         
+    public static void setDatabaseDirectory(String directory) {
+        databaseDirectory = directory.endsWith("/") ? directory : directory + "/";
+    }
+
     /** 
      * Sets the active database.
      * It changes the active database and builds a new session factory for it.
@@ -98,7 +122,7 @@ public class HibernateUtil {
         cfg.configure();
         System.setProperty("hibernate.connection.driver_class", "org.sqlite.JDBC");
         System.setProperty("hibernate.dialect", "cloudreports.database.SQLiteDialect");
-        System.setProperty("hibernate.connection.url", "jdbc:sqlite:db/" + activeDatabase);
+        System.setProperty("hibernate.connection.url", "jdbc:sqlite:" + databaseDirectory + activeDatabase);
         cfg.setProperties(System.getProperties());
         sessionFactory = cfg.buildSessionFactory();
     }
@@ -22,6 +22,7 @@ package cloudreports.enums;
 import cloudreports.extensions.ExtensionsLoader;
 import cloudreports.extensions.brokers.RoundRobinDatacenterBroker;
 import java.io.Serializable;
+import java.lang.reflect.Constructor;
 import java.util.Arrays;
 import java.util.List;
 import org.cloudbus.cloudsim.DatacenterBroker;
@@ -53,6 +54,17 @@ public enum BrokerPolicy implements Serializable {
             }
 
         }
+
+        @Override
+        public DatacenterBroker createBroker(String customerName, String brokerAlias,
+                                             int numOfCloudlets, long maxLengthOfCloudlets) {
+            try{
+                return new RoundRobinDatacenterBroker(customerName, numOfCloudlets, maxLengthOfCloudlets);
+            }
+            catch(Exception e) {
+                return null;
+            }
+        }
     },
     
     /** The extension type. 
@@ -70,6 +82,31 @@ public enum BrokerPolicy implements Serializable {
                 return null;
             }
         }
+
+        @Override
+        public DatacenterBroker createBroker(String customerName, String brokerAlias,
+                                             int numOfCloudlets, long maxLengthOfCloudlets) {
+            Constructor<?> constructor;
+            try{
+                Class<?>[] types = new Class<?>[]{String.class, int.class, long.class};
+                constructor = ExtensionsLoader.getExtensionConstructor("Broker", brokerAlias, types);
+            }
+            catch(NoSuchMethodException e) {
+                //Older extensions only take the name of the customer
+                return createBroker(customerName, brokerAlias);
+            }
+            catch(Exception e) {
+                return null;
+            }
+            if(constructor == null) return null;
+
+            try{
+                return (DatacenterBroker) constructor.newInstance(customerName, numOfCloudlets, maxLengthOfCloudlets);
+            }
+            catch(Exception e) {
+                return null;
+            }
+        }
     };
     
     /** 
@@ -82,6 +119,24 @@ public enum BrokerPolicy implements Serializable {
      */      
     public abstract DatacenterBroker createBroker(String customerName, String brokerAlias);
 
+    /** 
+     * Creates a broker that does not read the cloudlets of its customer
+     * from the database.
+     *
+     * @param   customerName            the name of the customer this broker
+     *                                  policy relates to.
+     * @param   brokerAlias             the alias of the broker policy.
+     * @param   numOfCloudlets          the number of cloudlets of the
+     *                                  customer.
+     * @param   maxLengthOfCloudlets    the maximum length of the cloudlets
+     *                                  of the customer.
+     * @return                          a CloudSim's DatacenterBroker subtype.
+     * @see                             cloudreports.extensions.brokers.Broker#Broker(String, int, long)
+     * @since                           1.2
+     */      
+    public abstract DatacenterBroker createBroker(String customerName, String brokerAlias,
+                                                  int numOfCloudlets, long maxLengthOfCloudlets);
+
     /** 
      * Gets an instance of broker policy based on its alias.
      *
@@ -22,9 +22,9 @@ package cloudreports.enums;
 import cloudreports.dao.RandomNumberDAO;
 import cloudreports.models.RandomNumber;
 import cloudreports.utils.RandomNumberGenerator;
+import cloudreports.utils.RandomStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 /**
  * Defines types of random numbers sources.
@@ -38,18 +38,19 @@ import java.util.Random;
 public enum RandomNumbersFactory {
     
     /** 
-     * Generates pseudo-random numbers using the {@link Random} class.
+     * Generates pseudo-random numbers using the seeded stream of the current
+     * simulation.
      * 
-     * @see Random
+     * @see RandomStream
      */       
     JAVA(0) {
 
         @Override
         public List<Double> getRandomNumbers(int amount) {
-            List<Double> randomNumbers = new ArrayList<Double>();
-            Random random = new Random();
+            List<Double> randomNumbers = new ArrayList<Double>(amount);
+            RandomStream stream = RandomNumberGenerator.getStream(name());
             for(int i = 0; i < amount; i++) {
-                randomNumbers.add(random.nextDouble());
+                randomNumbers.add(stream.nextDouble());
             }
             return randomNumbers;
         }
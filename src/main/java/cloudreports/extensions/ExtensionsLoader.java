@@ -22,11 +22,15 @@ package cloudreports.extensions;
 import cloudreports.utils.FileIO;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.parsers.DocumentBuilder;
@@ -59,6 +63,11 @@ public class ExtensionsLoader {
     
     /** The classnames document. */
     private static Document classnamesXml = getClassnamesXml();
+    
+    /** The constructors of the extensions that have already been loaded,
+     *  indexed by type, alias and constructor types.
+     */
+    private static Map<String, Constructor<?>> constructors = new ConcurrentHashMap<String, Constructor<?>>();
 
     /** 
      * Loads an extension file.
@@ -137,6 +146,42 @@ public class ExtensionsLoader {
      * @since                           1.0
      */      
     public static Object getExtension(String type, String alias, Class<?>[] constructorTypes, Object[] constructorArguments) {
+        boolean hasArguments = constructorTypes != null && constructorArguments != null;
+        try {
+            Constructor<?> constructor = getExtensionConstructor(type, alias, hasArguments ? constructorTypes : new Class<?>[0]);
+            if(constructor == null) return null;
+            
+            if(hasArguments) return constructor.newInstance(constructorArguments);
+            else return constructor.newInstance();
+            
+        } catch (Exception ex) {
+            Logger.getLogger(ExtensionsLoader.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+    }
+
+    /** 
+     * Gets the constructor of a specific user-implemented extension class 
+     * based on its base class and its alias.
+     * The extension file is looked up and loaded only the first time a
+     * constructor is requested; later requests are served from a cache.
+     *
+     * @param   type		            the type of the extension.
+     * @param   alias                   the alias of the extension.
+     * @param   constructorTypes        the types used by the constructor of the
+     *                                  extension class.
+     * @return                          the constructor of the extension class;
+     *                                  or <code>null</code> if the extension
+     *                                  could not be found.
+     * @throws  Exception               if the extension class could not be
+     *                                  loaded.
+     * @since                           1.2
+     */      
+    public static Constructor<?> getExtensionConstructor(String type, String alias, Class<?>[] constructorTypes) throws Exception {
+        String key = type + "/" + alias + Arrays.toString(constructorTypes);
+        Constructor<?> constructor = constructors.get(key);
+        if(constructor != null) return constructor;
+        
         String filename = getFileName(type, alias);
         String classname = getClassnameOfExtension(type, alias);
         if(filename == null || classname == null) return null;        
@@ -144,18 +189,12 @@ public class ExtensionsLoader {
         File extensionFile = new File(extensionsPath + "/" + filename);
         if(!extensionFile.exists() || !extensionFile.isFile()) return null;
         
-        try {
+        synchronized(ExtensionsLoader.class) {
             addFile(extensionFile.getCanonicalPath());
-            
-            if(constructorTypes != null && constructorArguments != null) 
-                return ClassLoader.getSystemClassLoader().loadClass(classname).getConstructor(constructorTypes).newInstance(constructorArguments);            
-            
-            else return ClassLoader.getSystemClassLoader().loadClass(classname).getConstructor().newInstance();
-            
-        } catch (Exception ex) {
-            Logger.getLogger(ExtensionsLoader.class.getName()).log(Level.SEVERE, null, ex);
-            return null;
         }
+        constructor = ClassLoader.getSystemClassLoader().loadClass(classname).getConstructor(constructorTypes);
+        constructors.put(key, constructor);
+        return constructor;
     }
 
     /** 
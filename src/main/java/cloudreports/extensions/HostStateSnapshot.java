@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ *
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.extensions;
+
+import java.util.List;
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.power.PowerHost;
+
+/**
+ * The state of the hosts of a datacenter at a simulated instant.
+ * The used CPU, RAM and bandwidth, the power consumption and the activity of
+ * each host are kept in primitive arrays indexed by the host's position in
+ * the datacenter, so the datacenter, the data collector and the allocation
+ * policy read the same figures without asking each host, and the power
+ * model of each host is evaluated once per update.
+ * <p>
+ * The datacenter updates the snapshot right after its virtual machines are
+ * processed and whenever a host changes during the update, and invalidates
+ * it when hosts change outside the update. An invalid snapshot is read
+ * again from the hosts when it is requested.
+ *
+ * @see         PowerDatacenter#getHostStateSnapshot()
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class HostStateSnapshot {
+
+    /** The hosts of the datacenter. */
+    private List<PowerHost> hostList;
+
+    /** The used MIPS of each host. */
+    private double[] cpuUtilization;
+
+    /** The used RAM of each host. */
+    private double[] ramUtilization;
+
+    /** The used bandwidth of each host. */
+    private double[] bwUtilization;
+
+    /** The power consumption of each host. */
+    private double[] power;
+
+    /** Indicates whether each host uses CPU and RAM. */
+    private boolean[] active;
+
+    /** Indicates whether the snapshot matches the hosts. */
+    private boolean valid;
+
+    /**
+     * Creates an invalid snapshot of the hosts of a datacenter.
+     *
+     * @param   hostList    the hosts of the datacenter.
+     * @since               1.2
+     */
+    public HostStateSnapshot(List<PowerHost> hostList) {
+        int numOfHosts = hostList.size();
+        this.hostList = hostList;
+        this.cpuUtilization = new double[numOfHosts];
+        this.ramUtilization = new double[numOfHosts];
+        this.bwUtilization = new double[numOfHosts];
+        this.power = new double[numOfHosts];
+        this.active = new boolean[numOfHosts];
+        this.valid = false;
+    }
+
+    /**
+     * Reads the state of all hosts.
+     *
+     * @since   1.2
+     */
+    public void update() {
+        for(int i = 0; i < hostList.size(); i++) {
+            read(i);
+        }
+        valid = true;
+    }
+
+    /**
+     * Reads the state of a host again, if the snapshot is valid.
+     *
+     * @param   host    the host that has changed.
+     * @since           1.2
+     */
+    public void update(Host host) {
+        if(!valid || host == null) return;
+        int hostIndex = indexOf(host);
+        if(hostIndex >= 0) read(hostIndex);
+    }
+
+    /**
+     * Marks the snapshot as outdated.
+     *
+     * @since   1.2
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Indicates whether the snapshot matches the hosts.
+     *
+     * @return  <code>true</code> if the snapshot is valid;
+     *          <code>false</code> otherwise.
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Gets the number of hosts of this snapshot.
+     *
+     * @return  the number of hosts.
+     */
+    public int getNumOfHosts() {
+        return hostList.size();
+    }
+
+    /**
+     * Gets the position of a host.
+     *
+     * @param   host    the host.
+     * @return          the position of the host; or <code>-1</code> if the
+     *                  host is not part of this snapshot.
+     * @since           1.2
+     */
+    public int indexOf(Host host) {
+        int hostId = host.getId();
+        //Hosts are usually numbered by their position
+        if(hostId >= 0 && hostId < hostList.size() && hostList.get(hostId) == host) return hostId;
+        for(int i = 0; i < hostList.size(); i++) {
+            if(hostList.get(i) == host) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the used MIPS of a host.
+     *
+     * @param   hostIndex   the position of the host.
+     * @return              the used MIPS.
+     */
+    public double getCpuUtilization(int hostIndex) {
+        return cpuUtilization[hostIndex];
+    }
+
+    /**
+     * Gets the used RAM of a host.
+     *
+     * @param   hostIndex   the position of the host.
+     * @return              the used RAM.
+     */
+    public double getRamUtilization(int hostIndex) {
+        return ramUtilization[hostIndex];
+    }
+
+    /**
+     * Gets the used bandwidth of a host.
+     *
+     * @param   hostIndex   the position of the host.
+     * @return              the used bandwidth.
+     */
+    public double getBwUtilization(int hostIndex) {
+        return bwUtilization[hostIndex];
+    }
+
+    /**
+     * Gets the power consumption of a host.
+     *
+     * @param   hostIndex   the position of the host.
+     * @return              the power consumption.
+     */
+    public double getPower(int hostIndex) {
+        return power[hostIndex];
+    }
+
+    /**
+     * Indicates whether a host uses CPU and RAM.
+     *
+     * @param   hostIndex   the position of the host.
+     * @return              <code>true</code> if the host is active;
+     *                      <code>false</code> otherwise.
+     */
+    public boolean isActive(int hostIndex) {
+        return active[hostIndex];
+    }
+
+    /**
+     * Reads the state of a host.
+     *
+     * @param   hostIndex   the position of the host.
+     */
+    private void read(int hostIndex) {
+        PowerHost host = hostList.get(hostIndex);
+        cpuUtilization[hostIndex] = host.getUtilizationOfCpuMips();
+        ramUtilization[hostIndex] = host.getUtilizationOfRam();
+        bwUtilization[hostIndex] = host.getUtilizationOfBw();
+        power[hostIndex] = host.getPower();
+        active[hostIndex] = cpuUtilization[hostIndex] / host.getTotalMips() > 0
+                            && ramUtilization[hostIndex] / host.getRam() > 0;
+    }
+}
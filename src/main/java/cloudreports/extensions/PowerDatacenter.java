@@ -20,13 +20,16 @@
 package cloudreports.extensions;
 
 import cloudreports.extensions.vmallocationpolicies.VmAllocationPolicyExtensible;
+import cloudreports.extensions.vmallocationpolicies.VmAllocationPolicySingleThreshold;
 import cloudreports.models.Migration;
+import cloudreports.reports.PhaseTimer;
 import cloudreports.simulation.Simulation;
 import java.util.List;
 import java.util.Map;
 import org.cloudbus.cloudsim.*;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
+import org.cloudbus.cloudsim.core.SimEvent;
 import org.cloudbus.cloudsim.core.predicates.PredicateType;
 import org.cloudbus.cloudsim.power.PowerHost;
 
@@ -44,6 +47,9 @@ public class PowerDatacenter extends org.cloudbus.cloudsim.power.PowerDatacenter
     
     /** The last time data was collected. */
     private double lastMonitoringTime;
+    
+    /** The state of the hosts at the last update. */
+    private HostStateSnapshot hostStateSnapshot;
 
     /** 
      * A new constructor that sets the monitoring interval and the last monitoring
@@ -64,6 +70,7 @@ public class PowerDatacenter extends org.cloudbus.cloudsim.power.PowerDatacenter
         super(name,characteristics,vmAllocationPolicy,storageList, schedulingInterval);
         this.monitoringInterval = monitoringInterval;
         this.lastMonitoringTime = 0;
+        this.hostStateSnapshot = new HostStateSnapshot(this.<PowerHost>getHostList());
     }
 
     /** 
@@ -84,20 +91,18 @@ public class PowerDatacenter extends org.cloudbus.cloudsim.power.PowerDatacenter
 
         // if some time passed since last processing
         if (currentTime > getLastProcessTime()) {
+            PhaseTimer phaseTimer = Simulation.getDataCollector().getPhaseTimer();
+            phaseTimer.count(PhaseTimer.DATACENTER_UPDATES, 1);
             double timeDiff = currentTime - getLastProcessTime();
             double minTime = Double.MAX_VALUE;
 
             Log.printLine("\n");
 
-            for (PowerHost host : this.<PowerHost>getHostList()) {
-                double hostPower = 0.0;
-                if (host.getUtilizationOfCpu() > 0) {
-                    try {
-                        hostPower = host.getPower() * timeDiff;
-                        timeframePower += hostPower;
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
+            //The hosts have not changed since the last update, unless the snapshot is invalid
+            HostStateSnapshot hostStates = getHostStateSnapshot();
+            for (int i = 0; i < hostStates.getNumOfHosts(); i++) {
+                if (hostStates.getCpuUtilization(i) > 0) {
+                    timeframePower += hostStates.getPower(i) * timeDiff;
                 }
             }
 
@@ -107,6 +112,8 @@ public class PowerDatacenter extends org.cloudbus.cloudsim.power.PowerDatacenter
                     minTime = time;
                 }
             }
+            invalidateHostStates();
+            hostStates.update();
             setPower(getPower() + timeframePower);
             
             if((currentTime - this.lastMonitoringTime) >= this.getMonitoringInterval()) {
@@ -115,7 +122,10 @@ public class PowerDatacenter extends org.cloudbus.cloudsim.power.PowerDatacenter
                 if (!isDisableMigrations()) {
 
                     //Get VM migration list according to active policies
+                    long planningStartTime = phaseTimer.start();
                     List<Migration> migrationList = ((VmAllocationPolicyExtensible) getVmAllocationPolicy()).getListOfMigrationsToBeExecuted(getVmList());
+                    phaseTimer.stop(PhaseTimer.MIGRATION_PLANNING, planningStartTime);
+                    phaseTimer.count(PhaseTimer.MIGRATIONS, migrationList.size());
 
                     for (Migration migration : migrationList) {
                         Vm vm = migration.getVm();
@@ -124,6 +134,8 @@ public class PowerDatacenter extends org.cloudbus.cloudsim.power.PowerDatacenter
                         migration.setTime(CloudSim.clock());
 
                         targetHost.addMigratingInVm(vm);
+                        hostStates.update(targetHost);
+                        hostStates.update(oldHost);
 
                         if (oldHost == null) {
                             Log.formatLine("%.2f: Migration of VM #%d to Host #%d has started", CloudSim.clock(), vm.getId(), targetHost.getId());
@@ -143,7 +155,9 @@ public class PowerDatacenter extends org.cloudbus.cloudsim.power.PowerDatacenter
                 }
                 
                 //Collect monitored used resources
-                Simulation.getDataCollector().collectMonitoredUsedResources();
+                long monitoringStartTime = phaseTimer.start();
+                Simulation.getDataCollector().collectMonitoredUsedResources(this);
+                phaseTimer.stop(PhaseTimer.DATA_COLLECTION, monitoringStartTime);
             }
 
             // schedules an event to the next time
@@ -153,7 +167,95 @@ public class PowerDatacenter extends org.cloudbus.cloudsim.power.PowerDatacenter
             }
 
             setLastProcessTime(currentTime);
-            Simulation.getDataCollector().collectData();
+            long collectionStartTime = phaseTimer.start();
+            Simulation.getDataCollector().collectData(this);
+            phaseTimer.stop(PhaseTimer.DATA_COLLECTION, collectionStartTime);
+        }
+    }
+    
+    /**
+     * Gets the state of the hosts of this datacenter.
+     * The state is read again from the hosts if they have changed since the
+     * last update.
+     *
+     * @return  the state of the hosts.
+     * @since   1.2
+     */
+    public HostStateSnapshot getHostStateSnapshot() {
+        if (!hostStateSnapshot.isValid()) {
+            hostStateSnapshot.update();
+        }
+        return hostStateSnapshot;
+    }
+
+    /** 
+     * An overridden version of the method that invalidates the state of the
+     * hosts after a virtual machine is created.
+     *
+     * @param   ev      the event.
+     * @param   ack     indicates whether the event must be acknowledged.
+     * @since           1.2
+     */       
+    @Override
+    protected void processVmCreate(SimEvent ev, boolean ack) {
+        super.processVmCreate(ev, ack);
+        hostStateSnapshot.invalidate();
+    }
+
+    /** 
+     * An overridden version of the method that invalidates the state of the
+     * hosts after a virtual machine is destroyed.
+     *
+     * @param   ev      the event.
+     * @param   ack     indicates whether the event must be acknowledged.
+     * @since           1.2
+     */       
+    @Override
+    protected void processVmDestroy(SimEvent ev, boolean ack) {
+        super.processVmDestroy(ev, ack);
+        hostStateSnapshot.invalidate();
+    }
+
+    /** 
+     * An overridden version of the method that invalidates the state of the
+     * hosts after a migration is completed.
+     *
+     * @param   ev      the event.
+     * @param   ack     indicates whether the event must be acknowledged.
+     * @since           1.2
+     */       
+    @Override
+    protected void processVmMigrate(SimEvent ev, boolean ack) {
+        super.processVmMigrate(ev, ack);
+        hostStateSnapshot.invalidate();
+    }
+
+    /** 
+     * An overridden version of the method that invalidates the state and the
+     * free capacity of the hosts after their virtual machines are processed
+     * outside {@link #updateCloudletProcessing()}.
+     *
+     * @return  the time of the next event.
+     * @since   1.2
+     */       
+    @Override
+    protected double updateCloudetProcessingWithoutSchedulingFutureEventsForce() {
+        double time = super.updateCloudetProcessingWithoutSchedulingFutureEventsForce();
+        invalidateHostStates();
+        return time;
+    }
+
+    /** 
+     * Invalidates the state of the hosts and the free capacity recorded by
+     * the allocation policy.
+     * Processing the virtual machines reallocates the MIPS of dynamic
+     * workloads, which changes the utilization of the hosts and may free
+     * capacity.
+     */       
+    private void invalidateHostStates() {
+        hostStateSnapshot.invalidate();
+        if (getVmAllocationPolicy() instanceof VmAllocationPolicySingleThreshold) {
+            ((VmAllocationPolicySingleThreshold) getVmAllocationPolicy()).invalidateHostCapacities();
         }
     }
     
@@ -19,8 +19,8 @@
 
 package cloudreports.extensions.brokers;
 
+import cloudreports.business.CustomerRegistryBusiness;
 import cloudreports.business.SettingBusiness;
-import cloudreports.dao.CustomerRegistryDAO;
 import cloudreports.dao.SettingDAO;
 import cloudreports.enums.BrokerPolicy;
 import cloudreports.models.CustomerRegistry;
@@ -51,18 +51,37 @@ public abstract class Broker extends DatacenterBroker {
     
     /** 
      * Initializes a new instance of this class with the given name.
+     * The cloudlets of the customer are read from the database, so this
+     * constructor is only kept for extensions that do not implement
+     * {@link #Broker(String, int, long)}.
      *
      * @param   name    the name of the broker.
      * @since           1.0
      */     
     public Broker(String name) throws Exception {
         super(name);
-        CustomerRegistryDAO crDAO = new CustomerRegistryDAO();
-        CustomerRegistry cr = crDAO.getCustomerRegistry(name);
+        CustomerRegistry cr = CustomerRegistryBusiness.getCustomerRegistry(name);
         this.cloudletId = cr.getUtilizationProfile().getNumOfCloudlets();
         this.maxLengthOfCloudlets = cr.getUtilizationProfile().getLength();
     }
 
+    /** 
+     * Initializes a new instance of this class with the given name and the
+     * cloudlets of its customer.
+     *
+     * @param   name                    the name of the broker.
+     * @param   numOfCloudlets          the number of cloudlets of the 
+     *                                  customer.
+     * @param   maxLengthOfCloudlets    the maximum length of the cloudlets
+     *                                  of the customer.
+     * @since                           1.2
+     */     
+    public Broker(String name, int numOfCloudlets, long maxLengthOfCloudlets) throws Exception {
+        super(name);
+        this.cloudletId = numOfCloudlets;
+        this.maxLengthOfCloudlets = maxLengthOfCloudlets;
+    }
+
     /** 
      * Processes the characteristics of datacenters assigned to this broker.
      *
@@ -131,7 +150,7 @@ public abstract class Broker extends DatacenterBroker {
             cloudletsSubmitted -= 1;
             
             Cloudlet newCloudlet = new Cloudlet(this.cloudletId,
-                                                (long) ((long)this.maxLengthOfCloudlets *  RandomNumberGenerator.getRandomNumbers(1).get(0)),
+                                                (long) ((long)this.maxLengthOfCloudlets *  RandomNumberGenerator.nextDouble(getName())),
                                                 cloudlet.getNumberOfPes(),
                                                 cloudlet.getCloudletLength(),
                                                 cloudlet.getCloudletOutputSize(),
@@ -47,6 +47,22 @@ public class RoundRobinDatacenterBroker extends Broker {
         this.currentId=0;
     }
 
+    /** 
+     * Initializes a new instance of this class with the given name and the
+     * cloudlets of its customer.
+     *
+     * @param   name                    the name of the broker.
+     * @param   numOfCloudlets          the number of cloudlets of the 
+     *                                  customer.
+     * @param   maxLengthOfCloudlets    the maximum length of the cloudlets
+     *                                  of the customer.
+     * @since                           1.2
+     */      
+    public RoundRobinDatacenterBroker(String name, int numOfCloudlets, long maxLengthOfCloudlets) throws Exception {
+        super(name, numOfCloudlets, maxLengthOfCloudlets);
+        this.currentId=0;
+    }
+
     /** 
      * Gets an id of a datacenter managed by this broker.
      *
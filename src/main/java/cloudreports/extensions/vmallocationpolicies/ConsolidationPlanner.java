@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ *
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.extensions.vmallocationpolicies;
+
+import cloudreports.business.SettingBusiness;
+import cloudreports.models.Migration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.VmAllocationPolicy;
+import org.cloudbus.cloudsim.power.PowerHost;
+
+/**
+ * Plans the migrations that consolidate virtual machines into fewer hosts.
+ * Active hosts are drained from the least to the most utilized one. Each
+ * virtual machine of a host being drained goes to the target with the least
+ * CPU headroom that still keeps it below the utilization threshold; targets
+ * are kept in a sorted set ordered by headroom, so a target is found in
+ * logarithmic time in the usual case. A host is only drained if all of its
+ * virtual machines find a target; otherwise its tentative placements are
+ * undone.
+ * <p>
+ * The tentative utilization of the hosts is kept in primitive arrays indexed
+ * by the host's position among the active hosts, and it accumulates over the
+ * whole plan, so a target is never promised more resources than it has.
+ * Hosts that are drained no longer receive virtual machines, and hosts that
+ * receive virtual machines are not drained afterwards.
+ *
+ * @see         VmAllocationPolicySingleThreshold#consolidateVms(List)
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+class ConsolidationPlanner {
+
+    /** The policy that executes the migrations. */
+    private VmAllocationPolicy vmAllocationPolicy;
+
+    /** The active hosts. */
+    private List<PowerHost> hosts;
+
+    /** The positions of the active hosts, indexed by host id. */
+    private Map<Integer, Integer> positions;
+
+    /** The upper utilization threshold. */
+    private double upperUtilizationThreshold;
+
+    /** The tentative CPU utilization of each host, in MIPS. The extra last
+     *  slot holds the MIPS being searched for. */
+    private double[] cpuUtilization;
+
+    /** The tentative RAM utilization of each host. */
+    private double[] ramUtilization;
+
+    /** The hosts that may receive virtual machines, ordered by CPU headroom. */
+    private TreeSet<Integer> targets;
+
+    /** The hosts that have received virtual machines. */
+    private BitSet receivers;
+
+    /** The hosts that must not be drained. */
+    private BitSet pinned;
+
+    /** The virtual machines that already have a planned migration. */
+    private Set<Vm> plannedVms;
+
+    /**
+     * Creates a planner for a set of active hosts.
+     *
+     * @param   vmAllocationPolicy          the policy that executes the
+     *                                      migrations.
+     * @param   activeHosts                 the active hosts.
+     * @param   upperUtilizationThreshold   the upper utilization threshold.
+     * @since                               1.2
+     */
+    public ConsolidationPlanner(VmAllocationPolicy vmAllocationPolicy, List<PowerHost> activeHosts,
+                                double upperUtilizationThreshold) {
+        int numOfHosts = activeHosts.size();
+        this.vmAllocationPolicy = vmAllocationPolicy;
+        this.hosts = activeHosts;
+        this.upperUtilizationThreshold = upperUtilizationThreshold;
+        this.positions = new HashMap<Integer, Integer>(numOfHosts * 2);
+        this.cpuUtilization = new double[numOfHosts + 1];
+        this.ramUtilization = new double[numOfHosts];
+        for (int i = 0; i < numOfHosts; i++) {
+            PowerHost host = activeHosts.get(i);
+            positions.put(host.getId(), i);
+            cpuUtilization[i] = VmAllocationPolicySingleThreshold.getHostCpuUtilization(host);
+            ramUtilization[i] = VmAllocationPolicySingleThreshold.getHostRamUtilization(host);
+        }
+        this.targets = new TreeSet<Integer>(new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int result = Double.compare(getHeadroom(a), getHeadroom(b));
+                return result != 0 ? result : a.compareTo(b);
+            }
+        });
+        for (int i = 0; i < numOfHosts; i++) {
+            targets.add(i);
+        }
+        this.receivers = new BitSet(numOfHosts);
+        this.pinned = new BitSet(numOfHosts);
+        this.plannedVms = new HashSet<Vm>();
+    }
+
+    /**
+     * Takes into account migrations that have already been planned, so their
+     * virtual machines are not moved twice and their hosts are not drained.
+     *
+     * @param   migrationList   the planned migrations.
+     * @since                   1.2
+     */
+    public void addPlannedMigrations(List<Migration> migrationList) {
+        for (Migration migration : migrationList) {
+            Vm vm = migration.getVm();
+            plannedVms.add(vm);
+            Integer source = positions.get(migration.getSourceHost().getId());
+            if (source != null) {
+                pinned.set(source);
+            }
+            Integer target = positions.get(migration.getTargetHost().getId());
+            if (target != null) {
+                targets.remove(target);
+                cpuUtilization[target] += vm.getNumberOfPes() * vm.getMips();
+                ramUtilization[target] += vm.getRam();
+                targets.add(target);
+                pinned.set(target);
+            }
+        }
+    }
+
+    /**
+     * Plans the consolidating migrations.
+     *
+     * @param   migrationList   the list where the migrations are added.
+     * @since                   1.2
+     */
+    public void plan(List<Migration> migrationList) {
+        int currentSimulation = SettingBusiness.getCurrentSimulation();
+        for (int source : getSourcesByUtilization()) {
+            if (pinned.get(source) || receivers.get(source)) continue;
+            PowerHost sourceHost = hosts.get(source);
+            //Virtual machines migrating in cannot be moved yet
+            if (!sourceHost.getVmsMigratingIn().isEmpty()) continue;
+
+            targets.remove(source);
+            List<Integer> placements = new ArrayList<Integer>();
+            List<Vm> vms = new ArrayList<Vm>();
+            boolean drained = true;
+            for (Vm vm : sourceHost.getVmList()) {
+                if (vm.isInMigration()) continue;
+                if (plannedVms.contains(vm)) {
+                    drained = false;
+                    break;
+                }
+                int target = findTarget(vm);
+                if (target < 0) {
+                    drained = false;
+                    break;
+                }
+                place(target, vm, 1);
+                placements.add(target);
+                vms.add(vm);
+            }
+
+            if (!drained) {
+                //Undo the tentative placements and keep the host as a target
+                for (int i = 0; i < placements.size(); i++) {
+                    place(placements.get(i), vms.get(i), -1);
+                }
+                targets.add(source);
+                continue;
+            }
+
+            for (int i = 0; i < placements.size(); i++) {
+                int target = placements.get(i);
+                receivers.set(target);
+                migrationList.add(new Migration(vmAllocationPolicy, hosts.get(target), sourceHost, vms.get(i), currentSimulation));
+            }
+        }
+    }
+
+    /**
+     * Gets the positions of the hosts, from the least to the most utilized.
+     *
+     * @return  the positions of the hosts.
+     */
+    private Integer[] getSourcesByUtilization() {
+        final double[] utilization = new double[hosts.size()];
+        Integer[] sources = new Integer[hosts.size()];
+        for (int i = 0; i < sources.length; i++) {
+            PowerHost host = hosts.get(i);
+            utilization[i] = Math.max(cpuUtilization[i] / host.getTotalMips(), ramUtilization[i] / host.getRam());
+            sources[i] = i;
+        }
+        Arrays.sort(sources, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int result = Double.compare(utilization[a], utilization[b]);
+                return result != 0 ? result : a.compareTo(b);
+            }
+        });
+        return sources;
+    }
+
+    /**
+     * Finds the target with the least CPU headroom that fits a virtual
+     * machine without exceeding the utilization threshold.
+     *
+     * @param   vm  the virtual machine.
+     * @return      the position of the target; or <code>-1</code> if no
+     *              target fits the virtual machine.
+     */
+    private int findTarget(Vm vm) {
+        double vmTotalMips = vm.getNumberOfPes() * vm.getMips();
+        //The extra slot is a probe whose headroom is the MIPS of the virtual machine
+        int probe = hosts.size();
+        cpuUtilization[probe] = -vmTotalMips;
+        for (int target : targets.tailSet(probe, true)) {
+            if (target == probe) continue;
+            PowerHost targetHost = hosts.get(target);
+            if ((cpuUtilization[target] + vmTotalMips) / targetHost.getTotalMips() < upperUtilizationThreshold
+                    && (ramUtilization[target] + vm.getRam()) / targetHost.getRam() < upperUtilizationThreshold) {
+                return target;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds or removes the resources of a virtual machine to the tentative
+     * utilization of a target.
+     *
+     * @param   target  the position of the target.
+     * @param   vm      the virtual machine.
+     * @param   sign    <code>1</code> to add the resources;
+     *                  <code>-1</code> to remove them.
+     */
+    private void place(int target, Vm vm, int sign) {
+        targets.remove(target);
+        cpuUtilization[target] += sign * vm.getNumberOfPes() * vm.getMips();
+        ramUtilization[target] += sign * vm.getRam();
+        targets.add(target);
+    }
+
+    /**
+     * Gets the CPU headroom of a host, i.e. the MIPS it may still receive
+     * without reaching the utilization threshold.
+     * The headroom of the probe slot is the MIPS being searched for.
+     *
+     * @param   position    the position of the host or of the probe.
+     * @return              the CPU headroom, in MIPS.
+     */
+    private double getHeadroom(int position) {
+        if (position == hosts.size()) return -cpuUtilization[position];
+        return upperUtilizationThreshold * hosts.get(position).getTotalMips() - cpuUtilization[position];
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ *
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.extensions.vmallocationpolicies;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.power.PowerHost;
+
+/**
+ * An index of the free capacity of the hosts of a datacenter.
+ * Hosts are bucketed by their free MIPS in a sorted map, and their free RAM
+ * and bandwidth are kept in primitive arrays indexed by the host's position
+ * in the datacenter. A lookup only visits the buckets with enough MIPS for a
+ * virtual machine, so hosts that are full are never considered.
+ * <p>
+ * The index must be updated whenever a host's allocation changes. Recorded
+ * capacities that are larger than the actual ones only add candidates that
+ * are later discarded by {@link Host#isSuitableForVm(Vm)}; smaller ones
+ * would hide suitable hosts, so the index must be invalidated when the free
+ * capacity of hosts may have grown outside the allocation policy, e.g. when
+ * dynamic workloads reallocate their MIPS.
+ *
+ * @see         VmAllocationPolicySingleThreshold#findHostForVm(Vm)
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+class HostCapacityIndex {
+
+    /** The hosts of the datacenter. */
+    private List<? extends PowerHost> hostList;
+
+    /** The positions of the hosts, indexed by host id. */
+    private Map<Integer, Integer> positions;
+
+    /** The positions of the hosts, bucketed by free MIPS. */
+    private TreeMap<Double, BitSet> mipsBuckets;
+
+    /** The recorded free MIPS of each host. */
+    private double[] freeMips;
+
+    /** The recorded free RAM of each host. */
+    private int[] freeRam;
+
+    /** The recorded free bandwidth of each host. */
+    private long[] freeBw;
+
+    /** Indicates whether the recorded capacities must be read again. */
+    private boolean stale;
+
+    /**
+     * Creates an index of the hosts of a datacenter.
+     * The capacities are read on the first lookup.
+     *
+     * @param   hostList    the hosts of the datacenter.
+     * @since               1.2
+     */
+    public HostCapacityIndex(List<? extends PowerHost> hostList) {
+        int numOfHosts = hostList.size();
+        this.hostList = hostList;
+        this.positions = new HashMap<Integer, Integer>(numOfHosts * 2);
+        for(int i = 0; i < numOfHosts; i++) {
+            positions.put(hostList.get(i).getId(), i);
+        }
+        this.mipsBuckets = new TreeMap<Double, BitSet>();
+        this.freeMips = new double[numOfHosts];
+        this.freeRam = new int[numOfHosts];
+        this.freeBw = new long[numOfHosts];
+        this.stale = true;
+    }
+
+    /**
+     * Marks all recorded capacities as outdated.
+     * They are read again on the next lookup.
+     *
+     * @since   1.2
+     */
+    public void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Reads the free capacity of a host again.
+     *
+     * @param   host    the host whose allocation has changed.
+     * @since           1.2
+     */
+    public void update(Host host) {
+        if(stale || host == null) return;
+        Integer position = positions.get(host.getId());
+        if(position == null || hostList.get(position) != host) return;
+        remove(position);
+        insert(position);
+    }
+
+    /**
+     * Gets the hosts whose free capacity may fit a virtual machine.
+     *
+     * @param   vm  the virtual machine.
+     * @return      the positions of the candidate hosts.
+     * @since       1.2
+     */
+    public BitSet getCandidates(Vm vm) {
+        if(stale) rebuild();
+        double requestedMips = vm.getCurrentRequestedTotalMips();
+        int requestedRam = vm.getCurrentRequestedRam();
+        long requestedBw = vm.getCurrentRequestedBw();
+
+        BitSet candidates = new BitSet(freeMips.length);
+        for(BitSet bucket : mipsBuckets.tailMap(requestedMips, true).values()) {
+            for(int i = bucket.nextSetBit(0); i >= 0; i = bucket.nextSetBit(i + 1)) {
+                if(freeRam[i] >= requestedRam && freeBw[i] >= requestedBw) candidates.set(i);
+            }
+        }
+
+        //A host may fit a virtual machine it already holds
+        Host currentHost = vm.getHost();
+        if(currentHost != null) {
+            Integer position = positions.get(currentHost.getId());
+            if(position != null && hostList.get(position) == currentHost) candidates.set(position);
+        }
+        return candidates;
+    }
+
+    /** Reads the free capacity of all hosts. */
+    private void rebuild() {
+        mipsBuckets.clear();
+        for(int i = 0; i < freeMips.length; i++) {
+            insert(i);
+        }
+        stale = false;
+    }
+
+    /**
+     * Reads the free capacity of a host and adds it to its bucket.
+     *
+     * @param   position    the position of the host.
+     */
+    private void insert(int position) {
+        PowerHost host = hostList.get(position);
+        freeMips[position] = host.getAvailableMips();
+        freeRam[position] = host.getRamProvisioner().getAvailableRam();
+        freeBw[position] = host.getBwProvisioner().getAvailableBw();
+
+        BitSet bucket = mipsBuckets.get(freeMips[position]);
+        if(bucket == null) {
+            bucket = new BitSet();
+            mipsBuckets.put(freeMips[position], bucket);
+        }
+        bucket.set(position);
+    }
+
+    /**
+     * Removes a host from its bucket.
+     *
+     * @param   position    the position of the host.
+     */
+    private void remove(int position) {
+        BitSet bucket = mipsBuckets.get(freeMips[position]);
+        if(bucket == null) return;
+        bucket.clear(position);
+        if(bucket.isEmpty()) mipsBuckets.remove(freeMips[position]);
+    }
+}
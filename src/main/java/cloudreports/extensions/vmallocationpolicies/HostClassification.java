@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ *
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.extensions.vmallocationpolicies;
+
+import cloudreports.extensions.HostStateSnapshot;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import org.cloudbus.cloudsim.power.PowerHost;
+
+/**
+ * The classification of the hosts of a datacenter according to their
+ * utilization.
+ * The utilization of each host is computed once, and the host is put into
+ * the overused or not overused bucket and into the active or idle bucket.
+ * Buckets keep the order of the host list.
+ * <p>
+ * The utilization of different hosts is independent, so datacenters with
+ * more hosts than a threshold are split into chunks that are classified by
+ * a shared pool of daemon threads. Hosts are only read while they are
+ * classified, and whether a host is active is taken from the state shared
+ * by its datacenter when there is one.
+ *
+ * @see         VmAllocationPolicySingleThreshold#classifyHosts()
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class HostClassification {
+
+    /** The host is overused. */
+    private static final byte OVERUSED = 1;
+
+    /** The host is active. */
+    private static final byte ACTIVE = 2;
+
+    /** The number of threads that classify hosts in parallel. */
+    private static final int NUM_OF_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /** The threads that classify hosts in parallel. */
+    private static ExecutorService executor;
+
+    /** The overused hosts. */
+    private List<PowerHost> overusedHosts;
+
+    /** The hosts that are not overused. */
+    private List<PowerHost> notOverusedHosts;
+
+    /** The active hosts. */
+    private List<PowerHost> activeHosts;
+
+    /** The idle hosts. */
+    private List<PowerHost> idleHosts;
+
+    /**
+     * Classifies hosts.
+     *
+     * @param   hostList                    the hosts.
+     * @param   hostStates                  the state of the hosts; or
+     *                                      <code>null</code> if it must be
+     *                                      read from the hosts.
+     * @param   upperUtilizationThreshold   the utilization from which a host
+     *                                      is overused.
+     * @param   parallelThreshold           the number of hosts above which
+     *                                      hosts are classified in parallel;
+     *                                      or <code>0</code> if they are
+     *                                      always classified sequentially.
+     * @since                               1.2
+     */
+    public HostClassification(List<PowerHost> hostList, HostStateSnapshot hostStates,
+                              double upperUtilizationThreshold, int parallelThreshold) {
+        byte[] states = new byte[hostList.size()];
+        if (parallelThreshold > 0 && hostList.size() > parallelThreshold && NUM_OF_THREADS > 1) {
+            classifyInParallel(hostList, hostStates, upperUtilizationThreshold, states);
+        } else {
+            classify(hostList, hostStates, upperUtilizationThreshold, states, 0, states.length);
+        }
+
+        this.overusedHosts = new ArrayList<PowerHost>();
+        this.notOverusedHosts = new ArrayList<PowerHost>(states.length);
+        this.activeHosts = new ArrayList<PowerHost>(states.length);
+        this.idleHosts = new ArrayList<PowerHost>();
+        for (int i = 0; i < states.length; i++) {
+            PowerHost host = hostList.get(i);
+            if ((states[i] & OVERUSED) != 0) overusedHosts.add(host);
+            else notOverusedHosts.add(host);
+            if ((states[i] & ACTIVE) != 0) activeHosts.add(host);
+            else idleHosts.add(host);
+        }
+    }
+
+    /**
+     * Gets the overused hosts, i.e. the hosts whose CPU or RAM utilization
+     * rate reaches the threshold.
+     *
+     * @return  the overused hosts.
+     */
+    public List<PowerHost> getOverusedHosts() {
+        return overusedHosts;
+    }
+
+    /**
+     * Gets the hosts that are not overused.
+     *
+     * @return  the hosts that are not overused.
+     */
+    public List<PowerHost> getNotOverusedHosts() {
+        return notOverusedHosts;
+    }
+
+    /**
+     * Gets the active hosts, i.e. the hosts that currently use CPU and RAM.
+     *
+     * @return  the active hosts.
+     */
+    public List<PowerHost> getActiveHosts() {
+        return activeHosts;
+    }
+
+    /**
+     * Gets the idle hosts.
+     *
+     * @return  the idle hosts.
+     */
+    public List<PowerHost> getIdleHosts() {
+        return idleHosts;
+    }
+
+    /**
+     * Classifies a range of hosts.
+     *
+     * @param   hostList                    the hosts.
+     * @param   hostStates                  the state of the hosts; or
+     *                                      <code>null</code>.
+     * @param   upperUtilizationThreshold   the utilization from which a host
+     *                                      is overused.
+     * @param   states                      the states of the hosts, indexed
+     *                                      by host position.
+     * @param   from                        the position of the first host.
+     * @param   to                          the position after the last host.
+     */
+    private static void classify(List<PowerHost> hostList, HostStateSnapshot hostStates,
+                                 double upperUtilizationThreshold, byte[] states, int from, int to) {
+        for (int i = from; i < to; i++) {
+            PowerHost host = hostList.get(i);
+            byte state = 0;
+            if (VmAllocationPolicySingleThreshold.getHostCpuUtilizationRate(host) >= upperUtilizationThreshold
+                    || VmAllocationPolicySingleThreshold.getHostRamUtilizationRate(host) >= upperUtilizationThreshold) {
+                state |= OVERUSED;
+            }
+            int hostIndex = hostStates != null ? hostStates.indexOf(host) : -1;
+            if (hostIndex >= 0 ? hostStates.isActive(hostIndex)
+                    : host.getUtilizationOfCpuMips() / host.getTotalMips() > 0
+                      && host.getUtilizationOfRam() / host.getRam() > 0) {
+                state |= ACTIVE;
+            }
+            states[i] = state;
+        }
+    }
+
+    /**
+     * Classifies hosts in chunks, one per thread.
+     *
+     * @param   hostList                    the hosts.
+     * @param   hostStates                  the state of the hosts; or
+     *                                      <code>null</code>.
+     * @param   upperUtilizationThreshold   the utilization from which a host
+     *                                      is overused.
+     * @param   states                      the states of the hosts, indexed
+     *                                      by host position.
+     */
+    private static void classifyInParallel(final List<PowerHost> hostList, final HostStateSnapshot hostStates,
+                                           final double upperUtilizationThreshold, final byte[] states) {
+        int chunkSize = (states.length + NUM_OF_THREADS - 1) / NUM_OF_THREADS;
+        List<Future<Void>> chunks = new ArrayList<Future<Void>>(NUM_OF_THREADS);
+        for (int from = 0; from < states.length; from += chunkSize) {
+            final int chunkStart = from;
+            final int chunkEnd = Math.min(from + chunkSize, states.length);
+            chunks.add(getExecutor().submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    classify(hostList, hostStates, upperUtilizationThreshold, states, chunkStart, chunkEnd);
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            for (Future<Void> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Host classification has been interrupted.", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Gets the threads that classify hosts in parallel, creating them on the
+     * first call.
+     *
+     * @return  the executor of the threads.
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(NUM_OF_THREADS, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "CloudReports host classifier");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ *
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.extensions.vmallocationpolicies;
+
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.power.PowerHost;
+
+/**
+ * Estimates the utilization and the power consumption of a host after a
+ * virtual machine is allocated to it.
+ * The estimates are computed from the current state of the host and the
+ * requested MIPS of the virtual machine, using the host's power model; the
+ * host is never modified, so allocation policies may evaluate any number of
+ * candidate hosts, even concurrently, as long as the simulation does not
+ * change them meanwhile.
+ *
+ * @see         VmAllocationPolicySingleThreshold#findHostForVm(Vm)
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public final class PowerEstimator {
+
+    /** This class only has static methods. */
+    private PowerEstimator() {
+    }
+
+    /**
+     * Estimates the CPU utilization of a host after a virtual machine is
+     * allocated to it.
+     * The requested MIPS of the virtual machine are added to the MIPS used
+     * by the host in its last update; if the virtual machine already runs on
+     * the host, its current MIPS are replaced by the requested ones.
+     *
+     * @param   host    the host.
+     * @param   vm      the virtual machine.
+     * @return          the estimated CPU utilization, between 0 and 1; or
+     *                  <code>-1</code> if the host cannot provide the
+     *                  requested MIPS.
+     * @since           1.2
+     */
+    public static double estimateUtilizationAfterAllocation(PowerHost host, Vm vm) {
+        double usedMips = host.getUtilizationMips();
+        if (vm.getHost() == host) {
+            usedMips -= host.getTotalAllocatedMipsForVm(vm);
+        }
+        double utilization = (usedMips + vm.getCurrentRequestedTotalMips()) / host.getTotalMips();
+        if (utilization > 1) {
+            return -1;
+        }
+        return Math.max(utilization, 0);
+    }
+
+    /**
+     * Estimates the maximum utilization among the processing elements that
+     * would run a virtual machine.
+     * The requested MIPS of the virtual machine must fit the capacity of
+     * each processing element and the MIPS still available in the host's
+     * scheduler, which are assumed to be spread evenly among its processing
+     * elements.
+     *
+     * @param   host    the host.
+     * @param   vm      the virtual machine.
+     * @return          the estimated maximum utilization, between 0 and 1;
+     *                  or <code>-1</code> if the virtual machine does not
+     *                  fit the host.
+     * @since           1.2
+     */
+    public static double estimateMaxUtilizationAfterAllocation(PowerHost host, Vm vm) {
+        if (vm.getCurrentRequestedMaxMips() > host.getVmScheduler().getPeCapacity()) {
+            return -1;
+        }
+        double allocatedMips = host.getTotalMips() - host.getAvailableMips();
+        if (vm.getHost() == host) {
+            allocatedMips -= host.getTotalAllocatedMipsForVm(vm);
+        }
+        double utilization = (allocatedMips + vm.getCurrentRequestedTotalMips()) / host.getTotalMips();
+        if (utilization > 1) {
+            return -1;
+        }
+        return Math.max(utilization, 0);
+    }
+
+    /**
+     * Estimates the power consumption of a host after a virtual machine is
+     * allocated to it.
+     *
+     * @param   host    the host.
+     * @param   vm      the virtual machine.
+     * @return          the estimated power consumption; or <code>-1</code>
+     *                  if the host cannot provide the requested MIPS.
+     * @see             #estimateUtilizationAfterAllocation(PowerHost, Vm)
+     * @since           1.2
+     */
+    public static double estimatePowerAfterAllocation(PowerHost host, Vm vm) {
+        double utilization = estimateUtilizationAfterAllocation(host, vm);
+        if (utilization < 0) {
+            return -1;
+        }
+        return host.getPowerModel().getPower(utilization);
+    }
+}
@@ -21,13 +21,18 @@ package cloudreports.extensions.vmallocationpolicies;
 
 import cloudreports.business.SettingBusiness;
 import cloudreports.enums.AllocationPolicy;
+import cloudreports.extensions.HostStateSnapshot;
+import cloudreports.extensions.PowerDatacenter;
 import cloudreports.models.Migration;
 import cloudreports.simulation.Simulation;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import org.cloudbus.cloudsim.Datacenter;
+import org.cloudbus.cloudsim.Host;
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.VmAllocationPolicySimple;
@@ -46,6 +51,9 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
 
     private double upperUtilizationThreshold;
     
+    /** The index of the free capacity of the hosts. */
+    private HostCapacityIndex capacityIndex;
+    
     /** 
      * Initializes a new instance of this class with the given list of hosts
      * and utilization threshold value.
@@ -57,6 +65,7 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
     public VmAllocationPolicySingleThreshold(List<? extends PowerHost> list, double utilizationThreshold) {
         super(list);
         this.upperUtilizationThreshold = utilizationThreshold;
+        this.capacityIndex = new HostCapacityIndex(list);
     }
 
     /** 
@@ -74,14 +83,15 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
             return migrationList;
         }
         
-        //Verify the existence of overused hosts
-        List<PowerHost> overusedHosts = getOverusedHosts();
+        //Classify hosts once for both distribution and consolidation
+        HostClassification classification = classifyHosts();
         //If there is any overused host, then distribute vms
+        List<PowerHost> overusedHosts = classification.getOverusedHosts();
         if(!overusedHosts.isEmpty()) {
-            distributeVms(migrationList, overusedHosts);
+            distributeVms(migrationList, overusedHosts, classification.getNotOverusedHosts());
         }
         
-        consolidateVms(migrationList);
+        consolidateVms(migrationList, classification.getActiveHosts());
 
         return migrationList;
     }
@@ -94,8 +104,18 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
      * @since                   1.0
      */    
     public void distributeVms(List<Migration> migrationList, List<PowerHost> overusedHosts) {
-        List<PowerHost> targetHosts = getNotOverusedHosts();
-        
+        distributeVms(migrationList, overusedHosts, getNotOverusedHosts());
+    }
+    
+    /** 
+     * Distributes virtual machines among hosts.
+     *
+     * @param   migrationList   the list of migrations to be executed.
+     * @param   overusedHosts   the list of overused hosts.
+     * @param   targetHosts     the list of not overused hosts.
+     * @since                   1.2
+     */    
+    protected void distributeVms(List<Migration> migrationList, List<PowerHost> overusedHosts, List<PowerHost> targetHosts) {
         if(!targetHosts.isEmpty()) {
             sortByPowerConsumption(overusedHosts);
             
@@ -111,23 +131,30 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
     
     /** 
      * Consolidates the allocation of virtual machines.
+     * Virtual machines that are already in the list of migrations are not
+     * moved again, and their hosts are not drained.
      *
      * @param   migrationList   the list of migrations to be executed.
+     * @see                     ConsolidationPlanner
      * @since                   1.0
      */      
     public void consolidateVms(List<Migration> migrationList) {
-        List<PowerHost> activeHosts = getActiveHosts();        
-        List<PowerHost> targetHosts = activeHosts;
-        
-        List<PowerHost> sourceHosts = activeHosts;
-        List<Integer> hostsToBeTurnedOffIds = new ArrayList<Integer>();
-        
-        for (PowerHost sourceHost : sourceHosts) {
-            List<Migration> newMigrationList = new ArrayList<Migration>();
-            getConsolidatingMigrationList(newMigrationList, sourceHost, targetHosts, hostsToBeTurnedOffIds, getUpperUtilizationThreshold());
-            migrationList.addAll(newMigrationList);
-            hostsToBeTurnedOffIds.add(sourceHost.getId());
-        }
+        consolidateVms(migrationList, getActiveHosts());
+    }
+    
+    /** 
+     * Consolidates the allocation of virtual machines in the given active
+     * hosts.
+     *
+     * @param   migrationList   the list of migrations to be executed.
+     * @param   activeHosts     the list of active hosts.
+     * @see                     ConsolidationPlanner
+     * @since                   1.2
+     */      
+    protected void consolidateVms(List<Migration> migrationList, List<PowerHost> activeHosts) {
+        ConsolidationPlanner planner = new ConsolidationPlanner(this, activeHosts, getUpperUtilizationThreshold());
+        planner.addPlannedMigrations(migrationList);
+        planner.plan(migrationList);
         
         for (Migration migration : migrationList) {
             if(migration.getDescription() == null) {
@@ -140,6 +167,30 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
         return this.upperUtilizationThreshold;
     }
 
+    /** 
+     * Indicates that the free capacity of the hosts may have changed outside
+     * this policy, e.g. because their virtual machines have been processed.
+     *
+     * @since   1.2
+     */
+    public void invalidateHostCapacities() {
+        capacityIndex.invalidate();
+    }
+
+    /** 
+     * Classifies the hosts according to their utilization.
+     * Large datacenters are classified in parallel.
+     *
+     * @return  the classification of the hosts.
+     * @see     SettingBusiness#getParallelClassificationThreshold()
+     * @since   1.2
+     */      
+    public HostClassification classifyHosts() {
+        return new HostClassification(this.<PowerHost>getHostList(), getHostStateSnapshot(),
+                                      getUpperUtilizationThreshold(),
+                                      SettingBusiness.getParallelClassificationThreshold());
+    }
+
     /** 
      * Gets a list of overused hosts.
      *
@@ -147,17 +198,7 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
      * @since   1.0
      */      
     public List<PowerHost> getOverusedHosts() {
-        List<PowerHost> overusedHosts = new ArrayList<PowerHost>();
-        for (PowerHost host : this.<PowerHost>getHostList()) {            
-            double cpuUtilizationRate = getHostCpuUtilizationRate(host);
-            double ramUtilizationRate = getHostRamUtilizationRate(host);
-            
-            if (cpuUtilizationRate >= getUpperUtilizationThreshold()
-                    || ramUtilizationRate >= getUpperUtilizationThreshold()) {
-                overusedHosts.add(host);
-            }
-        }
-        return overusedHosts;
+        return classifyHosts().getOverusedHosts();
     }
 
     /** 
@@ -167,17 +208,7 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
      * @since   1.0
      */       
     public List<PowerHost> getNotOverusedHosts() {
-        List<PowerHost> notOverusedHosts = new ArrayList<PowerHost>();
-        for (PowerHost host : this.<PowerHost>getHostList()) {
-            double cpuUtilizationRate = getHostCpuUtilizationRate(host);
-            double ramUtilizationRate = getHostRamUtilizationRate(host);
-            
-            if ( cpuUtilizationRate < getUpperUtilizationThreshold()
-                    && ramUtilizationRate  < getUpperUtilizationThreshold()) {
-                notOverusedHosts.add(host);
-            }
-        }
-        return notOverusedHosts;
+        return classifyHosts().getNotOverusedHosts();
     }
     
     /** 
@@ -187,16 +218,7 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
      * @since   1.0
      */       
     public List<PowerHost> getActiveHosts() {
-        List<PowerHost> activeHosts = new ArrayList<PowerHost>();
-        for (PowerHost host : this.<PowerHost>getHostList()) {
-            double cpuUtilization = host.getUtilizationOfCpuMips()/host.getTotalMips();
-            double ramUtilization = host.getUtilizationOfRam()/host.getRam();
-           
-            if ( cpuUtilization > 0 && ramUtilization > 0) {
-                activeHosts.add(host);
-            }
-        }
-        return activeHosts;
+        return classifyHosts().getActiveHosts();
     }
     
     /**
@@ -212,6 +234,7 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
         PowerHost allocatedHost = findHostForVm(vm);
         if (allocatedHost != null && allocatedHost.vmCreate(vm)) { //if vm has been succesfully created in the host
             getVmTable().put(vm.getUid(), allocatedHost);
+            capacityIndex.update(allocatedHost);
             if (!Log.isDisabled()) {
                 Log.print(String.format("%.2f: VM #" + vm.getId() + " has been allocated to the host #" + allocatedHost.getId() + "\n", CloudSim.clock()));
             }
@@ -220,17 +243,39 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
         return false;
     }
 
+    /**
+     * Allocates a given host for a VM, as done when a migration finishes.
+     *
+     * @param vm a virtual machine.
+     * @param host the host.
+     *
+     * @return      <code>true</code> if the host could be allocated;
+     * <code>false</code> otherwise.
+     */
+    @Override
+    public boolean allocateHostForVm(Vm vm, Host host) {
+        boolean allocated = super.allocateHostForVm(vm, host);
+        capacityIndex.update(host);
+        return allocated;
+    }
+
     /**
      * Finds a host to allocate for the VM.
+     * Only the hosts with enough free capacity for the VM are evaluated.
      *
      * @param vm the virtual machine to be allocated.
      * @return the chosen host.
+     * @see HostCapacityIndex
      */
     public PowerHost findHostForVm(Vm vm) {
         double minPower = Double.MAX_VALUE;
         PowerHost allocatedHost = null;
+        List<PowerHost> hostList = this.<PowerHost>getHostList();
+        BitSet candidates = capacityIndex.getCandidates(vm);
 
-        for (PowerHost host : this.<PowerHost>getHostList()) {
+        //Candidates are visited in the order of the host list, so ties are broken as before
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            PowerHost host = hostList.get(i);
             if (host.isSuitableForVm(vm)) {
                 double maxUtilization = getMaxUtilizationAfterAllocation(host, vm);
                 if ((!vm.isBeingInstantiated() && maxUtilization > getUpperUtilizationThreshold()) || (vm.isBeingInstantiated() && maxUtilization > 1.0)) {
@@ -255,62 +300,30 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
 
     /**
      * Gets the power after allocation.
+     * The power is estimated without allocating the virtual machine.
      *
      * @param host the host.
      * @param vm the virtual machine.
-     * @return the power usage after allocation of the virtual machine.
+     * @return the power usage after allocation of the virtual machine; or -1
+     * if the host cannot provide the requested MIPS.
+     * @see PowerEstimator#estimatePowerAfterAllocation(PowerHost, Vm)
      */
     protected double getPowerAfterAllocation(PowerHost host, Vm vm) {
-        List<Double> allocatedMipsForVm = null;
-        PowerHost allocatedHost = (PowerHost) vm.getHost();
-
-        if (allocatedHost != null) {
-            allocatedMipsForVm = allocatedHost.getAllocatedMipsForVm(vm);
-        }
-
-        if (!host.allocatePesForVm(vm, vm.getCurrentRequestedMips())) {
-            return -1;
-        }
-
-        double power = host.getPower();
-
-        host.deallocatePesForVm(vm);
-
-        if (allocatedHost != null && allocatedMipsForVm != null) {
-            vm.getHost().allocatePesForVm(vm, allocatedMipsForVm);
-        }
-
-        return power;
+        return PowerEstimator.estimatePowerAfterAllocation(host, vm);
     }
 
     /**
      * Gets the maximum utilization after allocation.
+     * The utilization is estimated without allocating the virtual machine.
      *
      * @param host the host.
      * @param vm the virtual machine.
-     * @return the maximum utilization after allocation of the virtual machine.
+     * @return the maximum utilization after allocation of the virtual machine;
+     * or -1 if the virtual machine does not fit the host.
+     * @see PowerEstimator#estimateMaxUtilizationAfterAllocation(PowerHost, Vm)
      */
     protected double getMaxUtilizationAfterAllocation(PowerHost host, Vm vm) {
-        List<Double> allocatedMipsForVm = null;
-        PowerHost allocatedHost = (PowerHost) vm.getHost();
-
-        if (allocatedHost != null) {
-            allocatedMipsForVm = vm.getHost().getAllocatedMipsForVm(vm);
-        }
-
-        if (!host.allocatePesForVm(vm, vm.getCurrentRequestedMips())) {
-            return -1;
-        }
-
-        double maxUtilization = host.getMaxUtilizationAmongVmsPes(vm);
-
-        host.deallocatePesForVm(vm);
-
-        if (allocatedHost != null && allocatedMipsForVm != null) {
-            vm.getHost().allocatePesForVm(vm, allocatedMipsForVm);
-        }
-
-        return maxUtilization;
+        return PowerEstimator.estimateMaxUtilizationAfterAllocation(host, vm);
     }
 
     /**
@@ -324,6 +337,7 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
             PowerHost host = (PowerHost) getVmTable().remove(vm.getUid());
             if (host != null) {
                 host.vmDestroy(vm);
+                capacityIndex.update(host);
             }
         }
     }
@@ -335,14 +349,47 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
      * @since 1.0
      */
     protected <T extends PowerHost> void sortByPowerConsumption(List<T> hostList) {
-        Collections.sort(hostList, new Comparator<T>() {
+        //Read the power of each host once instead of on every comparison
+        HostStateSnapshot hostStates = getHostStateSnapshot();
+        final double[] power = new double[hostList.size()];
+        Integer[] positions = new Integer[hostList.size()];
+        for (int i = 0; i < positions.length; i++) {
+            T host = hostList.get(i);
+            int hostIndex = hostStates != null ? hostStates.indexOf(host) : -1;
+            power[i] = hostIndex >= 0 ? hostStates.getPower(hostIndex) : host.getPower();
+            positions[i] = i;
+        }
+        Arrays.sort(positions, new Comparator<Integer>() {
             @Override
-            public int compare(T a, T b) throws ClassCastException {
-                Double aUtilization = a.getPower();
-                Double bUtilization = b.getPower();
-                return bUtilization.compareTo(aUtilization);
+            public int compare(Integer a, Integer b) {
+                int result = Double.compare(power[b], power[a]);
+                return result != 0 ? result : a.compareTo(b);
             }
         });
+
+        List<T> sortedHosts = new ArrayList<T>(hostList.size());
+        for (int position : positions) {
+            sortedHosts.add(hostList.get(position));
+        }
+        for (int i = 0; i < positions.length; i++) {
+            hostList.set(i, sortedHosts.get(i));
+        }
+    }
+
+    /**
+     * Gets the state of the hosts at the current simulated instant, as
+     * shared by their datacenter.
+     *
+     * @return  the state of the hosts; or <code>null</code> if their
+     *          datacenter does not share it.
+     * @see     PowerDatacenter#getHostStateSnapshot()
+     * @since   1.2
+     */
+    protected HostStateSnapshot getHostStateSnapshot() {
+        if (getHostList().isEmpty()) return null;
+        Datacenter datacenter = getHostList().get(0).getDatacenter();
+        if (!(datacenter instanceof PowerDatacenter)) return null;
+        return ((PowerDatacenter) datacenter).getHostStateSnapshot();
     }
 
     /**
@@ -407,81 +454,6 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
         }
     }
 
-    /**
-     * Calculates a list of migrations needed to consolidate the allocation of
-     * virtual machines.
-     *
-     * @param migrationList a list o migrations to be calculated.
-     * @param sourceHost the host from which virtual machines will be taken to
-     * be reallocated in other hosts.
-     * @param targetHosts a list of target hosts.
-     * @param hostsToBeTurnedOffIds a list of host ids to be turned off.
-     * @param upperUtilizationThreshold the upper utilization threshold.
-     * @since 1.0
-     */
-    protected void getConsolidatingMigrationList(List<Migration> migrationList,
-            PowerHost sourceHost,
-            List<PowerHost> targetHosts,
-            List<Integer> hostsToBeTurnedOffIds,
-            double upperUtilizationThreshold) {
-        //Map of resources
-        //Keys: each one of the target hosts ID
-        //Values: a list with the amount of available CPU and RAM of the host
-        HashMap<Integer, List<Double>> resourcesMap = new HashMap<Integer, List<Double>>();
-        for (PowerHost host : targetHosts) {
-            List<Double> resourcesList = new ArrayList<Double>();
-            resourcesList.add(getHostCpuUtilization(host));
-            resourcesList.add(getHostRamUtilization(host));
-            resourcesMap.put(host.getId(), resourcesList);
-        }
-
-        double cpuUtilization = getHostCpuUtilization(sourceHost);
-        double ramUtilization = getHostRamUtilization(sourceHost);
-        int currentSimulation = SettingBusiness.getCurrentSimulation();
-
-        for (Vm vm : sourceHost.getVmList()) {
-            if (vm.isInMigration()) {
-                continue;
-            }
-
-            HOSTS_LOOP:
-            for (PowerHost targetHost : targetHosts) {
-                if (targetHost.getId() == sourceHost.getId()) {
-                    continue HOSTS_LOOP;
-                }
-
-                for (int id : hostsToBeTurnedOffIds) {
-                    if (targetHost.getId() == id) {
-                        continue HOSTS_LOOP;
-                    }
-                }
-
-                List<Double> hostResources = resourcesMap.get(targetHost.getId());
-                double vmTotalMips = vm.getNumberOfPes() * vm.getMips();
-                if ((hostResources.get(0) + vmTotalMips) / targetHost.getTotalMips() < upperUtilizationThreshold
-                        && (hostResources.get(1) + vm.getRam()) / targetHost.getRam() < upperUtilizationThreshold) {
-                    //There's enough resources and no threshold violation, so add the migration to the list.
-                    //Step 1: subtract the resources of the target host
-                    hostResources.set(0, hostResources.get(0) + vmTotalMips);
-                    hostResources.set(1, hostResources.get(1) + vm.getRam());
-                    //Step 2: subtract the utilization of the source host
-                    ramUtilization -= vm.getRam();
-                    cpuUtilization -= sourceHost.getTotalAllocatedMipsForVm(vm);
-                    //Step 3: add the entry to the migration map
-                    Migration migration = new Migration(this, targetHost, sourceHost, vm, currentSimulation);
-                    migrationList.add(migration);
-
-                    break HOSTS_LOOP;
-                }
-            }
-        }
-
-        //The consolidation will only occur if all vms have been migrated
-        if (ramUtilization > 0 || cpuUtilization > 0) {
-            migrationList.clear();
-        }
-    }
-
     /**
      * Gets the CPU utilization of a host.
      *
@@ -543,13 +515,8 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
     public static double getHostCpuUtilizationRate(PowerHost host) {
         double cpuUtilizationRate = getHostCpuUtilization(host) / host.getTotalMips();
 
-        List<Double> previousValuesCpu = Simulation.getDataCollector().getMonitoredUsedResources(host.getDatacenter().getName(), host.getId(), "CPU");
-        for (Double previousValue : previousValuesCpu) {
-            cpuUtilizationRate += (previousValue / 100);
-        }
-        cpuUtilizationRate /= (previousValuesCpu.size() + 1);
-
-        return cpuUtilizationRate;
+        //Average the current rate with the monitored history of the host
+        return Simulation.getDataCollector().getMonitoredAverage(host.getDatacenter().getName(), host.getId(), "CPU", cpuUtilizationRate * 100) / 100;
     }
 
     /**
@@ -561,13 +528,8 @@ public class VmAllocationPolicySingleThreshold extends VmAllocationPolicySimple
     public static double getHostRamUtilizationRate(PowerHost host) {
         double ramUtilizationRate = getHostRamUtilization(host) / host.getRam();
 
-        List<Double> previousValuesRam = Simulation.getDataCollector().getMonitoredUsedResources(host.getDatacenter().getName(), host.getId(), "RAM");
-        for (Double previousValue : previousValuesRam) {
-            ramUtilizationRate += (previousValue / 100);
-        }
-        ramUtilizationRate /= (previousValuesRam.size() + 1);
-
-        return ramUtilizationRate;
+        //Average the current rate with the monitored history of the host
+        return Simulation.getDataCollector().getMonitoredAverage(host.getDatacenter().getName(), host.getId(), "RAM", ramUtilizationRate * 100) / 100;
     }
 
 }
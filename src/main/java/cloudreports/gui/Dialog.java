@@ -20,6 +20,7 @@
 package cloudreports.gui;
 
 import java.awt.Component;
+import java.awt.GraphicsEnvironment;
 import javax.swing.ImageIcon;
 import javax.swing.JOptionPane;
 
@@ -39,6 +40,10 @@ public class Dialog {
      * @since               1.0
      */       
     public static void showWarning(Component parent, String message) {
+        if (GraphicsEnvironment.isHeadless()) {
+            System.err.println("Warning: " + message);
+            return;
+        }
         JOptionPane.showMessageDialog(parent, 
                                      message,
                                      "Warning",
@@ -69,6 +74,10 @@ public class Dialog {
      * @since               1.0
      */      
     public static void showErrorMessage(Component parent, String message) {
+        if (GraphicsEnvironment.isHeadless()) {
+            System.err.println("Error: " + message);
+            return;
+        }
         JOptionPane.showMessageDialog(parent,
                                      message,
                                      "Error",
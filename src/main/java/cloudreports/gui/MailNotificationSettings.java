@@ -59,10 +59,10 @@ public class MailNotificationSettings extends javax.swing.JDialog {
             senderAddress = new Setting("SenderAddress", "");
             senderPassword = new Setting("EmailPassword", "");
             SMTPServer = new Setting("SMTPServer", "");
-            sDAO.insertSetting(receiverAddress);
-            sDAO.insertSetting(senderAddress);
-            sDAO.insertSetting(senderPassword);
-            sDAO.insertSetting(SMTPServer);
+            SettingBusiness.insertSetting(receiverAddress);
+            SettingBusiness.insertSetting(senderAddress);
+            SettingBusiness.insertSetting(senderPassword);
+            SettingBusiness.insertSetting(SMTPServer);
             receiverTextField.setText("");
             senderTextField.setText("");
             senderPasswordField.setText("");
@@ -238,13 +238,13 @@ public class MailNotificationSettings extends javax.swing.JDialog {
         if(enableCheckBox.isSelected()) {
             Setting isMailNotificationEnabled = sDAO.getSetting("EnableMailNotification");
             isMailNotificationEnabled.setValue("true");
-            sDAO.updateSetting(isMailNotificationEnabled);
+            SettingBusiness.updateSetting(isMailNotificationEnabled);
             setMailSettingsEnabled(true);
         }
         else {
             Setting isMailNotificationEnabled = sDAO.getSetting("EnableMailNotification");
             isMailNotificationEnabled.setValue("false");
-            sDAO.updateSetting(isMailNotificationEnabled);
+            SettingBusiness.updateSetting(isMailNotificationEnabled);
             setMailSettingsEnabled(false);
         }
     }//GEN-LAST:event_enableCheckBoxActionPerformed
@@ -258,19 +258,19 @@ public class MailNotificationSettings extends javax.swing.JDialog {
     private void okButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_okButtonActionPerformed
         Setting receiverAddress = sDAO.getSetting("ReceiverAddress");
         receiverAddress.setValue(receiverTextField.getText());
-        sDAO.updateSetting(receiverAddress);
+        SettingBusiness.updateSetting(receiverAddress);
         
         Setting senderAddress = sDAO.getSetting("SenderAddress");
         senderAddress.setValue(senderTextField.getText());
-        sDAO.updateSetting(senderAddress);
+        SettingBusiness.updateSetting(senderAddress);
 
         Setting senderPassword = sDAO.getSetting("EmailPassword");
         senderPassword.setValue(new String(senderPasswordField.getPassword()));
-        sDAO.updateSetting(senderPassword);
+        SettingBusiness.updateSetting(senderPassword);
         
         Setting SMTPServer = sDAO.getSetting("SMTPServer");
         SMTPServer.setValue(serverTextField.getText());
-        sDAO.updateSetting(SMTPServer);
+        SettingBusiness.updateSetting(SMTPServer);
         
         dispose();
     }//GEN-LAST:event_okButtonActionPerformed
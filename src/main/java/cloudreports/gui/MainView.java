@@ -452,7 +452,7 @@ public class MainView extends javax.swing.JFrame {
      * @since           1.0
      */         
     private void startButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_startButtonActionPerformed
-        simulationThread = new Thread(new Simulation());
+        simulationThread = new Thread(new Simulation(getEnvironmentsNames(), new SimulationViewListener()));
         simulationThread.start();
         getSimulationView().setLocationRelativeTo(MainView.getFrames()[1]);
         getSimulationView().setVisible(true);
@@ -58,8 +58,8 @@ public class RandomnessSettings extends javax.swing.JDialog {
         if(QRBGusername == null) {
             QRBGusername = new Setting("QRBGusername", "");
             QRBGpassword = new Setting("QRBGpassword", "");
-            sDAO.insertSetting(QRBGusername);
-            sDAO.insertSetting(QRBGpassword);
+            SettingBusiness.insertSetting(QRBGusername);
+            SettingBusiness.insertSetting(QRBGpassword);
             QRBGUsernameTextField.setText("");
             QRBGPasswordTextField.setText("");
         }
@@ -212,7 +212,7 @@ public class RandomnessSettings extends javax.swing.JDialog {
     private void QRBGRadioButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_QRBGRadioButtonActionPerformed
         Setting randomnessSource = sDAO.getSetting("Randomness");
         randomnessSource.setValue("1");
-        this.sDAO.updateSetting(randomnessSource);
+        SettingBusiness.updateSetting(randomnessSource);
         setQRBGSettingsEnabled(true);
     }//GEN-LAST:event_QRBGRadioButtonActionPerformed
 
@@ -226,7 +226,7 @@ public class RandomnessSettings extends javax.swing.JDialog {
     private void JavaRadioButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_JavaRadioButtonActionPerformed
         Setting randomnessSource = sDAO.getSetting("Randomness");
         randomnessSource.setValue("0");
-        this.sDAO.updateSetting(randomnessSource);
+        SettingBusiness.updateSetting(randomnessSource);
         setQRBGSettingsEnabled(false);
     }//GEN-LAST:event_JavaRadioButtonActionPerformed
 
@@ -239,11 +239,11 @@ public class RandomnessSettings extends javax.swing.JDialog {
     private void okButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_okButtonActionPerformed
         Setting QRBGusername = sDAO.getSetting("QRBGusername");
         QRBGusername.setValue(QRBGUsernameTextField.getText());
-        sDAO.updateSetting(QRBGusername);
+        SettingBusiness.updateSetting(QRBGusername);
         
         Setting QRBGpassword = sDAO.getSetting("QRBGpassword");
         QRBGpassword.setValue(new String(QRBGPasswordTextField.getPassword()));
-        sDAO.updateSetting(QRBGpassword);
+        SettingBusiness.updateSetting(QRBGpassword);
         
         this.dispose();
     }//GEN-LAST:event_okButtonActionPerformed
@@ -173,19 +173,19 @@ public class SimulationSettings extends javax.swing.JDialog {
     private void okButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_okButtonActionPerformed
         Setting numberOfSimulations = sDAO.getSetting("NumberOfSimulations");
         numberOfSimulations.setValue(String.valueOf(numOfSimulationsSpinner.getValue()));
-        sDAO.updateSetting(numberOfSimulations);
+        SettingBusiness.updateSetting(numberOfSimulations);
         
         Setting timeToSimulate = sDAO.getSetting("TimeToSimulate");
         timeToSimulate.setValue(String.valueOf(timeToSimulateSpinner.getValue()));
-        sDAO.updateSetting(timeToSimulate);
+        SettingBusiness.updateSetting(timeToSimulate);
         
         Setting htmlReportsEnabled = sDAO.getSetting("HtmlReports");
         htmlReportsEnabled.setValue(String.valueOf(htmlReportsCheckBox.isSelected()));
-        sDAO.updateSetting(htmlReportsEnabled);
+        SettingBusiness.updateSetting(htmlReportsEnabled);
         
         Setting rawDataReportsEnabled = sDAO.getSetting("RawDataReports");
         rawDataReportsEnabled.setValue(String.valueOf(rawDataReportsCheckBox.isSelected()));
-        sDAO.updateSetting(rawDataReportsEnabled);
+        SettingBusiness.updateSetting(rawDataReportsEnabled);
         
         this.dispose();
     }//GEN-LAST:event_okButtonActionPerformed
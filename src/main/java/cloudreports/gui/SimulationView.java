@@ -19,9 +19,9 @@
 
 package cloudreports.gui;
 
+import cloudreports.reports.Report;
 import cloudreports.simulation.Simulation;
 import cloudreports.utils.ElapsedTime;
-import cloudreports.utils.FileIO;
 import java.io.File;
 import java.io.IOException;
 import java.util.logging.Level;
@@ -143,7 +143,7 @@ public class SimulationView extends javax.swing.JDialog {
      * @since           1.0
      */      
     private void openFolderButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_openFolderButtonActionPerformed
-        String path = FileIO.getPathOfExecutable() + "reports";
+        String path = Report.getReportsDirectory();
         File reportsDirectory = new File(path);
         if (!reportsDirectory.exists() || !reportsDirectory.isDirectory()) return;
 
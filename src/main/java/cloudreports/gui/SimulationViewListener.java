@@ -0,0 +1,76 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.gui;
+
+import cloudreports.reports.SimulationSummary;
+import cloudreports.simulation.SimulationListener;
+import cloudreports.utils.ElapsedTime;
+
+/**
+ * Shows the progress of simulations on the {@link SimulationView}.
+ * 
+ * @see         SimulationListener
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class SimulationViewListener implements SimulationListener {
+
+    @Override
+    public void simulationsStarted(String[] environments) {
+        MainView.setStartButtonEnabled(false);
+        MainView.getSimulationView().setStateToInProgress();
+    }
+
+    @Override
+    public void simulationStarted(String environment, int simulationId, int numberOfSimulations) {
+        MainView.getSimulationView().setBarLabel("Simulation " + simulationId + " of " + environment + " is in progress...");
+    }
+
+    @Override
+    public void progressChanged(String message) {
+        MainView.getSimulationView().setBarLabel(message);
+    }
+
+    @Override
+    public void simulationCompleted(String environment, int simulationId, ElapsedTime elapsedTime, SimulationSummary summary) {
+    }
+
+    @Override
+    public void simulationFailed(String environment, int simulationId, String message, Exception cause) {
+        Dialog.showWarning(null, message);
+        MainView.getSimulationView().dispose();
+    }
+
+    @Override
+    public void simulationsCompleted(ElapsedTime elapsedTime) {
+        MainView.getSimulationView().setStateToComplete(elapsedTime);
+        MainView.setStartButtonEnabled(true);
+    }
+
+    @Override
+    public void warning(String message) {
+        Dialog.showWarning(MainView.getFrames()[0], message);
+    }
+
+    @Override
+    public void error(String message) {
+        Dialog.showErrorMessage(null, message);
+    }
+}
@@ -20,11 +20,10 @@
 package cloudreports.reports;
 
 import cloudreports.business.SettingBusiness;
-import cloudreports.dao.ReportDataDAO;
-import cloudreports.dao.SettingDAO;
 import cloudreports.utils.FileIO;
 import java.io.IOException;
-import java.net.URISyntaxException;
+import java.io.Writer;
+import java.sql.SQLException;
 import java.util.*;
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.DatacenterBroker;
@@ -33,6 +32,8 @@ import org.cloudbus.cloudsim.Vm;
 /**
  * Provides methods to generate simulation reports with information about 
  * usage of resources by customers.
+ * Resource utilization series are loaded from the database with a single
+ * query and written from the loaded store to the report files.
  * 
  * @author      Thiago T. Sá
  * @since       1.0
@@ -42,68 +43,32 @@ class CustomerReport {
     /** The name of the customer. */
     private String name;
     
+    /** The ids of the customer's virtual machines. */
+    private List<Integer> vmIds;
+    
 	/** Number of cloudlets executed per virtual machine. */
     private TreeMap<String, Integer> cloudletsPerVm;
     
     /** Cloudlets' start and finish time of execution. */
     private TreeMap<Integer, List<Double>> cloudletsTimesOfExecution;
-    
-    /** RAM utilization per virtual machine. */
-    private HashMap<Integer, TreeMap<Double, Double>> vmsUsedRam;
-    
-    /** CPU utilization per virtual machine. */
-    private HashMap<Integer, TreeMap<Double, Double>> vmsUsedCpu;
-    
-    /** Bandwidth utilization per virtual machine. */
-    private HashMap<Integer, TreeMap<Double, Double>> vmsUsedBandwidth;
-    
-    /** Overall usage of RAM by the customer. */
-    private TreeMap<Double, Double> overallUsedRam;
-    
-    /** Overall usage of CPU by the customer. */
-    private TreeMap<Double, Double> overallUsedCpu;
-    
-    /** Overall usage of bandwidth by the customer. */
-    private TreeMap<Double, Double> overallUsedBandwidth;
-    
-    /** The HTML version of the report. */
-    private String html;
-    
-    /** The raw data.
-     *  This is useful for importing simulation data to other softwares, such
-     *  as Octave or MATLAB.
-     */
-    private String rawData;
 
     /** 
      * Creates a customer report for a given broker.
      * 
-     * @param   broker  the customer's broker.
-     * @since           1.0
+     * @param   broker      the customer's broker.
+     * @since               1.0
      */    
-    public CustomerReport(DatacenterBroker broker, boolean htmlReportsEnabled, boolean rawDataReportsEnabled) throws IOException, URISyntaxException {
+    public CustomerReport(DatacenterBroker broker) {
         this.name = broker.getName();
         
-        //Get all virtual machines resource utilization data from the database
-        this.vmsUsedRam = new HashMap<Integer, TreeMap<Double, Double>>();
-        this.vmsUsedCpu = new HashMap<Integer, TreeMap<Double, Double>>();
-        this.vmsUsedBandwidth = new HashMap<Integer, TreeMap<Double, Double>>();
+        this.vmIds = new ArrayList<Integer>();
         cloudletsPerVm = new TreeMap<String, Integer>();
         List<Vm> vmsList = broker.getVmList();
-        ReportDataDAO rdDAO = new ReportDataDAO();
         for(Vm vm : vmsList) {
-            int vmId = vm.getId();
-            vmsUsedRam.put(vmId, rdDAO.getVmUsedResources("RAM", this.name, vmId));
-            vmsUsedCpu.put(vmId, rdDAO.getVmUsedResources("CPU", this.name, vmId));
-            vmsUsedBandwidth.put(vmId, rdDAO.getVmUsedResources("BANDWIDTH", this.name, vmId));
-            cloudletsPerVm.put("VM"+vmId, 0);
+            vmIds.add(vm.getId());
+            cloudletsPerVm.put("VM"+vm.getId(), 0);
         }
         
-        //Get the overall resource utilization from this customer
-        this.overallUsedRam = rdDAO.getCustomerOverallData("RAM", this.name);
-        this.overallUsedCpu = rdDAO.getCustomerOverallData("CPU", this.name);
-        this.overallUsedBandwidth = rdDAO.getCustomerOverallData("BANDWIDTH", this.name);
-        
         cloudletsTimesOfExecution = new TreeMap<Integer, List<Double>>();
         List<Cloudlet> cloudletsList = broker.getCloudletSubmittedList();
         for(Cloudlet cloudlet : cloudletsList) {
@@ -113,9 +78,6 @@ class CustomerReport {
             cloudletsTimesOfExecution.put(cloudlet.getCloudletId(), timesOfExecution);
             cloudletsPerVm.put("VM"+cloudlet.getVmId(), cloudletsPerVm.get("VM"+cloudlet.getVmId()) + 1);
         }
-        
-        if(htmlReportsEnabled) generateHtml();
-        if(rawDataReportsEnabled) generateRawData();
     }
     
     /**
@@ -126,109 +88,121 @@ class CustomerReport {
     public String getName() {
 		return name;
 	}
-    
+
     /**
-     * Gets the HTML version of the report.
+     * Writes the HTML version of the customer's report.
+     * It reads the template files and writes them replacing the existing tags
+     * with real simulation data.
      * 
-     * @return  a string that contains the HTML version of the report.
-     */
-    public String getHtml() {
-        return html;
+     * @param   out             the writer.
+     * @param   data            the store holding the series of the report.
+     * @param   visible         indicates whether the report is initially 
+     *                          visible.
+     * @throws  IOException     if the report could not be written.
+     * @throws  SQLException    if report data could not be read.
+     * @since                   1.2
+     */    
+    public void writeHtml(Writer out, final ReportDataStore data, boolean visible) throws IOException, SQLException {
+        String html = FileIO.readStringFromResource("cloudreports/gui/reports/resources/customer");
+        if(visible) {
+            html = html.replace("id=\"customer_<!--INSERT_CUSTOMER_NAME-->\" style=\"display: none;\"",
+                                "id=\"customer_<!--INSERT_CUSTOMER_NAME-->\"");
+        }
+        final String resTemplate = FileIO.readStringFromResource("cloudreports/gui/reports/resources/vm_resource_utilization");
+        final String[] timeData = getCloudletsTimesDataString(cloudletsTimesOfExecution);
+        
+        ReportWriter.writeTemplate(html, out, new ReportWriter.TagHandler() {
+            @Override
+            public boolean writeTag(String tag, Writer out) throws IOException, SQLException {
+                if(tag.equals("<!--INSERT_CUSTOMER_NAME-->")) out.write(name);
+                else if(tag.equals("<!--INSERT_VM_RESOURCE_UTILIZATION_OPTIONS-->")) writeVmOptions(out);
+                else if(tag.equals("<!--INSERT_VM_RESOURCE_UTILIZATION_LIST-->")) writeVmsList(out, data, resTemplate);
+                else if(tag.equals("<!--INSERT_OVERALL_RAM_DATA-->")) writeOverallData(out, data, "RAM");
+                else if(tag.equals("<!--INSERT_OVERALL_CPU_DATA-->")) writeOverallData(out, data, "CPU");
+                else if(tag.equals("<!--INSERT_OVERALL_BANDWIDTH_DATA-->")) writeOverallData(out, data, "BANDWIDTH");
+                else if(tag.equals("<!--INSERT_CLOUDLETS_DATA-->")) out.write(getDataAndLabelString(cloudletsPerVm));
+                else if(timeData.length == 0) return false;
+                else if(tag.equals("<!--INSERT_START_DATA-->")) out.write(timeData[0]);
+                else if(tag.equals("<!--INSERT_FINISH_DATA-->")) out.write(timeData[1]);
+                else if(tag.equals("<!--INSERT_AVERAGE_START_DATA-->")) out.write(timeData[2]);
+                else if(tag.equals("<!--INSERT_AVERAGE_FINISH_DATA-->")) out.write(timeData[3]);
+                else return false;
+                return true;
+            }
+        });
     }
-
+    
     /**
-     * Gets the raw data.
+     * Writes an option element for each virtual machine of the customer.
      * 
-     * @return  a string containing the report's raw data.
-     */
-    public String getRawData() {
-        return rawData;
+     * @param   out         the writer.
+     * @throws  IOException if the options could not be written.
+     * @since               1.2
+     */    
+    private void writeVmOptions(Writer out) throws IOException {
+        for(Integer vmId : vmIds) {
+            out.write("<option value=\"resource_utilization_" + this.name + "_VM" + vmId
+                      + "\">VM" + vmId + "</option>\n");
+        }
     }
-
-
+    
     /**
-     * Generates the HTML version of the customer's report.
-     * It reads the template files and replaces the existing tags with real
-     * simulation data. The resulting string is assigned to the {@link #html}
-     * field.
+     * Writes the virtual machine template for each virtual machine of the 
+     * customer.
      * 
-     * @throws  IOException         If the template files could not be loaded
-     *                              correctly.
-     * @throws  URISyntaxException  If the path to the template files could not
-     *                              be parsed successfully.
-     * @since                       1.0
+     * @param   out             the writer.
+     * @param   data            the store holding the series of the report.
+     * @param   template        the virtual machine template.
+     * @throws  IOException     if the virtual machines could not be written.
+     * @throws  SQLException    if report data could not be read.
+     * @since                   1.2
      */    
-    private void generateHtml() throws IOException, URISyntaxException {
-        this.html = FileIO.readStringFromResource("cloudreports/gui/reports/resources/customer");
-        
-        StringBuilder vmResUtilizationOptions = new StringBuilder();
-        StringBuilder vmsResUtilization = new StringBuilder();
-        List<Integer> vmIds = Arrays.asList(vmsUsedRam.keySet().toArray(new Integer[0]));
-        for(Integer vmId : vmIds) {
-            vmResUtilizationOptions.append("<option value=\"resource_utilization_")
-                                   .append(this.name).append("_").append("VM")
-                                   .append(vmId).append("\">VM").append(vmId)
-                                   .append("</option>\n");
-            
-            //Create virtual machine resource utilization html
-            String resHtml = FileIO.readStringFromResource("cloudreports/gui/reports/resources/vm_resource_utilization");
-            resHtml = resHtml.replace("<!--INSERT_VM_NAME-->", "VM"+vmId);
-            resHtml = resHtml.replace("<!--INSERT_RAM_DATA-->", getDataString(vmsUsedRam.get(vmId)));
-            resHtml = resHtml.replace("<!--INSERT_CPU_DATA-->", getDataString(vmsUsedCpu.get(vmId)));
-            resHtml = resHtml.replace("<!--INSERT_BANDWIDTH_DATA-->", getDataString(vmsUsedBandwidth.get(vmId)));
-            vmsResUtilization.append(resHtml);
-        }        
-        //Insert virtual machine options
-        html = html.replace("<!--INSERT_VM_RESOURCE_UTILIZATION_OPTIONS-->", vmResUtilizationOptions.toString());
-        //Insert virtual machines resource utilization
-        html = html.replace("<!--INSERT_VM_RESOURCE_UTILIZATION_LIST-->", vmsResUtilization.toString()) ;
-        
-        //Insert overall resource utilization data
-        html = html.replace("<!--INSERT_OVERALL_RAM_DATA-->", getDataString(overallUsedRam));
-        html = html.replace("<!--INSERT_OVERALL_CPU_DATA-->", getDataString(overallUsedCpu));
-        html = html.replace("<!--INSERT_OVERALL_BANDWIDTH_DATA-->", getDataString(overallUsedBandwidth));
-        
-        //Insert cloudlets data
-        html = html.replace("<!--INSERT_CLOUDLETS_DATA-->", getDataAndLabelString(cloudletsPerVm));
-        
-        //Insert execution times data
-        String[] timeData = getCloudletsTimesDataString(cloudletsTimesOfExecution);
-        if(timeData.length > 0) {
-            html = html.replace("<!--INSERT_START_DATA-->", timeData[0]);
-            html = html.replace("<!--INSERT_FINISH_DATA-->", timeData[1]);
-            html = html.replace("<!--INSERT_AVERAGE_START_DATA-->", timeData[2]);
-            html = html.replace("<!--INSERT_AVERAGE_FINISH_DATA-->", timeData[3]);
+    private void writeVmsList(Writer out, final ReportDataStore data, String template) throws IOException, SQLException {
+        for(final Integer vmId : vmIds) {
+            ReportWriter.writeTemplate(template, out, new ReportWriter.TagHandler() {
+                @Override
+                public boolean writeTag(String tag, Writer out) throws IOException, SQLException {
+                    if(tag.equals("<!--INSERT_CUSTOMER_NAME-->")) out.write(name);
+                    else if(tag.equals("<!--INSERT_VM_NAME-->")) out.write("VM" + vmId);
+                    else if(tag.equals("<!--INSERT_RAM_DATA-->")) writeVmData(out, data, "RAM", vmId);
+                    else if(tag.equals("<!--INSERT_CPU_DATA-->")) writeVmData(out, data, "CPU", vmId);
+                    else if(tag.equals("<!--INSERT_BANDWIDTH_DATA-->")) writeVmData(out, data, "BANDWIDTH", vmId);
+                    else return false;
+                    return true;
+                }
+            });
         }
-        
-        //Insert customer's name
-        html = html.replace("<!--INSERT_CUSTOMER_NAME-->", this.name);    
     }
     
+    /**
+     * Writes a resource utilization series of a virtual machine in a format 
+     * that can be parsed by the Flot library.
+     * 
+     * @param   out             the writer.
+     * @param   data            the store holding the series of the report.
+     * @param   type            the type of resource.
+     * @param   vmId            the id of the virtual machine.
+     * @throws  IOException     if the series could not be written.
+     * @see                     <a href="http://code.google.com/p/flot/">The Flot library</a>
+     * @since                   1.2
+     */     
+    private void writeVmData(Writer out, ReportDataStore data, String type, int vmId) throws IOException {
+        ReportWriter.writeChartData(data.findSeries(type, null, this.name, null, vmId), out);
+    }
     
     /**
-     * Converts a time-value map of generic data to a string format that can be
-     * parsed by the Flot library.
+     * Writes an overall resource utilization series of the customer in a 
+     * format that can be parsed by the Flot library.
      * 
-     * @param   dataMap a map of generic report data.
-     * @return          a formated string containing the data of the map.
-     * @see             <a href="http://code.google.com/p/flot/">The Flot library</a>
-     * @since           1.0
+     * @param   out             the writer.
+     * @param   data            the store holding the series of the report.
+     * @param   type            the type of resource.
+     * @throws  IOException     if the series could not be written.
+     * @see                     <a href="http://code.google.com/p/flot/">The Flot library</a>
+     * @since                   1.2
      */     
-    private String getDataString(TreeMap<Double, Double> dataMap) {
-        StringBuilder dataStringBuilder = new StringBuilder("[");
-        Iterator<Double> iterator = dataMap.keySet().iterator();
-        while (iterator.hasNext()) {
-            double time = iterator.next();
-            dataStringBuilder.append("[");
-            dataStringBuilder.append(time);
-            dataStringBuilder.append(",");
-            dataStringBuilder.append(dataMap.get(time));
-            dataStringBuilder.append("],");
-        }
-        dataStringBuilder.deleteCharAt(dataStringBuilder.lastIndexOf(","));
-        dataStringBuilder.append("]");
-        
-        return dataStringBuilder.toString();
+    private void writeOverallData(Writer out, ReportDataStore data, String type) throws IOException {
+        ReportWriter.writeChartData(data.findSeries(type, null, this.name, null, null), out);
     }
     
     /**
@@ -319,46 +293,45 @@ class CustomerReport {
     }    
 
     /**
-     * Generates the report's raw data and assigns it to the {@link #rawData}
-     * field.
+     * Writes the report's raw data.
      * 
-     * @since           1.0
+     * @param   out             the writer.
+     * @param   data            the store holding the series of the report.
+     * @throws  IOException     if the raw data could not be written.
+     * @since                   1.2
      */     
-    private void generateRawData() {
-        StringBuilder rawDataStringBuilder = new StringBuilder("");
-        int simulationId = SettingBusiness.getCurrentSimulation();
+    public void writeRawData(Writer out, ReportDataStore data) throws IOException {
+        String prefix = "Sim" + SettingBusiness.getCurrentSimulation() + "_" + this.name;
 
-        rawDataStringBuilder.append(getRawDataString(overallUsedRam, "Sim" + simulationId + "_" + this.name + "_overall_ram"));
-        rawDataStringBuilder.append(getRawDataString(overallUsedCpu, "Sim" + simulationId + "_" + this.name + "_overall_cpu"));
-        rawDataStringBuilder.append(getRawDataString(overallUsedBandwidth, "Sim" + simulationId + "_" + this.name + "_overall_bw"));
+        writeOverallRawData(out, data, "RAM", prefix + "_overall_ram");
+        writeOverallRawData(out, data, "CPU", prefix + "_overall_cpu");
+        writeOverallRawData(out, data, "BANDWIDTH", prefix + "_overall_bw");
 
-        List<Integer> vmIds = Arrays.asList(vmsUsedRam.keySet().toArray(new Integer[0]));
         for(Integer vmId : vmIds) {
-            rawDataStringBuilder.append(getRawDataString(vmsUsedRam.get(vmId), "Sim" + simulationId + "_" + this.name + "_vm" + vmId + "_ram"));
-            rawDataStringBuilder.append(getRawDataString(vmsUsedCpu.get(vmId), "Sim" + simulationId + "_" + this.name + "_vm" + vmId + "_cpu"));
-            rawDataStringBuilder.append(getRawDataString(vmsUsedBandwidth.get(vmId), "Sim" + simulationId + "_" + this.name + "_vm" + vmId + "_bw"));
+            writeVmRawData(out, data, "RAM", vmId, prefix + "_vm" + vmId + "_ram");
+            writeVmRawData(out, data, "CPU", vmId, prefix + "_vm" + vmId + "_cpu");
+            writeVmRawData(out, data, "BANDWIDTH", vmId, prefix + "_vm" + vmId + "_bw");
         }
-
-        this.rawData = rawDataStringBuilder.toString();
     }
 
     /**
-     * Converts a time-value map to a string that can be easily parsed by a
-     * third party software.
+     * Writes an overall series of the customer in a format that can be 
+     * easily parsed by a third party software.
      * 
-     * @since           1.0
+     * @since           1.2
      */      
-    private String getRawDataString(TreeMap<Double, Double> dataMap, String label) {
-        StringBuilder timeStringBuilder = new StringBuilder("\n" + label + "_time\t");
-        StringBuilder valuesStringBuilder = new StringBuilder("\n" + label + "_values\t");
-        Iterator<Double> iterator = dataMap.keySet().iterator();
-        while (iterator.hasNext()) {
-            double time = iterator.next();
-            timeStringBuilder.append(time).append("\t");
-            valuesStringBuilder.append(dataMap.get(time)).append("\t");
-        }
+    private void writeOverallRawData(Writer out, ReportDataStore data, String type, String label) throws IOException {
+        ReportWriter.writeRawData(data.findSeries(type, null, this.name, null, null), label, out);
+    }
 
-        return timeStringBuilder.toString() + valuesStringBuilder.toString();
-    }    
+    /**
+     * Writes a series of a virtual machine in a format that can be easily 
+     * parsed by a third party software.
+     * 
+     * @since           1.2
+     */      
+    private void writeVmRawData(Writer out, ReportDataStore data, String type, int vmId, String label) throws IOException {
+        ReportWriter.writeRawData(data.findSeries(type, null, this.name, null, vmId), label, out);
+    }
 
 }
@@ -19,17 +19,14 @@
 
 package cloudreports.reports;
 
-import cloudreports.business.SettingBusiness;
-import cloudreports.dao.MigrationDAO;
-import cloudreports.dao.ReportDataDAO;
+import cloudreports.business.SettingsSnapshot;
 import cloudreports.dao.SettingDAO;
 import cloudreports.database.Database;
+import cloudreports.extensions.HostStateSnapshot;
 import cloudreports.extensions.PowerDatacenter;
 import cloudreports.models.DatacenterRegistry;
 import cloudreports.models.Migration;
-import cloudreports.models.ReportData;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import org.cloudbus.cloudsim.DatacenterBroker;
@@ -57,13 +54,39 @@ public class DataCollector {
     /** The label used for the RAM resources. */
     private static final String RAM = "RAM";
     
-    /** The number of samples to be considered when dealing with monitored
-     *  resources.
-     */
-    private static final int SAMPLES = 2;
+    /** The types of monitored resources. */
+    private static final String[] MONITORED_RESOURCES = {RAM, CPU};
 
-    /** A list of transient report data. */
-    private List<ReportData> dataList;
+    /** The types of resources collected from hosts. */
+    private static final String[] HOST_RESOURCES = {RAM, CPU, BANDWIDTH, POWER};
+    
+    /** The types of resources collected from virtual machines. */
+    private static final String[] VM_RESOURCES = {RAM, CPU, BANDWIDTH};
+    
+    /** The maximum number of pending samples before they are flushed. */
+    private static final int FLUSH_THRESHOLD = 10000;
+
+    /** The store of collected samples. */
+    private ReportDataStore dataStore;
+    
+    /** The flusher that persists collected samples in background. */
+    private DataFlusher flusher;
+    
+    /** The series of each host, indexed by datacenter name, host position and
+     *  resource type.
+     */
+    private HashMap<String, ReportDataStore.Series[][]> hostsSeries;
+    
+    /** The overall series of each datacenter, indexed by resource type. */
+    private HashMap<String, ReportDataStore.Series[]> datacentersSeries;
+    
+    /** The series of each virtual machine, indexed by customer name, virtual
+     *  machine position and resource type.
+     */
+    private HashMap<String, ReportDataStore.Series[][]> vmsSeries;
+    
+    /** The overall series of each customer, indexed by resource type. */
+    private HashMap<String, ReportDataStore.Series[]> customersSeries;
     
     /** A map of datacenters. */
     private HashMap<String,PowerDatacenter> datacenters;
@@ -71,26 +94,47 @@ public class DataCollector {
     /** A map of brokers. */
     private HashMap<String,DatacenterBroker> brokers;
     
-    /** A list of monitored resources. */
-    private List<ReportData> monitoredUsedResources;
+    /** The number of samples to be considered when dealing with monitored
+     *  resources.
+     */
+    private int monitoringWindow;
+    
+    /** The history of monitored resources of each datacenter, indexed by 
+     *  resource type.
+     */
+    private HashMap<String, UtilizationHistory[]> monitoredUsedResources;
     
     /** The last moment data was collected. */
     private double lastClock;
+    
+    /** The timer of the phases of the simulation. */
+    private PhaseTimer phaseTimer;
 
     /** 
      * Creates an instance of a data collector.
      * 
      * @param   datacenters a map of datacenters to keep track of.
      * @param   brokers     a map of brokers to keep track of.
+     * @param   settings    the settings of the simulation.
+     * @param   phaseTimer  the timer of the phases of the simulation.
      * @since               1.0
      */     
-    public DataCollector(HashMap<String,PowerDatacenter> datacenters, HashMap<String,DatacenterBroker> brokers) {
+    public DataCollector(HashMap<String,PowerDatacenter> datacenters, HashMap<String,DatacenterBroker> brokers,
+                         SettingsSnapshot settings, PhaseTimer phaseTimer) {
         
         Database.cleanTempReport();
+        Database.updateReportDataIndexes();
         this.datacenters = datacenters;
         this.brokers = brokers;
-        this.monitoredUsedResources = new ArrayList<ReportData>();
-        this.dataList = new ArrayList<ReportData>();
+        this.monitoringWindow = settings.getMonitoringWindow();
+        this.monitoredUsedResources = new HashMap<String, UtilizationHistory[]>();
+        this.dataStore = new ReportDataStore(settings.getCurrentSimulation());
+        this.phaseTimer = phaseTimer;
+        this.flusher = new DataFlusher(phaseTimer);
+        this.hostsSeries = new HashMap<String, ReportDataStore.Series[][]>();
+        this.datacentersSeries = new HashMap<String, ReportDataStore.Series[]>();
+        this.vmsSeries = new HashMap<String, ReportDataStore.Series[][]>();
+        this.customersSeries = new HashMap<String, ReportDataStore.Series[]>();
         insertClearedData(0);
     }
     
@@ -104,108 +148,201 @@ public class DataCollector {
     }
     
     /**
-     * Collects data from virtual machines and hosts and adds them to a
-     * transient list.
-     * If the transient list's size gets greater than 1000, the data is flushed
-     * to the database.
+     * Gets the timer of the phases of the simulation.
+     * 
+     * @return  the phase timer.
+     */
+    public PhaseTimer getPhaseTimer() {
+        return phaseTimer;
+    }
+    
+    /**
+     * Gets the store of collected samples.
+     * 
+     * @return  the store of collected samples.
+     */
+    public ReportDataStore getDataStore() {
+        return dataStore;
+    }
+    
+    /**
+     * Collects data from virtual machines and from the hosts of all 
+     * datacenters and adds them to the data store.
+     * If the number of pending samples of previous instants gets greater 
+     * than {@link #FLUSH_THRESHOLD}, the data is flushed to the database.
      * 
      * @see     #flushData()
      * @since   1.0
      */    
     public void collectData() {
-        collectVmsData();
-        collectHostsData();
-        if(dataList.size() > 10000) {
-            flushData();            
+        flushPreviousInstants();
+        collectVmsData(null);
+        for(PowerDatacenter datacenter : datacenters.values()) {
+            collectHostsData(datacenter);
         }
     }
 
     /**
-     * Collects data from virtual machines and adds them to a transient list.
+     * Collects data from virtual machines and from the hosts of a given 
+     * datacenter and adds them to the data store.
+     * Only the hosts of the datacenter are visited. All virtual machines are
+     * sampled on the first call of each simulated instant; later calls at the
+     * same instant sample again only the virtual machines of the datacenter,
+     * since their state only changes when it is processed. Samples taken
+     * earlier at the same instant are replaced, so each host and virtual 
+     * machine is stored at most once per instant.
+     * If the number of pending samples of previous instants gets greater 
+     * than {@link #FLUSH_THRESHOLD}, the data is flushed to the database.
      * 
+     * @param   datacenter  the datacenter whose hosts must be collected.
+     * @see     #flushData()
+     * @since   1.2
+     */    
+    public void collectData(PowerDatacenter datacenter) {
+        flushPreviousInstants();
+        collectVmsData(datacenter);
+        collectHostsData(datacenter);
+    }
+
+    /**
+     * Flushes the data store if it holds more than {@link #FLUSH_THRESHOLD}
+     * pending samples and the current instant has not been collected yet.
+     * Samples of the instant being collected are kept in memory, since only
+     * pending samples can be replaced by later datacenters.
+     */    
+    private void flushPreviousInstants() {
+        if(this.lastClock != CloudSim.clock() && dataStore.getPendingSamples() > FLUSH_THRESHOLD) {
+            flushData();
+        }
+    }
+
+    /**
+     * Collects data from virtual machines and adds them to the data store.
+     * If data has already been collected at the current instant, the 
+     * previous samples are replaced. Virtual machines of other datacenters
+     * that already have a sample of the current instant keep it.
+     * 
+     * @param   datacenter  the datacenter whose virtual machines must be 
+     *                      sampled again; or <code>null</code> to sample all
+     *                      virtual machines.
      * @since   1.0
      */     
-    private void collectVmsData() {
-        List<String> brokerNames = Arrays.asList(brokers.keySet().toArray(new String[0]));
+    private void collectVmsData(PowerDatacenter datacenter) {
         double currentTime = CloudSim.clock();
         this.lastClock = currentTime;
-        for(String brokerName : brokerNames) {
+        for(String brokerName : brokers.keySet()) {
             DatacenterBroker broker = brokers.get(brokerName);
             double overallRam = 0,
                    overallCpu = 0,
                    overallBandwidth = 0;
-            int currentSimulation = SettingBusiness.getCurrentSimulation();
             
             List<Vm> vmsList = broker.getVmList();
-            for(Vm vm : vmsList) {
-                int vmId = vm.getId();
-                
-                double ramUtilization = (vm.getCurrentAllocatedRam()/vm.getRam())*100;
-                dataList.add(new ReportData(RAM, null, brokerName, null, vmId, currentTime, ramUtilization, currentSimulation));
-                overallRam += ramUtilization;
+            ReportDataStore.Series[][] series = getVmsSeries(brokerName, vmsList);
+            for(int i = 0; i < vmsList.size(); i++) {
+                Vm vm = vmsList.get(i);
                 
-                double cpuUtilization = (vm.getCurrentRequestedTotalMips()/vm.getMips())*100;
-                dataList.add(new ReportData(CPU, null, brokerName, null, vmId, currentTime, cpuUtilization, currentSimulation));
-                overallCpu += cpuUtilization;
+                if(datacenter == null || !hasSample(series[i][0], currentTime) || isHostedBy(vm, datacenter)) {
+                    series[i][0].put(currentTime, (vm.getCurrentAllocatedRam()/vm.getRam())*100);
+                    series[i][1].put(currentTime, (vm.getCurrentRequestedTotalMips()/vm.getMips())*100);
+                    series[i][2].put(currentTime, (vm.getCurrentAllocatedBw()/vm.getBw())*100);
+                }
                 
-                double bwUtilization = (vm.getCurrentAllocatedBw()/vm.getBw())*100;
-                dataList.add(new ReportData(BANDWIDTH, null, brokerName, null, vmId, currentTime, bwUtilization, currentSimulation));
-                overallBandwidth += bwUtilization;
+                overallRam += getLastAmount(series[i][0]);
+                overallCpu += getLastAmount(series[i][1]);
+                overallBandwidth += getLastAmount(series[i][2]);
             }
             
             int numOfVms = vmsList.size();
-            dataList.add(new ReportData(RAM, null, brokerName, currentTime, overallRam/numOfVms, currentSimulation));            
-            dataList.add(new ReportData(CPU, null, brokerName, currentTime, overallCpu/numOfVms, currentSimulation));            
-            dataList.add(new ReportData(BANDWIDTH, null, brokerName, currentTime, overallBandwidth/numOfVms, currentSimulation));
+            ReportDataStore.Series[] overallSeries = getCustomerSeries(brokerName);
+            overallSeries[0].put(currentTime, overallRam/numOfVms);
+            overallSeries[1].put(currentTime, overallCpu/numOfVms);
+            overallSeries[2].put(currentTime, overallBandwidth/numOfVms);
         }
         
     }
 
     /**
-     * Collects data from hosts and adds them to a transient list.
+     * Checks whether a series holds a sample of a given instant.
+     * 
+     * @param   series  the series.
+     * @param   time    the instant.
+     * @return          <code>true</code> if the last sample of the series 
+     *                  refers to the instant; <code>false</code> otherwise.
+     */     
+    private static boolean hasSample(ReportDataStore.Series series, double time) {
+        return series.size() > 0 && series.getTime(series.size() - 1) == time;
+    }
+
+    /**
+     * Gets the amount of the last sample of a series.
      * 
+     * @param   series  a series that holds at least one sample.
+     * @return          the amount of the last sample.
+     */     
+    private static double getLastAmount(ReportDataStore.Series series) {
+        return series.getAmount(series.size() - 1);
+    }
+
+    /**
+     * Checks whether a virtual machine is placed on a host of a given 
+     * datacenter.
+     * 
+     * @param   vm          the virtual machine.
+     * @param   datacenter  the datacenter.
+     * @return              <code>true</code> if the virtual machine is placed
+     *                      on the datacenter; <code>false</code> otherwise.
+     */     
+    private static boolean isHostedBy(Vm vm, PowerDatacenter datacenter) {
+        return vm.getHost() != null && vm.getHost().getDatacenter() == datacenter;
+    }
+
+    /**
+     * Collects data from the hosts of a given datacenter and adds them to the
+     * data store.
+     * If data has already been collected at the current instant, the 
+     * previous samples are replaced.
+     * 
+     * @param   datacenter  the datacenter whose hosts must be collected.
      * @since   1.0
      */         
-    private void collectHostsData() {
-        List<String> datacenterNames = Arrays.asList(datacenters.keySet().toArray(new String[0]));
+    private void collectHostsData(PowerDatacenter datacenter) {
         double currentTime = CloudSim.clock();
         this.lastClock = currentTime;
-        for(String datacenterName : datacenterNames) {
-            PowerDatacenter datacenter = datacenters.get(datacenterName);
-            double overallRam = 0,
-                   overallCpu = 0,
-                   overallBandwidth = 0,
-                   overallPower = 0;   
-            int currentSimulation = SettingBusiness.getCurrentSimulation();
+        String datacenterName = datacenter.getName();
+        double overallRam = 0,
+               overallCpu = 0,
+               overallBandwidth = 0,
+               overallPower = 0;   
+        
+        List<PowerHost> hostsList = datacenter.getHostList();
+        HostStateSnapshot hostStates = datacenter.getHostStateSnapshot();
+        ReportDataStore.Series[][] series = getHostsSeries(datacenterName, hostsList);
+        for(int i = 0; i < hostsList.size(); i++) {
+            PowerHost host = hostsList.get(i);
             
-            List<PowerHost> hostsList = datacenter.getHostList();
-            for(PowerHost host : hostsList) {
-                int hostId = host.getId();
-                
-                double ramUtilization = (host.getUtilizationOfRam()/host.getRam())*100;
-                dataList.add(new ReportData(RAM, datacenterName, null, hostId, null, currentTime, ramUtilization, currentSimulation));
-                overallRam += ramUtilization;
-                
-                double cpuUtilization = (host.getUtilizationOfCpuMips()/host.getTotalMips())*100;
-                dataList.add(new ReportData(CPU, datacenterName, null, hostId, null, currentTime, cpuUtilization, currentSimulation));
-                overallCpu += cpuUtilization;
-                
-                double bwUtilization = (host.getUtilizationOfBw()/host.getBw())*100;
-                dataList.add(new ReportData(BANDWIDTH, datacenterName, null, hostId, null, currentTime, bwUtilization, currentSimulation));
-                overallBandwidth += bwUtilization;
-                
-                double powerUtilization = (host.getPower()/host.getMaxPower())*100;
-                dataList.add(new ReportData(POWER, datacenterName, null, hostId, null, currentTime, powerUtilization, currentSimulation));
-                overallPower += powerUtilization;
-            }
+            double ramUtilization = (hostStates.getRamUtilization(i)/host.getRam())*100;
+            series[i][0].put(currentTime, ramUtilization);
+            overallRam += ramUtilization;
             
-            int numOfHosts = hostsList.size();
+            double cpuUtilization = (hostStates.getCpuUtilization(i)/host.getTotalMips())*100;
+            series[i][1].put(currentTime, cpuUtilization);
+            overallCpu += cpuUtilization;
             
-            dataList.add(new ReportData(RAM, datacenterName, null, currentTime, overallRam/numOfHosts, currentSimulation));            
-            dataList.add(new ReportData(CPU, datacenterName, null, currentTime, overallCpu/numOfHosts, currentSimulation));            
-            dataList.add(new ReportData(BANDWIDTH, datacenterName, null, currentTime, overallBandwidth/numOfHosts, currentSimulation));            
-            dataList.add(new ReportData(POWER, datacenterName, null, currentTime, overallPower/numOfHosts, currentSimulation));
+            double bwUtilization = (hostStates.getBwUtilization(i)/host.getBw())*100;
+            series[i][2].put(currentTime, bwUtilization);
+            overallBandwidth += bwUtilization;
+            
+            double powerUtilization = (hostStates.getPower(i)/host.getMaxPower())*100;
+            series[i][3].put(currentTime, powerUtilization);
+            overallPower += powerUtilization;
         }
+        
+        int numOfHosts = hostsList.size();
+        ReportDataStore.Series[] overallSeries = getDatacenterSeries(datacenterName);
+        overallSeries[0].put(currentTime, overallRam/numOfHosts);
+        overallSeries[1].put(currentTime, overallCpu/numOfHosts);
+        overallSeries[2].put(currentTime, overallBandwidth/numOfHosts);
+        overallSeries[3].put(currentTime, overallPower/numOfHosts);
     }
     
     /**
@@ -217,126 +354,242 @@ public class DataCollector {
      */       
     public void insertClearedData(double time) {
         //Create cleared data for virtual machines
-        List<String> brokerNames = Arrays.asList(brokers.keySet().toArray(new String[0]));
-        ReportDataDAO rdDAO = new ReportDataDAO();
-        double currentTime = time;
-        int currentSimulation = SettingBusiness.getCurrentSimulation();
-        
-        for (String brokerName : brokerNames) {
-            DatacenterBroker broker = brokers.get(brokerName);
-
-            List<Vm> vmsList = broker.getVmList();
-            for (Vm vm : vmsList) {
-                int vmId = vm.getId();
-
-                rdDAO.insertVmData(RAM, brokerName, vmId, currentTime, 0, currentSimulation);
-                rdDAO.insertVmData(CPU, brokerName, vmId, currentTime, 0, currentSimulation);
-                rdDAO.insertVmData(BANDWIDTH, brokerName, vmId, currentTime, 0, currentSimulation);
+        for (String brokerName : brokers.keySet()) {
+            List<Vm> vmsList = brokers.get(brokerName).getVmList();
+            for (ReportDataStore.Series[] series : getVmsSeries(brokerName, vmsList)) {
+                for (ReportDataStore.Series resourceSeries : series) {
+                    resourceSeries.append(time, 0);
+                }
             }
 
-            rdDAO.insertCustomerOverallData(RAM, brokerName, currentTime, 0, currentSimulation);
-            rdDAO.insertCustomerOverallData(CPU, brokerName, currentTime, 0, currentSimulation);
-            rdDAO.insertCustomerOverallData(BANDWIDTH, brokerName, currentTime, 0, currentSimulation);
+            for (ReportDataStore.Series resourceSeries : getCustomerSeries(brokerName)) {
+                resourceSeries.append(time, 0);
+            }
         }
         
         //Create cleared data for hosts
-        List<String> datacenterNames = Arrays.asList(datacenters.keySet().toArray(new String[0]));
-        for (String datacenterName : datacenterNames) {
-            PowerDatacenter datacenter = datacenters.get(datacenterName);
+        for (String datacenterName : datacenters.keySet()) {
+            List<PowerHost> hostsList = datacenters.get(datacenterName).getHostList();
+            for (ReportDataStore.Series[] series : getHostsSeries(datacenterName, hostsList)) {
+                for (ReportDataStore.Series resourceSeries : series) {
+                    resourceSeries.append(time, 0);
+                }
+            }
+
+            for (ReportDataStore.Series resourceSeries : getDatacenterSeries(datacenterName)) {
+                resourceSeries.append(time, 0);
+            }
+        }
+        
+        flushData();
+    }
+
+    /**
+     * Gets the series of the hosts of a given datacenter.
+     * The series are created on the first call and reused afterwards, so
+     * collecting data does not require any lookup.
+     * 
+     * @param   datacenterName  the name of the datacenter.
+     * @param   hostsList       the list of hosts of the datacenter.
+     * @return                  the series of each host, indexed by host 
+     *                          position and resource type.
+     * @since                   1.2
+     */
+    private ReportDataStore.Series[][] getHostsSeries(String datacenterName, List<PowerHost> hostsList) {
+        ReportDataStore.Series[][] series = hostsSeries.get(datacenterName);
+        if(series == null || series.length != hostsList.size()) {
+            series = new ReportDataStore.Series[hostsList.size()][HOST_RESOURCES.length];
+            for(int i = 0; i < hostsList.size(); i++) {
+                int hostId = hostsList.get(i).getId();
+                for(int j = 0; j < HOST_RESOURCES.length; j++) {
+                    series[i][j] = dataStore.getHostSeries(HOST_RESOURCES[j], datacenterName, hostId);
+                }
+            }
+            hostsSeries.put(datacenterName, series);
+        }
+        return series;
+    }
 
-            List<PowerHost> hostsList = datacenter.getHostList();
-            for (PowerHost host : hostsList) {
-                int hostId = host.getId();
+    /**
+     * Gets the overall series of a given datacenter.
+     * 
+     * @param   datacenterName  the name of the datacenter.
+     * @return                  the overall series of the datacenter, indexed
+     *                          by resource type.
+     * @since                   1.2
+     */
+    private ReportDataStore.Series[] getDatacenterSeries(String datacenterName) {
+        ReportDataStore.Series[] series = datacentersSeries.get(datacenterName);
+        if(series == null) {
+            series = new ReportDataStore.Series[HOST_RESOURCES.length];
+            for(int j = 0; j < HOST_RESOURCES.length; j++) {
+                series[j] = dataStore.getDatacenterSeries(HOST_RESOURCES[j], datacenterName);
+            }
+            datacentersSeries.put(datacenterName, series);
+        }
+        return series;
+    }
 
-                rdDAO.insertHostData(RAM, datacenterName, hostId, currentTime, 0, currentSimulation);
-                rdDAO.insertHostData(CPU, datacenterName, hostId, currentTime, 0, currentSimulation);
-                rdDAO.insertHostData(BANDWIDTH, datacenterName, hostId, currentTime, 0, currentSimulation);
-                rdDAO.insertHostData(POWER, datacenterName, hostId, currentTime, 0, currentSimulation);
+    /**
+     * Gets the series of the virtual machines of a given customer.
+     * The series are created on the first call and reused afterwards, so
+     * collecting data does not require any lookup.
+     * 
+     * @param   customerName    the name of the customer.
+     * @param   vmsList         the list of virtual machines of the customer.
+     * @return                  the series of each virtual machine, indexed by
+     *                          virtual machine position and resource type.
+     * @since                   1.2
+     */
+    private ReportDataStore.Series[][] getVmsSeries(String customerName, List<Vm> vmsList) {
+        ReportDataStore.Series[][] series = vmsSeries.get(customerName);
+        if(series == null || series.length != vmsList.size()) {
+            series = new ReportDataStore.Series[vmsList.size()][VM_RESOURCES.length];
+            for(int i = 0; i < vmsList.size(); i++) {
+                int vmId = vmsList.get(i).getId();
+                for(int j = 0; j < VM_RESOURCES.length; j++) {
+                    series[i][j] = dataStore.getVmSeries(VM_RESOURCES[j], customerName, vmId);
+                }
             }
+            vmsSeries.put(customerName, series);
+        }
+        return series;
+    }
 
-            rdDAO.insertDatacenterOverallData(RAM, datacenterName, currentTime, 0, currentSimulation);
-            rdDAO.insertDatacenterOverallData(CPU, datacenterName, currentTime, 0, currentSimulation);
-            rdDAO.insertDatacenterOverallData(BANDWIDTH, datacenterName, currentTime, 0, currentSimulation);
-            rdDAO.insertDatacenterOverallData(POWER, datacenterName, currentTime, 0, currentSimulation);
+    /**
+     * Gets the overall series of a given customer.
+     * 
+     * @param   customerName    the name of the customer.
+     * @return                  the overall series of the customer, indexed
+     *                          by resource type.
+     * @since                   1.2
+     */
+    private ReportDataStore.Series[] getCustomerSeries(String customerName) {
+        ReportDataStore.Series[] series = customersSeries.get(customerName);
+        if(series == null) {
+            series = new ReportDataStore.Series[VM_RESOURCES.length];
+            for(int j = 0; j < VM_RESOURCES.length; j++) {
+                series[j] = dataStore.getCustomerSeries(VM_RESOURCES[j], customerName);
+            }
+            customersSeries.put(customerName, series);
         }
+        return series;
     }
 
     /**
-     * Inserts migration data into the database.
+     * Hands off migration data to be inserted into the database in 
+     * background.
      * 
      * @param   migrationList   the list of migration data to be inserted.
+     * @see     DataFlusher
      * @since   1.0
      */         
     public void flushMigrations(List<Migration> migrationList) {
-        MigrationDAO mDAO = new MigrationDAO();
-        mDAO.insertMigrations(migrationList);
+        flusher.submitMigrations(migrationList);
     }
     
     /**
-     * Inserts report data from {@link #dataList} into the database.
+     * Hands off the pending samples of {@link #dataStore} to be inserted into
+     * the database in background.
+     * The buffers of the data store are swapped with the buffers of a store
+     * that has already been flushed, so the simulation goes on while the
+     * samples are inserted.
      * 
+     * @see     DataFlusher
      * @since   1.0
      */       
     public void flushData() {
-        if(!this.dataList.isEmpty()) {
-            ReportDataDAO rDAO = new ReportDataDAO();
-            rDAO.insertDataList(dataList);
-            dataList.clear();
+        if(this.dataStore.getPendingSamples() > 0) {
+            flusher.submit(dataStore.swapBuffers(flusher.pollEmptyStore()));
         }
     }
     
     /**
-     * Collects monitored resources.
+     * Flushes the pending samples and waits until all samples have been
+     * inserted into the database.
+     * This method must be called before reports are generated.
+     * 
+     * @since   1.2
+     */       
+    public void awaitFlush() {
+        flushData();
+        flusher.awaitDrain();
+    }
+    
+    /**
+     * Collects monitored resources of all datacenters.
      * 
      * @see     DatacenterRegistry#monitoringInterval
      * @since   1.0
      */       
     public void collectMonitoredUsedResources() {
-        List<String> datacenterNames = Arrays.asList(datacenters.keySet().toArray(new String[0]));
-        double currentTime = CloudSim.clock();
-        for (String datacenterName : datacenterNames) {
-            PowerDatacenter datacenter = datacenters.get(datacenterName);
-            List<PowerHost> hostsList = datacenter.getHostList();
-            for (PowerHost host : hostsList) {
-                int hostId = host.getId();
+        for (PowerDatacenter datacenter : datacenters.values()) {
+            collectMonitoredUsedResources(datacenter);
+        }
+    }
+    
+    /**
+     * Collects monitored resources of a given datacenter.
+     * Only the hosts of the datacenter are visited, so each datacenter adds
+     * samples to its histories at its own monitoring interval.
+     * 
+     * @param   datacenter  the monitored datacenter.
+     * @see     DatacenterRegistry#monitoringInterval
+     * @since   1.2
+     */       
+    public void collectMonitoredUsedResources(PowerDatacenter datacenter) {
+        List<PowerHost> hostsList = datacenter.getHostList();
+        HostStateSnapshot hostStates = datacenter.getHostStateSnapshot();
+        UtilizationHistory[] histories = getMonitoredHistories(datacenter.getName(), hostsList);
+        for (int i = 0; i < hostsList.size(); i++) {
+            PowerHost host = hostsList.get(i);
 
-                double ramUtilization = (host.getUtilizationOfRam() / host.getRam()) * 100;
-                insertMonitoredUsedResources(new ReportData(RAM, datacenterName, null, hostId, null, currentTime, ramUtilization, 0));
+            double ramUtilization = (hostStates.getRamUtilization(i) / host.getRam()) * 100;
+            histories[0].add(i, ramUtilization);
 
-                double cpuUtilization = (host.getUtilizationOfCpuMips() / host.getTotalMips()) * 100;
-                insertMonitoredUsedResources(new ReportData(CPU, datacenterName, null, hostId, null, currentTime, cpuUtilization, 0));
-            }
+            double cpuUtilization = (hostStates.getCpuUtilization(i) / host.getTotalMips()) * 100;
+            histories[1].add(i, cpuUtilization);
         }
     }
     
     /**
-     * Inserts monitored data into {@link #monitoredUsedResources}.
+     * Gets the histories of monitored resources of a given datacenter.
+     * The histories are created on the first call and reused afterwards.
      * 
-     * @param   data    the data to be inserted.
-     * @since   1.0
+     * @param   datacenterName  the name of the datacenter.
+     * @param   hostsList       the list of hosts of the datacenter.
+     * @return                  the histories of the datacenter, indexed by
+     *                          resource type.
+     * @since                   1.2
      */         
-    private void insertMonitoredUsedResources(ReportData data) {
-        List<ReportData> sampleList = new ArrayList<ReportData>();
-        for(ReportData sample : this.monitoredUsedResources) {
-            if(sample.getDatacenterName().equals(data.getDatacenterName()) &&
-               sample.getHostId().equals(data.getHostId()) &&
-               sample.getType().equals(data.getType())) {
-                sampleList.add(sample);
+    private UtilizationHistory[] getMonitoredHistories(String datacenterName, List<PowerHost> hostsList) {
+        UtilizationHistory[] histories = monitoredUsedResources.get(datacenterName);
+        if(histories == null || histories[0].getNumOfHosts() != hostsList.size()) {
+            histories = new UtilizationHistory[MONITORED_RESOURCES.length];
+            for(int j = 0; j < MONITORED_RESOURCES.length; j++) {
+                histories[j] = new UtilizationHistory(hostsList, monitoringWindow);
             }
+            monitoredUsedResources.put(datacenterName, histories);
         }
-        
-        if(sampleList.size() >= SAMPLES) {
-            ReportData olderSample = sampleList.get(0);
-            for(ReportData sample : sampleList) {
-                if(sample.getTime() < olderSample.getTime()) {
-                    olderSample = sample;
-                }
-            }
-            
-            this.monitoredUsedResources.remove(olderSample);
+        return histories;
+    }
+    
+    /**
+     * Gets the history of a monitored resource of a given datacenter.
+     * 
+     * @param   datacenterName  the name of the monitored datacenter.
+     * @param   type            the type of the monitored resource.
+     * @return                  the history; or <code>null</code> if the
+     *                          resource has not been monitored yet.
+     * @since                   1.2
+     */         
+    private UtilizationHistory getMonitoredHistory(String datacenterName, String type) {
+        UtilizationHistory[] histories = monitoredUsedResources.get(datacenterName);
+        if(histories == null) return null;
+        for(int j = 0; j < MONITORED_RESOURCES.length; j++) {
+            if(MONITORED_RESOURCES[j].equals(type)) return histories[j];
         }
-        
-        this.monitoredUsedResources.add(data);
+        return null;
     }
     
     /**
@@ -345,18 +598,44 @@ public class DataCollector {
      * @param   datacenterName  the name of the monitored datacenter.
      * @param   hostId          the id of the monitored host.
      * @param   type            the type of the monitored resource.
+     * @return                  the monitored values, from the oldest to the
+     *                          newest one.
      * @since   1.0
      */       
     public List<Double> getMonitoredUsedResources(String datacenterName, int hostId, String type) {
         List<Double> valuesList = new ArrayList<Double>();
-        for (ReportData sample : this.monitoredUsedResources) {
-            if (sample.getDatacenterName().equals(datacenterName)
-                    && sample.getHostId().equals(hostId)
-                    && sample.getType().equals(type)) {
-                valuesList.add(sample.getAmount());
-            }
+        UtilizationHistory history = getMonitoredHistory(datacenterName, type);
+        if(history == null) return valuesList;
+        int hostIndex = history.indexOf(hostId);
+        if(hostIndex < 0) return valuesList;
+        
+        for (int i = 0; i < history.getCount(hostIndex); i++) {
+            valuesList.add(history.getSample(hostIndex, i));
         }
         
         return valuesList;
     }    
+    
+    /**
+     * Gets the moving average of a monitored resource, including a current
+     * value.
+     * This method does not allocate any object, so it can be called by
+     * allocation policies for every host.
+     * 
+     * @param   datacenterName  the name of the monitored datacenter.
+     * @param   hostId          the id of the monitored host.
+     * @param   type            the type of the monitored resource.
+     * @param   currentValue    the current utilization of the resource, in
+     *                          percentage.
+     * @return                  the average of the monitored values and the
+     *                          current value, in percentage.
+     * @since                   1.2
+     */       
+    public double getMonitoredAverage(String datacenterName, int hostId, String type, double currentValue) {
+        UtilizationHistory history = getMonitoredHistory(datacenterName, type);
+        if(history == null) return currentValue;
+        int hostIndex = history.indexOf(hostId);
+        if(hostIndex < 0) return currentValue;
+        return history.getAverage(hostIndex, currentValue);
+    }
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ *
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.reports;
+
+import cloudreports.dao.MigrationDAO;
+import cloudreports.dao.ReportDataDAO;
+import cloudreports.models.Migration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persists collected samples on a background thread.
+ * Filled stores are handed off through a bounded queue, so the simulation
+ * keeps running while the database commits. The simulation only waits when
+ * the queue is full, i.e. when the database falls behind. Flushed stores are
+ * handed back to be reused as spare buffers.
+ * <p>
+ * Migrations are inserted by the same thread, since SQLite does not allow
+ * concurrent writers and the simulation would fail if it wrote them while a
+ * store is being committed.
+ * <p>
+ * A store or a batch of migrations that cannot be inserted does not stop
+ * the thread, so the remaining data is still inserted and the simulation
+ * never waits on a queue nobody takes from. A store whose samples could
+ * not be inserted is not reused as a spare buffer, so they are not
+ * overwritten. The first failure is rethrown when the flusher is drained.
+ *
+ * @see         ReportDataStore#swapBuffers(ReportDataStore)
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+class DataFlusher implements Runnable {
+
+    /** The maximum number of filled stores waiting to be flushed. */
+    private static final int QUEUE_CAPACITY = 2;
+
+    /** The store that signals the end of the data. */
+    private static final ReportDataStore END_OF_DATA = new ReportDataStore(-1);
+
+    /** The stores waiting to be flushed. */
+    private BlockingQueue<ReportDataStore> filledStores;
+
+    /** The stores that have been flushed and can be reused. */
+    private BlockingQueue<ReportDataStore> emptyStores;
+
+    /** The migrations waiting to be inserted. */
+    private Queue<List<Migration>> pendingMigrations;
+
+    /** The thread that flushes the stores. */
+    private Thread thread;
+
+    /** The timer of the phases of the simulation. */
+    private PhaseTimer phaseTimer;
+
+    /** The first failure of the flusher's thread, if any. */
+    private volatile RuntimeException failure;
+
+    /**
+     * Creates a flusher and starts its thread.
+     *
+     * @param   phaseTimer  the timer of the phases of the simulation.
+     * @since               1.2
+     */
+    public DataFlusher(PhaseTimer phaseTimer) {
+        this.phaseTimer = phaseTimer;
+        this.filledStores = new ArrayBlockingQueue<ReportDataStore>(QUEUE_CAPACITY);
+        this.emptyStores = new LinkedBlockingQueue<ReportDataStore>();
+        this.pendingMigrations = new ConcurrentLinkedQueue<List<Migration>>();
+        this.thread = new Thread(this, "CloudReports data flusher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Hands off a filled store to be flushed.
+     * This method blocks only if the queue of filled stores is full.
+     *
+     * @param   dataStore   the store to be flushed.
+     * @since               1.2
+     */
+    public void submit(ReportDataStore dataStore) {
+        if(!isRunning()) {
+            //The flusher has already finished, so the store is flushed here
+            insert(new ReportDataDAO(), dataStore);
+            return;
+        }
+        try {
+            filledStores.put(dataStore);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            Logger.getLogger(DataFlusher.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Hands off migrations to be inserted.
+     * They are inserted by the flusher's thread after the next store, or 
+     * when the flusher is drained.
+     *
+     * @param   migrationList   the migrations to be inserted.
+     * @since                   1.2
+     */
+    public void submitMigrations(List<Migration> migrationList) {
+        if(!isRunning()) {
+            //The flusher has already finished, so the migrations are inserted here
+            new MigrationDAO().insertMigrations(migrationList);
+            return;
+        }
+        pendingMigrations.offer(new ArrayList<Migration>(migrationList));
+    }
+
+    /**
+     * Gets a store that has already been flushed, if any.
+     *
+     * @return  a flushed store; or <code>null</code> if there is none.
+     * @since   1.2
+     */
+    public ReportDataStore pollEmptyStore() {
+        return emptyStores.poll();
+    }
+
+    /**
+     * Waits until all submitted stores have been flushed and stops the
+     * flusher's thread.
+     * Calling this method more than once has no further effect.
+     *
+     * @throws  RuntimeException    if a store or a batch of migrations could
+     *                              not be inserted.
+     * @since   1.2
+     */
+    public void awaitDrain() {
+        if(isRunning()) {
+            try {
+                filledStores.put(END_OF_DATA);
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                Logger.getLogger(DataFlusher.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+
+        RuntimeException drainFailure = failure;
+        if(drainFailure != null) {
+            //The failure is reported only once
+            failure = null;
+            throw drainFailure;
+        }
+    }
+
+    /**
+     * Indicates whether the flusher's thread is still running.
+     *
+     * @return  <code>true</code> if the thread is running;
+     *          <code>false</code> otherwise.
+     */
+    private boolean isRunning() {
+        return thread.isAlive();
+    }
+
+    /**
+     * Inserts the samples of a store into the database.
+     *
+     * @param   rdDAO       the DAO used to insert the samples.
+     * @param   dataStore   the store to be flushed.
+     */
+    private void insert(ReportDataDAO rdDAO, ReportDataStore dataStore) {
+        long startTime = phaseTimer.start();
+        int rows = dataStore.getPendingSamples();
+        rdDAO.insertDataStore(dataStore);
+        phaseTimer.stop(PhaseTimer.DATABASE_FLUSH, startTime);
+        phaseTimer.count(PhaseTimer.ROWS_INSERTED, rows);
+    }
+
+    /**
+     * Inserts the pending migrations into the database.
+     *
+     * @param   mDAO    the DAO used to insert the migrations.
+     */
+    private void insertPendingMigrations(MigrationDAO mDAO) {
+        List<Migration> migrationList;
+        while((migrationList = pendingMigrations.poll()) != null) {
+            try {
+                mDAO.insertMigrations(migrationList);
+            } catch (RuntimeException ex) {
+                recordFailure(ex);
+            }
+        }
+    }
+
+    /**
+     * Records a failure of the flusher's thread.
+     * Only the first failure is kept; later ones are logged.
+     *
+     * @param   ex  the failure.
+     */
+    private void recordFailure(RuntimeException ex) {
+        Logger.getLogger(DataFlusher.class.getName()).log(Level.SEVERE, null, ex);
+        if(failure == null) failure = ex;
+    }
+
+    /**
+     * Flushes submitted stores and migrations until the end of the data is reached.
+     *
+     * @since   1.2
+     */
+    @Override
+    public void run() {
+        ReportDataDAO rdDAO = new ReportDataDAO();
+        MigrationDAO mDAO = new MigrationDAO();
+        try {
+            while(true) {
+                ReportDataStore dataStore = filledStores.take();
+                insertPendingMigrations(mDAO);
+                if(dataStore == END_OF_DATA) break;
+                try {
+                    insert(rdDAO, dataStore);
+                } catch (RuntimeException ex) {
+                    recordFailure(ex);
+                }
+                //A store that still holds samples must not be overwritten
+                if(dataStore.getPendingSamples() == 0) emptyStores.offer(dataStore);
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(DataFlusher.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+}
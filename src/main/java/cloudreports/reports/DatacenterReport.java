@@ -21,13 +21,12 @@ package cloudreports.reports;
 
 import cloudreports.business.SettingBusiness;
 import cloudreports.dao.MigrationDAO;
-import cloudreports.dao.ReportDataDAO;
-import cloudreports.dao.SettingDAO;
 import cloudreports.extensions.PowerDatacenter;
 import cloudreports.models.Migration;
 import cloudreports.utils.FileIO;
 import java.io.IOException;
-import java.net.URISyntaxException;
+import java.io.Writer;
+import java.sql.SQLException;
 import java.util.*;
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.DatacenterBroker;
@@ -36,6 +35,8 @@ import org.cloudbus.cloudsim.power.PowerHost;
 /**
  * Provides methods to generate simulation reports with information about 
  * usage of resources by datacenters.
+ * Resource utilization series are loaded from the database with a single
+ * query and written from the loaded store to the report files.
  * 
  * @author      Thiago T. Sá
  * @since       1.0
@@ -45,6 +46,9 @@ class DatacenterReport {
     /** The name of the datacenter. */
     private String name;
     
+    /** The ids of the datacenter's hosts. */
+    private List<Integer> hostIds;
+    
 	/** Number of executed cloudlets per host. */
     private TreeMap<String,Double> executedCloudlets;
     
@@ -54,39 +58,6 @@ class DatacenterReport {
     /** Costs generated per customer. */
     private TreeMap<String,Double> costs;
     
-    /** RAM utilization per host. */
-    private HashMap<Integer, TreeMap<Double, Double>> hostsUsedRam;
-    
-    /** CPU utilization per host. */
-    private HashMap<Integer, TreeMap<Double, Double>> hostsUsedCpu;
-    
-    /** Bandwidth utilization per host. */
-    private HashMap<Integer, TreeMap<Double, Double>> hostsUsedBandwidth;
-    
-    /** Power consumption per host. */
-    private HashMap<Integer, TreeMap<Double, Double>> hostsUsedPower;
-    
-    /** Overall usage of RAM by the datacenter. */
-    private TreeMap<Double, Double> overallUsedRam;
-    
-    /** Overall usage of CPU by the datacenter. */
-    private TreeMap<Double, Double> overallUsedCpu;
-    
-    /** Overall usage of bandwidth by the datacenter. */
-    private TreeMap<Double, Double> overallUsedBandwidth;
-    
-    /** Overall power consumption by the datacenter. */
-    private TreeMap<Double, Double> overallUsedPower;
-    
-    /** The HTML version of the report. */
-    private String html;
-    
-    /** The raw data.
-     *  This is useful for importing simulation data to other softwares, such
-     *  as Octave or MATLAB.
-     */
-    private String rawData;
-    
     /** 
      * Creates a datacenter report.
      * 
@@ -94,32 +65,15 @@ class DatacenterReport {
      * @param   brokersList     a list of all brokers.
      * @since                   1.0
      */           
-    public DatacenterReport(PowerDatacenter datacenter, List<DatacenterBroker> brokersList, boolean htmlReportsEnabled,
-    						boolean rawDataReportsEnabled) throws IOException, URISyntaxException {        
+    public DatacenterReport(PowerDatacenter datacenter, List<DatacenterBroker> brokersList) {
         this.name = datacenter.getName();
         
-        // Get all hosts resource utilization data from the database
-        this.hostsUsedRam =  new HashMap<Integer, TreeMap<Double, Double>>();
-        this.hostsUsedCpu = new HashMap<Integer, TreeMap<Double, Double>>();
-        this.hostsUsedBandwidth = new HashMap<Integer, TreeMap<Double, Double>>();
-        this.hostsUsedPower = new HashMap<Integer, TreeMap<Double, Double>>();
+        this.hostIds = new ArrayList<Integer>();
         List<PowerHost> hostsList = datacenter.getHostList();
-        ReportDataDAO rdDAO = new ReportDataDAO();
         for(PowerHost host : hostsList) {
-            int hostId = host.getId();
-            hostsUsedRam.put(hostId, rdDAO.getHostUsedResources("RAM", this.name, hostId));
-            hostsUsedCpu.put(hostId, rdDAO.getHostUsedResources("CPU", this.name, hostId));
-            hostsUsedBandwidth.put(hostId, rdDAO.getHostUsedResources("BANDWIDTH", this.name, hostId));
-            hostsUsedPower.put(hostId, rdDAO.getHostUsedResources("POWER", this.name, hostId));
+            hostIds.add(host.getId());
         }
         
-        //Get the overall resource utilization data from the database
-        this.overallUsedRam = rdDAO.getDatacenterOverallData("RAM", this.name);
-        this.overallUsedCpu = rdDAO.getDatacenterOverallData("CPU", this.name);
-        this.overallUsedBandwidth = rdDAO.getDatacenterOverallData("BANDWIDTH", this.name);
-        this.overallUsedPower = rdDAO.getDatacenterOverallData("POWER", this.name);
-        
-        
         executedCloudlets = new TreeMap<String, Double>();
         deployedVms = new TreeMap<String, Double>();
         costs = new TreeMap<String, Double>();        
@@ -143,9 +97,6 @@ class DatacenterReport {
             //Get the customer's debt on this datacenter
             costs.put(broker.getName(), datacenter.getDebts().get(broker.getId()));            
         }
-        
-        if(htmlReportsEnabled) generateHtml();
-        if(rawDataReportsEnabled) generateRawData();        
     }
 
     /**
@@ -158,121 +109,121 @@ class DatacenterReport {
 	}
     
     /**
-     * Gets the HTML version of the report.
+     * Writes the HTML version of the datacenter's report.
+     * It reads the template files and writes them replacing the existing tags
+     * with real simulation data.
      * 
-     * @return  a string that contains the HTML version of the report.
-     */
-    public String getHtml() {
-        return html;
+     * @param   out             the writer.
+     * @param   data            the store holding the series of the report.
+     * @param   visible         indicates whether the report is initially 
+     *                          visible.
+     * @throws  IOException     if the report could not be written.
+     * @throws  SQLException    if report data could not be read.
+     * @since                   1.2
+     */        
+    public void writeHtml(Writer out, final ReportDataStore data, boolean visible) throws IOException, SQLException {
+        String html = FileIO.readStringFromResource("cloudreports/gui/reports/resources/datacenter");
+        if(visible) {
+            html = html.replace("id=\"datacenter_<!--INSERT_DATACENTER_NAME-->\" style=\"display: none;\"",
+                                "id=\"datacenter_<!--INSERT_DATACENTER_NAME-->\"");
+        }
+        final String resTemplate = FileIO.readStringFromResource("cloudreports/gui/reports/resources/host_resource_utilization");
+        final String powerTemplate = FileIO.readStringFromResource("cloudreports/gui/reports/resources/host_power_consumption");
+        
+        ReportWriter.writeTemplate(html, out, new ReportWriter.TagHandler() {
+            @Override
+            public boolean writeTag(String tag, Writer out) throws IOException, SQLException {
+                if(tag.equals("<!--INSERT_DATACENTER_NAME-->")) out.write(name);
+                else if(tag.equals("<!--INSERT_HOST_RESOURCE_UTILIZATION_OPTIONS-->")) writeHostOptions(out, "resource_utilization_");
+                else if(tag.equals("<!--INSERT_HOST_POWER_CONSUMPTION_OPTIONS-->")) writeHostOptions(out, "power_consumption_");
+                else if(tag.equals("<!--INSERT_HOST_RESOURCE_UTILIZATION_LIST-->")) writeHostsList(out, data, resTemplate);
+                else if(tag.equals("<!--INSERT_HOST_POWER_CONSUMPTION_LIST-->")) writeHostsList(out, data, powerTemplate);
+                else if(tag.equals("<!--INSERT_OVERALL_RAM_DATA-->")) writeOverallData(out, data, "RAM");
+                else if(tag.equals("<!--INSERT_OVERALL_CPU_DATA-->")) writeOverallData(out, data, "CPU");
+                else if(tag.equals("<!--INSERT_OVERALL_BANDWIDTH_DATA-->")) writeOverallData(out, data, "BANDWIDTH");
+                else if(tag.equals("<!--INSERT_OVERALL_POWER_CONSUMPTION_DATA-->")) writeOverallData(out, data, "POWER");
+                else if(tag.equals("<!--INSERT_VIRTUAL_MACHINES_DATA-->")) out.write(getDataAndLabelString(deployedVms));
+                else if(tag.equals("<!--INSERT_CLOUDLETS_DATA-->")) out.write(getDataAndLabelString(executedCloudlets));
+                else if(tag.equals("<!--INSERT_COSTS_DATA-->")) out.write(getDataAndLabelString(costs));
+                else if(tag.equals("<!--INSERT_MIGRATIONS_DATA-->")) out.write(getMigrationsString());
+                else return false;
+                return true;
+            }
+        });
     }
-
+    
     /**
-     * Gets the raw data.
+     * Writes an option element for each host of the datacenter.
      * 
-     * @return  a string containing the report's raw data.
-     */
-    public String getRawData() {
-        return rawData;
+     * @param   out         the writer.
+     * @param   prefix      the prefix of the options' values.
+     * @throws  IOException if the options could not be written.
+     * @since               1.2
+     */    
+    private void writeHostOptions(Writer out, String prefix) throws IOException {
+        for(Integer hostId : hostIds) {
+            out.write("<option value=\"" + prefix + this.name + "_Host" + hostId
+                      + "\">Host" + hostId + "</option>\n");
+        }
     }
     
     /**
-     * Generates the HTML version of the datacenter's report.
-     * It reads the template files and replaces the existing tags with real
-     * simulation data. The resulting string is assigned to the {@link #html}
-     * field.
+     * Writes a host template for each host of the datacenter.
      * 
-     * @throws  IOException         If the template files could not be loaded
-     *                              correctly.
-     * @throws  URISyntaxException  If the path to the template files could not
-     *                              be parsed successfully.
-     * @since                       1.0
-     */        
-    private void generateHtml() throws IOException, URISyntaxException {
-        this.html = FileIO.readStringFromResource("cloudreports/gui/reports/resources/datacenter");
-        
-        StringBuilder hostResUtilizationOptions = new StringBuilder();
-        StringBuilder hostsResUtilization = new StringBuilder();
-        StringBuilder hostPowerConsumptionOptions = new StringBuilder();
-        StringBuilder hostsPowerConsumption = new StringBuilder();
-        List<Integer> hostIds = Arrays.asList(hostsUsedRam.keySet().toArray(new Integer[0]));
-        for(Integer hostId : hostIds) {
-            hostResUtilizationOptions.append("<option value=\"resource_utilization_")
-                                     .append(this.name).append("_").append("Host").append(hostId)
-                                     .append("\">Host").append(hostId).append("</option>\n");
-            
-            hostPowerConsumptionOptions.append("<option value=\"power_consumption_")
-                                       .append(this.name).append("_").append("Host").append(hostId)
-                                       .append("\">Host").append(hostId).append("</option>\n");
-            
-            //Create host resource utilization html
-            String resHtml = FileIO.readStringFromResource("cloudreports/gui/reports/resources/host_resource_utilization");
-            resHtml = resHtml.replace("<!--INSERT_HOST_NAME-->", "Host"+hostId);
-            resHtml = resHtml.replace("<!--INSERT_RAM_DATA-->", getDataString(hostsUsedRam.get(hostId)));
-            resHtml = resHtml.replace("<!--INSERT_CPU_DATA-->", getDataString(hostsUsedCpu.get(hostId)));
-            resHtml = resHtml.replace("<!--INSERT_BANDWIDTH_DATA-->", getDataString(hostsUsedBandwidth.get(hostId)));
-            hostsResUtilization.append(resHtml);
-            
-            //Create host power consumption html
-            String powerHtml = FileIO.readStringFromResource("cloudreports/gui/reports/resources/host_power_consumption");
-            powerHtml = powerHtml.replace("<!--INSERT_HOST_NAME-->", "Host"+hostId);
-            powerHtml = powerHtml.replace("<!--INSERT_POWER_CONSUMPTION_DATA-->", getDataString(hostsUsedPower.get(hostId)));
-            hostsPowerConsumption.append(powerHtml);
-        }        
-        //Insert host resource utilization options
-        html = html.replace("<!--INSERT_HOST_RESOURCE_UTILIZATION_OPTIONS-->", hostResUtilizationOptions.toString());
-        //Insert hosts resource utilization
-        html = html.replace("<!--INSERT_HOST_RESOURCE_UTILIZATION_LIST-->", hostsResUtilization.toString()) ;
-        
-        //Insert host power consumption options
-        html = html.replace("<!--INSERT_HOST_POWER_CONSUMPTION_OPTIONS-->", hostPowerConsumptionOptions.toString());        
-        //Insert hosts power consumption
-        html = html.replace("<!--INSERT_HOST_POWER_CONSUMPTION_LIST-->", hostsPowerConsumption.toString());
-        
-        //Insert overall resource utilization data
-        html = html.replace("<!--INSERT_OVERALL_RAM_DATA-->", getDataString(overallUsedRam));
-        html = html.replace("<!--INSERT_OVERALL_CPU_DATA-->", getDataString(overallUsedCpu));
-        html = html.replace("<!--INSERT_OVERALL_BANDWIDTH_DATA-->", getDataString(overallUsedBandwidth));
-        
-        //Insert overall power consumption data
-        html = html.replace("<!--INSERT_OVERALL_POWER_CONSUMPTION_DATA-->", getDataString(overallUsedPower));
-        
-        //Insert virtual machines data
-        html = html.replace("<!--INSERT_VIRTUAL_MACHINES_DATA-->", getDataAndLabelString(deployedVms));
-        
-        //Insert cloudlets data
-        html = html.replace("<!--INSERT_CLOUDLETS_DATA-->", getDataAndLabelString(executedCloudlets));
-        
-        //Insert costs data
-        html = html.replace("<!--INSERT_COSTS_DATA-->", getDataAndLabelString(costs));
-        
-        //Insert migrations data
-        html = html.replace("<!--INSERT_MIGRATIONS_DATA-->", getMigrationsString());
-        
-        //Insert datacenter's name
-        html = html.replace("<!--INSERT_DATACENTER_NAME-->", this.name);    
+     * @param   out             the writer.
+     * @param   data            the store holding the series of the report.
+     * @param   template        the host template.
+     * @throws  IOException     if the hosts could not be written.
+     * @throws  SQLException    if report data could not be read.
+     * @since                   1.2
+     */    
+    private void writeHostsList(Writer out, final ReportDataStore data, String template) throws IOException, SQLException {
+        for(final Integer hostId : hostIds) {
+            ReportWriter.writeTemplate(template, out, new ReportWriter.TagHandler() {
+                @Override
+                public boolean writeTag(String tag, Writer out) throws IOException, SQLException {
+                    if(tag.equals("<!--INSERT_DATACENTER_NAME-->")) out.write(name);
+                    else if(tag.equals("<!--INSERT_HOST_NAME-->")) out.write("Host" + hostId);
+                    else if(tag.equals("<!--INSERT_RAM_DATA-->")) writeHostData(out, data, "RAM", hostId);
+                    else if(tag.equals("<!--INSERT_CPU_DATA-->")) writeHostData(out, data, "CPU", hostId);
+                    else if(tag.equals("<!--INSERT_BANDWIDTH_DATA-->")) writeHostData(out, data, "BANDWIDTH", hostId);
+                    else if(tag.equals("<!--INSERT_POWER_CONSUMPTION_DATA-->")) writeHostData(out, data, "POWER", hostId);
+                    else return false;
+                    return true;
+                }
+            });
+        }
     }
     
     /**
-     * Converts a time-value map of generic data to a string format that can be
+     * Writes a resource utilization series of a host in a format that can be
      * parsed by the Flot library.
      * 
-     * @param   dataMap a map of generic report data.
-     * @return          a formated string containing the data of the map.
-     * @see             <a href="http://code.google.com/p/flot/">The Flot library</a>
-     * @since           1.0
+     * @param   out             the writer.
+     * @param   data            the store holding the series of the report.
+     * @param   type            the type of resource.
+     * @param   hostId          the id of the host.
+     * @throws  IOException     if the series could not be written.
+     * @see                     <a href="http://code.google.com/p/flot/">The Flot library</a>
+     * @since                   1.2
      */      
-    private String getDataString(TreeMap<Double, Double> dataMap) {
-        StringBuilder dataStringBuilder = new StringBuilder("[");
-        Iterator<Double> iterator = dataMap.keySet().iterator();
-        while (iterator.hasNext()) {
-            double time = iterator.next();
-            dataStringBuilder.append("[").append(time).append(",")
-                             .append(dataMap.get(time)).append("],");
-        }
-        dataStringBuilder.deleteCharAt(dataStringBuilder.lastIndexOf(","));
-        dataStringBuilder.append("]");
-        
-        return dataStringBuilder.toString();
+    private void writeHostData(Writer out, ReportDataStore data, String type, int hostId) throws IOException {
+        ReportWriter.writeChartData(data.findSeries(type, this.name, null, hostId, null), out);
+    }
+    
+    /**
+     * Writes an overall resource utilization series of the datacenter in a 
+     * format that can be parsed by the Flot library.
+     * 
+     * @param   out             the writer.
+     * @param   data            the store holding the series of the report.
+     * @param   type            the type of resource.
+     * @throws  IOException     if the series could not be written.
+     * @see                     <a href="http://code.google.com/p/flot/">The Flot library</a>
+     * @since                   1.2
+     */      
+    private void writeOverallData(Writer out, ReportDataStore data, String type) throws IOException {
+        ReportWriter.writeChartData(data.findSeries(type, this.name, null, null, null), out);
     }
     
     /**
@@ -304,48 +255,47 @@ class DatacenterReport {
     }
     
     /**
-     * Generates the report's raw data and assigns it to the {@link #rawData}
-     * field.
+     * Writes the report's raw data.
      * 
-     * @since           1.0
+     * @param   out             the writer.
+     * @param   data            the store holding the series of the report.
+     * @throws  IOException     if the raw data could not be written.
+     * @since                   1.2
      */           
-    private void generateRawData() throws IOException, URISyntaxException {
-        StringBuilder rawDataStringBuilder = new StringBuilder();
-        int simulationId = SettingBusiness.getCurrentSimulation();
+    public void writeRawData(Writer out, ReportDataStore data) throws IOException {
+        String prefix = "Sim" + SettingBusiness.getCurrentSimulation() + "_" + this.name;
         
-        rawDataStringBuilder.append(getRawDataString(overallUsedRam, "Sim" + simulationId + "_" + this.name + "_overall_ram"));
-        rawDataStringBuilder.append(getRawDataString(overallUsedCpu, "Sim" + simulationId + "_" + this.name + "_overall_cpu"));
-        rawDataStringBuilder.append(getRawDataString(overallUsedBandwidth, "Sim" + simulationId + "_" + this.name + "_overall_bw"));
-        rawDataStringBuilder.append(getRawDataString(overallUsedPower, "Sim" + simulationId + "_" + this.name + "_overall_power"));        
+        writeOverallRawData(out, data, "RAM", prefix + "_overall_ram");
+        writeOverallRawData(out, data, "CPU", prefix + "_overall_cpu");
+        writeOverallRawData(out, data, "BANDWIDTH", prefix + "_overall_bw");
+        writeOverallRawData(out, data, "POWER", prefix + "_overall_power");
         
-        List<Integer> hostIds = Arrays.asList(hostsUsedRam.keySet().toArray(new Integer[0]));
         for (Integer hostId : hostIds) {
-            rawDataStringBuilder.append(getRawDataString(hostsUsedRam.get(hostId), "Sim" + simulationId + "_" + this.name + "_host" + hostId + "_ram"));
-            rawDataStringBuilder.append(getRawDataString(hostsUsedCpu.get(hostId), "Sim" + simulationId + "_" + this.name + "_host" + hostId + "_cpu"));
-            rawDataStringBuilder.append(getRawDataString(hostsUsedBandwidth.get(hostId), "Sim" + simulationId + "_" + this.name + "_host" + hostId + "_bw"));
-            rawDataStringBuilder.append(getRawDataString(hostsUsedPower.get(hostId), "Sim" + simulationId + "_" + this.name + "_host" + hostId + "_power"));
+            writeHostRawData(out, data, "RAM", hostId, prefix + "_host" + hostId + "_ram");
+            writeHostRawData(out, data, "CPU", hostId, prefix + "_host" + hostId + "_cpu");
+            writeHostRawData(out, data, "BANDWIDTH", hostId, prefix + "_host" + hostId + "_bw");
+            writeHostRawData(out, data, "POWER", hostId, prefix + "_host" + hostId + "_power");
         }
-        
-        this.rawData = rawDataStringBuilder.toString();        
     }
     
     /**
-     * Converts a time-value map to a string that can be easily parsed by a
+     * Writes an overall series of the datacenter in a format that can be 
+     * easily parsed by a third party software.
+     * 
+     * @since           1.2
+     */     
+    private void writeOverallRawData(Writer out, ReportDataStore data, String type, String label) throws IOException {
+        ReportWriter.writeRawData(data.findSeries(type, this.name, null, null, null), label, out);
+    }
+    
+    /**
+     * Writes a series of a host in a format that can be easily parsed by a 
      * third party software.
      * 
-     * @since           1.0
+     * @since           1.2
      */     
-    private String getRawDataString(TreeMap<Double, Double> dataMap, String label) {
-        StringBuilder timeStringBuilder = new StringBuilder("\n" + label + "_time\t");
-        StringBuilder valuesStringBuilder = new StringBuilder("\n" + label + "_values\t");
-        Iterator<Double> iterator = dataMap.keySet().iterator();
-        while (iterator.hasNext()) {
-            double time = iterator.next();
-            timeStringBuilder.append(time).append("\t");
-            valuesStringBuilder.append(dataMap.get(time)).append("\t");
-        }
-        
-        return timeStringBuilder.toString() + valuesStringBuilder.toString();
+    private void writeHostRawData(Writer out, ReportDataStore data, String type, int hostId, String label) throws IOException {
+        ReportWriter.writeRawData(data.findSeries(type, this.name, null, hostId, null), label, out);
     }
     
     /**
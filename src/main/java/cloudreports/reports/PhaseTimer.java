@@ -0,0 +1,253 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.reports;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures the wall-clock time spent in each phase of a simulation and
+ * counts the rows and events it processes.
+ * Phases are timed with {@link System#nanoTime()}; each phase accumulates
+ * its total time and number of calls. A timer is created per simulation and
+ * may be shared by the simulation thread and the background flusher.
+ * The peak usage of the heap is measured from the creation of the timer.
+ * 
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class PhaseTimer {
+
+    /** The creation of CloudSim entities. */
+    public static final String ENTITY_CREATION = "Entity creation";
+    
+    /** The setup of network links. */
+    public static final String NETWORK_SETUP = "Network setup";
+    
+    /** The processing of CloudSim events. */
+    public static final String EVENT_PROCESSING = "Event processing";
+    
+    /** The collection of samples, part of event processing. */
+    public static final String DATA_COLLECTION = "Data collection";
+    
+    /** The planning of migrations, part of event processing. */
+    public static final String MIGRATION_PLANNING = "Migration planning";
+    
+    /** The insertion of samples into the database, in background. */
+    public static final String DATABASE_FLUSH = "Database flush";
+    
+    /** The wait for the background flush to finish. */
+    public static final String FLUSH_WAIT = "Flush wait";
+    
+    /** The generation of the report. */
+    public static final String REPORT_GENERATION = "Report generation";
+    
+    /** The creation of the report's directories and static assets. */
+    public static final String REPORT_ASSETS = "Report: directories and assets";
+    
+    /** The generation of the overview page. */
+    public static final String REPORT_OVERVIEW = "Report: overview";
+    
+    /** The generation of the datacenters' reports. */
+    public static final String REPORT_DATACENTERS = "Report: datacenters";
+    
+    /** The generation of the customers' reports. */
+    public static final String REPORT_CUSTOMERS = "Report: customers";
+    
+    /** The generation of the log page. */
+    public static final String REPORT_LOG = "Report: log";
+    
+    /** The number of rows inserted into the database. */
+    public static final String ROWS_INSERTED = "Rows inserted";
+    
+    /** The number of rows read by the report. */
+    public static final String ROWS_READ = "Rows read by report";
+    
+    /** The number of datacenter updates. */
+    public static final String DATACENTER_UPDATES = "Datacenter updates";
+    
+    /** The number of migrations. */
+    public static final String MIGRATIONS = "Migrations";
+    
+    /** The peak usage of the heap, in bytes. */
+    public static final String PEAK_HEAP = "Peak heap (bytes)";
+    
+    /** The total time of each phase, in nanoseconds, indexed by phase. */
+    private Map<String, Long> nanos;
+    
+    /** The number of calls of each phase, indexed by phase. */
+    private Map<String, Long> calls;
+    
+    /** The value of each counter, indexed by counter. */
+    private Map<String, Long> counters;
+
+    /**
+     * Creates an empty timer.
+     * 
+     * @since   1.2
+     */
+    public PhaseTimer() {
+        this.nanos = new LinkedHashMap<String, Long>();
+        this.calls = new LinkedHashMap<String, Long>();
+        this.counters = new LinkedHashMap<String, Long>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    /**
+     * Starts timing a phase.
+     * 
+     * @return  the start time, to be passed to 
+     *          {@link #stop(java.lang.String, long)}.
+     * @since   1.2
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Stops timing a phase and adds the elapsed time to its total.
+     * 
+     * @param   phase       the name of the phase.
+     * @param   startTime   the time returned by {@link #start()}.
+     * @since               1.2
+     */
+    public synchronized void stop(String phase, long startTime) {
+        add(nanos, phase, System.nanoTime() - startTime);
+        add(calls, phase, 1);
+    }
+
+    /**
+     * Adds an amount to a counter.
+     * 
+     * @param   counter the name of the counter.
+     * @param   amount  the amount to be added.
+     * @since           1.2
+     */
+    public synchronized void count(String counter, long amount) {
+        add(counters, counter, amount);
+    }
+
+    /**
+     * Records the peak usage of the heap since the creation of the timer.
+     * The peaks of the heap pools are added up, so the result is an upper
+     * bound of the actual peak.
+     * 
+     * @since   1.2
+     */
+    public synchronized void recordPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        counters.put(PEAK_HEAP, peak);
+    }
+
+    /**
+     * Gets the total time of a phase.
+     * 
+     * @param   phase   the name of the phase.
+     * @return          the total time, in nanoseconds.
+     */
+    public synchronized long getNanos(String phase) {
+        Long value = nanos.get(phase);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * Gets the value of a counter.
+     * 
+     * @param   counter the name of the counter.
+     * @return          the value of the counter.
+     */
+    public synchronized long getCount(String counter) {
+        Long value = counters.get(counter);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * Creates an HTML table with the phases and counters.
+     * 
+     * @return  the HTML table.
+     * @since   1.2
+     */
+    public synchronized String toHtml() {
+        StringBuilder html = new StringBuilder();
+        html.append("<table><tr><th>Phase</th><th>Time (ms)</th><th>Calls</th></tr>");
+        for (String phase : nanos.keySet()) {
+            html.append("<tr><td>").append(phase)
+                .append("</td><td>").append(String.format(Locale.US, "%.3f", nanos.get(phase) / 1e6))
+                .append("</td><td>").append(calls.get(phase))
+                .append("</td></tr>");
+        }
+        for (String counter : counters.keySet()) {
+            html.append("<tr><td>").append(counter)
+                .append("</td><td></td><td>").append(counters.get(counter))
+                .append("</td></tr>");
+        }
+        html.append("</table>");
+        return html.toString();
+    }
+
+    /**
+     * Creates a JSON document with the phases and counters.
+     * 
+     * @return  the JSON document.
+     * @since   1.2
+     */
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"phases\": [");
+        String separator = "\n";
+        for (String phase : nanos.keySet()) {
+            json.append(separator)
+                .append("    {\"name\": \"").append(phase)
+                .append("\", \"nanos\": ").append(nanos.get(phase))
+                .append(", \"calls\": ").append(calls.get(phase))
+                .append("}");
+            separator = ",\n";
+        }
+        json.append("\n  ],\n  \"counters\": {");
+        separator = "\n";
+        for (String counter : counters.keySet()) {
+            json.append(separator)
+                .append("    \"").append(counter).append("\": ").append(counters.get(counter));
+            separator = ",\n";
+        }
+        json.append("\n  }\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * Adds an amount to an entry of a map.
+     * 
+     * @param   map     the map.
+     * @param   key     the key of the entry.
+     * @param   amount  the amount to be added.
+     */
+    private static void add(Map<String, Long> map, String key, long amount) {
+        Long value = map.get(key);
+        map.put(key, value == null ? amount : value + amount);
+    }
+}
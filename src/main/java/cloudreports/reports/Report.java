@@ -22,8 +22,10 @@ package cloudreports.reports;
 import cloudreports.business.SettingBusiness;
 import cloudreports.dao.CustomerRegistryDAO;
 import cloudreports.dao.DatacenterRegistryDAO;
+import cloudreports.dao.ReportDataDAO;
 import cloudreports.dao.SettingDAO;
 import cloudreports.database.HibernateUtil;
+import cloudreports.enums.RandomNumbersFactory;
 import cloudreports.extensions.PowerDatacenter;
 import cloudreports.gui.reports.resources.images.Images;
 import cloudreports.gui.reports.resources.js.JS;
@@ -31,9 +33,12 @@ import cloudreports.models.CustomerRegistry;
 import cloudreports.models.DatacenterRegistry;
 import cloudreports.utils.ElapsedTime;
 import cloudreports.utils.FileIO;
+import cloudreports.utils.RandomNumberGenerator;
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
 import java.net.URISyntaxException;
+import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -50,6 +55,9 @@ import org.cloudbus.cloudsim.DatacenterBroker;
  */
 public class Report {
     
+    /** The directory where the reports of all environments are generated. */
+    private static String reportsDirectory = FileIO.getPathOfExecutable() + "reports/";
+    
     /** The report's base directory. */
     private static String baseDirectory;
     
@@ -59,30 +67,133 @@ public class Report {
     /** Indicates whether raw data reports must be generated. */
     private static boolean rawDataReportsEnabled;
     
+    /** The number of samples read from the database by the report. */
+    private static long samplesRead;
+    
+    /** The marker of the overall report where replication information is
+     *  inserted.
+     */
+    private static final String REPLICATION_INFORMATION_MARKER = "<!--INSERT_REPLICATION_INFORMATION-->";
+    
+    /** The marker of the overall report where the timings are inserted. */
+    private static final String TIMINGS_MARKER = "<!--INSERT_TIMINGS-->";
+    
+    /** 
+     * Gets the directory where the reports of all environments are generated.
+     * 
+     * @return  the reports directory, ending with a separator.
+     * @since   1.2
+     */     
+    public static String getReportsDirectory() {
+        return reportsDirectory;
+    }
+    
+    /** 
+     * Sets the directory where the reports of all environments are generated.
+     * 
+     * @param   directory   the reports directory.
+     * @since               1.2
+     */     
+    public static void setReportsDirectory(String directory) {
+        reportsDirectory = directory.endsWith("/") ? directory : directory + "/";
+    }
+    
     /** 
      * Generates a full report.
      * 
      * @param   datacentersList the list of simulated datacenters.
      * @param   brokersList     the list of simulated brokers.
      * @param   elapsedTime     the duration of the simulation.
+     * @param   dataStore       the store of collected samples.
+     * @param   phaseTimer      the timer of the phases of the simulation,
+     *                          whose timings are added to the report.
+     * @throws  IOException         if any of the report files could not be
+     *                              written.
+     * @throws  URISyntaxException  if any of the used paths could not be parsed
+     *                              successfully.
+     * @throws  SQLException        if report data could not be read.
      * @since           1.0
      */     
     public static void generateReport(List<PowerDatacenter> datacentersList, List<DatacenterBroker> brokersList, 
-                                      ElapsedTime elapsedTime) throws IOException, URISyntaxException {
+                                      ElapsedTime elapsedTime, ReportDataStore dataStore, PhaseTimer phaseTimer)
+                                      throws IOException, URISyntaxException, SQLException {
         
-        baseDirectory = FileIO.getPathOfExecutable();        
+        long reportStartTime = phaseTimer.start();
         int simulationId = SettingBusiness.getCurrentSimulation();
-        baseDirectory += "reports/" + HibernateUtil.getActiveDatabase() + "/report" + simulationId;
+        baseDirectory = reportsDirectory + HibernateUtil.getActiveDatabase() + "/report" + simulationId;
         
         SettingDAO sDAO = new SettingDAO();
         htmlReportsEnabled = SettingBusiness.isHtmlReportsEnabled();
         rawDataReportsEnabled = SettingBusiness.isRawDataReportsEnabled();
 
+        //Series are streamed from the database, so every sample must be stored
+        if(dataStore != null && dataStore.getPendingSamples() > 0) {
+            new ReportDataDAO().insertDataStore(dataStore);
+        }
+
+        long startTime = phaseTimer.start();
         createDirectoryTree();
-        if(htmlReportsEnabled) createOverallReport(datacentersList, brokersList, elapsedTime);
-        createDatacentersReports(datacentersList, brokersList);
-        createCustomersReports(brokersList);
-        if(htmlReportsEnabled) createLogReport(datacentersList, brokersList);
+        phaseTimer.stop(PhaseTimer.REPORT_ASSETS, startTime);
+        
+        String overallReport = null;
+        if(htmlReportsEnabled) {
+            startTime = phaseTimer.start();
+            overallReport = createOverallReport(datacentersList, brokersList, elapsedTime);
+            phaseTimer.stop(PhaseTimer.REPORT_OVERVIEW, startTime);
+        }
+        
+        samplesRead = 0;
+        try {
+            startTime = phaseTimer.start();
+            createDatacentersReports(datacentersList, brokersList);
+            phaseTimer.stop(PhaseTimer.REPORT_DATACENTERS, startTime);
+            
+            startTime = phaseTimer.start();
+            createCustomersReports(brokersList);
+            phaseTimer.stop(PhaseTimer.REPORT_CUSTOMERS, startTime);
+        } finally {
+            phaseTimer.count(PhaseTimer.ROWS_READ, samplesRead);
+        }
+        
+        if(htmlReportsEnabled) {
+            startTime = phaseTimer.start();
+            createLogReport(datacentersList, brokersList);
+            phaseTimer.stop(PhaseTimer.REPORT_LOG, startTime);
+        }
+        phaseTimer.stop(PhaseTimer.REPORT_GENERATION, reportStartTime);
+        phaseTimer.recordPeakHeap();
+        
+        //The timings are written last, so they include the whole report
+        new File(baseDirectory).mkdirs();
+        FileIO.writeStringToFile(baseDirectory + "/timings.json", phaseTimer.toJson());
+        if(overallReport != null) {
+            overallReport = overallReport.replace(TIMINGS_MARKER, "<strong>Timings:</strong><br/>" + phaseTimer.toHtml() + "<br/>");
+            FileIO.writeStringToFile(baseDirectory + "/index.html", overallReport);
+        }
+    }
+    
+    /** 
+     * Adds information about the replication of the simulations, such as 
+     * the reason why they stopped, to the overall report of a simulation.
+     * 
+     * @param   simulationId    the id of the simulation.
+     * @param   lines           the lines of information.
+     * @since                   1.2
+     */     
+    public static void addReplicationInformation(int simulationId, List<String> lines) {
+        String indexPath = reportsDirectory + HibernateUtil.getActiveDatabase() + "/report" + simulationId + "/index.html";
+        File index = new File(indexPath);
+        if(!index.isFile()) return;
+        
+        StringBuilder information = new StringBuilder("<strong>Replication:</strong>");
+        for(String line : lines) {
+            information.append("<br/>").append(line);
+        }
+        information.append("<br/><br/>");
+        
+        String html = FileIO.readStringFromFile(indexPath);
+        if(html == null) return;
+        FileIO.writeStringToFile(indexPath, html.replace(REPLICATION_INFORMATION_MARKER, information.toString()));
     }
     
     /** 
@@ -166,14 +277,16 @@ public class Report {
      * @param   datacentersList     the list of simulated datacenters.
      * @param   brokersList         the list of simulated brokers.
      * @param   elapsedTime         the duration of the simulation.
+     * @return                      the HTML of the overall report, which is
+     *                              written once the timings are known.
      * @throws  IOException         if any of the directories or files could 
      *                              not be created.
      * @throws  URISyntaxException  if any of the used paths could not be parsed
      *                              successfully.
      * @since                       1.0
      */     
-    private static void createOverallReport(List<PowerDatacenter> datacentersList, List<DatacenterBroker> brokersList, 
-                                            ElapsedTime elapsedTime) throws IOException, URISyntaxException {
+    private static String createOverallReport(List<PowerDatacenter> datacentersList, List<DatacenterBroker> brokersList, 
+                                              ElapsedTime elapsedTime) throws IOException, URISyntaxException {
         String html = FileIO.readStringFromResource("cloudreports/gui/reports/resources/index.html");
 
         SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss dd/MM/yyyy");
@@ -186,6 +299,16 @@ public class Report {
                           .append(elapsedTime.toString())
                           .append(".");
         
+        //Record the source of random numbers so the run can be reproduced
+        RandomNumbersFactory randomSource = RandomNumbersFactory.getInstance(SettingBusiness.getRandomnessOption());
+        overallInformation.append("<br/>Random numbers source: ")
+                          .append(randomSource.toString());
+        if(randomSource == RandomNumbersFactory.JAVA) {
+            overallInformation.append(" (seed: ")
+                              .append(RandomNumberGenerator.getSeed())
+                              .append(")");
+        }
+        
         //Insert datacenters' overall information
         DatacenterRegistryDAO drDAO = new DatacenterRegistryDAO();
         for (PowerDatacenter datacenter : datacentersList) {
@@ -195,7 +318,7 @@ public class Report {
                               .append(":</strong><br/>Allocation policy: ")
                               .append(dcRegistry.getAllocationPolicyAlias())
                               .append("<br/>Number of hosts: ")
-                              .append(drDAO.getNumOfHosts(dcRegistry.getId()))
+                              .append(datacenter.getHostList().size())
                               .append("<br/>Number of migrations: ")
                               .append(datacenter.getMigrationCount());
         }
@@ -212,106 +335,168 @@ public class Report {
                     .append(crDAO.getNumOfVms(custRegistry.getId()));
         }
         
-        overallInformation.append("<br/><br/>");
-        html = html.replace("<!--INSERT_GENERAL_INFORMATION-->", overallInformation.toString());
-        FileIO.writeStringToFile(baseDirectory + "/index.html", html);
+        overallInformation.append("<br/><br/>")
+                          .append(REPLICATION_INFORMATION_MARKER)
+                          .append(TIMINGS_MARKER);
+        return html.replace("<!--INSERT_GENERAL_INFORMATION-->", overallInformation.toString());
     }
 
     /** 
      * Creates a report for each of the simulated datacenters.
+     * The series of each datacenter are loaded once and both its HTML report
+     * and its raw data are written from them.
      * 
      * @param   datacentersList     the list of simulated datacenters.
      * @param   brokersList         the list of simulated brokers.
      * @throws  IOException         if any of the directories or files could 
      *                              not be created.
-     * @throws  URISyntaxException  if any of the used paths could not be parsed
-     *                              successfully.
+     * @throws  SQLException        if report data could not be read.
      * @since                       1.0
      */       
     private static void createDatacentersReports(List<PowerDatacenter> datacentersList,
-                                                 List<DatacenterBroker> brokersList) throws IOException, URISyntaxException {
+                                                 List<DatacenterBroker> brokersList) throws IOException, SQLException {
         
-    	List<DatacenterReport> datacenterReports = new ArrayList<DatacenterReport>();
+    	final List<DatacenterReport> datacenterReports = new ArrayList<DatacenterReport>();
     	for(PowerDatacenter datacenter : datacentersList) {
-    		DatacenterReport datacenterReport = new DatacenterReport(datacenter, brokersList, htmlReportsEnabled, rawDataReportsEnabled);
-    		datacenterReports.add(datacenterReport);    		
+    		datacenterReports.add(new DatacenterReport(datacenter, brokersList));
     	}
     	
-    	if(htmlReportsEnabled) {    		
-	    	String html = FileIO.readStringFromResource("cloudreports/gui/reports/resources/datacenters.html");	        
-	        StringBuilder datacenterOptions = new StringBuilder();
-	        StringBuilder datacentersHtmlList = new StringBuilder();
-	        for(DatacenterReport report : datacenterReports) {
-	            //Insert option element
-	            datacenterOptions.append("<option value=\"datacenter_");
-	            datacenterOptions.append(report.getName());
-	            datacenterOptions.append("\">");
-	            datacenterOptions.append(report.getName());
-	            datacenterOptions.append("</option>\n");
-	            
-	            if (datacenterReports.indexOf(report) == 0) 
-	            	datacentersHtmlList.append(report.getHtml().replace("id=\"datacenter_" + report.getName() + "\" style=\"display: none;\"", "id=\"datacenter_" + report.getName()+ "\""));
-	            else 
-	            	datacentersHtmlList.append(report.getHtml());				
-	        }
-	        
-	        html = html.replace("<!--INSERT_DATACENTER_OPTIONS-->", datacenterOptions.toString());
-	        html = html.replace("<!--INSERT_DATACENTERS_LIST-->", datacentersHtmlList.toString());	        
-	        if(htmlReportsEnabled) FileIO.writeStringToFile(baseDirectory + "/provider/datacenters.html", html);        
+        final Writer rawOut = rawDataReportsEnabled ? FileIO.openBufferedWriter(baseDirectory + "/raw/rawData.crd", true) : null;
+        try {
+            if(htmlReportsEnabled) {
+                String html = FileIO.readStringFromResource("cloudreports/gui/reports/resources/datacenters.html");
+                Writer out = FileIO.openBufferedWriter(baseDirectory + "/provider/datacenters.html", false);
+                try {
+                    ReportWriter.writeTemplate(html, out, new ReportWriter.TagHandler() {
+                        @Override
+                        public boolean writeTag(String tag, Writer out) throws IOException, SQLException {
+                            if(tag.equals("<!--INSERT_DATACENTER_OPTIONS-->")) {
+                                for(DatacenterReport report : datacenterReports) {
+                                    out.write("<option value=\"datacenter_" + report.getName() + "\">"
+                                              + report.getName() + "</option>\n");
+                                }
+                            }
+                            else if(tag.equals("<!--INSERT_DATACENTERS_LIST-->")) {
+                                for(int i = 0; i < datacenterReports.size(); i++) {
+                                    DatacenterReport report = datacenterReports.get(i);
+                                    ReportDataStore data = loadDatacenterData(report.getName());
+                                    report.writeHtml(out, data, i == 0);
+                                    if(rawOut != null) report.writeRawData(rawOut, data);
+                                }
+                            }
+                            else return false;
+                            return true;
+                        }
+                    });
+                } finally {
+                    out.close();
+                }
+            }
+            else if(rawOut != null) {
+                for(DatacenterReport report : datacenterReports) {
+                    report.writeRawData(rawOut, loadDatacenterData(report.getName()));
+                }
+            }
+        } finally {
+            if(rawOut != null) rawOut.close();
         }
-    	
-    	if(rawDataReportsEnabled) {
-    		for(DatacenterReport report : datacenterReports) {
-    			FileIO.appendStringToFile(baseDirectory + "/raw/rawData.crd", report.getRawData());    			
-    		}
-    	}
     }
 
     /** 
      * Creates a report for each of the simulated customers.
+     * The series of each customer are loaded once and both its HTML report
+     * and its raw data are written from them.
      * 
      * @param   brokersList         the list of simulated brokers.
      * @throws  IOException         if any of the directories or files could 
      *                              not be created.
-     * @throws  URISyntaxException  if any of the used paths could not be parsed
-     *                              successfully.
+     * @throws  SQLException        if report data could not be read.
      * @since                       1.0
      */     
-    private static void createCustomersReports(List<DatacenterBroker> brokersList) throws IOException, URISyntaxException {
-        List<CustomerReport> customerReports = new ArrayList<CustomerReport>();
+    private static void createCustomersReports(List<DatacenterBroker> brokersList) throws IOException, SQLException {
+        final List<CustomerReport> customerReports = new ArrayList<CustomerReport>();
         for (DatacenterBroker broker : brokersList) {
-        	CustomerReport customerReport = new CustomerReport(broker, htmlReportsEnabled, rawDataReportsEnabled);
-        	customerReports.add(customerReport);
+        	customerReports.add(new CustomerReport(broker));
         }        
     	
-        if(htmlReportsEnabled) {
-        	String html = FileIO.readStringFromResource("cloudreports/gui/reports/resources/customers.html");
-            StringBuilder customerOptions = new StringBuilder();
-            StringBuilder customersHtmlList = new StringBuilder();
-            for (CustomerReport report : customerReports) {
-                //Insert option element
-                customerOptions.append("<option value=\"customer_");
-                customerOptions.append(report.getName());
-                customerOptions.append("\">");
-                customerOptions.append(report.getName());
-                customerOptions.append("</option>\n");
-
-                if(customerReports.indexOf(report) == 0) 
-                	customersHtmlList.append(report.getHtml().replace("id=\"customer_" + report.getName() + "\" style=\"display: none;\"", "id=\"customer_" + report.getName() + "\""));
-                else 
-                	customersHtmlList.append(report.getHtml());
+        final Writer rawOut = rawDataReportsEnabled ? FileIO.openBufferedWriter(baseDirectory + "/raw/rawData.crd", true) : null;
+        try {
+            if(htmlReportsEnabled) {
+                String html = FileIO.readStringFromResource("cloudreports/gui/reports/resources/customers.html");
+                Writer out = FileIO.openBufferedWriter(baseDirectory + "/customers/customers.html", false);
+                try {
+                    ReportWriter.writeTemplate(html, out, new ReportWriter.TagHandler() {
+                        @Override
+                        public boolean writeTag(String tag, Writer out) throws IOException, SQLException {
+                            if(tag.equals("<!--INSERT_CUSTOMER_OPTIONS-->")) {
+                                for(CustomerReport report : customerReports) {
+                                    out.write("<option value=\"customer_" + report.getName() + "\">"
+                                              + report.getName() + "</option>\n");
+                                }
+                            }
+                            else if(tag.equals("<!--INSERT_CUSTOMERS_LIST-->")) {
+                                for(int i = 0; i < customerReports.size(); i++) {
+                                    CustomerReport report = customerReports.get(i);
+                                    ReportDataStore data = loadCustomerData(report.getName());
+                                    report.writeHtml(out, data, i == 0);
+                                    if(rawOut != null) report.writeRawData(rawOut, data);
+                                }
+                            }
+                            else return false;
+                            return true;
+                        }
+                    });
+                } finally {
+                    out.close();
+                }
             }
-
-            html = html.replace("<!--INSERT_CUSTOMER_OPTIONS-->", customerOptions.toString());
-            html = html.replace("<!--INSERT_CUSTOMERS_LIST-->", customersHtmlList.toString());
-            if(htmlReportsEnabled) FileIO.writeStringToFile(baseDirectory + "/customers/customers.html", html);        	
+            else if(rawOut != null) {
+                for(CustomerReport report : customerReports) {
+                    report.writeRawData(rawOut, loadCustomerData(report.getName()));
+                }
+            }
+        } finally {
+            if(rawOut != null) rawOut.close();
         }
-        
-        if(rawDataReportsEnabled) {
-        	for (CustomerReport report : customerReports) {
-        		FileIO.appendStringToFile(baseDirectory + "/raw/rawData.crd", report.getRawData());        		
-        	}
+    }
+
+    /** 
+     * Loads all series of a datacenter and its hosts.
+     * 
+     * @param   datacenterName  the name of the datacenter.
+     * @return                  a store containing the loaded series.
+     * @throws  SQLException    if the series could not be read.
+     * @since                   1.2
+     */     
+    private static ReportDataStore loadDatacenterData(String datacenterName) throws SQLException {
+        return countSamples(new ReportDataDAO().getDatacenterData(datacenterName));
+    }
+
+    /** 
+     * Loads all series of a customer and its virtual machines.
+     * 
+     * @param   customerName    the name of the customer.
+     * @return                  a store containing the loaded series.
+     * @throws  SQLException    if the series could not be read.
+     * @since                   1.2
+     */     
+    private static ReportDataStore loadCustomerData(String customerName) throws SQLException {
+        return countSamples(new ReportDataDAO().getCustomerData(customerName));
+    }
+
+    /** 
+     * Adds the samples of a loaded store to the number of samples read by
+     * the report.
+     * 
+     * @param   data    the loaded store.
+     * @return          the same store.
+     * @since           1.2
+     */     
+    private static ReportDataStore countSamples(ReportDataStore data) {
+        for(ReportDataStore.Series series : data.getSeriesList()) {
+            samplesRead += series.size();
         }
+        return data;
     }
 
     /** 
@@ -0,0 +1,441 @@
+/*
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ *
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.reports;
+
+import cloudreports.models.ReportData;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An in-memory columnar store of simulation samples.
+ * Each series is identified by a resource type and by a datacenter and host
+ * or a customer and virtual machine. Samples are kept in growable primitive
+ * arrays, so appending a sample to a series does not allocate any object.
+ *
+ * @see         ReportData
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class ReportDataStore {
+
+    /** The initial capacity of each series. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** The id of the simulation whose samples are stored. */
+    private int simulationId;
+
+    /** A map of series indexed by their keys. */
+    private HashMap<String, Series> seriesMap;
+
+    /** A list of all series in the order they were created. */
+    private List<Series> seriesList;
+
+    /** The number of samples that have not been flushed yet. */
+    private int pendingSamples;
+
+    /**
+     * Creates an empty store.
+     *
+     * @param   simulationId    the id of the simulation whose samples will
+     *                          be stored.
+     * @since                   1.2
+     */
+    public ReportDataStore(int simulationId) {
+        this.simulationId = simulationId;
+        this.seriesMap = new HashMap<String, Series>();
+        this.seriesList = new ArrayList<Series>();
+    }
+
+    /**
+     * Gets the id of the simulation whose samples are stored.
+     *
+     * @return  the simulation id.
+     */
+    public int getSimulationId() {
+        return simulationId;
+    }
+
+    /**
+     * Gets all series of this store.
+     *
+     * @return  a list containing all series in the order they were created.
+     */
+    public List<Series> getSeriesList() {
+        return seriesList;
+    }
+
+    /**
+     * Gets the number of samples that have not been flushed yet.
+     *
+     * @return  the number of pending samples.
+     */
+    public int getPendingSamples() {
+        return pendingSamples;
+    }
+
+    /**
+     * Marks all samples of this store as flushed.
+     *
+     * @since   1.2
+     */
+    public void markFlushed() {
+        for(Series series : seriesList) {
+            series.flushedSize = series.size;
+        }
+        pendingSamples = 0;
+    }
+
+    /**
+     * Moves all samples of this store to a spare store, so they can be 
+     * flushed while new samples are collected.
+     * The buffers of each series are swapped with the buffers of the 
+     * corresponding spare series, so no samples are copied and, once a spare
+     * store is available, no buffers are allocated either.
+     *
+     * @param   spare   a store returned by a previous call to this method on
+     *                  this store, whose samples have already been flushed;
+     *                  or <code>null</code> to create a new spare store.
+     * @return          the spare store, now holding the samples of this
+     *                  store.
+     * @since           1.2
+     */
+    public ReportDataStore swapBuffers(ReportDataStore spare) {
+        if(spare == null) spare = new ReportDataStore(simulationId);
+        for(int i = 0; i < seriesList.size(); i++) {
+            Series series = seriesList.get(i);
+            Series spareSeries;
+            //Spare series are created in the same order as the series of this store
+            if(i < spare.seriesList.size()) spareSeries = spare.seriesList.get(i);
+            else spareSeries = spare.getSeries(series.type, series.datacenterName, series.customerName,
+                                               series.hostId, series.vmId);
+            series.swap(spareSeries);
+        }
+        spare.pendingSamples = pendingSamples;
+        pendingSamples = 0;
+        return spare;
+    }
+
+    /**
+     * Gets the series of a given host, creating it if it does not exist.
+     *
+     * @param   type            the type of resource.
+     * @param   datacenterName  the name of the datacenter that owns the host.
+     * @param   hostId          the id of the host.
+     * @return                  the host's series.
+     * @since                   1.2
+     */
+    public Series getHostSeries(String type, String datacenterName, int hostId) {
+        return getSeries(type, datacenterName, null, hostId, null);
+    }
+
+    /**
+     * Gets the series of a given virtual machine, creating it if it does not
+     * exist.
+     *
+     * @param   type            the type of resource.
+     * @param   customerName    the name of the customer that owns the virtual
+     *                          machine.
+     * @param   vmId            the id of the virtual machine.
+     * @return                  the virtual machine's series.
+     * @since                   1.2
+     */
+    public Series getVmSeries(String type, String customerName, int vmId) {
+        return getSeries(type, null, customerName, null, vmId);
+    }
+
+    /**
+     * Gets the overall series of a given datacenter, creating it if it does
+     * not exist.
+     *
+     * @param   type            the type of resource.
+     * @param   datacenterName  the name of the datacenter.
+     * @return                  the datacenter's overall series.
+     * @since                   1.2
+     */
+    public Series getDatacenterSeries(String type, String datacenterName) {
+        return getSeries(type, datacenterName, null, null, null);
+    }
+
+    /**
+     * Gets the overall series of a given customer, creating it if it does
+     * not exist.
+     *
+     * @param   type            the type of resource.
+     * @param   customerName    the name of the customer.
+     * @return                  the customer's overall series.
+     * @since                   1.2
+     */
+    public Series getCustomerSeries(String type, String customerName) {
+        return getSeries(type, null, customerName, null, null);
+    }
+
+    /**
+     * Finds an existing series.
+     *
+     * @param   type            the type of resource.
+     * @param   datacenterName  the datacenter's name.
+     * @param   customerName    the customer's name.
+     * @param   hostId          the id of the host.
+     * @param   vmId            the id of the virtual machine.
+     * @return                  the series, if it exists; <code>null</code>
+     *                          otherwise.
+     * @since                   1.2
+     */
+    public Series findSeries(String type, String datacenterName, String customerName,
+                             Integer hostId, Integer vmId) {
+        return seriesMap.get(getKey(type, datacenterName, customerName, hostId, vmId));
+    }
+
+    /**
+     * Gets a series, creating it if it does not exist.
+     *
+     * @param   type            the type of resource.
+     * @param   datacenterName  the datacenter's name.
+     * @param   customerName    the customer's name.
+     * @param   hostId          the id of the host.
+     * @param   vmId            the id of the virtual machine.
+     * @return                  the series.
+     * @since                   1.2
+     */
+    private Series getSeries(String type, String datacenterName, String customerName,
+                             Integer hostId, Integer vmId) {
+        String key = getKey(type, datacenterName, customerName, hostId, vmId);
+        Series series = seriesMap.get(key);
+        if(series == null) {
+            series = new Series(type, datacenterName, customerName, hostId, vmId);
+            seriesMap.put(key, series);
+            seriesList.add(series);
+        }
+        return series;
+    }
+
+    /**
+     * Builds the key that identifies a series.
+     *
+     * @return  the key of the series.
+     */
+    private static String getKey(String type, String datacenterName, String customerName,
+                                 Integer hostId, Integer vmId) {
+        return new StringBuilder(type).append('|').append(datacenterName)
+                                      .append('|').append(customerName)
+                                      .append('|').append(hostId)
+                                      .append('|').append(vmId).toString();
+    }
+
+    /**
+     * A time series of a single resource of a single entity.
+     * Times and amounts are stored in parallel primitive arrays that grow
+     * on demand.
+     *
+     * @since   1.2
+     */
+    public class Series {
+
+        /** The type of resource. */
+        private String type;
+
+        /** The datacenter's name. */
+        private String datacenterName;
+
+        /** The customer's name. */
+        private String customerName;
+
+        /** The id of the host. */
+        private Integer hostId;
+
+        /** The id of the virtual machine. */
+        private Integer vmId;
+
+        /** The reported moments. */
+        private double[] times;
+
+        /** The amounts of used resources. */
+        private double[] amounts;
+
+        /** The number of samples of this series. */
+        private int size;
+
+        /** The number of samples that have already been flushed. */
+        private int flushedSize;
+
+        /**
+         * Creates an empty series.
+         *
+         * @param   type            the type of resource.
+         * @param   datacenterName  the datacenter's name.
+         * @param   customerName    the customer's name.
+         * @param   hostId          the id of the host.
+         * @param   vmId            the id of the virtual machine.
+         * @since                   1.2
+         */
+        private Series(String type, String datacenterName, String customerName,
+                       Integer hostId, Integer vmId) {
+            this.type = type;
+            this.datacenterName = datacenterName;
+            this.customerName = customerName;
+            this.hostId = hostId;
+            this.vmId = vmId;
+            this.times = new double[INITIAL_CAPACITY];
+            this.amounts = new double[INITIAL_CAPACITY];
+        }
+
+        /**
+         * Appends a sample to this series.
+         *
+         * @param   time    the reported moment.
+         * @param   amount  the amount of used resources.
+         * @since           1.2
+         */
+        public void append(double time, double amount) {
+            if(size == times.length) {
+                int capacity = size + (size >> 1);
+                double[] newTimes = new double[capacity];
+                double[] newAmounts = new double[capacity];
+                System.arraycopy(times, 0, newTimes, 0, size);
+                System.arraycopy(amounts, 0, newAmounts, 0, size);
+                times = newTimes;
+                amounts = newAmounts;
+            }
+            times[size] = time;
+            amounts[size] = amount;
+            size++;
+            pendingSamples++;
+        }
+
+        /**
+         * Appends a sample to this series or, if the last pending sample
+         * refers to the same time, replaces its amount.
+         * This keeps a single sample per simulated instant even when data is
+         * collected several times at the same instant.
+         *
+         * @param   time    the reported moment.
+         * @param   amount  the amount of used resources.
+         * @since           1.2
+         */
+        public void put(double time, double amount) {
+            if(size > flushedSize && times[size - 1] == time) amounts[size - 1] = amount;
+            else append(time, amount);
+        }
+
+        /**
+         * Gives the buffers of this series to another series and takes the
+         * buffers of the other series, which are cleared.
+         *
+         * @param   other   the series that receives the samples.
+         * @since           1.2
+         */
+        private void swap(Series other) {
+            double[] otherTimes = other.times;
+            double[] otherAmounts = other.amounts;
+            other.times = times;
+            other.amounts = amounts;
+            other.size = size;
+            other.flushedSize = flushedSize;
+            times = otherTimes;
+            amounts = otherAmounts;
+            size = 0;
+            flushedSize = 0;
+        }
+
+        /**
+         * Gets the number of samples of this series.
+         *
+         * @return  the number of samples.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Gets the number of samples that have already been flushed.
+         *
+         * @return  the number of flushed samples.
+         */
+        public int getFlushedSize() {
+            return flushedSize;
+        }
+
+        /**
+         * Gets the reported moment of a sample.
+         *
+         * @param   index   the index of the sample.
+         * @return          the reported moment.
+         */
+        public double getTime(int index) {
+            return times[index];
+        }
+
+        /**
+         * Gets the amount of used resources of a sample.
+         *
+         * @param   index   the index of the sample.
+         * @return          the amount of used resources.
+         */
+        public double getAmount(int index) {
+            return amounts[index];
+        }
+
+        /**
+         * Gets the type of resource.
+         *
+         * @return  the type of resource.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Gets the datacenter's name.
+         *
+         * @return  the datacenter's name.
+         */
+        public String getDatacenterName() {
+            return datacenterName;
+        }
+
+        /**
+         * Gets the customer's name.
+         *
+         * @return  the customer's name.
+         */
+        public String getCustomerName() {
+            return customerName;
+        }
+
+        /**
+         * Gets the id of the host.
+         *
+         * @return  the id of the host.
+         */
+        public Integer getHostId() {
+            return hostId;
+        }
+
+        /**
+         * Gets the id of the virtual machine.
+         *
+         * @return  the id of the virtual machine.
+         */
+        public Integer getVmId() {
+            return vmId;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ *
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.reports;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.SQLException;
+
+/**
+ * Provides methods to stream report templates and series directly to a
+ * {@link Writer}.
+ * Templates are written tag by tag instead of replacing tags on the whole
+ * document, and series are copied from a {@link ReportDataStore} without
+ * being converted to strings first.
+ *
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+class ReportWriter {
+
+    /** The prefix of template tags. */
+    private static final String TAG_PREFIX = "<!--INSERT_";
+
+    /** The suffix of template tags. */
+    private static final String TAG_SUFFIX = "-->";
+
+    /**
+     * Writes the content of template tags.
+     *
+     * @since   1.2
+     */
+    interface TagHandler {
+
+        /**
+         * Writes the content of a tag.
+         *
+         * @param   tag             the tag, such as
+         *                          <code>&lt;!--INSERT_RAM_DATA--&gt;</code>.
+         * @param   out             the writer.
+         * @return                  <code>true</code> if the tag was handled;
+         *                          <code>false</code> if it must be kept.
+         * @throws  IOException     if the content could not be written.
+         * @throws  SQLException    if report data could not be read.
+         */
+        boolean writeTag(String tag, Writer out) throws IOException, SQLException;
+    }
+
+    /**
+     * Writes a template, delegating every tag to a handler.
+     *
+     * @param   template        the template.
+     * @param   out             the writer.
+     * @param   handler         the handler of the template's tags.
+     * @throws  IOException     if the template could not be written.
+     * @throws  SQLException    if report data could not be read.
+     * @since                   1.2
+     */
+    static void writeTemplate(String template, Writer out, TagHandler handler) throws IOException, SQLException {
+        int position = 0;
+        int tagStart = template.indexOf(TAG_PREFIX);
+        while(tagStart >= 0) {
+            int tagEnd = template.indexOf(TAG_SUFFIX, tagStart + TAG_PREFIX.length());
+            if(tagEnd < 0) break;
+            tagEnd += TAG_SUFFIX.length();
+
+            out.write(template, position, tagStart - position);
+            String tag = template.substring(tagStart, tagEnd);
+            if(!handler.writeTag(tag, out)) out.write(tag);
+
+            position = tagEnd;
+            tagStart = template.indexOf(TAG_PREFIX, position);
+        }
+        out.write(template, position, template.length() - position);
+    }
+
+    /**
+     * Writes a series in a format that can be parsed by the Flot library.
+     *
+     * @param   series          the series; or <code>null</code> if there are
+     *                          no samples.
+     * @param   out             the writer.
+     * @throws  IOException     if the series could not be written.
+     * @see                     <a href="http://code.google.com/p/flot/">The Flot library</a>
+     * @since                   1.2
+     */
+    static void writeChartData(ReportDataStore.Series series, Writer out) throws IOException {
+        out.write('[');
+        int size = series == null ? 0 : series.size();
+        boolean bandwidth = size > 0 && series.getType().equals("BANDWIDTH");
+        for(int i = 0; i < size; i++) {
+            if(i > 0) out.write(',');
+            out.write('[');
+            out.write(String.valueOf(getTime(series, i)));
+            out.write(',');
+            out.write(String.valueOf(getAmount(series, i, bandwidth)));
+            out.write(']');
+        }
+        out.write(']');
+    }
+
+    /**
+     * Writes a series in a format that can be easily parsed by a third party
+     * software.
+     *
+     * @param   series          the series; or <code>null</code> if there are
+     *                          no samples.
+     * @param   label           the label of the series.
+     * @param   out             the writer.
+     * @throws  IOException     if the series could not be written.
+     * @since                   1.2
+     */
+    static void writeRawData(ReportDataStore.Series series, String label, Writer out) throws IOException {
+        int size = series == null ? 0 : series.size();
+        boolean bandwidth = size > 0 && series.getType().equals("BANDWIDTH");
+
+        out.write("\n" + label + "_time\t");
+        for(int i = 0; i < size; i++) {
+            out.write(String.valueOf(getTime(series, i)));
+            out.write('\t');
+        }
+
+        out.write("\n" + label + "_values\t");
+        for(int i = 0; i < size; i++) {
+            out.write(String.valueOf(getAmount(series, i, bandwidth)));
+            out.write('\t');
+        }
+    }
+
+    /**
+     * Gets the time of a sample, in minutes.
+     *
+     * @return  the time of the sample.
+     */
+    private static double getTime(ReportDataStore.Series series, int index) {
+        return series.getTime(index) / 60;
+    }
+
+    /**
+     * Gets the amount of a sample. Bandwidth is converted from kbps to Mbps.
+     *
+     * @return  the amount of the sample.
+     */
+    private static double getAmount(ReportDataStore.Series series, int index, boolean bandwidth) {
+        double amount = series.getAmount(index);
+        return bandwidth ? amount / 1000 : amount;
+    }
+}
@@ -0,0 +1,235 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.reports;
+
+import cloudreports.dao.ReportDataDAO;
+import cloudreports.extensions.PowerDatacenter;
+import java.util.List;
+import java.util.Properties;
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.DatacenterBroker;
+
+/**
+ * The key performance indicators of a simulation.
+ * A summary can be converted to and from {@link Properties}, so it can be
+ * handed from a worker process to the process that coordinates it.
+ * 
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class SimulationSummary {
+    
+    /** The number of watt-seconds in a kilowatt-hour. */
+    private static final double WATT_SECONDS_PER_KWH = 3600 * 1000;
+    
+    /** The names of the indicators, in the order they are presented. */
+    public static final String[] INDICATORS = {"energyKWh", "migrations", "meanCpuUtilization",
+                                               "p95CpuUtilization", "cloudletsSubmitted",
+                                               "cloudletsCompleted", "cloudletCompletionRate",
+                                               "meanCloudletFinishTime"};
+    
+    /** The energy consumed by all datacenters, in kWh. */
+    private double energy;
+    
+    /** The number of migrations in all datacenters. */
+    private int migrations;
+    
+    /** The mean CPU utilization of all hosts, in percent. */
+    private double meanCpuUtilization;
+    
+    /** The 95th percentile of the CPU utilization of all hosts, in percent. */
+    private double p95CpuUtilization;
+    
+    /** The number of cloudlets submitted by all customers. */
+    private int cloudletsSubmitted;
+    
+    /** The number of cloudlets completed for all customers. */
+    private int cloudletsCompleted;
+    
+    /** The mean finish time of all completed cloudlets, in seconds. */
+    private double meanCloudletFinishTime;
+    
+    /**
+     * Creates an empty summary.
+     * 
+     * @since   1.2
+     */
+    public SimulationSummary() {}
+    
+    /**
+     * Summarizes a finished simulation.
+     * The collected data must have been flushed to the database.
+     * 
+     * @param   datacentersList the list of simulated datacenters.
+     * @param   brokersList     the list of simulated brokers.
+     * @return                  the summary of the simulation.
+     * @since                   1.2
+     */
+    public static SimulationSummary create(List<PowerDatacenter> datacentersList, List<DatacenterBroker> brokersList) {
+        SimulationSummary summary = new SimulationSummary();
+        for (PowerDatacenter datacenter : datacentersList) {
+            summary.energy += datacenter.getPower() / WATT_SECONDS_PER_KWH;
+            summary.migrations += datacenter.getMigrationCount();
+        }
+        double finishTimes = 0;
+        for (DatacenterBroker broker : brokersList) {
+            summary.cloudletsSubmitted += broker.getCloudletSubmittedList().size();
+            summary.cloudletsCompleted += broker.getCloudletReceivedList().size();
+            for (Cloudlet cloudlet : broker.getCloudletReceivedList()) {
+                finishTimes += cloudlet.getFinishTime();
+            }
+        }
+        if (summary.cloudletsCompleted > 0) summary.meanCloudletFinishTime = finishTimes / summary.cloudletsCompleted;
+        double[] cpuStatistics = new ReportDataDAO().getHostStatistics("CPU", 95);
+        summary.meanCpuUtilization = cpuStatistics[0];
+        summary.p95CpuUtilization = cpuStatistics[1];
+        return summary;
+    }
+    
+    /**
+     * Gets the value of an indicator.
+     * 
+     * @param   indicator   the name of the indicator, one of 
+     *                      {@link #INDICATORS}.
+     * @return              the value of the indicator.
+     * @throws  IllegalArgumentException    if the indicator is unknown.
+     * @since                               1.2
+     */
+    public double getIndicator(String indicator) {
+        if (indicator.equals("energyKWh")) return energy;
+        if (indicator.equals("migrations")) return migrations;
+        if (indicator.equals("meanCpuUtilization")) return meanCpuUtilization;
+        if (indicator.equals("p95CpuUtilization")) return p95CpuUtilization;
+        if (indicator.equals("cloudletsSubmitted")) return cloudletsSubmitted;
+        if (indicator.equals("cloudletsCompleted")) return cloudletsCompleted;
+        if (indicator.equals("cloudletCompletionRate")) return getCloudletCompletionRate();
+        if (indicator.equals("meanCloudletFinishTime")) return meanCloudletFinishTime;
+        throw new IllegalArgumentException("Unknown indicator: " + indicator);
+    }
+    
+    /**
+     * Gets the energy consumed by all datacenters.
+     * 
+     * @return  the energy, in kWh.
+     */
+    public double getEnergy() {
+        return energy;
+    }
+    
+    /**
+     * Gets the number of migrations in all datacenters.
+     * 
+     * @return  the number of migrations.
+     */
+    public int getMigrations() {
+        return migrations;
+    }
+    
+    /**
+     * Gets the mean CPU utilization of all hosts.
+     * 
+     * @return  the mean CPU utilization, in percent.
+     */
+    public double getMeanCpuUtilization() {
+        return meanCpuUtilization;
+    }
+    
+    /**
+     * Gets the 95th percentile of the CPU utilization of all hosts.
+     * 
+     * @return  the 95th percentile of the CPU utilization, in percent.
+     */
+    public double getP95CpuUtilization() {
+        return p95CpuUtilization;
+    }
+    
+    /**
+     * Gets the number of cloudlets submitted by all customers.
+     * 
+     * @return  the number of submitted cloudlets.
+     */
+    public int getCloudletsSubmitted() {
+        return cloudletsSubmitted;
+    }
+    
+    /**
+     * Gets the number of cloudlets completed for all customers.
+     * 
+     * @return  the number of completed cloudlets.
+     */
+    public int getCloudletsCompleted() {
+        return cloudletsCompleted;
+    }
+    
+    /**
+     * Gets the fraction of submitted cloudlets that have completed.
+     * 
+     * @return  the completion rate, between 0 and 1.
+     */
+    public double getCloudletCompletionRate() {
+        return cloudletsSubmitted == 0 ? 0 : (double) cloudletsCompleted / cloudletsSubmitted;
+    }
+    
+    /**
+     * Gets the mean finish time of all completed cloudlets.
+     * 
+     * @return  the mean finish time, in seconds.
+     */
+    public double getMeanCloudletFinishTime() {
+        return meanCloudletFinishTime;
+    }
+    
+    /**
+     * Converts this summary to properties.
+     * 
+     * @return  the properties.
+     * @since   1.2
+     */
+    public Properties toProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("energyKWh", String.valueOf(energy));
+        properties.setProperty("migrations", String.valueOf(migrations));
+        properties.setProperty("meanCpuUtilization", String.valueOf(meanCpuUtilization));
+        properties.setProperty("p95CpuUtilization", String.valueOf(p95CpuUtilization));
+        properties.setProperty("cloudletsSubmitted", String.valueOf(cloudletsSubmitted));
+        properties.setProperty("cloudletsCompleted", String.valueOf(cloudletsCompleted));
+        properties.setProperty("meanCloudletFinishTime", String.valueOf(meanCloudletFinishTime));
+        return properties;
+    }
+    
+    /**
+     * Creates a summary from properties.
+     * 
+     * @param   properties  the properties created by {@link #toProperties()}.
+     * @return              the summary.
+     * @since               1.2
+     */
+    public static SimulationSummary fromProperties(Properties properties) {
+        SimulationSummary summary = new SimulationSummary();
+        summary.energy = Double.parseDouble(properties.getProperty("energyKWh", "0"));
+        summary.migrations = Integer.parseInt(properties.getProperty("migrations", "0"));
+        summary.meanCpuUtilization = Double.parseDouble(properties.getProperty("meanCpuUtilization", "0"));
+        summary.p95CpuUtilization = Double.parseDouble(properties.getProperty("p95CpuUtilization", "0"));
+        summary.cloudletsSubmitted = Integer.parseInt(properties.getProperty("cloudletsSubmitted", "0"));
+        summary.cloudletsCompleted = Integer.parseInt(properties.getProperty("cloudletsCompleted", "0"));
+        summary.meanCloudletFinishTime = Double.parseDouble(properties.getProperty("meanCloudletFinishTime", "0"));
+        return summary;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ *
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.reports;
+
+import java.util.List;
+import org.cloudbus.cloudsim.power.PowerHost;
+
+/**
+ * A fixed-size history of the utilization of a resource by the hosts of a
+ * datacenter.
+ * Each host owns a primitive ring buffer indexed by the host's position in
+ * the datacenter, so adding a sample and reading the moving average take
+ * constant time and do not allocate any object.
+ *
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+class UtilizationHistory {
+
+    /** The number of samples kept per host. */
+    private int window;
+
+    /** The ids of the hosts, indexed by host position. */
+    private int[] hostIds;
+
+    /** The samples of all hosts; host <code>i</code> owns the slots
+     *  <code>[i*window, (i+1)*window)</code>.
+     */
+    private double[] samples;
+
+    /** The position where the next sample of each host is written. */
+    private int[] heads;
+
+    /** The number of samples of each host. */
+    private int[] counts;
+
+    /** The sum of the samples of each host. */
+    private double[] sums;
+
+    /**
+     * Creates an empty history.
+     *
+     * @param   hostsList   the hosts of the datacenter.
+     * @param   window      the number of samples kept per host.
+     * @since               1.2
+     */
+    public UtilizationHistory(List<PowerHost> hostsList, int window) {
+        int numOfHosts = hostsList.size();
+        this.window = Math.max(window, 0);
+        this.hostIds = new int[numOfHosts];
+        for(int i = 0; i < numOfHosts; i++) {
+            hostIds[i] = hostsList.get(i).getId();
+        }
+        this.samples = new double[numOfHosts * this.window];
+        this.heads = new int[numOfHosts];
+        this.counts = new int[numOfHosts];
+        this.sums = new double[numOfHosts];
+    }
+
+    /**
+     * Gets the number of hosts of this history.
+     *
+     * @return  the number of hosts.
+     */
+    public int getNumOfHosts() {
+        return hostIds.length;
+    }
+
+    /**
+     * Gets the position of a host.
+     *
+     * @param   hostId  the id of the host.
+     * @return          the position of the host; or <code>-1</code> if the
+     *                  host is not part of this history.
+     * @since           1.2
+     */
+    public int indexOf(int hostId) {
+        //Hosts are usually numbered by their position
+        if(hostId >= 0 && hostId < hostIds.length && hostIds[hostId] == hostId) return hostId;
+        for(int i = 0; i < hostIds.length; i++) {
+            if(hostIds[i] == hostId) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a sample to the history of a host, replacing its oldest sample
+     * if the window is full.
+     *
+     * @param   hostIndex   the position of the host.
+     * @param   value       the sample.
+     * @since               1.2
+     */
+    public void add(int hostIndex, double value) {
+        if(window == 0) return;
+        int slot = hostIndex * window + heads[hostIndex];
+        if(counts[hostIndex] == window) sums[hostIndex] -= samples[slot];
+        else counts[hostIndex]++;
+        samples[slot] = value;
+        sums[hostIndex] += value;
+
+        if(++heads[hostIndex] == window) {
+            heads[hostIndex] = 0;
+            //Recompute the sum once per lap to avoid accumulating rounding errors
+            double sum = 0;
+            for(int i = hostIndex * window; i < (hostIndex + 1) * window; i++) {
+                sum += samples[i];
+            }
+            sums[hostIndex] = sum;
+        }
+    }
+
+    /**
+     * Gets the number of samples of a host.
+     *
+     * @param   hostIndex   the position of the host.
+     * @return              the number of samples.
+     */
+    public int getCount(int hostIndex) {
+        return counts[hostIndex];
+    }
+
+    /**
+     * Gets a sample of a host.
+     *
+     * @param   hostIndex   the position of the host.
+     * @param   index       the index of the sample, starting from the oldest
+     *                      one.
+     * @return              the sample.
+     */
+    public double getSample(int hostIndex, int index) {
+        int oldest = counts[hostIndex] == window ? heads[hostIndex] : 0;
+        return samples[hostIndex * window + (oldest + index) % window];
+    }
+
+    /**
+     * Gets the moving average of the samples of a host and an additional
+     * current value.
+     *
+     * @param   hostIndex       the position of the host.
+     * @param   currentValue    the current value, which is averaged together
+     *                          with the samples of the host.
+     * @return                  the moving average.
+     * @since                   1.2
+     */
+    public double getAverage(int hostIndex, double currentValue) {
+        return (currentValue + sums[hostIndex]) / (counts[hostIndex] + 1);
+    }
+}
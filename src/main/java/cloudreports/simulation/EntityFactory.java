@@ -19,16 +19,12 @@
 
 package cloudreports.simulation;
 
-import cloudreports.business.CustomerRegistryBusiness;
-import cloudreports.business.DatacenterRegistryBusiness;
-import cloudreports.dao.CustomerRegistryDAO;
-import cloudreports.dao.DatacenterRegistryDAO;
-import cloudreports.dao.NetworkMapEntryDAO;
-import cloudreports.enums.AllocationPolicy;
-import cloudreports.enums.BrokerPolicy;
 import cloudreports.extensions.PowerDatacenter;
-import cloudreports.gui.Dialog;
 import cloudreports.models.*;
+import cloudreports.simulation.EnvironmentBlueprint.CustomerBlueprint;
+import cloudreports.simulation.EnvironmentBlueprint.DatacenterBlueprint;
+import cloudreports.simulation.EnvironmentBlueprint.HostBlueprint;
+import cloudreports.simulation.EnvironmentBlueprint.VmBlueprint;
 import cloudreports.utils.RandomNumberGenerator;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -54,20 +50,20 @@ import qrbg.ServiceDeniedException;
 public class EntityFactory {
     
     /**
-     * Creates instances of CloudSim's PowerDatacenter class from a list of 
-     * datacenter registries.
+     * Creates instances of CloudSim's PowerDatacenter class from the
+     * blueprint of an environment.
      * 
-     * @param   dcrList a list of datacenter registries.
-     * @return          a map containing names of datacenters as keys and
-     *                  PowerDatacenter instances as values.
-     * @since           1.0
+     * @param   blueprint   the blueprint of the environment.
+     * @return              a map containing names of datacenters as keys and
+     *                      PowerDatacenter instances as values.
+     * @since               1.0
      */    
-    static HashMap<String, PowerDatacenter> createDatacenters() {
-        List<DatacenterRegistry> dcrList = DatacenterRegistryBusiness.getListOfDatacenters();
+    static HashMap<String, PowerDatacenter> createDatacenters(EnvironmentBlueprint blueprint) {
         HashMap<String, PowerDatacenter> map = new HashMap<String, PowerDatacenter>();
 
-        for (DatacenterRegistry dcr : dcrList) {
-            List<PowerHost> hostList = createHosts(dcr.getHostList());
+        for (DatacenterBlueprint datacenter : blueprint.getDatacenters()) {
+            DatacenterRegistry dcr = datacenter.registry;
+            List<PowerHost> hostList = createHosts(datacenter);
             if (hostList == null) {
                 return null;
             }
@@ -86,13 +82,12 @@ public class EntityFactory {
 
 
             try {
-                AllocationPolicy instance = AllocationPolicy.getInstance(dcr.getAllocationPolicyAlias());
-                VmAllocationPolicy allocationPolicy = instance.getPolicy(hostList, dcr.getUpperUtilizationThreshold(),
-                                                                         dcr.getLowerUtilizationThreshold(),
-                                                                         dcr.getSchedulingInterval(),
-                                                                         dcr.getAllocationPolicyAlias());
+                VmAllocationPolicy allocationPolicy = datacenter.allocationPolicy.getPolicy(hostList, dcr.getUpperUtilizationThreshold(),
+                                                                                            dcr.getLowerUtilizationThreshold(),
+                                                                                            dcr.getSchedulingInterval(),
+                                                                                            dcr.getAllocationPolicyAlias());
                 if (allocationPolicy == null) {
-                    Dialog.showErrorMessage(null, "Error loading \"" + dcr.getAllocationPolicyAlias() + "\" allocation policy.");
+                    Simulation.getListener().error("Error loading \"" + dcr.getAllocationPolicyAlias() + "\" allocation policy.");
                     return null;
                 }
 
@@ -119,45 +114,46 @@ public class EntityFactory {
     }
 
     /**
-     * Creates instances of CloudSim's PowerHost class from a list of 
-     * host registries.
+     * Creates instances of CloudSim's PowerHost class from the blueprint of
+     * a datacenter.
      * 
-     * @param   hostList    a list of datacenter registries.
+     * @param   datacenter  the blueprint of the datacenter.
      * @return              a list of PowerHost instances.
      * @since               1.0
      */        
-    static List<PowerHost> createHosts(List<HostRegistry> hostList) {
-        List<PowerHost> list = new ArrayList<PowerHost>();
+    static List<PowerHost> createHosts(DatacenterBlueprint datacenter) {
+        List<PowerHost> list = new ArrayList<PowerHost>(datacenter.numOfHosts);
 
         int i = 0;
-        for (HostRegistry hr : hostList) {
+        for (HostBlueprint host : datacenter.hosts) {
+            HostRegistry hr = host.registry;
             for (int n = 0; n < hr.getAmount(); n++) {
-                List<Pe> peList = createPes(hr);
+                List<Pe> peList = createPes(host);
                 if (peList == null) {
                     return null;
                 }
 
-                RamProvisioner rp = cloudreports.enums.RamProvisioner.getInstance(hr.getRamProvisionerAlias()).getProvisioner(hr.getRam(), hr.getRamProvisionerAlias());
+                RamProvisioner rp = host.ramProvisioner.getProvisioner(hr.getRam(), hr.getRamProvisionerAlias());
                 if (rp == null) {
-                    Dialog.showErrorMessage(null, "Error loading \"" + hr.getRamProvisionerAlias() + "\" RAM provisioner.");
+                    Simulation.getListener().error("Error loading \"" + hr.getRamProvisionerAlias() + "\" RAM provisioner.");
                     return null;
                 }
 
-                BwProvisioner bp = cloudreports.enums.BwProvisioner.getInstance(hr.getBwProvisionerAlias()).getProvisioner(hr.getBw(), hr.getBwProvisionerAlias());
+                BwProvisioner bp = host.bwProvisioner.getProvisioner(hr.getBw(), hr.getBwProvisionerAlias());
                 if (bp == null) {
-                    Dialog.showErrorMessage(null, "Error loading \"" + hr.getBwProvisionerAlias() + "\" bandwidth provisioner.");
+                    Simulation.getListener().error("Error loading \"" + hr.getBwProvisionerAlias() + "\" bandwidth provisioner.");
                     return null;
                 }
 
-                VmScheduler vs = cloudreports.enums.VmScheduler.getInstance(hr.getSchedulingPolicyAlias()).getScheduler(peList, hr.getSchedulingPolicyAlias());
+                VmScheduler vs = host.vmScheduler.getScheduler(peList, hr.getSchedulingPolicyAlias());
                 if (vs == null) {
-                    Dialog.showErrorMessage(null, "Error loading \"" + hr.getSchedulingPolicyAlias() + "\" VM scheduler.");
+                    Simulation.getListener().error("Error loading \"" + hr.getSchedulingPolicyAlias() + "\" VM scheduler.");
                     return null;
                 }
                 
-                PowerModel pm = cloudreports.enums.PowerModel.getInstance(hr.getPowerModelAlias()).getModel(hr.getMaxPower(), hr.getStaticPowerPercent(), hr.getPowerModelAlias());
+                PowerModel pm = host.powerModel.getModel(hr.getMaxPower(), hr.getStaticPowerPercent(), hr.getPowerModelAlias());
                 if (pm == null) {
-                    Dialog.showErrorMessage(null, "Error loading \"" + hr.getPowerModelAlias() + "\" power model.");
+                    Simulation.getListener().error("Error loading \"" + hr.getPowerModelAlias() + "\" power model.");
                     return null;
                 }
 
@@ -171,19 +167,21 @@ public class EntityFactory {
     }
 
     /**
-     * Creates instances of CloudSim's PowerPe class from a host registry.
+     * Creates instances of CloudSim's PowerPe class from the blueprint of a
+     * host type.
      * 
-     * @param   hr  a host registry.
-     * @return      a list of PowerPe instances.
-     * @since       1.0
+     * @param   host    the blueprint of the host type.
+     * @return          a list of PowerPe instances.
+     * @since           1.0
      */     
-    static List<Pe> createPes(HostRegistry hr) {
-        List<Pe> list = new ArrayList<Pe>();
+    static List<Pe> createPes(HostBlueprint host) {
+        HostRegistry hr = host.registry;
+        List<Pe> list = new ArrayList<Pe>(hr.getNumOfPes());
 
         for (int i = 0; i < hr.getNumOfPes(); i++) {
-            PeProvisioner pp = cloudreports.enums.PeProvisioner.getInstance(hr.getPeProvisionerAlias()).getProvisioner(hr.getMipsPerPe(), hr.getPeProvisionerAlias());
+            PeProvisioner pp = host.peProvisioner.getProvisioner(hr.getMipsPerPe(), hr.getPeProvisionerAlias());
             if (pp == null) {
-                Dialog.showErrorMessage(null, "Error loading \"" + hr.getPeProvisionerAlias() + "\" PE provisioner.");
+                Simulation.getListener().error("Error loading \"" + hr.getPeProvisionerAlias() + "\" PE provisioner.");
                 return null;
             }
 
@@ -219,37 +217,38 @@ public class EntityFactory {
     }
 
     /**
-     * Creates instances of CloudSim's DatacenterBroker class from a list of
-     * customer registries.
+     * Creates instances of CloudSim's DatacenterBroker class from the
+     * blueprint of an environment.
      * 
-     * @param   customerList    a list of customer registries.
-     * @return                  a map containing names of customers as keys and
-     *                          DatacenterBroker instances as values.
-     * @since                   1.0
+     * @param   blueprint   the blueprint of the environment.
+     * @return              a map containing names of customers as keys and
+     *                      DatacenterBroker instances as values.
+     * @since               1.0
      */     
-    static HashMap<String, DatacenterBroker> createBrokers() {
-        List<CustomerRegistry> customerList = CustomerRegistryBusiness.getListOfCustomers();
+    static HashMap<String, DatacenterBroker> createBrokers(EnvironmentBlueprint blueprint) {
         HashMap<String, DatacenterBroker> map = new HashMap<String, DatacenterBroker>();
 
         try {
-            for (CustomerRegistry cr : customerList) {
+            for (CustomerBlueprint customer : blueprint.getCustomers()) {
+                CustomerRegistry cr = customer.registry;
                 UtilizationProfile up = cr.getUtilizationProfile();
                 String name = cr.getName();
 
-                DatacenterBroker broker = BrokerPolicy.getInstance(up.getBrokerPolicyAlias()).createBroker(name, up.getBrokerPolicyAlias());
+                DatacenterBroker broker = customer.brokerPolicy.createBroker(name, up.getBrokerPolicyAlias(),
+                                                                             up.getNumOfCloudlets(), up.getLength());
                 if (broker == null) {
-                    Dialog.showErrorMessage(null, "Error loading \"" + up.getBrokerPolicyAlias() + "\" broker.");
+                    Simulation.getListener().error("Error loading \"" + up.getBrokerPolicyAlias() + "\" broker.");
                     return null;
                 }
 
                 int brokerId = broker.getId();
-                List<Vm> vmList = createVms(cr.getVmList(), brokerId);
+                List<Vm> vmList = createVms(customer, brokerId);
                 if (vmList == null) {
                     return null;
                 }
 
                 broker.submitVmList(vmList);
-                List<Cloudlet> cloudletList = createCloudlets(up, brokerId, new CustomerRegistryDAO().getNumOfVms(cr.getId()));
+                List<Cloudlet> cloudletList = createCloudlets(customer, brokerId);
                 if (cloudletList == null) {
                     return null;
                 }
@@ -267,23 +266,24 @@ public class EntityFactory {
     }
 
     /**
-     * Creates instances of CloudSim's Vm class from a list of virtual machine
-     * registries.
+     * Creates instances of CloudSim's Vm class from the blueprint of a
+     * customer.
      * 
-     * @param   vmList      a list of virtual machine registries.
+     * @param   customer    the blueprint of the customer.
      * @param   brokerId    the id of the broker that owns the virtual machines. 
      * @return              a list of Vm instances.
      * @since               1.0
      */         
-    static List<Vm> createVms(List<VirtualMachineRegistry> vmList, int brokerId) {
-        List<Vm> list = new ArrayList<Vm>();
+    static List<Vm> createVms(CustomerBlueprint customer, int brokerId) {
+        List<Vm> list = new ArrayList<Vm>(customer.numOfVms);
 
         int vmId = 0;
-        for (VirtualMachineRegistry vmr : vmList) {
+        for (VmBlueprint vm : customer.vms) {
+            VirtualMachineRegistry vmr = vm.registry;
             for (int n = 0; n < vmr.getAmount(); n++) {
-                CloudletScheduler cs = cloudreports.enums.CloudletScheduler.getInstance(vmr.getSchedulingPolicyAlias()).getScheduler(vmr.getMips(), vmr.getPesNumber(), vmr.getSchedulingPolicyAlias());
+                CloudletScheduler cs = vm.cloudletScheduler.getScheduler(vmr.getMips(), vmr.getPesNumber(), vmr.getSchedulingPolicyAlias());
                 if (cs == null) {
-                    Dialog.showErrorMessage(null, "Error loading \"" + vmr.getSchedulingPolicyAlias() + "\" cloudlet scheduler.");
+                    Simulation.getListener().error("Error loading \"" + vmr.getSchedulingPolicyAlias() + "\" cloudlet scheduler.");
                     return null;
                 }
 
@@ -304,39 +304,44 @@ public class EntityFactory {
     }
 
     /**
-     * Creates instances of CloudSim's Cloudlet class from a customer's
-     * utilization profile.
+     * Creates instances of CloudSim's Cloudlet class from the blueprint of a
+     * customer.
+     * One cloudlet is created per virtual machine, and the customer's name
+     * identifies its stream of random numbers.
      * 
-     * @param   ugr         the utilization profile.
+     * @param   customer    the blueprint of the customer.
      * @param   brokerId    the id of the broker that owns the cloudlets.
-     * @param   numOfVms    the number of virtual machines.
      * @return              a list of Cloudlet instances.
      * @since               1.0
      */          
-    static List<Cloudlet> createCloudlets(UtilizationProfile ugr, int brokerId, long numOfVms) throws IOException, ServiceDeniedException {
-        List<Cloudlet> list = new ArrayList<Cloudlet>();
+    static List<Cloudlet> createCloudlets(CustomerBlueprint customer, int brokerId) throws IOException, ServiceDeniedException {
+        UtilizationProfile ugr = customer.registry.getUtilizationProfile();
+        int numOfVms = customer.numOfVms;
+        List<Cloudlet> list = new ArrayList<Cloudlet>(numOfVms);
+        double[] lengthFactors = new double[numOfVms];
+        RandomNumberGenerator.fill(customer.registry.getName(), lengthFactors);
 
         for (int i = 0; i < numOfVms; i++) {
-            UtilizationModel cpu = cloudreports.enums.UtilizationModel.getInstance(ugr.getUtilizationModelCpuAlias()).getModel(ugr.getUtilizationModelCpuAlias());
+            UtilizationModel cpu = customer.cpuUtilizationModel.getModel(ugr.getUtilizationModelCpuAlias());
             if (cpu == null) {
-                Dialog.showErrorMessage(null, "Error loading \"" + ugr.getUtilizationModelCpuAlias() + "\" CPU utilization model.");
+                Simulation.getListener().error("Error loading \"" + ugr.getUtilizationModelCpuAlias() + "\" CPU utilization model.");
                 return null;
             }
 
-            UtilizationModel ram = cloudreports.enums.UtilizationModel.getInstance(ugr.getUtilizationModelRamAlias()).getModel(ugr.getUtilizationModelRamAlias());
+            UtilizationModel ram = customer.ramUtilizationModel.getModel(ugr.getUtilizationModelRamAlias());
             if (ram == null) {
-                Dialog.showErrorMessage(null, "Error loading \"" + ugr.getUtilizationModelRamAlias() + "\" RAM utilization model.");
+                Simulation.getListener().error("Error loading \"" + ugr.getUtilizationModelRamAlias() + "\" RAM utilization model.");
                 return null;
             }
 
-            UtilizationModel bw = cloudreports.enums.UtilizationModel.getInstance(ugr.getUtilizationModelBwAlias()).getModel(ugr.getUtilizationModelBwAlias());
+            UtilizationModel bw = customer.bwUtilizationModel.getModel(ugr.getUtilizationModelBwAlias());
             if (bw == null) {
-                Dialog.showErrorMessage(null, "Error loading \"" + ugr.getUtilizationModelBwAlias() + "\" bandwidth utilization model.");
+                Simulation.getListener().error("Error loading \"" + ugr.getUtilizationModelBwAlias() + "\" bandwidth utilization model.");
                 return null;
             }
 
             Cloudlet cloudlet = new Cloudlet(i,
-                    (long) ((long) ugr.getLength() * RandomNumberGenerator.getRandomNumbers(1).get(0)),
+                    (long) ((long) ugr.getLength() * lengthFactors[i]),
                     ugr.getCloudletsPesNumber(),
                     ugr.getFileSize(),
                     ugr.getOutputSize(),
@@ -355,64 +360,60 @@ public class EntityFactory {
     /**
      * Sets up all the network links to be simulated,
      * 
+     * @param   blueprint   the blueprint of the environment, which holds its
+     *                      network map.
      * @param   datacenters the datacenters being simulated.
      * @param   brokers     the brokers being simulated.
      * @since               1.0
      */      
-    static void setUpNetworkLinks(HashMap<String, PowerDatacenter> datacenters,
+    static void setUpNetworkLinks(EnvironmentBlueprint blueprint, HashMap<String, PowerDatacenter> datacenters,
             HashMap<String, DatacenterBroker> brokers) {
 
-        NetworkMapEntryDAO neDAO = new NetworkMapEntryDAO();
+        NetworkMap networkMap = blueprint.getNetworkMap();
 
         /*
          * Establish all links whose source is a datacenter
          */
-        DatacenterRegistryDAO drDAO = new DatacenterRegistryDAO();
-        String[] datacenterNames = drDAO.getAllDatacentersNames();
-
-        for (String source : datacenterNames) {
-            PowerDatacenter src = datacenters.get(source);
-
-            List<NetworkMapEntry> destinationList = neDAO.getListOfDestinations(source);
-
-            for (NetworkMapEntry entry : destinationList) {
-                String destinationName = entry.getDestination();
-
-                if (drDAO.getDatacenterRegistry(destinationName) != null) { //destination is a datacenter
-                    PowerDatacenter dest = datacenters.get(destinationName);
-                    NetworkTopology.addLink(src.getId(), dest.getId(), entry.getBandwidth(), entry.getLatency());
-                } else { //destination is a customer
-                    DatacenterBroker dest = brokers.get(destinationName);
-                    NetworkTopology.addLink(src.getId(), dest.getId(), entry.getBandwidth(), entry.getLatency());
-                }
-            }
+        for (DatacenterBlueprint datacenter : blueprint.getDatacenters()) {
+            String source = datacenter.registry.getName();
+            addLinks(networkMap, datacenters.get(source).getId(), source, datacenters, brokers);
         }
 
-
         /*
          * Establish all links whose source is a customer
          */
-        CustomerRegistryDAO crDAO = new CustomerRegistryDAO();
-        String[] customerNames = crDAO.getCustomersNames();
-
-        for (String source : customerNames) {
-            DatacenterBroker src = brokers.get(source);
-
-            List<NetworkMapEntry> destinationList = neDAO.getListOfDestinations(source);
+        for (CustomerBlueprint customer : blueprint.getCustomers()) {
+            String source = customer.registry.getName();
+            addLinks(networkMap, brokers.get(source).getId(), source, datacenters, brokers);
+        }
 
-            for (NetworkMapEntry entry : destinationList) {
-                String destinationName = entry.getDestination();
+    }
 
-                if (drDAO.getDatacenterRegistry(destinationName) != null) { //destination is a datacenter
-                    PowerDatacenter dest = datacenters.get(destinationName);
-                    NetworkTopology.addLink(src.getId(), dest.getId(), entry.getBandwidth(), entry.getLatency());
-                } else { //destination is a customer
-                    DatacenterBroker dest = brokers.get(destinationName);
-                    NetworkTopology.addLink(src.getId(), dest.getId(), entry.getBandwidth(), entry.getLatency());
-                }
+    /**
+     * Sets up the network links whose source is a given entity.
+     * 
+     * @param   networkMap  the network map of the environment.
+     * @param   sourceId    the id of the source entity.
+     * @param   source      the name of the source entity.
+     * @param   datacenters the datacenters being simulated.
+     * @param   brokers     the brokers being simulated.
+     */
+    private static void addLinks(NetworkMap networkMap, int sourceId, String source,
+            HashMap<String, PowerDatacenter> datacenters, HashMap<String, DatacenterBroker> brokers) {
+        for (NetworkMapEntry entry : networkMap.getDestinations(source)) {
+            String destinationName = entry.getDestination();
+            NetworkMap.EntityKind kind = networkMap.getKind(destinationName);
+            
+            int destinationId;
+            if (kind == NetworkMap.EntityKind.DATACENTER) {
+                destinationId = datacenters.get(destinationName).getId();
+            } else if (kind == NetworkMap.EntityKind.CUSTOMER) {
+                destinationId = brokers.get(destinationName).getId();
+            } else { //destination no longer exists
+                continue;
             }
+            NetworkTopology.addLink(sourceId, destinationId, entry.getBandwidth(), entry.getLatency());
         }
-
     }
     
 }
@@ -0,0 +1,299 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.simulation;
+
+import cloudreports.business.CustomerRegistryBusiness;
+import cloudreports.business.DatacenterRegistryBusiness;
+import cloudreports.enums.AllocationPolicy;
+import cloudreports.enums.BrokerPolicy;
+import cloudreports.enums.BwProvisioner;
+import cloudreports.enums.CloudletScheduler;
+import cloudreports.enums.PeProvisioner;
+import cloudreports.enums.PowerModel;
+import cloudreports.enums.RamProvisioner;
+import cloudreports.enums.UtilizationModel;
+import cloudreports.enums.VmScheduler;
+import cloudreports.models.CustomerRegistry;
+import cloudreports.models.DatacenterRegistry;
+import cloudreports.models.HostRegistry;
+import cloudreports.models.UtilizationProfile;
+import cloudreports.models.VirtualMachineRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable description of a simulation environment, compiled once and
+ * instantiated by every simulation of the environment.
+ * The registries are loaded from the database only when the blueprint is
+ * compiled, and the aliases of provisioners, schedulers, power models,
+ * policies and utilization models are resolved once per registry instead of
+ * once per host, PE, virtual machine or cloudlet.
+ * 
+ * @see         EntityFactory
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public final class EnvironmentBlueprint {
+
+    /** The datacenters of the environment. */
+    private final List<DatacenterBlueprint> datacenters;
+    
+    /** The customers of the environment. */
+    private final List<CustomerBlueprint> customers;
+    
+    /** The network map of the environment. */
+    private final NetworkMap networkMap;
+
+    /**
+     * Creates a blueprint.
+     * 
+     * @param   datacenters the datacenters of the environment.
+     * @param   customers   the customers of the environment.
+     * @param   networkMap  the network map of the environment.
+     */
+    private EnvironmentBlueprint(List<DatacenterBlueprint> datacenters, List<CustomerBlueprint> customers,
+                                 NetworkMap networkMap) {
+        this.datacenters = Collections.unmodifiableList(datacenters);
+        this.customers = Collections.unmodifiableList(customers);
+        this.networkMap = networkMap;
+    }
+
+    /**
+     * Compiles the blueprint of the active environment.
+     * 
+     * @return  the blueprint.
+     * @since   1.2
+     */
+    public static EnvironmentBlueprint compile() {
+        List<DatacenterBlueprint> datacenters = new ArrayList<DatacenterBlueprint>();
+        List<String> datacenterNames = new ArrayList<String>();
+        for (DatacenterRegistry dcr : DatacenterRegistryBusiness.getListOfDatacenters()) {
+            datacenters.add(new DatacenterBlueprint(dcr));
+            datacenterNames.add(dcr.getName());
+        }
+        
+        List<CustomerBlueprint> customers = new ArrayList<CustomerBlueprint>();
+        List<String> customerNames = new ArrayList<String>();
+        for (CustomerRegistry cr : CustomerRegistryBusiness.getListOfCustomers()) {
+            customers.add(new CustomerBlueprint(cr));
+            customerNames.add(cr.getName());
+        }
+        
+        return new EnvironmentBlueprint(datacenters, customers, new NetworkMap(datacenterNames, customerNames));
+    }
+
+    /**
+     * Gets the datacenters of the environment.
+     * 
+     * @return  an unmodifiable list of datacenters.
+     */
+    List<DatacenterBlueprint> getDatacenters() {
+        return datacenters;
+    }
+
+    /**
+     * Gets the customers of the environment.
+     * 
+     * @return  an unmodifiable list of customers.
+     */
+    List<CustomerBlueprint> getCustomers() {
+        return customers;
+    }
+
+    /**
+     * Gets the network map of the environment.
+     * 
+     * @return  the network map.
+     */
+    NetworkMap getNetworkMap() {
+        return networkMap;
+    }
+
+    /**
+     * Gets the number of customers of the environment.
+     * 
+     * @return  the number of customers.
+     * @since   1.2
+     */
+    public int getNumberOfCustomers() {
+        return customers.size();
+    }
+
+    /**
+     * Gets the number of hosts of the environment.
+     * 
+     * @return  the number of hosts.
+     * @since   1.2
+     */
+    public int getNumberOfHosts() {
+        int numOfHosts = 0;
+        for (DatacenterBlueprint datacenter : datacenters) {
+            numOfHosts += datacenter.numOfHosts;
+        }
+        return numOfHosts;
+    }
+
+    /**
+     * The blueprint of a datacenter.
+     */
+    static final class DatacenterBlueprint {
+        
+        /** The registry of the datacenter. */
+        final DatacenterRegistry registry;
+        
+        /** The allocation policy of the datacenter. */
+        final AllocationPolicy allocationPolicy;
+        
+        /** The host types of the datacenter. */
+        final List<HostBlueprint> hosts;
+        
+        /** The number of hosts of the datacenter. */
+        final int numOfHosts;
+
+        /**
+         * Compiles the blueprint of a datacenter.
+         * 
+         * @param   dcr the registry of the datacenter.
+         */
+        DatacenterBlueprint(DatacenterRegistry dcr) {
+            this.registry = dcr;
+            this.allocationPolicy = AllocationPolicy.getInstance(dcr.getAllocationPolicyAlias());
+            List<HostBlueprint> hostList = new ArrayList<HostBlueprint>();
+            int amount = 0;
+            for (HostRegistry hr : dcr.getHostList()) {
+                hostList.add(new HostBlueprint(hr));
+                amount += hr.getAmount();
+            }
+            this.hosts = Collections.unmodifiableList(hostList);
+            this.numOfHosts = amount;
+        }
+    }
+
+    /**
+     * The blueprint of a host type, shared by all hosts of the type.
+     */
+    static final class HostBlueprint {
+        
+        /** The registry of the host type. */
+        final HostRegistry registry;
+        
+        /** The RAM provisioner of the hosts. */
+        final RamProvisioner ramProvisioner;
+        
+        /** The bandwidth provisioner of the hosts. */
+        final BwProvisioner bwProvisioner;
+        
+        /** The VM scheduler of the hosts. */
+        final VmScheduler vmScheduler;
+        
+        /** The power model of the hosts. */
+        final PowerModel powerModel;
+        
+        /** The provisioner of the hosts' PEs. */
+        final PeProvisioner peProvisioner;
+
+        /**
+         * Compiles the blueprint of a host type.
+         * 
+         * @param   hr  the registry of the host type.
+         */
+        HostBlueprint(HostRegistry hr) {
+            this.registry = hr;
+            this.ramProvisioner = RamProvisioner.getInstance(hr.getRamProvisionerAlias());
+            this.bwProvisioner = BwProvisioner.getInstance(hr.getBwProvisionerAlias());
+            this.vmScheduler = VmScheduler.getInstance(hr.getSchedulingPolicyAlias());
+            this.powerModel = PowerModel.getInstance(hr.getPowerModelAlias());
+            this.peProvisioner = PeProvisioner.getInstance(hr.getPeProvisionerAlias());
+        }
+    }
+
+    /**
+     * The blueprint of a customer.
+     */
+    static final class CustomerBlueprint {
+        
+        /** The registry of the customer. */
+        final CustomerRegistry registry;
+        
+        /** The broker policy of the customer. */
+        final BrokerPolicy brokerPolicy;
+        
+        /** The virtual machine types of the customer. */
+        final List<VmBlueprint> vms;
+        
+        /** The number of virtual machines of the customer. */
+        final int numOfVms;
+        
+        /** The CPU utilization model of the customer's cloudlets. */
+        final UtilizationModel cpuUtilizationModel;
+        
+        /** The RAM utilization model of the customer's cloudlets. */
+        final UtilizationModel ramUtilizationModel;
+        
+        /** The bandwidth utilization model of the customer's cloudlets. */
+        final UtilizationModel bwUtilizationModel;
+
+        /**
+         * Compiles the blueprint of a customer.
+         * 
+         * @param   cr  the registry of the customer.
+         */
+        CustomerBlueprint(CustomerRegistry cr) {
+            UtilizationProfile up = cr.getUtilizationProfile();
+            this.registry = cr;
+            this.brokerPolicy = BrokerPolicy.getInstance(up.getBrokerPolicyAlias());
+            List<VmBlueprint> vmList = new ArrayList<VmBlueprint>();
+            int amount = 0;
+            for (VirtualMachineRegistry vmr : cr.getVmList()) {
+                vmList.add(new VmBlueprint(vmr));
+                amount += vmr.getAmount();
+            }
+            this.vms = Collections.unmodifiableList(vmList);
+            this.numOfVms = amount;
+            this.cpuUtilizationModel = UtilizationModel.getInstance(up.getUtilizationModelCpuAlias());
+            this.ramUtilizationModel = UtilizationModel.getInstance(up.getUtilizationModelRamAlias());
+            this.bwUtilizationModel = UtilizationModel.getInstance(up.getUtilizationModelBwAlias());
+        }
+    }
+
+    /**
+     * The blueprint of a virtual machine type, shared by all virtual machines
+     * of the type.
+     */
+    static final class VmBlueprint {
+        
+        /** The registry of the virtual machine type. */
+        final VirtualMachineRegistry registry;
+        
+        /** The cloudlet scheduler of the virtual machines. */
+        final CloudletScheduler cloudletScheduler;
+
+        /**
+         * Compiles the blueprint of a virtual machine type.
+         * 
+         * @param   vmr the registry of the virtual machine type.
+         */
+        VmBlueprint(VirtualMachineRegistry vmr) {
+            this.registry = vmr;
+            this.cloudletScheduler = CloudletScheduler.getInstance(vmr.getSchedulingPolicyAlias());
+        }
+    }
+}
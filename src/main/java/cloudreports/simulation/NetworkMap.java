@@ -0,0 +1,111 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.simulation;
+
+import cloudreports.dao.NetworkMapEntryDAO;
+import cloudreports.models.NetworkMapEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-memory view of the network map of an environment.
+ * All entries are loaded with a single query and grouped by source, and
+ * the kind of every entity is indexed by name, so the links of an
+ * environment are set up in time linear in the number of entries.
+ * 
+ * @see         EntityFactory#setUpNetworkLinks(EnvironmentBlueprint, java.util.HashMap, java.util.HashMap)
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+final class NetworkMap {
+
+    /** The kinds of entities of a network map. */
+    enum EntityKind {
+        /** A datacenter. */
+        DATACENTER,
+        
+        /** A customer, simulated by a broker. */
+        CUSTOMER
+    }
+
+    /** The entries of the network map, indexed by source. */
+    private final Map<String, List<NetworkMapEntry>> destinations;
+    
+    /** The kind of each entity, indexed by name. */
+    private final Map<String, EntityKind> kinds;
+
+    /**
+     * Loads the network map of the active environment.
+     * 
+     * @param   datacenterNames the names of the datacenters.
+     * @param   customerNames   the names of the customers.
+     */
+    NetworkMap(List<String> datacenterNames, List<String> customerNames) {
+        Map<String, EntityKind> kindMap = new HashMap<String, EntityKind>();
+        for (String name : datacenterNames) {
+            kindMap.put(name, EntityKind.DATACENTER);
+        }
+        for (String name : customerNames) {
+            kindMap.put(name, EntityKind.CUSTOMER);
+        }
+        this.kinds = Collections.unmodifiableMap(kindMap);
+        
+        Map<String, List<NetworkMapEntry>> destinationMap = new HashMap<String, List<NetworkMapEntry>>();
+        List<NetworkMapEntry> entries = new NetworkMapEntryDAO().getAllEntries();
+        if (entries != null) {
+            for (NetworkMapEntry entry : entries) {
+                List<NetworkMapEntry> list = destinationMap.get(entry.getSource());
+                if (list == null) {
+                    list = new ArrayList<NetworkMapEntry>();
+                    destinationMap.put(entry.getSource(), list);
+                }
+                list.add(entry);
+            }
+        }
+        this.destinations = Collections.unmodifiableMap(destinationMap);
+    }
+
+    /**
+     * Gets the entries on which an entity is the source.
+     * 
+     * @param   source  the name of the entity.
+     * @return          an unmodifiable list of entries; the list is empty if
+     *                  there are no entries.
+     */
+    List<NetworkMapEntry> getDestinations(String source) {
+        List<NetworkMapEntry> list = destinations.get(source);
+        if (list == null) return Collections.emptyList();
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Gets the kind of an entity.
+     * 
+     * @param   name    the name of the entity.
+     * @return          the kind of the entity; or <code>null</code> if 
+     *                  there is no entity with the given name.
+     */
+    EntityKind getKind(String name) {
+        return kinds.get(name);
+    }
+}
@@ -0,0 +1,237 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.simulation;
+
+import cloudreports.reports.SimulationSummary;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decides when the simulations of an environment may stop.
+ * After each simulation, the running mean and the 95% confidence interval
+ * of a set of indicators are updated. Simulations stop as soon as the
+ * half-width of every interval is within a relative precision of its mean,
+ * provided that a minimum number of simulations has been run, or when the
+ * maximum number of simulations is reached.
+ * 
+ * @see         SimulationSummary
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class SequentialStopping {
+
+    /** The 97.5% quantiles of Student's t distribution for 1 to 30 degrees
+     *  of freedom.
+     */
+    private static final double[] T_QUANTILES = {
+        12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+        2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+        2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+
+    /** The indicators whose precision is checked. */
+    private String[] indicators;
+    
+    /** The relative precision at which simulations stop. */
+    private double targetPrecision;
+    
+    /** The minimum number of simulations. */
+    private int minimumSimulations;
+    
+    /** The maximum number of simulations. */
+    private int maximumSimulations;
+    
+    /** The number of simulations added so far. */
+    private int count;
+    
+    /** The running mean of each indicator. */
+    private double[] means;
+    
+    /** The running sum of squared deviations of each indicator. */
+    private double[] squaredDeviations;
+    
+    /** The reason why the simulations stopped; or <code>null</code> if they
+     *  have not stopped.
+     */
+    private String stopReason;
+
+    /**
+     * Creates a sequential stopping rule.
+     * 
+     * @param   indicators          the indicators whose precision is checked,
+     *                              among {@link SimulationSummary#INDICATORS}.
+     * @param   targetPrecision     the relative precision at which 
+     *                              simulations stop, e.g. <code>0.05</code>
+     *                              for 5% of the mean.
+     * @param   minimumSimulations  the minimum number of simulations.
+     * @param   maximumSimulations  the maximum number of simulations.
+     * @since                       1.2
+     */
+    public SequentialStopping(String[] indicators, double targetPrecision,
+                              int minimumSimulations, int maximumSimulations) {
+        this.indicators = indicators;
+        this.targetPrecision = targetPrecision;
+        this.maximumSimulations = maximumSimulations;
+        this.minimumSimulations = Math.max(Math.min(minimumSimulations, maximumSimulations), 2);
+        this.means = new double[indicators.length];
+        this.squaredDeviations = new double[indicators.length];
+    }
+
+    /**
+     * Parses a list of indicators separated by commas.
+     * 
+     * @param   value   the list of indicators.
+     * @return          the indicators.
+     * @throws  IllegalArgumentException    if an indicator is unknown.
+     * @since                               1.2
+     */
+    public static String[] parseIndicators(String value) {
+        String[] indicators = value.trim().split("\\s*,\\s*");
+        SimulationSummary summary = new SimulationSummary();
+        for (String indicator : indicators) {
+            summary.getIndicator(indicator);
+        }
+        return indicators;
+    }
+
+    /**
+     * Adds the summary of a simulation and decides whether the simulations
+     * may stop.
+     * 
+     * @param   summary the summary of the simulation.
+     * @return          <code>true</code> if the simulations may stop;
+     *                  <code>false</code> otherwise.
+     * @since           1.2
+     */
+    public boolean add(SimulationSummary summary) {
+        count++;
+        for (int i = 0; i < indicators.length; i++) {
+            double value = summary.getIndicator(indicators[i]);
+            double delta = value - means[i];
+            means[i] += delta / count;
+            squaredDeviations[i] += delta * (value - means[i]);
+        }
+        
+        if (count >= minimumSimulations && hasConverged()) {
+            stopReason = String.format(Locale.US, "The relative precision of %.1f%% was reached after %d simulations.",
+                                       targetPrecision * 100, count);
+        } else if (count >= maximumSimulations) {
+            stopReason = String.format(Locale.US, "The maximum number of %d simulations was reached before the relative precision of %.1f%%.",
+                                       maximumSimulations, targetPrecision * 100);
+        }
+        return stopReason != null;
+    }
+
+    /**
+     * Indicates whether the confidence intervals of all indicators are 
+     * within the target precision.
+     * 
+     * @return  <code>true</code> if all intervals are within the target
+     *          precision; <code>false</code> otherwise.
+     */
+    private boolean hasConverged() {
+        for (int i = 0; i < indicators.length; i++) {
+            if (getHalfWidth(i) > targetPrecision * Math.abs(means[i])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the half-width of the 95% confidence interval of an indicator.
+     * 
+     * @param   index   the position of the indicator.
+     * @return          the half-width; or infinity if fewer than two 
+     *                  simulations were added.
+     */
+    private double getHalfWidth(int index) {
+        if (count < 2) return Double.POSITIVE_INFINITY;
+        int degreesOfFreedom = count - 1;
+        double t = degreesOfFreedom <= T_QUANTILES.length ? T_QUANTILES[degreesOfFreedom - 1] : 1.96;
+        return t * Math.sqrt(squaredDeviations[index] / degreesOfFreedom / count);
+    }
+
+    /**
+     * Describes the state of this rule: the reason why the simulations 
+     * stopped, if they did, followed by the mean and confidence interval of
+     * each indicator.
+     * 
+     * @return  the lines of the description.
+     * @since   1.2
+     */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<String>();
+        if (stopReason != null) lines.add(stopReason);
+        for (int i = 0; i < indicators.length; i++) {
+            double[] interval = getConfidenceInterval(i);
+            lines.add(String.format(Locale.US, "%s: mean %.4f, 95%% confidence interval [%.4f, %.4f]",
+                                    indicators[i], means[i], interval[0], interval[1]));
+        }
+        return lines;
+    }
+
+    /**
+     * Gets the number of simulations added so far.
+     * 
+     * @return  the number of simulations.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the reason why the simulations stopped.
+     * 
+     * @return  the reason; or <code>null</code> if the simulations have not
+     *          stopped.
+     */
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    /**
+     * Gets the indicators whose precision is checked.
+     * 
+     * @return  the indicators.
+     */
+    public String[] getIndicators() {
+        return indicators;
+    }
+
+    /**
+     * Gets the running mean of an indicator.
+     * 
+     * @param   index   the position of the indicator.
+     * @return          the mean.
+     */
+    public double getMean(int index) {
+        return means[index];
+    }
+
+    /**
+     * Gets the 95% confidence interval of an indicator.
+     * 
+     * @param   index   the position of the indicator.
+     * @return          an array with the lower and upper bounds.
+     */
+    public double[] getConfidenceInterval(int index) {
+        double halfWidth = getHalfWidth(index);
+        return new double[] {means[index] - halfWidth, means[index] + halfWidth};
+    }
+}
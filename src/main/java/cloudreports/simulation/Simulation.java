@@ -25,12 +25,12 @@ import cloudreports.dao.DatacenterRegistryDAO;
 import cloudreports.dao.SettingDAO;
 import cloudreports.database.HibernateUtil;
 import cloudreports.extensions.PowerDatacenter;
-import cloudreports.gui.Dialog;
-import cloudreports.gui.MainView;
 import cloudreports.models.CustomerRegistry;
 import cloudreports.models.Setting;
 import cloudreports.reports.DataCollector;
+import cloudreports.reports.PhaseTimer;
 import cloudreports.reports.Report;
+import cloudreports.reports.SimulationSummary;
 import cloudreports.utils.*;
 
 import java.io.File;
@@ -57,9 +57,99 @@ public class Simulation implements Runnable {
     /** A data collector. */
     private static DataCollector dataCollector;
     
+    /** The listener of the running simulations. */
+    private static SimulationListener listener;
+    
+    /** The names of the environments to be simulated. */
+    private String[] environments;
+    
+    /** The number of simulations per environment; if <code>0</code>, the
+     *  NumberOfSimulations setting of each environment is used.
+     */
+    private int numberOfSimulations;
+    
+    /** The only simulation to be run; if <code>0</code>, all simulations 
+     *  are run.
+     */
+    private int replica;
+    
+    /** The base seed of pseudo-random numbers; if <code>null</code>, the
+     *  RandomSeed setting of each environment is used.
+     */
+    private Long randomSeed;
+    
+    /** The relative precision at which simulations stop; if 
+     *  <code>null</code>, the TargetPrecision setting of each environment is
+     *  used.
+     */
+    private Double targetPrecision;
+    
     /** Indicates whether the mail notification feature is enabled or not. */
     private boolean isMailNotificationEnabled;
     
+    /**
+     * Creates a simulation of a set of environments.
+     * 
+     * @param   environments    the names of the environments to be simulated.
+     * @param   listener        the listener that is notified about the 
+     *                          progress of the simulations.
+     * @since                   1.2
+     */    
+    public Simulation(String[] environments, SimulationListener listener) {
+        this.environments = environments;
+        Simulation.listener = listener;
+    }
+    
+    /**
+     * Overrides the number of simulations of each environment.
+     * 
+     * @param   numberOfSimulations the number of simulations per environment;
+     *                              if <code>0</code>, the NumberOfSimulations
+     *                              setting of each environment is used.
+     * @since                       1.2
+     */    
+    public void setNumberOfSimulations(int numberOfSimulations) {
+        this.numberOfSimulations = numberOfSimulations;
+    }
+    
+    /**
+     * Restricts the run to a single simulation of each environment.
+     * The reports of other simulations are kept, so several processes can
+     * run different simulations of the same environment.
+     * 
+     * @param   replica the id of the simulation to be run; if <code>0</code>,
+     *                  all simulations are run.
+     * @since           1.2
+     */    
+    public void setReplica(int replica) {
+        this.replica = replica;
+    }
+    
+    /**
+     * Overrides the base seed of pseudo-random numbers.
+     * 
+     * @param   randomSeed  the base seed; if <code>null</code>, the RandomSeed
+     *                      setting of each environment is used.
+     * @since               1.2
+     */    
+    public void setRandomSeed(Long randomSeed) {
+        this.randomSeed = randomSeed;
+    }
+    
+    /**
+     * Overrides the relative precision at which simulations stop.
+     * 
+     * @param   targetPrecision the relative precision; if <code>0</code>, all
+     *                          simulations are run; if <code>null</code>, 
+     *                          the TargetPrecision setting of each 
+     *                          environment is used.
+     * @see                     SequentialStopping
+     * @since                   1.2
+     */    
+    public void setTargetPrecision(Double targetPrecision) {
+        this.targetPrecision = targetPrecision;
+    }
+    
     /**
      * Gets a value that indicates whether the simulations are over or not.
      * 
@@ -78,6 +168,28 @@ public class Simulation implements Runnable {
         return dataCollector;
     }
 
+    /**
+     * Sets the data collector.
+     * It is used by fixtures that drive simulation entities without running
+     * a whole simulation.
+     *
+     * @param   dataCollector   the data collector.
+     * @since                   1.2
+     */
+    static void setDataCollector(DataCollector dataCollector) {
+        Simulation.dataCollector = dataCollector;
+    }
+
+    /**
+     * Gets the listener of the running simulations.
+     * 
+     * @return  the listener.
+     * @since   1.2
+     */    
+    public static SimulationListener getListener() {
+        return listener;
+    }
+
     /** 
      * Loads each simulation environment and run its simulations.
      * 
@@ -86,99 +198,157 @@ public class Simulation implements Runnable {
     @Override
     public void run() {
         terminated = false;
-        MainView.setStartButtonEnabled(false);
-        MainView.getSimulationView().setStateToInProgress();
-        String[] dbNames = MainView.getEnvironmentsNames();
+        listener.simulationsStarted(environments);
         double startTime = Calendar.getInstance().getTimeInMillis();
 
         CloudSim.init(getNumberOfCustomers(), Calendar.getInstance(), false);
         CloudSim.startSimulation();
-        for (String dbName : dbNames) {
+        for (String dbName : environments) {
             HibernateUtil.setActiveDatabase(dbName + ".cre");
             runAllSimulations();
         }
 
         double finishTime = Calendar.getInstance().getTimeInMillis();
         ElapsedTime elapsedTime = new ElapsedTime(finishTime - startTime);
-        MainView.getSimulationView().setStateToComplete(elapsedTime);
-        MainView.setStartButtonEnabled(true);
+        listener.simulationsCompleted(elapsedTime);
     }
 
     /** 
      * Runs all simulations of a specific environment.
      * It creates all CloudSim entities, runs the simulation and generates the
      * report. This cycle is repeated the number of times indicated by the
-     * NumberOfSimulations setting.
+     * NumberOfSimulations setting. If a target precision is set, the cycle
+     * stops earlier, as soon as the key performance indicators have 
+     * converged.
      * 
      * @since           1.0
      */       
     private void runAllSimulations() {
         RemovePreviousReports();
+        SettingBusiness.reloadSnapshot();
         isMailNotificationEnabled = SettingBusiness.isMailNotificationEnabled();
-        int numberOfSimulations = SettingBusiness.getNumberOfSimulations();
+        EnvironmentBlueprint blueprint = EnvironmentBlueprint.compile();
+        int numberOfSimulations = this.numberOfSimulations > 0 ? this.numberOfSimulations
+                                                               : SettingBusiness.getNumberOfSimulations();
 
-        for (int simulationId = 1; simulationId <= numberOfSimulations; simulationId++) {
+        int firstSimulation = replica > 0 ? replica : 1;
+        int lastSimulation = replica > 0 ? replica : numberOfSimulations;
+        SequentialStopping stopping = createStoppingRule(numberOfSimulations);
+        for (int simulationId = firstSimulation; simulationId <= lastSimulation; simulationId++) {
             SettingBusiness.setCurrentSimulation(simulationId);
-            MainView.getSimulationView().setBarLabel("Simulation " + simulationId + " of " + HibernateUtil.getActiveDatabase() + " is in progress...");
+            listener.simulationStarted(HibernateUtil.getActiveDatabase(), simulationId, numberOfSimulations);
             Log.setOutput(LogIO.getFileOutputStream());
             Log.printLine("CloudReports version 1.1");
             Log.print("Verifying available resources...");
 
             ResetCustomersTimeToSend();
             if (Verification.verifyVMsDeploymentViability()) {
-                runSimulation(simulationId);
+                SimulationSummary summary = runSimulation(simulationId, blueprint);
+                if (stopping != null && summary != null && stopping.add(summary)) {
+                    listener.progressChanged(stopping.getStopReason());
+                    Report.addReplicationInformation(simulationId, stopping.describe());
+                    LogIO.removeTempLogFile();
+                    break;
+                }
             } else {
-                Dialog.showErrorMessage(null, "Simulation aborted:\nSome of the virtual machines cannot be deployed by any available host.");
-                MainView.getSimulationView().dispose();
+                listener.simulationFailed(HibernateUtil.getActiveDatabase(), simulationId,
+                        "Simulation aborted:\nSome of the virtual machines cannot be deployed by any available host.", null);
                 break;
             }
             LogIO.removeTempLogFile();
         }
     }
     
+    /** 
+     * Creates the rule that decides when the simulations of the active
+     * environment may stop.
+     * 
+     * @param   numberOfSimulations the maximum number of simulations.
+     * @return                      the rule; or <code>null</code> if all 
+     *                              simulations must be run.
+     */      
+    private SequentialStopping createStoppingRule(int numberOfSimulations) {
+        double precision = targetPrecision != null ? targetPrecision : SettingBusiness.getTargetPrecision();
+        if (precision <= 0 || replica > 0) return null;
+        try {
+            return new SequentialStopping(SequentialStopping.parseIndicators(SettingBusiness.getStoppingIndicators()),
+                                          precision, SettingBusiness.getMinimumSimulations(), numberOfSimulations);
+        } catch (IllegalArgumentException ex) {
+            listener.warning("All simulations will be run: " + ex.getMessage());
+            return null;
+        }
+    }
+    
     /** 
      * Runs a round of a simulation.
      * 
-     * @since           1.1
+     * @param   simulationId    the id of the simulation.
+     * @param   blueprint       the blueprint of the environment.
+     * @return                  the summary of the simulation; or 
+     *                          <code>null</code> if it has not completed.
+     * @since                   1.1
      */      
-    private void runSimulation(int simulationId) {
+    private SimulationSummary runSimulation(int simulationId, EnvironmentBlueprint blueprint) {
         Log.print("OK\n");
         double currentSimulationStartTime = Calendar.getInstance().getTimeInMillis();
-        CloudSim.init(getNumberOfCustomers(), Calendar.getInstance(), false);
+        CloudSim.init(blueprint.getNumberOfCustomers(), Calendar.getInstance(), false);
         CloudSim.terminateSimulation(SettingBusiness.getTimeToSimulate()*60);
+        RandomNumberGenerator.startSimulation(randomSeed != null ? randomSeed : SettingBusiness.getRandomSeed(), simulationId);
         
-        HashMap<String, PowerDatacenter> datacenters = EntityFactory.createDatacenters();
-        HashMap<String, DatacenterBroker> brokers = EntityFactory.createBrokers();
-        if (datacenters == null || brokers == null) return;
+        PhaseTimer phaseTimer = new PhaseTimer();
+        long startTime = phaseTimer.start();
+        HashMap<String, PowerDatacenter> datacenters = EntityFactory.createDatacenters(blueprint);
+        HashMap<String, DatacenterBroker> brokers = EntityFactory.createBrokers(blueprint);
+        if (datacenters == null || brokers == null) return null;
+        phaseTimer.stop(PhaseTimer.ENTITY_CREATION, startTime);
         
-        EntityFactory.setUpNetworkLinks(datacenters, brokers);
+        startTime = phaseTimer.start();
+        EntityFactory.setUpNetworkLinks(blueprint, datacenters, brokers);
+        phaseTimer.stop(PhaseTimer.NETWORK_SETUP, startTime);
         try {
-            Simulation.dataCollector = new DataCollector(datacenters, brokers);
+            Simulation.dataCollector = new DataCollector(datacenters, brokers, SettingBusiness.getSnapshot(), phaseTimer);
+            startTime = phaseTimer.start();
             CloudSim.startSimulation();
+            phaseTimer.stop(PhaseTimer.EVENT_PROCESSING, startTime);
 
-            Simulation.dataCollector.flushData();
-            MainView.getSimulationView().setBarLabel("Generating report " + simulationId + "...");
+            startTime = phaseTimer.start();
+            Simulation.dataCollector.awaitFlush();
+            phaseTimer.stop(PhaseTimer.FLUSH_WAIT, startTime);
+            listener.progressChanged("Generating report " + simulationId + "...");
             double currentSimulationFinishTime = Calendar.getInstance().getTimeInMillis();
             ElapsedTime elapsedTime = new ElapsedTime(currentSimulationFinishTime - currentSimulationStartTime);
 
             List<DatacenterBroker> brokersList = Arrays.asList(brokers.values().toArray(new DatacenterBroker[0]));
             List<PowerDatacenter> datacentersList = Arrays.asList(datacenters.values().toArray(new PowerDatacenter[0]));
-            Report.generateReport(datacentersList, brokersList, elapsedTime);
+            Report.generateReport(datacentersList, brokersList, elapsedTime, Simulation.dataCollector.getDataStore(), phaseTimer);
 
             if (hasTerminated()) {
-                Dialog.showWarning(MainView.getFrames()[0], "Simulation has been abrubtly terminated.");
+                listener.warning("Simulation has been abrubtly terminated.");
+                return null;
             } else {
+                SimulationSummary summary = SimulationSummary.create(datacentersList, brokersList);
+                listener.simulationCompleted(HibernateUtil.getActiveDatabase(), simulationId, elapsedTime, summary);
+
                 //Send mail notification
                 if (isMailNotificationEnabled) {
                     Mail.sendMail("Simulation " + simulationId + " of " + HibernateUtil.getActiveDatabase() + " completed.",
                             "Simulation " + simulationId + " of " + HibernateUtil.getActiveDatabase() + " has completed in " + elapsedTime.toString() + ".");
                 }
+                return summary;
             }
         } catch (Exception e) {
             e.printStackTrace();
+            if (Simulation.dataCollector != null) {
+                //A failure of the flusher must not keep the failure from being reported
+                try {
+                    Simulation.dataCollector.awaitFlush();
+                } catch (RuntimeException flushException) {
+                    flushException.printStackTrace();
+                    listener.error("Collected data could not be stored: " + flushException.getMessage());
+                }
+            }
             CloudSim.init(getNumberOfCustomers(), Calendar.getInstance(), false);
             CloudSim.startSimulation();
-            Dialog.showWarning(null, "Simulation has been interrupted.\nReports may have been generated with inconsistent data.");
 
             //Send mail notification
             if (isMailNotificationEnabled) {
@@ -188,8 +358,10 @@ public class Simulation implements Runnable {
                         "Simulation " + simulationId + " of " + HibernateUtil.getActiveDatabase() + " has failed after " + elapsedTime.toString() + ":\n\n" + e.getMessage());
             }
 
-            MainView.getSimulationView().dispose();
+            listener.simulationFailed(HibernateUtil.getActiveDatabase(), simulationId,
+                    "Simulation has been interrupted.\nReports may have been generated with inconsistent data.", e);
             LogIO.removeTempLogFile();
+            return null;
         }
     }
 
@@ -218,12 +390,13 @@ public class Simulation implements Runnable {
 
     /** 
      * Removes reports from previous simulations.
+     * If a single simulation is run, only its own report is removed.
      * 
      * @since   1.1
      */     
     private void RemovePreviousReports() {                
-        String baseDirectory = FileIO.getPathOfExecutable();
-        File reportsDirectory = new File(baseDirectory + "reports/" + HibernateUtil.getActiveDatabase());
+        File reportsDirectory = new File(Report.getReportsDirectory() + HibernateUtil.getActiveDatabase());
+        if (replica > 0) reportsDirectory = new File(reportsDirectory, "report" + replica);
         if(reportsDirectory.exists()) FileIO.deleteDirectory(reportsDirectory);
         reportsDirectory.mkdirs();
     }
@@ -0,0 +1,112 @@
+/* 
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ * 
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.simulation;
+
+import cloudreports.reports.SimulationSummary;
+import cloudreports.utils.ElapsedTime;
+
+/**
+ * Receives notifications about the progress of simulations.
+ * It decouples the {@link Simulation} class from its user interface, so
+ * simulations can be run either from the graphical interface or from the
+ * command line.
+ * 
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public interface SimulationListener {
+
+    /** 
+     * Notifies that the simulations of a set of environments have started.
+     * 
+     * @param   environments    the names of the environments.
+     * @since                   1.2
+     */
+    void simulationsStarted(String[] environments);
+
+    /** 
+     * Notifies that a simulation has started.
+     * 
+     * @param   environment         the name of the environment.
+     * @param   simulationId        the id of the simulation.
+     * @param   numberOfSimulations the number of simulations of the 
+     *                              environment.
+     * @since                       1.2
+     */
+    void simulationStarted(String environment, int simulationId, int numberOfSimulations);
+
+    /** 
+     * Notifies that the current simulation has moved to a new stage.
+     * 
+     * @param   message the description of the stage.
+     * @since           1.2
+     */
+    void progressChanged(String message);
+
+    /** 
+     * Notifies that a simulation has completed and its report has been 
+     * generated.
+     * 
+     * @param   environment     the name of the environment.
+     * @param   simulationId    the id of the simulation.
+     * @param   elapsedTime     the duration of the simulation.
+     * @param   summary         the key performance indicators of the 
+     *                          simulation; or <code>null</code> if they are
+     *                          not available.
+     * @since                   1.2
+     */
+    void simulationCompleted(String environment, int simulationId, ElapsedTime elapsedTime, SimulationSummary summary);
+
+    /** 
+     * Notifies that a simulation has failed.
+     * 
+     * @param   environment     the name of the environment.
+     * @param   simulationId    the id of the simulation.
+     * @param   message         the description of the failure.
+     * @param   cause           the cause of the failure; or <code>null</code>
+     *                          if there is none.
+     * @since                   1.2
+     */
+    void simulationFailed(String environment, int simulationId, String message, Exception cause);
+
+    /** 
+     * Notifies that all simulations have finished.
+     * 
+     * @param   elapsedTime     the duration of all simulations.
+     * @since                   1.2
+     */
+    void simulationsCompleted(ElapsedTime elapsedTime);
+
+    /** 
+     * Notifies a warning that does not stop the simulations.
+     * 
+     * @param   message the warning.
+     * @since           1.2
+     */
+    void warning(String message);
+
+    /** 
+     * Notifies an error that prevents a simulation from being set up.
+     * 
+     * @param   message the error.
+     * @since           1.2
+     */
+    void error(String message);
+}
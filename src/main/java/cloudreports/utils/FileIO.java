@@ -23,6 +23,7 @@ import java.io.*;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.channels.FileChannel;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Set;
@@ -79,6 +80,35 @@ public class FileIO {
         return strResult;
     }
 
+    /** 
+     * Reads the content of a file as a string.
+     *
+     * @param   filePath    the path to the file.
+     * @return              the content of the file; or <code>null</code> if
+     *                      the file could not be read.
+     * @since               1.2
+     */
+    public static String readStringFromFile(String filePath) {
+        File file = new File(filePath);
+        byte[] bytes = new byte[(int) file.length()];
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            in.readFully(bytes);
+            return new String(bytes);
+        } catch (IOException ex) {
+            Logger.getLogger(FileIO.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+        finally {
+            try {
+                if(in != null) in.close();
+            } catch (IOException ex) {
+                Logger.getLogger(FileIO.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
     /**
      * Writes a string to a file.
      * 
@@ -141,6 +171,22 @@ public class FileIO {
         }
     }
     
+    /**
+     * Opens a buffered writer on a file.
+     * The caller is responsible for closing the returned writer.
+     * 
+     * @param   filePath    the path to the output file.
+     * @param   append      <code>true</code> if content must be appended to
+     *                      the file; <code>false</code> if the file must be
+     *                      overwritten.
+     * @return              a buffered writer on the file.
+     * @throws  IOException if the file could not be opened.
+     * @since               1.2
+     */          
+    public static Writer openBufferedWriter(String filePath, boolean append) throws IOException {
+        return new BufferedWriter(new FileWriter(filePath, append), 64 * 1024);
+    }
+    
     /**
      * Reads a byte array from a file.
      * 
@@ -298,4 +344,29 @@ public class FileIO {
 
         return dir.delete();
     }
+    
+    /**
+     * Copies a file.
+     * 
+     * @param   source      the file to be copied.
+     * @param   destination the copy.
+     * @throws  IOException if the file could not be copied.
+     * @since               1.2
+     */
+    public static void copyFile(File source, File destination) throws IOException {
+        FileChannel in = null;
+        FileChannel out = null;
+        try {
+            in = new FileInputStream(source).getChannel();
+            out = new FileOutputStream(destination).getChannel();
+            long position = 0;
+            long size = in.size();
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        } finally {
+            if (in != null) in.close();
+            if (out != null) out.close();
+        }
+    }
 }
@@ -20,9 +20,13 @@
 package cloudreports.utils;
 
 import cloudreports.business.SettingBusiness;
-import cloudreports.dao.SettingDAO;
+import cloudreports.dao.RandomNumberDAO;
 import cloudreports.enums.RandomNumbersFactory;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import qrbg.ServiceDeniedException;
 
 /**
  * A helper class that provides utility methods related to random numbers
@@ -32,6 +36,15 @@ import java.util.List;
  */
 public class RandomNumberGenerator {
     
+    /** The base seed of the current simulation. */
+    private static long baseSeed = newSeed();
+    
+    /** The stream of the current simulation. */
+    private static RandomStream simulationStream = new RandomStream(baseSeed);
+    
+    /** The substreams of the current simulation, indexed by key. */
+    private static Map<String, RandomStream> substreams = new HashMap<String, RandomStream>();
+    
     /** 
      * Gets a specific amount of random numbers from the random numbers pool.
      * 
@@ -43,4 +56,101 @@ public class RandomNumberGenerator {
         return RandomNumbersFactory.getInstance(source).getRandomNumbers(amount);
     }
     
+    /** 
+     * Starts the random streams of a simulation.
+     * The stream of each simulation is derived from a base seed and from the
+     * simulation id, so a run can be reproduced by setting the base seed and
+     * running the same simulation again.
+     * 
+     * @param   seed            the base seed; or <code>null</code> to choose
+     *                          a new one.
+     * @param   simulationId    the id of the simulation.
+     * @return                  the base seed.
+     * @since                   1.2
+     */
+    public static synchronized long startSimulation(Long seed, int simulationId) {
+        baseSeed = seed == null ? newSeed() : seed;
+        simulationStream = new RandomStream(RandomStream.mix64(baseSeed + simulationId));
+        substreams.clear();
+        return baseSeed;
+    }
+    
+    /** 
+     * Gets the base seed of the current simulation.
+     * 
+     * @return  the base seed.
+     * @since   1.2
+     */
+    public static synchronized long getSeed() {
+        return baseSeed;
+    }
+    
+    /** 
+     * Gets the substream of the current simulation identified by a key, 
+     * such as a customer's name.
+     * 
+     * @param   key the key of the substream.
+     * @return      the substream.
+     * @since       1.2
+     */
+    public static synchronized RandomStream getStream(String key) {
+        RandomStream stream = substreams.get(key);
+        if (stream == null) {
+            stream = simulationStream.substream(key);
+            substreams.put(key, stream);
+        }
+        return stream;
+    }
+    
+    /** 
+     * Gets a random number for the substream identified by a key.
+     * Pseudo-random numbers come from the seeded substream; real random 
+     * numbers come from the random numbers pool.
+     * 
+     * @param   key the key of the substream.
+     * @return      a random number in [0, 1).
+     * @since       1.2
+     */
+    public static double nextDouble(String key) {
+        if (SettingBusiness.getRandomnessOption() == RandomNumbersFactory.JAVA.getCode()) {
+            return getStream(key).nextDouble();
+        }
+        double[] value = new double[1];
+        try {
+            new RandomNumberDAO().fill(value);
+        } catch (Exception ex) {
+            throw new IllegalStateException("Random numbers could not be obtained from the pool.", ex);
+        }
+        return value[0];
+    }
+    
+    /** 
+     * Fills an array with random numbers for the substream identified by a 
+     * key.
+     * 
+     * @param   key                     the key of the substream.
+     * @param   values                  the array to be filled.
+     * @throws  IOException             if the random numbers pool could not be
+     *                                  refilled.
+     * @throws  ServiceDeniedException  if the QRBG account is not valid.
+     * @since                           1.2
+     */
+    public static void fill(String key, double[] values) throws IOException, ServiceDeniedException {
+        if (SettingBusiness.getRandomnessOption() == RandomNumbersFactory.JAVA.getCode()) {
+            getStream(key).fill(values);
+            return;
+        }
+        new RandomNumberDAO().fill(values);
+    }
+    
+    /** 
+     * Chooses a new seed.
+     * 
+     * @return  the seed.
+     * @since   1.2
+     */
+    public static long newSeed() {
+        return RandomStream.mix64(System.currentTimeMillis()) ^ RandomStream.mix64(System.nanoTime());
+    }
+    
 }
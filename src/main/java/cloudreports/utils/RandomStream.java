@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2010-2012 Thiago T. Sá
+ *
+ * This file is part of CloudReports.
+ *
+ * CloudReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CloudReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For more information about your rights as a user of CloudReports,
+ * refer to the LICENSE file or see <http://www.gnu.org/licenses/>.
+ */
+
+package cloudreports.utils;
+
+/**
+ * A seeded stream of pseudo-random numbers.
+ * The stream uses the SplitMix64 algorithm, the same one behind
+ * <code>java.util.SplittableRandom</code>: each number costs a few
+ * arithmetic operations and no allocation, and independent substreams can be
+ * derived deterministically from a seed and a key.
+ *
+ * @author      Thiago T. Sá
+ * @since       1.2
+ */
+public class RandomStream {
+
+    /** The increment of the generator's state (the golden gamma). */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /** The scale that converts 53 random bits to a double in [0, 1). */
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+    /** The seed of this stream. */
+    private final long seed;
+
+    /** The current state of the generator. */
+    private long state;
+
+    /**
+     * Creates a stream with a given seed.
+     *
+     * @param   seed    the seed of the stream.
+     * @since           1.2
+     */
+    public RandomStream(long seed) {
+        this.seed = seed;
+        this.state = seed;
+    }
+
+    /**
+     * Gets the seed of this stream.
+     *
+     * @return  the seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Derives an independent substream identified by a key.
+     * The substream depends only on the seed of this stream and on the key,
+     * so the order in which substreams are created does not matter.
+     *
+     * @param   key the key of the substream, such as a customer's name.
+     * @return      the substream.
+     * @since       1.2
+     */
+    public RandomStream substream(String key) {
+        long keyHash = 1125899906842597L;
+        for(int i = 0; i < key.length(); i++) {
+            keyHash = 31 * keyHash + key.charAt(i);
+        }
+        return new RandomStream(mix64(seed ^ mix64(keyHash)));
+    }
+
+    /**
+     * Gets the next pseudo-random long.
+     *
+     * @return  a pseudo-random long.
+     * @since   1.2
+     */
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix64(state);
+    }
+
+    /**
+     * Gets the next pseudo-random double, uniformly distributed in [0, 1).
+     *
+     * @return  a pseudo-random double.
+     * @since   1.2
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Fills an array with pseudo-random doubles, uniformly distributed in
+     * [0, 1).
+     *
+     * @param   values  the array to be filled.
+     * @since           1.2
+     */
+    public void fill(double[] values) {
+        for(int i = 0; i < values.length; i++) {
+            values[i] = nextDouble();
+        }
+    }
+
+    /**
+     * Mixes the bits of a long value.
+     *
+     * @param   z   the value to be mixed.
+     * @return      the mixed value.
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}